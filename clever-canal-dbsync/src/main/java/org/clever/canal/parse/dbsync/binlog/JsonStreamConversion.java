@@ -0,0 +1,648 @@
+package org.clever.canal.parse.dbsync.binlog;
+
+import org.clever.canal.parse.dbsync.binlog.JsonConversion.Json_Value;
+import org.clever.canal.parse.dbsync.binlog.event.TemporalFormatter;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.clever.canal.parse.dbsync.binlog.JsonConversion.*;
+import static org.clever.canal.parse.dbsync.binlog.JsonDiffConversion.*;
+
+/**
+ * MySQL json二进制单遍解析，直接输出UTF-8文本(和JsonConversion、JsonDiffConversion的输出完全一致)
+ *
+ * <pre>
+ * 1. 按照二进制格式递归遍历，不构造Json_Value等中间对象，也不复制子节点的数据(JsonConversion每一层都会duplicate一份)
+ * 2. 输出写入每个线程复用的可扩容byte[]，最后只构造一次String
+ * 3. 字符串需要按字符集解码，非UTF-8字符集仍然使用JsonConversion
+ * </pre>
+ */
+@SuppressWarnings("WeakerAccess")
+public final class JsonStreamConversion {
+    private static final ThreadLocal<JsonStreamConversion> CONVERSIONS = ThreadLocal.withInitial(JsonStreamConversion::new);
+
+    private static final byte[] digits = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    /**
+     * 输出缓冲区超过该大小时，使用完成后不再保留(避免线程长期占用大文档的内存)
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    // partial json的操作名称(和json_diff_operation_name对应)
+    private static final int OPERATION_REPLACE = 0;
+    private static final int OPERATION_INSERT = 1;
+    private static final int OPERATION_ARRAY_INSERT = 2;
+    private static final int OPERATION_REMOVE = 3;
+    private static final byte[][] OPERATION_NAMES = {
+            "JSON_REPLACE".getBytes(StandardCharsets.US_ASCII),
+            "JSON_INSERT".getBytes(StandardCharsets.US_ASCII),
+            "JSON_ARRAY_INSERT".getBytes(StandardCharsets.US_ASCII),
+            "JSON_REMOVE".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    /**
+     * 输出的UTF-8文本
+     */
+    private byte[] out = new byte[INITIAL_CAPACITY];
+    private int size;
+    /**
+     * partial json的操作名称
+     */
+    private int[] operations = new int[16];
+    /**
+     * 正在解析的数据(LogBuffer.buffer)
+     */
+    private byte[] data;
+    /**
+     * readVariableLength读取的字节数
+     */
+    private int variableLengthBytes;
+
+    private JsonStreamConversion() {
+    }
+
+    /**
+     * 解析从buffer.position()开始，长度为len的json字段值(第一个字节为类型)，不改变buffer的position
+     */
+    public static String print_json(LogBuffer buffer, int len, String charsetName) {
+        if (!isUtf8(charsetName)) {
+            int position = buffer.position();
+            Json_Value jsonValue = JsonConversion.parse_value(buffer.getUint8(), buffer, len - 1, charsetName);
+            StringBuilder builder = new StringBuilder();
+            jsonValue.toJsonString(builder, charsetName);
+            buffer.position(position);
+            return builder.toString();
+        }
+        JsonStreamConversion conversion = CONVERSIONS.get();
+        conversion.begin(buffer);
+        try {
+            final int start = buffer.position;
+            conversion.checkBounds(start, 1, buffer.origin + buffer.limit);
+            conversion.writeValue(conversion.data[start] & 0xff, start + 1, len - 1, buffer.origin + buffer.limit);
+            return new String(conversion.out, 0, conversion.size, StandardCharsets.UTF_8);
+        } finally {
+            conversion.end();
+        }
+    }
+
+    /**
+     * 解析从buffer.position()开始，长度为len的partial json(mysql8.0 PARTIAL_UPDATE_ROWS_EVENT)，不改变buffer的position
+     *
+     * @see JsonDiffConversion#print_json_diff(LogBuffer, long, String, int, String)
+     */
+    public static String print_json_diff(LogBuffer buffer, int len, String columnName, int columnIndex, String charsetName) {
+        if (!isUtf8(charsetName)) {
+            int position = buffer.position();
+            LogBuffer diff = buffer.duplicate(position, len);
+            String text = JsonDiffConversion.print_json_diff(diff, len, columnName, columnIndex, charsetName).toString();
+            buffer.position(position);
+            return text;
+        }
+        JsonStreamConversion conversion = CONVERSIONS.get();
+        conversion.begin(buffer);
+        try {
+            final int start = buffer.position;
+            conversion.checkBounds(start, len, buffer.origin + buffer.limit);
+            conversion.writeJsonDiff(start, start + len, len, columnName, columnIndex);
+            return new String(conversion.out, 0, conversion.size, StandardCharsets.UTF_8);
+        } finally {
+            conversion.end();
+        }
+    }
+
+    private static boolean isUtf8(String charsetName) {
+        return "UTF-8".equalsIgnoreCase(charsetName) || "UTF8".equalsIgnoreCase(charsetName);
+    }
+
+    private void begin(LogBuffer buffer) {
+        data = buffer.buffer;
+        size = 0;
+    }
+
+    private void end() {
+        data = null;
+        size = 0;
+        if (out.length > MAX_RETAINED_CAPACITY) {
+            out = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    // ============================ json ======================
+
+    /**
+     * 对应JsonConversion.parse_value + toJsonString，[start, start + len)为值的数据，limit为可以读取的上限
+     */
+    private void writeValue(int type, int start, long len, int limit) {
+        if (len < 0 || start + len > limit) {
+            throw new IllegalArgumentException("limit excceed: " + (start + len));
+        }
+        switch (type) {
+            case JSONB_TYPE_SMALL_OBJECT:
+                writeArrayOrObject(true, false, start, (int) len);
+                break;
+            case JSONB_TYPE_LARGE_OBJECT:
+                writeArrayOrObject(true, true, start, (int) len);
+                break;
+            case JSONB_TYPE_SMALL_ARRAY:
+                writeArrayOrObject(false, false, start, (int) len);
+                break;
+            case JSONB_TYPE_LARGE_ARRAY:
+                writeArrayOrObject(false, true, start, (int) len);
+                break;
+            default:
+                writeScalar(type, start, len, start + (int) len);
+        }
+    }
+
+    private void writeArrayOrObject(boolean object, boolean large, int start, int len) {
+        final int limit = start + len;
+        final int offsetSize = large ? LARGE_OFFSET_SIZE : SMALL_OFFSET_SIZE;
+        if (len < 2 * offsetSize) {
+            throw new IllegalArgumentException("illegal json data");
+        }
+        final long elementCount = readOffsetOrSize(start, large);
+        final long bytes = readOffsetOrSize(start + offsetSize, large);
+        if (bytes > len) {
+            throw new IllegalArgumentException("illegal json data");
+        }
+        final int keyEntrySize = large ? KEY_ENTRY_SIZE_LARGE : KEY_ENTRY_SIZE_SMALL;
+        final int valueEntrySize = large ? VALUE_ENTRY_SIZE_LARGE : VALUE_ENTRY_SIZE_SMALL;
+        long headerSize = 2 * offsetSize;
+        if (object) {
+            headerSize += elementCount * keyEntrySize;
+        }
+        headerSize += elementCount * valueEntrySize;
+        if (headerSize > bytes) {
+            throw new IllegalArgumentException("illegal json data");
+        }
+
+        int firstEntryOffset = 2 * offsetSize;
+        if (object) {
+            firstEntryOffset += elementCount * keyEntrySize;
+        }
+        write(object ? '{' : '[');
+        for (int i = 0; i < elementCount; ++i) {
+            if (i > 0) {
+                write(',');
+                write(' ');
+            }
+            if (object) {
+                // key: offset + 2字节的长度，key不需要转义
+                int keyEntry = start + 2 * offsetSize + keyEntrySize * i;
+                long keyOffset = readOffsetOrSize(keyEntry, large);
+                int keyLength = readUint16(keyEntry + offsetSize, limit);
+                if (keyOffset > len) {
+                    throw new IllegalArgumentException("limit excceed: " + keyOffset);
+                }
+                write('"');
+                writeString(start + (int) keyOffset, keyLength, limit, false);
+                write('"');
+                write(':');
+                write(' ');
+            }
+            int entry = start + firstEntryOffset + valueEntrySize * i;
+            checkBounds(entry, 1, limit);
+            int type = data[entry] & 0xff;
+            if (type == JSONB_TYPE_INT16 || type == JSONB_TYPE_UINT16 || type == JSONB_TYPE_LITERAL
+                    || (large && (type == JSONB_TYPE_INT32 || type == JSONB_TYPE_UINT32))) {
+                // 值直接保存在entry中
+                writeScalar(type, entry + 1, valueEntrySize - 1, limit);
+            } else {
+                long valueOffset = readOffsetOrSize(entry + 1, large);
+                if (valueOffset > bytes) {
+                    throw new IllegalArgumentException("limit excceed: " + valueOffset);
+                }
+                writeValue(type, start + (int) valueOffset, bytes - valueOffset, limit);
+            }
+        }
+        write(object ? '}' : ']');
+    }
+
+    private void writeScalar(int type, int start, long len, int limit) {
+        switch (type) {
+            case JSONB_TYPE_LITERAL:
+                checkBounds(start, 1, limit);
+                switch (data[start] & 0xff) {
+                    case JSONB_NULL_LITERAL:
+                        writeAscii("null");
+                        break;
+                    case JSONB_TRUE_LITERAL:
+                        writeAscii("true");
+                        break;
+                    case JSONB_FALSE_LITERAL:
+                        writeAscii("false");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("illegal json data");
+                }
+                break;
+            case JSONB_TYPE_INT16:
+                writeLong((short) readUint16(start, limit));
+                break;
+            case JSONB_TYPE_INT32:
+                checkBounds(start, 4, limit);
+                writeLong(readInt32(start));
+                break;
+            case JSONB_TYPE_INT64:
+                writeLong(readLong64(start, limit));
+                break;
+            case JSONB_TYPE_UINT16:
+                writeLong(readUint16(start, limit));
+                break;
+            case JSONB_TYPE_UINT32:
+                checkBounds(start, 4, limit);
+                writeLong(readInt32(start) & 0xffffffffL);
+                break;
+            case JSONB_TYPE_UINT64:
+                writeUnsignedLong(readLong64(start, limit));
+                break;
+            case JSONB_TYPE_DOUBLE:
+                writeAscii(Double.toString(Double.longBitsToDouble(readLong64(start, limit))));
+                break;
+            case JSONB_TYPE_STRING: {
+                final int maxBytes = (int) Math.min(len, 5);
+                checkBounds(start, maxBytes, limit);
+                long strLen = readVariableLength(start, maxBytes);
+                int n = variableLengthBytes;
+                if (len < n + strLen) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                write('"');
+                writeString(start + n, (int) strLen, limit, true);
+                write('"');
+                break;
+            }
+            case JSONB_TYPE_OPAQUE: {
+                checkBounds(start, 1, limit);
+                final int fieldType = data[start] & 0xff;
+                final int maxBytes = (int) Math.min(len, 5);
+                checkBounds(start + 1, maxBytes, limit);
+                long strLen = readVariableLength(start + 1, maxBytes);
+                int n = variableLengthBytes;
+                if (strLen == 0 || len < n + strLen) {
+                    throw new IllegalArgumentException("illegal json data");
+                }
+                writeOpaque(fieldType, start + 1 + n, (int) strLen, limit);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("illegal json data");
+        }
+    }
+
+    /**
+     * 对应Json_Value.toJsonString的OPAQUE
+     */
+    private void writeOpaque(int fieldType, int start, int length, int limit) {
+        if (fieldType == LogEvent.MYSQL_TYPE_NEWDECIMAL) {
+            checkBounds(start, 2, limit);
+            int precision = data[start];
+            int scale = data[start + 1];
+            // 和JsonConversion相同，使用LogBuffer解析decimal
+            LogBuffer decimal = new LogBuffer(data, start + 2, limit - start - 2);
+            writeAscii(decimal.getDecimal(precision, scale).toPlainString());
+        } else if (fieldType == LogEvent.MYSQL_TYPE_TIME) {
+            long packed = readLong64(start, limit);
+            write('"');
+            if (packed == 0) {
+                writeAscii("00:00:00");
+            } else {
+                long ultime = Math.abs(packed);
+                long intpart = ultime >> 24;
+                int frac = (int) (ultime % (1L << 24));
+                writeAscii(TemporalFormatter.current().formatTime(packed < 0, (int) ((intpart >> 12) % (1 << 10)),
+                        (int) ((intpart >> 6) % (1 << 6)), (int) (intpart % (1 << 6)), frac, 6));
+            }
+            write('"');
+        } else if (fieldType == LogEvent.MYSQL_TYPE_DATE || fieldType == LogEvent.MYSQL_TYPE_DATETIME
+                || fieldType == LogEvent.MYSQL_TYPE_TIMESTAMP) {
+            long packed = readLong64(start, limit);
+            write('"');
+            if (packed == 0) {
+                writeAscii("0000-00-00 00:00:00");
+            } else {
+                long ultime = Math.abs(packed);
+                long intpart = ultime >> 24;
+                int frac = (int) (ultime % (1L << 24));
+                long ymd = intpart >> 17;
+                long ym = ymd >> 5;
+                long hms = intpart % (1 << 17);
+                writeAscii(TemporalFormatter.current().formatDateTime((int) (ym / 13), (int) (ym % 13), (int) (ymd % (1 << 5)),
+                        (int) (hms >> 12), (int) ((hms >> 6) % (1 << 6)), (int) (hms % (1 << 6)), frac, 6));
+            }
+            write('"');
+        } else {
+            write('"');
+            writeString(start, length, limit, true);
+            write('"');
+        }
+    }
+
+    /**
+     * 读取变长的长度(每个字节7位)，占用的字节数保存在variableLengthBytes(没有结束字节时为0，长度也为0)
+     */
+    private long readVariableLength(int start, int maxBytes) {
+        long length = 0;
+        for (int i = 0; i < maxBytes; i++) {
+            // Get the next 7 bits of the length.(和JsonConversion相同，按int移位)
+            length |= (data[start + i] & 0x7f) << (7 * i);
+            if ((data[start + i] & 0x80) == 0) {
+                // This was the last byte.
+                variableLengthBytes = i + 1;
+                return length;
+            }
+        }
+        variableLengthBytes = 0;
+        return 0;
+    }
+
+    private long readOffsetOrSize(int pos, boolean large) {
+        if (large) {
+            checkBounds(pos, 4, data.length);
+            return readInt32(pos) & 0xffffffffL;
+        }
+        checkBounds(pos, 2, data.length);
+        return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8);
+    }
+
+    private int readUint16(int pos, int limit) {
+        checkBounds(pos, 2, limit);
+        return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8);
+    }
+
+    private long readLong64(int pos, int limit) {
+        checkBounds(pos, 8, limit);
+        return (readInt32(pos) & 0xffffffffL) | ((long) readInt32(pos + 4) << 32);
+    }
+
+    private int readInt32(int pos) {
+        return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8) | ((data[pos + 2] & 0xff) << 16) | (data[pos + 3] << 24);
+    }
+
+    private void checkBounds(int pos, int length, int limit) {
+        if (pos < 0 || pos + length > limit) {
+            throw new IllegalArgumentException("limit excceed: " + (pos + length));
+        }
+    }
+
+    // ============================ json diff ======================
+
+    /**
+     * 对应JsonDiffConversion.print_json_diff，只解析[start, end)范围内的数据
+     */
+    private void writeJsonDiff(int start, int end, long len, String columnName, int columnIndex) {
+        // 第一遍: 计算每个操作的名称
+        int count = 0;
+        int pos = start;
+        while (pos < end) {
+            final int operation = data[pos++] & 0xff;
+            if (operation >= JSON_DIFF_OPERATION_COUNT) {
+                throw new IllegalArgumentException("reading operation type (invalid operation code)");
+            }
+            // skip path
+            long pathLength = readPackedLong(pos, end);
+            pos += packedLongSize(pos);
+            if (pathLength > len) {
+                throw new IllegalArgumentException("skipping path");
+            }
+            checkBounds(pos + (int) pathLength - 1, 1, end);
+            if (count == operations.length) {
+                int[] newOperations = new int[count * 2];
+                System.arraycopy(operations, 0, newOperations, 0, count);
+                operations = newOperations;
+            }
+            operations[count++] = operationName(operation, data[pos + (int) pathLength - 1]);
+            pos += (int) pathLength;
+            // skip value
+            if (operation != DIFF_OPERATION_REMOVE) {
+                long valueLength = readPackedLong(pos, end);
+                pos += packedLongSize(pos);
+                if (valueLength > len) {
+                    throw new IllegalArgumentException("skipping path");
+                }
+                checkBounds(pos, (int) valueLength, end);
+                pos += (int) valueLength;
+            }
+        }
+
+        // Print function names in reverse order.
+        for (int i = count - 1; i >= 0; i--) {
+            if (i == 0 || operations[i - 1] != operations[i]) {
+                write(OPERATION_NAMES[operations[i]]);
+                write('(');
+            }
+        }
+        // Print column id
+        if (columnName != null) {
+            writeChars(columnName);
+        } else {
+            write('@');
+            writeLong(columnIndex);
+        }
+        if (count == 0) {
+            return;
+        }
+        write(',');
+        write(' ');
+
+        // 第二遍: 输出path和value
+        pos = start;
+        int diff = 0;
+        while (pos < end) {
+            final int operation = data[pos++] & 0xff;
+            long pathLength = readPackedLong(pos, end);
+            pos += packedLongSize(pos);
+            // path按ISO-8859-1输出
+            write('\'');
+            checkBounds(pos, (int) pathLength, end);
+            for (int i = pos, stop = pos + (int) pathLength; i < stop && data[i] != 0; i++) {
+                writeChar((char) (data[i] & 0xff));
+            }
+            pos += (int) pathLength;
+            write('\'');
+
+            if (operation != DIFF_OPERATION_REMOVE) {
+                write(',');
+                write(' ');
+                long valueLength = readPackedLong(pos, end);
+                pos += packedLongSize(pos);
+                checkBounds(pos, 1, end);
+                writeValue(data[pos] & 0xff, pos + 1, valueLength - 1, end);
+                pos += (int) valueLength;
+            }
+
+            // Print closing parenthesis
+            if (pos >= end || operations[diff + 1] != operations[diff]) {
+                write(')');
+            }
+            if (pos < end) {
+                write(',');
+                write(' ');
+            }
+            diff++;
+        }
+    }
+
+    private static int operationName(int operation, int lastPathChar) {
+        switch (operation) {
+            case DIFF_OPERATION_REPLACE:
+                return OPERATION_REPLACE;
+            case DIFF_OPERATION_INSERT:
+                return lastPathChar == ']' ? OPERATION_ARRAY_INSERT : OPERATION_INSERT;
+            default:
+                return OPERATION_REMOVE;
+        }
+    }
+
+    /**
+     * 和LogBuffer.getPackedLong相同
+     */
+    private long readPackedLong(int pos, int limit) {
+        checkBounds(pos, 1, limit);
+        final int lead = data[pos] & 0xff;
+        if (lead < 251) {
+            return lead;
+        }
+        switch (lead) {
+            case 251:
+                return LogBuffer.NULL_LENGTH;
+            case 252:
+                return readUint16(pos + 1, limit);
+            case 253:
+                checkBounds(pos + 1, 3, limit);
+                return (data[pos + 1] & 0xff) | ((data[pos + 2] & 0xff) << 8) | ((data[pos + 3] & 0xff) << 16);
+            default:
+                checkBounds(pos + 1, 4, limit);
+                return readInt32(pos + 1) & 0xffffffffL;
+        }
+    }
+
+    private int packedLongSize(int pos) {
+        switch (data[pos] & 0xff) {
+            case 252:
+                return 3;
+            case 253:
+                return 4;
+            case 254:
+            case 255:
+                return 9;
+            default:
+                return 1;
+        }
+    }
+
+    // ============================ output ======================
+
+    private void ensureCapacity(int length) {
+        if (size + length > out.length) {
+            byte[] newOut = new byte[Math.max(out.length * 2, size + length)];
+            System.arraycopy(out, 0, newOut, 0, size);
+            out = newOut;
+        }
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        out[size++] = (byte) c;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, out, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeAscii(String text) {
+        final int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            out[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void writeChars(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                // 很少出现，直接编码剩余部分
+                write(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            writeChar(c);
+        }
+    }
+
+    /**
+     * 写入一个非代理区的字符(UTF-8编码)
+     */
+    private void writeChar(char c) {
+        ensureCapacity(3);
+        if (c < 0x80) {
+            out[size++] = (byte) c;
+        } else if (c < 0x800) {
+            out[size++] = (byte) (0xc0 | (c >> 6));
+            out[size++] = (byte) (0x80 | (c & 0x3f));
+        } else {
+            out[size++] = (byte) (0xe0 | (c >> 12));
+            out[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            out[size++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    /**
+     * 复制UTF-8字符串(和getFixString相同，遇到'\0'截断)，escape时对'"'和'\\'转义
+     */
+    private void writeString(int start, int length, int limit, boolean escape) {
+        checkBounds(start, length, limit);
+        if (length <= 0) {
+            // 异常数据的长度可能为负数(和getFixString相同，输出空字符串)
+            return;
+        }
+        ensureCapacity(escape ? length * 2 : length);
+        final byte[] src = data;
+        final byte[] dest = out;
+        int pos = size;
+        for (int i = start, end = start + length; i < end; i++) {
+            final byte b = src[i];
+            if (b == 0) {
+                break;
+            }
+            if (escape && (b == '"' || b == '\\')) {
+                dest[pos++] = '\\';
+            }
+            dest[pos++] = b;
+        }
+        size = pos;
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            out[size++] = '-';
+            value = -value;
+        }
+        int length = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            length++;
+        }
+        for (int i = size + length - 1; i >= size; i--) {
+            out[i] = digits[(int) (value % 10)];
+            value /= 10;
+        }
+        size += length;
+    }
+
+    private void writeUnsignedLong(long value) {
+        if (value >= 0) {
+            writeLong(value);
+        } else {
+            long quotient = (value >>> 1) / 5;
+            writeLong(quotient);
+            write((char) ('0' + (value - quotient * 10)));
+        }
+    }
+}
@@ -43,6 +43,15 @@ public class LogBuffer {
         return new LogBuffer(buf, 0, len);
     }
 
+    /**
+     * Return n bytes in this buffer, sharing the same byte array (no memory copy).
+     */
+    public final LogBuffer slice(final int pos, final int len) {
+        if (pos < 0 || pos + len > limit) throw new IllegalArgumentException("limit excceed: " + (pos + len));
+
+        return new LogBuffer(buffer, origin + pos, len);
+    }
+
     /**
      * Return next n bytes in this buffer.
      */
@@ -1218,6 +1227,10 @@ public class LogBuffer {
 
     public static final int DIG_PER_INT32 = 9;
     public static final int SIZE_OF_INT32 = 4;
+    /**
+     * 可以使用long表示unscaled值的最大精度
+     */
+    public static final int MAX_UNSCALED_PRECISION = 18;
 
     /**
      * Return big decimal from buffer.
@@ -1270,6 +1283,92 @@ public class LogBuffer {
         return decimal;
     }
 
+    /**
+     * Return next decimal (precision &lt;= 18) from buffer as unscaled long, the
+     * scale of the value is <code>scale</code>.
+     *
+     * @since mysql-5.1.60/strings/decimal.c - bin2decimal()
+     */
+    public final long getDecimalUnscaled(final int precision, final int scale) {
+        if (precision > MAX_UNSCALED_PRECISION) {
+            throw new IllegalArgumentException("precision exceed: " + precision + ", " + MAX_UNSCALED_PRECISION);
+        }
+        final int intg = precision - scale;
+        final int intg0 = intg / DIG_PER_INT32;
+        final int frac0 = scale / DIG_PER_INT32;
+        final int intg0x = intg - intg0 * DIG_PER_INT32;
+        final int frac0x = scale - frac0 * DIG_PER_INT32;
+
+        final int binSize = intg0 * SIZE_OF_INT32 + dig2bytes[intg0x] + frac0 * SIZE_OF_INT32 + dig2bytes[frac0x];
+        if (position + binSize > origin + limit) {
+            throw new IllegalArgumentException("limit excceed: " + (position + binSize - origin));
+        }
+
+        long unscaled = getDecimalUnscaled0(position, intg0, frac0, intg0x, frac0x);
+        position += binSize;
+        return unscaled;
+    }
+
+    /**
+     * 和getDecimal0相同的格式，直接累加成long，不需要构造字符串和BigDecimal
+     */
+    private final long getDecimalUnscaled0(final int begin, final int intg0, final int frac0, final int intg0x,
+                                           final int frac0x) {
+        final int mask = ((buffer[begin] & 0x80) == 0x80) ? 0 : -1;
+        int from = begin;
+        long unscaled = 0;
+
+        final byte[] d_copy = buffer;
+        d_copy[begin] ^= 0x80; /* clear sign */
+
+        if (intg0x != 0) {
+            final int i = dig2bytes[intg0x];
+            int x = getDecimalDigits(d_copy, from, i) ^ mask;
+            from += i;
+            if (x < 0 || x >= powers10[intg0x + 1]) {
+                d_copy[begin] ^= 0x80; /* restore sign */
+                throw new IllegalArgumentException("bad format, x exceed: " + x + ", " + powers10[intg0x + 1]);
+            }
+            unscaled = x;
+        }
+
+        for (final int stop = from + (intg0 + frac0) * SIZE_OF_INT32; from < stop; from += SIZE_OF_INT32) {
+            int x = getInt32BE(d_copy, from) ^ mask;
+            if (x < 0 || x > DIG_MAX) {
+                d_copy[begin] ^= 0x80; /* restore sign */
+                throw new IllegalArgumentException("bad format, x exceed: " + x + ", " + DIG_MAX);
+            }
+            unscaled = unscaled * DIG_BASE + x;
+        }
+
+        if (frac0x != 0) {
+            int x = getDecimalDigits(d_copy, from, dig2bytes[frac0x]) ^ mask;
+            if (x < 0 || x >= powers10[frac0x]) {
+                d_copy[begin] ^= 0x80; /* restore sign */
+                throw new IllegalArgumentException("bad format, x exceed: " + x + ", " + powers10[frac0x]);
+            }
+            unscaled = unscaled * powers10[frac0x] + x;
+        }
+
+        d_copy[begin] ^= 0x80; /* restore sign */
+        return mask != 0 ? -unscaled : unscaled;
+    }
+
+    private static int getDecimalDigits(byte[] buffer, final int pos, final int len) {
+        switch (len) {
+            case 1:
+                return buffer[pos] /* one byte */;
+            case 2:
+                return getInt16BE(buffer, pos);
+            case 3:
+                return getInt24BE(buffer, pos);
+            case 4:
+                return getInt32BE(buffer, pos);
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Return big decimal from buffer.
      *
@@ -1559,6 +1658,18 @@ public class LogBuffer {
         position += len;
     }
 
+    /**
+     * Whether the data from pos to limit is equal to the given bytes.
+     */
+    public final boolean equalsData(final int pos, byte[] data) {
+        if (pos < 0 || limit - pos != data.length) return false;
+
+        for (int i = 0, from = origin + pos; i < data.length; i++, from++) {
+            if (buffer[from] != data[i]) return false;
+        }
+        return true;
+    }
+
     /**
      * Return n-byte data from buffer.
      */
@@ -0,0 +1,166 @@
+package org.clever.canal.parse.dbsync.binlog;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可回收的LogBuffer内存池(按大小分级的slab)
+ *
+ * <pre>
+ * 1. 并行解析时网络线程从内存池租用slab拷贝binlog事件，数据投递到store之后归还，避免每个事件都分配新的byte[]
+ * 2. slab按2的幂次分级(minSlabSize ~ maxSlabSize)，超过maxSlabSize的事件直接分配，不归还到内存池
+ * 3. 内存池中空闲slab的总大小不超过maxPooledSize，maxPooledSize <= 0 表示不缓存(每次都分配)
+ * </pre>
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class LogBufferPool {
+    public static final int DEFAULT_MIN_SLAB_SIZE = 512;
+    public static final int DEFAULT_MAX_SLAB_SIZE = 1024 * 1024;
+    public static final long DEFAULT_MAX_POOLED_SIZE = 64L * 1024 * 1024;
+    /**
+     * 每一级最多缓存的slab数量
+     */
+    private static final int MAX_SLABS_PER_CLASS = 8192;
+
+    private final int minShift;
+    private final int maxSlabSize;
+    private final long maxPooledSize;
+    private final ArrayBlockingQueue<byte[]>[] classes;
+    /**
+     * 内存池中空闲slab的总大小
+     */
+    private final AtomicLong pooledSize = new AtomicLong(0);
+    /**
+     * 租用次数
+     */
+    private final AtomicLong leaseCount = new AtomicLong(0);
+    /**
+     * 新分配byte[]的次数(内存池未命中 + 超大事件)
+     */
+    private final AtomicLong allocateCount = new AtomicLong(0);
+    /**
+     * 新分配byte[]的总大小
+     */
+    private final AtomicLong allocateBytes = new AtomicLong(0);
+    /**
+     * 超过maxSlabSize的事件数量
+     */
+    private final AtomicLong oversizeCount = new AtomicLong(0);
+
+    public LogBufferPool() {
+        this(DEFAULT_MIN_SLAB_SIZE, DEFAULT_MAX_SLAB_SIZE, DEFAULT_MAX_POOLED_SIZE);
+    }
+
+    public LogBufferPool(long maxPooledSize) {
+        this(DEFAULT_MIN_SLAB_SIZE, DEFAULT_MAX_SLAB_SIZE, maxPooledSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    public LogBufferPool(int minSlabSize, int maxSlabSize, long maxPooledSize) {
+        if (Integer.bitCount(minSlabSize) != 1 || Integer.bitCount(maxSlabSize) != 1 || minSlabSize > maxSlabSize) {
+            throw new IllegalArgumentException("slab size must be a power of 2, min: " + minSlabSize + " max: " + maxSlabSize);
+        }
+        this.minShift = Integer.numberOfTrailingZeros(minSlabSize);
+        this.maxSlabSize = maxSlabSize;
+        this.maxPooledSize = maxPooledSize;
+        int count = Integer.numberOfTrailingZeros(maxSlabSize) - minShift + 1;
+        this.classes = new ArrayBlockingQueue[count];
+        for (int i = 0; i < count; i++) {
+            long capacity = maxPooledSize > 0 ? Math.max(1, maxPooledSize / ((long) minSlabSize << i)) : 1;
+            classes[i] = new ArrayBlockingQueue<>((int) Math.min(MAX_SLABS_PER_CLASS, capacity));
+        }
+    }
+
+    /**
+     * 租用slab并拷贝source中未消费的数据(origin ~ origin + limit)
+     */
+    public LogBuffer lease(LogBuffer source) {
+        return lease(source, source.limit);
+    }
+
+    /**
+     * 租用slab并拷贝source中未消费的前len个字节(origin ~ origin + len)
+     */
+    public LogBuffer lease(LogBuffer source, final int len) {
+        if (len > source.limit) {
+            throw new IllegalArgumentException("limit excceed: " + len);
+        }
+        byte[] slab = allocate(len);
+        System.arraycopy(source.buffer, source.origin, slab, 0, len);
+        return new LogBuffer(slab, 0, len);
+    }
+
+    /**
+     * 归还LogBuffer占用的slab，归还之后不能再使用该LogBuffer
+     */
+    public void release(LogBuffer buffer) {
+        if (buffer == null || buffer.buffer == null || maxPooledSize <= 0) {
+            return;
+        }
+        final byte[] slab = buffer.buffer;
+        buffer.buffer = null;
+        final int index = indexOf(slab.length);
+        if (index < 0 || slab.length != (1 << (index + minShift))) {
+            // 超大事件或者不是内存池分配的byte[]
+            return;
+        }
+        if (pooledSize.addAndGet(slab.length) > maxPooledSize || !classes[index].offer(slab)) {
+            pooledSize.addAndGet(-slab.length);
+        }
+    }
+
+    private byte[] allocate(int len) {
+        leaseCount.incrementAndGet();
+        if (maxPooledSize <= 0) {
+            return newArray(len);
+        }
+        final int index = indexOf(len);
+        if (index < 0) {
+            oversizeCount.incrementAndGet();
+            return newArray(len);
+        }
+        byte[] slab = classes[index].poll();
+        if (slab != null) {
+            pooledSize.addAndGet(-slab.length);
+            return slab;
+        }
+        return newArray(1 << (index + minShift));
+    }
+
+    private byte[] newArray(int len) {
+        allocateCount.incrementAndGet();
+        allocateBytes.addAndGet(len);
+        return new byte[len];
+    }
+
+    /**
+     * 数据长度对应的slab级别，超过maxSlabSize时返回-1
+     */
+    private int indexOf(int len) {
+        if (len > maxSlabSize) {
+            return -1;
+        }
+        int shift = len <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(len - 1);
+        return Math.max(0, shift - minShift);
+    }
+
+    public long getPooledSize() {
+        return pooledSize.get();
+    }
+
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    public long getAllocateCount() {
+        return allocateCount.get();
+    }
+
+    public long getAllocateBytes() {
+        return allocateBytes.get();
+    }
+
+    public long getOversizeCount() {
+        return oversizeCount.get();
+    }
+}
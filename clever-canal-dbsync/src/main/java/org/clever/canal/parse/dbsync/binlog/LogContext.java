@@ -16,6 +16,9 @@ public final class LogContext {
 
     private final Map<Long, TableMapLogEvent> mapOfTable = new HashMap<>();
 
+    // tableId ---> 表名过滤结果(true: 需要解析该表的行数据, false: 被过滤)，随TableMapLogEvent更新
+    private final Map<Long, Boolean> tableFilterResults = new HashMap<>();
+
     private FormatDescriptionLogEvent formatDescription;
 
     private LogPosition logPosition;
@@ -50,19 +53,34 @@ public final class LogContext {
 
     public final void putTable(TableMapLogEvent mapEvent) {
         mapOfTable.put(mapEvent.getTableId(), mapEvent);
+        // tableId可能被重新映射到其它表
+        tableFilterResults.remove(mapEvent.getTableId());
     }
 
     public final TableMapLogEvent getTable(final long tableId) {
         return mapOfTable.get(tableId);
     }
 
+    public final void putTableFilterResult(final long tableId, boolean accepted) {
+        tableFilterResults.put(tableId, accepted);
+    }
+
+    /**
+     * @return 表名过滤结果，没有记录时返回null
+     */
+    public final Boolean getTableFilterResult(final long tableId) {
+        return tableFilterResults.get(tableId);
+    }
+
     public final void clearAllTables() {
         mapOfTable.clear();
+        tableFilterResults.clear();
     }
 
     public void reset() {
         formatDescription = FormatDescriptionLogEvent.FORMAT_DESCRIPTION_EVENT_5_x;
         mapOfTable.clear();
+        tableFilterResults.clear();
     }
 
     public GtIdSet getGtidSet() {
@@ -143,7 +143,7 @@ public final class LogDecoder {
                 return event;
             }
             case LogEvent.TABLE_MAP_EVENT: {
-                TableMapLogEvent mapEvent = new TableMapLogEvent(header, buffer, descriptionEvent);
+                TableMapLogEvent mapEvent = TableMapLogEvent.decode(header, buffer, descriptionEvent, context);
                 /* updating position in context */
                 logPosition.position = header.getLogPos();
                 context.putTable(mapEvent);
@@ -1,17 +1,16 @@
 package org.clever.canal.parse.dbsync.binlog.event;
 
-import org.clever.canal.parse.dbsync.binlog.JsonConversion;
-import org.clever.canal.parse.dbsync.binlog.JsonConversion.Json_Value;
-import org.clever.canal.parse.dbsync.binlog.JsonDiffConversion;
+import org.clever.canal.parse.dbsync.binlog.JsonStreamConversion;
 import org.clever.canal.parse.dbsync.binlog.LogBuffer;
 import org.clever.canal.parse.dbsync.binlog.LogEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
-import java.sql.Timestamp;
+import java.math.BigDecimal;
 import java.sql.Types;
 import java.util.BitSet;
+import java.util.TimeZone;
 
 /**
  * Extracting JDBC type & value information from packed rows-buffer.
@@ -44,6 +43,21 @@ public final class RowsLogBuffer {
     private int javaType;
     private int length;
     private Serializable value;
+    // 时间类型的微秒数(TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒，TIME为时长微秒)，零值日期等无法表示时temporal=false
+    private boolean temporal;
+    private long temporalMicros;
+    // precision<=18的DECIMAL使用unscaled long表示，value按需构造BigDecimal
+    private boolean unscaledDecimal;
+    private long decimalUnscaled;
+    private int decimalScale;
+    private final char[] decimalChars = new char[24];
+    // 时间类型的值只保存解析出的数值，在getValue时才格式化成字符串(typed模式只需要temporalMicros)
+    private int lazyTemporalType = -1;
+    private long lazyTemporal;
+    private int lazyTemporalFrac;
+    private int lazyTemporalMeta;
+    private TemporalFormatter temporalFormatter;
+    private TimeZone timeZone;
 
     public RowsLogBuffer(LogBuffer buffer, final int columnLen, String charsetName, int jsonColumnCount, boolean partial) {
         this.buffer = buffer;
@@ -93,6 +107,153 @@ public final class RowsLogBuffer {
         return hasOneRow;
     }
 
+    /**
+     * Skipping next row without extracting field values, used to scan row
+     * boundaries before decoding.
+     */
+    public final boolean skipOneRow(BitSet columns, boolean after, TableMapLogEvent.ColumnInfo[] columnInfo) {
+        if (!nextOneRow(columns, after)) {
+            return false;
+        }
+        for (int i = 0; i < columnInfo.length; i++) {
+            if (!columns.get(i)) {
+                continue;
+            }
+            if (!nullBits.get(nullBitIndex++)) {
+                skipValue(columnInfo[i].type, columnInfo[i].meta);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns current position of packed buffer.
+     */
+    public final int position() {
+        return buffer.position();
+    }
+
+    /**
+     * Skipping next field value, the length of each type is the same as
+     * {@link #fetchValue(String, int, int, int, boolean)}.
+     */
+    private void skipValue(int type, final int meta) {
+        int len = 0;
+        if (type == LogEvent.MYSQL_TYPE_STRING && meta >= 256) {
+            int byte0 = meta >> 8;
+            int byte1 = meta & 0xff;
+            if ((byte0 & 0x30) != 0x30) {
+                len = byte1 | (((byte0 & 0x30) ^ 0x30) << 4);
+                type = byte0 | 0x30;
+            } else {
+                type = byte0;
+                len = byte1;
+            }
+        } else if (type == LogEvent.MYSQL_TYPE_STRING) {
+            len = meta;
+        }
+
+        switch (type) {
+            case LogEvent.MYSQL_TYPE_TINY:
+            case LogEvent.MYSQL_TYPE_YEAR:
+                len = 1;
+                break;
+            case LogEvent.MYSQL_TYPE_SHORT:
+                len = 2;
+                break;
+            case LogEvent.MYSQL_TYPE_INT24:
+            case LogEvent.MYSQL_TYPE_TIME:
+            case LogEvent.MYSQL_TYPE_DATE:
+                len = 3;
+                break;
+            case LogEvent.MYSQL_TYPE_LONG:
+            case LogEvent.MYSQL_TYPE_FLOAT:
+            case LogEvent.MYSQL_TYPE_TIMESTAMP:
+                len = 4;
+                break;
+            case LogEvent.MYSQL_TYPE_LONGLONG:
+            case LogEvent.MYSQL_TYPE_DOUBLE:
+            case LogEvent.MYSQL_TYPE_DATETIME:
+                len = 8;
+                break;
+            case LogEvent.MYSQL_TYPE_NEWDECIMAL: {
+                final int intg = (meta >> 8) - (meta & 0xff);
+                final int frac = meta & 0xff;
+                len = (intg / LogBuffer.DIG_PER_INT32) * LogBuffer.SIZE_OF_INT32 + LogBuffer.dig2bytes[intg % LogBuffer.DIG_PER_INT32]
+                        + (frac / LogBuffer.DIG_PER_INT32) * LogBuffer.SIZE_OF_INT32 + LogBuffer.dig2bytes[frac % LogBuffer.DIG_PER_INT32];
+                break;
+            }
+            case LogEvent.MYSQL_TYPE_BIT:
+                len = (((meta >> 8) * 8) + (meta & 0xff) + 7) / 8;
+                break;
+            case LogEvent.MYSQL_TYPE_TIMESTAMP2:
+                len = 4 + (meta + 1) / 2;
+                break;
+            case LogEvent.MYSQL_TYPE_DATETIME2:
+                len = 5 + (meta + 1) / 2;
+                break;
+            case LogEvent.MYSQL_TYPE_TIME2:
+                len = 3 + (meta + 1) / 2;
+                break;
+            case LogEvent.MYSQL_TYPE_ENUM:
+                // len from meta
+                break;
+            case LogEvent.MYSQL_TYPE_SET:
+                len = meta & 0xff;
+                break;
+            case LogEvent.MYSQL_TYPE_TINY_BLOB:
+            case LogEvent.MYSQL_TYPE_MEDIUM_BLOB:
+            case LogEvent.MYSQL_TYPE_LONG_BLOB:
+            case LogEvent.MYSQL_TYPE_BLOB:
+            case LogEvent.MYSQL_TYPE_JSON:
+            case LogEvent.MYSQL_TYPE_GEOMETRY:
+                switch (meta) {
+                    case 1:
+                        len = buffer.getUint8();
+                        break;
+                    case 2:
+                        len = buffer.getUint16();
+                        break;
+                    case 3:
+                        len = buffer.getUint24();
+                        break;
+                    case 4:
+                        len = (int) buffer.getUint32();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("!! Unknown packlen = " + meta + " of type " + type);
+                }
+                break;
+            case LogEvent.MYSQL_TYPE_VARCHAR:
+            case LogEvent.MYSQL_TYPE_VAR_STRING:
+                len = meta < 256 ? buffer.getUint8() : buffer.getUint16();
+                break;
+            case LogEvent.MYSQL_TYPE_STRING:
+                len = len < 256 ? buffer.getUint8() : buffer.getUint16();
+                break;
+            default:
+                // MYSQL_TYPE_DECIMAL、MYSQL_TYPE_NEWDATE以及未知类型不占用数据
+                len = 0;
+        }
+        buffer.forward(len);
+    }
+
+    /**
+     * Skipping next field value without extracting it, used for columns which
+     * are not projected (filtered by field filter).
+     */
+    public final void skipNextValue(final int type, final int meta) {
+        fNull = nullBits.get(nullBitIndex++);
+        value = null;
+        length = 0;
+        temporal = false;
+        unscaledDecimal = false;
+        lazyTemporalType = -1;
+        if (!fNull) {
+            skipValue(type, meta);
+        }
+    }
+
     /**
      * Extracting next field value from packed buffer.
      *
@@ -111,16 +272,27 @@ public final class RowsLogBuffer {
      */
     public final Serializable nextValue(final String columName, final int columnIndex, final int type, final int meta,
                                         boolean isBinary) {
+        readNextValue(columName, columnIndex, type, meta, isBinary);
+        return getValue();
+    }
+
+    /**
+     * 读取下一个字段值，和nextValue相同，但是precision&lt;=18的DECIMAL不会构造BigDecimal(通过{@link #isUnscaledDecimal()}判断)
+     */
+    public final void readNextValue(final String columName, final int columnIndex, final int type, final int meta,
+                                    boolean isBinary) {
         fNull = nullBits.get(nullBitIndex++);
+        temporal = false;
+        unscaledDecimal = false;
+        lazyTemporalType = -1;
 
         if (fNull) {
             value = null;
             javaType = mysqlToJavaType(type, meta, isBinary);
             length = 0;
-            return null;
         } else {
             // Extracting field value from packed buffer.
-            return fetchValue(columName, columnIndex, type, meta, isBinary);
+            fetchValue(columName, columnIndex, type, meta, isBinary);
         }
     }
 
@@ -364,7 +536,12 @@ public final class RowsLogBuffer {
             case LogEvent.MYSQL_TYPE_NEWDECIMAL: {
                 final int precision = meta >> 8;
                 final int decimals = meta & 0xff;
-                value = buffer.getDecimal(precision, decimals);
+                if (precision <= LogBuffer.MAX_UNSCALED_PRECISION) {
+                    setUnscaledDecimal(buffer.getDecimalUnscaled(precision, decimals), decimals);
+                    value = null;
+                } else {
+                    value = buffer.getDecimal(precision, decimals);
+                }
                 javaType = Types.DECIMAL;
                 length = precision;
                 break;
@@ -434,12 +611,10 @@ public final class RowsLogBuffer {
                 // the value 0 is reserved for representing '0000-00-00
                 // 00:00:00', the “zero” TIMESTAMP value.
                 final long i32 = buffer.getUint32();
-                if (i32 == 0) {
-                    value = "0000-00-00 00:00:00";
-                } else {
-                    String v = new Timestamp(i32 * 1000).toString();
-                    value = v.substring(0, v.length() - 2);
+                if (i32 != 0) {
+                    setTemporalMicros(i32 * 1000000L);
                 }
+                setLazyTemporal(type, i32, 0, 0);
                 javaType = Types.TIMESTAMP;
                 length = 4;
                 break;
@@ -468,22 +643,11 @@ public final class RowsLogBuffer {
                         break;
                 }
 
-                String second = null;
-                if (tv_sec == 0) {
-                    second = "0000-00-00 00:00:00";
-                } else {
-                    Timestamp time = new Timestamp(tv_sec * 1000);
-                    second = time.toString();
-                    second = second.substring(0, second.length() - 2);// 去掉毫秒精度.0
-                }
-
-                if (meta >= 1) {
-                    String microSecond = usecondsToStr(tv_usec, meta);
-                    microSecond = microSecond.substring(0, meta);
-                    value = second + '.' + microSecond;
-                } else {
-                    value = second;
+                checkUsecondsMeta(meta);
+                if (tv_sec != 0) {
+                    setTemporalMicros(tv_sec * 1000000L + tv_usec);
                 }
+                setLazyTemporal(type, tv_sec, tv_usec, meta);
 
                 javaType = Types.TIMESTAMP;
                 length = 4 + (meta + 1) / 2;
@@ -493,39 +657,12 @@ public final class RowsLogBuffer {
                 // MYSQL DataTypes: DATETIME
                 // range is '0000-01-01 00:00:00' to '9999-12-31 23:59:59'
                 final long i64 = buffer.getLong64(); /* YYYYMMDDhhmmss */
-                if (i64 == 0) {
-                    value = "0000-00-00 00:00:00";
-                } else {
+                if (i64 != 0) {
                     final int d = (int) (i64 / 1000000);
                     final int t = (int) (i64 % 1000000);
-                    // if (cal == null) cal = Calendar.getInstance();
-                    // cal.clear();
-                    /* month is 0-based, 0 for january. */
-                    // cal.set(d / 10000, (d % 10000) / 100 - 1, d % 100, t /
-                    // 10000, (t % 10000) / 100, t % 100);
-                    // value = new Timestamp(cal.getTimeInMillis());
-                    // value = String.format("%04d-%02d-%02d %02d:%02d:%02d",
-                    // d / 10000,
-                    // (d % 10000) / 100,
-                    // d % 100,
-                    // t / 10000,
-                    // (t % 10000) / 100,
-                    // t % 100);
-
-                    StringBuilder builder = new StringBuilder();
-                    appendNumber4(builder, d / 10000);
-                    builder.append('-');
-                    appendNumber2(builder, (d % 10000) / 100);
-                    builder.append('-');
-                    appendNumber2(builder, d % 100);
-                    builder.append(' ');
-                    appendNumber2(builder, t / 10000);
-                    builder.append(':');
-                    appendNumber2(builder, (t % 10000) / 100);
-                    builder.append(':');
-                    appendNumber2(builder, t % 100);
-                    value = builder.toString();
+                    setDateTimeMicros(d / 10000, (d % 10000) / 100, d % 100, t / 10000, (t % 10000) / 100, t % 100, 0);
                 }
+                setLazyTemporal(type, i64, 0, 0);
                 javaType = Types.TIMESTAMP;
                 length = 8;
                 break;
@@ -563,51 +700,15 @@ public final class RowsLogBuffer {
                         break;
                 }
 
-                String second = null;
-                if (intpart == 0) {
-                    second = "0000-00-00 00:00:00";
-                } else {
-                    // 构造TimeStamp只处理到秒
+                checkUsecondsMeta(meta);
+                if (intpart != 0) {
                     long ymd = intpart >> 17;
                     long ym = ymd >> 5;
                     long hms = intpart % (1 << 17);
-
-                    // if (cal == null) cal = Calendar.getInstance();
-                    // cal.clear();
-                    // cal.set((int) (ym / 13), (int) (ym % 13) - 1, (int) (ymd
-                    // % (1 << 5)), (int) (hms >> 12),
-                    // (int) ((hms >> 6) % (1 << 6)), (int) (hms % (1 << 6)));
-                    // value = new Timestamp(cal.getTimeInMillis());
-                    // second = String.format("%04d-%02d-%02d %02d:%02d:%02d",
-                    // (int) (ym / 13),
-                    // (int) (ym % 13),
-                    // (int) (ymd % (1 << 5)),
-                    // (int) (hms >> 12),
-                    // (int) ((hms >> 6) % (1 << 6)),
-                    // (int) (hms % (1 << 6)));
-
-                    StringBuilder builder = new StringBuilder(26);
-                    appendNumber4(builder, (int) (ym / 13));
-                    builder.append('-');
-                    appendNumber2(builder, (int) (ym % 13));
-                    builder.append('-');
-                    appendNumber2(builder, (int) (ymd % (1 << 5)));
-                    builder.append(' ');
-                    appendNumber2(builder, (int) (hms >> 12));
-                    builder.append(':');
-                    appendNumber2(builder, (int) ((hms >> 6) % (1 << 6)));
-                    builder.append(':');
-                    appendNumber2(builder, (int) (hms % (1 << 6)));
-                    second = builder.toString();
-                }
-
-                if (meta >= 1) {
-                    String microSecond = usecondsToStr(frac, meta);
-                    microSecond = microSecond.substring(0, meta);
-                    value = second + '.' + microSecond;
-                } else {
-                    value = second;
+                    setDateTimeMicros((int) (ym / 13), (int) (ym % 13), (int) (ymd % (1 << 5)),
+                            (int) (hms >> 12), (int) ((hms >> 6) % (1 << 6)), (int) (hms % (1 << 6)), frac);
                 }
+                setLazyTemporal(type, intpart, frac, meta);
 
                 javaType = Types.TIMESTAMP;
                 length = 5 + (meta + 1) / 2;
@@ -619,37 +720,8 @@ public final class RowsLogBuffer {
                 // final int i32 = buffer.getUint24();
                 final int i32 = buffer.getInt24();
                 final int u32 = Math.abs(i32);
-                if (i32 == 0) {
-                    value = "00:00:00";
-                } else {
-                    // if (cal == null) cal = Calendar.getInstance();
-                    // cal.clear();
-                    // cal.set(70, 0, 1, i32 / 10000, (i32 % 10000) / 100, i32 %
-                    // 100);
-                    // value = new Time(cal.getTimeInMillis());
-                    // value = String.format("%s%02d:%02d:%02d",
-                    // (i32 >= 0) ? "" : "-",
-                    // u32 / 10000,
-                    // (u32 % 10000) / 100,
-                    // u32 % 100);
-
-                    StringBuilder builder = new StringBuilder(17);
-                    if (i32 < 0) {
-                        builder.append('-');
-                    }
-
-                    int d = u32 / 10000;
-                    if (d > 100) {
-                        builder.append(d);
-                    } else {
-                        appendNumber2(builder, d);
-                    }
-                    builder.append(':');
-                    appendNumber2(builder, (u32 % 10000) / 100);
-                    builder.append(':');
-                    appendNumber2(builder, u32 % 100);
-                    value = builder.toString();
-                }
+                setTemporalMicros((i32 < 0 ? -1L : 1L) * ((u32 / 10000) * 3600L + ((u32 % 10000) / 100) * 60L + u32 % 100) * 1000000L);
+                setLazyTemporal(type, i32, 0, 0);
                 javaType = Types.TIME;
                 length = 3;
                 break;
@@ -729,50 +801,10 @@ public final class RowsLogBuffer {
                         break;
                 }
 
-                String second;
-                if (intpart == 0) {
-                    second = "00:00:00";
-                } else {
-                    // 目前只记录秒，不处理us frac
-                    // if (cal == null) cal = Calendar.getInstance();
-                    // cal.clear();
-                    // cal.set(70, 0, 1, (int) ((intpart >> 12) % (1 << 10)),
-                    // (int) ((intpart >> 6) % (1 << 6)),
-                    // (int) (intpart % (1 << 6)));
-                    // value = new Time(cal.getTimeInMillis());
-                    long ultime = Math.abs(ltime);
-                    intpart = ultime >> 24;
-                    // second = String.format("%s%02d:%02d:%02d",
-                    // ltime >= 0 ? "" : "-",
-                    // (int) ((intpart >> 12) % (1 << 10)),
-                    // (int) ((intpart >> 6) % (1 << 6)),
-                    // (int) (intpart % (1 << 6)));
-
-                    StringBuilder builder = new StringBuilder(12);
-                    if (ltime < 0) {
-                        builder.append('-');
-                    }
-
-                    int d = (int) ((intpart >> 12) % (1 << 10));
-                    if (d > 100) {
-                        builder.append(d);
-                    } else {
-                        appendNumber2(builder, d);
-                    }
-                    builder.append(':');
-                    appendNumber2(builder, (int) ((intpart >> 6) % (1 << 6)));
-                    builder.append(':');
-                    appendNumber2(builder, (int) (intpart % (1 << 6)));
-                    second = builder.toString();
-                }
-
-                if (meta >= 1) {
-                    String microSecond = usecondsToStr(Math.abs(frac), meta);
-                    microSecond = microSecond.substring(0, meta);
-                    value = second + '.' + microSecond;
-                } else {
-                    value = second;
-                }
+                checkUsecondsMeta(meta);
+                setLazyTemporal(type, ltime, frac, meta);
+                // 参考mysql的TIME_from_longlong_time_packed，fsp<=4时小数部分单独读取(负数时已经是负值)
+                setTimeMicros(meta == 5 || meta == 6 ? ltime : ltime + frac);
 
                 javaType = Types.TIME;
                 length = 3 + (meta + 1) / 2;
@@ -794,26 +826,10 @@ public final class RowsLogBuffer {
                 // MYSQL DataTypes:
                 // range: 0000-00-00 ~ 9999-12-31
                 final int i32 = buffer.getUint24();
-                if (i32 == 0) {
-                    value = "0000-00-00";
-                } else {
-                    // if (cal == null) cal = Calendar.getInstance();
-                    // cal.clear();
-                    /* month is 0-based, 0 for january. */
-                    // cal.set((i32 / (16 * 32)), (i32 / 32 % 16) - 1, (i32 %
-                    // 32));
-                    // value = new java.sql.Date(cal.getTimeInMillis());
-                    // value = String.format("%04d-%02d-%02d", i32 / (16 * 32),
-                    // i32 / 32 % 16, i32 % 32);
-
-                    StringBuilder builder = new StringBuilder(12);
-                    appendNumber4(builder, i32 / (16 * 32));
-                    builder.append('-');
-                    appendNumber2(builder, i32 / 32 % 16);
-                    builder.append('-');
-                    appendNumber2(builder, i32 % 32);
-                    value = builder.toString();
+                if (i32 != 0) {
+                    setDateTimeMicros(i32 / (16 * 32), i32 / 32 % 16, i32 % 32, 0, 0, 0, 0);
                 }
+                setLazyTemporal(type, i32, 0, 0);
                 javaType = Types.DATE;
                 length = 3;
                 break;
@@ -1067,12 +1083,7 @@ public final class RowsLogBuffer {
                 if (partialBits.get(1)) {
                     // print_json_diff
                     int position = buffer.position();
-                    StringBuilder builder = JsonDiffConversion.print_json_diff(buffer,
-                            len,
-                            columnName,
-                            columnIndex,
-                            charsetName);
-                    value = builder.toString();
+                    value = JsonStreamConversion.print_json_diff(buffer, len, columnName, columnIndex, charsetName);
                     buffer.position(position + len);
                 } else {
                     if (0 == len) {
@@ -1082,13 +1093,7 @@ public final class RowsLogBuffer {
                         value = "";
                     } else {
                         int position = buffer.position();
-                        Json_Value jsonValue = JsonConversion.parse_value(buffer.getUint8(),
-                                buffer,
-                                len - 1,
-                                charsetName);
-                        StringBuilder builder = new StringBuilder();
-                        jsonValue.toJsonString(builder, charsetName);
-                        value = builder.toString();
+                        value = JsonStreamConversion.print_json(buffer, len, charsetName);
                         buffer.position(position + len);
                     }
                 }
@@ -1152,6 +1157,13 @@ public final class RowsLogBuffer {
     }
 
     public final Serializable getValue() {
+        if (value == null) {
+            if (unscaledDecimal) {
+                value = BigDecimal.valueOf(decimalUnscaled, decimalScale);
+            } else if (lazyTemporalType != -1) {
+                value = formatTemporal();
+            }
+        }
         return value;
     }
 
@@ -1159,11 +1171,171 @@ public final class RowsLogBuffer {
         return length;
     }
 
+    /**
+     * 当前字段值是否是有效的时间类型值(可以通过{@link #getTemporalMicros()}获取微秒数)
+     */
+    public final boolean isTemporal() {
+        return temporal;
+    }
+
+    /**
+     * 时间类型的微秒数: TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒(不做时区转换)，TIME为时长微秒(可以为负数)
+     */
+    public final long getTemporalMicros() {
+        return temporalMicros;
+    }
+
+    /**
+     * 当前字段值是否是使用unscaled long表示的DECIMAL
+     */
+    public final boolean isUnscaledDecimal() {
+        return unscaledDecimal;
+    }
+
+    public final long getDecimalUnscaled() {
+        return decimalUnscaled;
+    }
+
+    public final int getDecimalScale() {
+        return decimalScale;
+    }
+
+    /**
+     * unscaled DECIMAL的文本(和BigDecimal.toPlainString()相同)
+     */
+    public final String getDecimalPlainString() {
+        final char[] buf = decimalChars;
+        int pos = buf.length;
+        long v = Math.abs(decimalUnscaled);
+        for (int i = 0; i < decimalScale; i++) {
+            buf[--pos] = digits[(int) (v % 10)];
+            v /= 10;
+        }
+        if (decimalScale > 0) {
+            buf[--pos] = '.';
+        }
+        do {
+            buf[--pos] = digits[(int) (v % 10)];
+            v /= 10;
+        } while (v != 0);
+        if (decimalUnscaled < 0) {
+            buf[--pos] = '-';
+        }
+        return new String(buf, pos, buf.length - pos);
+    }
+
+    /**
+     * 和LogBuffer.getDecimal的结果保持一致: 最后不足9位的小数部分为0时不输出(小数部分全部省略时保留一位0)
+     */
+    private void setUnscaledDecimal(long unscaled, int scale) {
+        final int frac0x = scale % LogBuffer.DIG_PER_DEC1;
+        if (frac0x != 0 && unscaled % LogBuffer.powers10[frac0x] == 0) {
+            int newScale = scale - frac0x;
+            if (newScale == 0) {
+                newScale = 1;
+            }
+            unscaled /= LogBuffer.powers10[scale - newScale];
+            scale = newScale;
+        }
+        unscaledDecimal = true;
+        decimalUnscaled = unscaled;
+        decimalScale = scale;
+    }
+
+    private void setLazyTemporal(int type, long raw, int frac, int meta) {
+        value = null;
+        lazyTemporalType = type;
+        lazyTemporal = raw;
+        lazyTemporalFrac = frac;
+        lazyTemporalMeta = meta;
+    }
+
+    /**
+     * 时间类型格式化成字符串
+     */
+    private String formatTemporal() {
+        if (temporalFormatter == null) {
+            // RowsLogBuffer只会在一个线程中解析(可能不是创建它的线程)
+            temporalFormatter = TemporalFormatter.current();
+        }
+        final TemporalFormatter formatter = temporalFormatter;
+        final long raw = lazyTemporal;
+        final int frac = lazyTemporalFrac;
+        final int meta = lazyTemporalMeta;
+        switch (lazyTemporalType) {
+            case LogEvent.MYSQL_TYPE_TIMESTAMP:
+            case LogEvent.MYSQL_TYPE_TIMESTAMP2: {
+                if (timeZone == null) {
+                    timeZone = TimeZone.getDefault();
+                }
+                return formatter.formatTimestamp(raw, frac, meta, timeZone);
+            }
+            case LogEvent.MYSQL_TYPE_DATETIME: {
+                final int d = (int) (raw / 1000000);
+                final int t = (int) (raw % 1000000);
+                return formatter.formatDateTime(d / 10000, (d % 10000) / 100, d % 100, t / 10000, (t % 10000) / 100, t % 100, 0, 0);
+            }
+            case LogEvent.MYSQL_TYPE_DATETIME2: {
+                long ymd = raw >> 17;
+                long ym = ymd >> 5;
+                long hms = raw % (1 << 17);
+                return formatter.formatDateTime((int) (ym / 13), (int) (ym % 13), (int) (ymd % (1 << 5)),
+                        (int) (hms >> 12), (int) ((hms >> 6) % (1 << 6)), (int) (hms % (1 << 6)), frac, meta);
+            }
+            case LogEvent.MYSQL_TYPE_TIME: {
+                final int u32 = Math.abs((int) raw);
+                return formatter.formatTime(raw < 0, u32 / 10000, (u32 % 10000) / 100, u32 % 100, 0, 0);
+            }
+            case LogEvent.MYSQL_TYPE_TIME2: {
+                // raw为packed格式的ltime
+                long intpart = Math.abs(raw) >> 24;
+                return formatter.formatTime(raw < 0, (int) ((intpart >> 12) % (1 << 10)), (int) ((intpart >> 6) % (1 << 6)),
+                        (int) (intpart % (1 << 6)), Math.abs(frac), meta);
+            }
+            case LogEvent.MYSQL_TYPE_DATE: {
+                final int i32 = (int) raw;
+                return formatter.formatDate(i32 / (16 * 32), i32 / 32 % 16, i32 % 32);
+            }
+            default:
+                return null;
+        }
+    }
+
+    private void setTemporalMicros(long micros) {
+        temporal = true;
+        temporalMicros = micros;
+    }
+
+    /**
+     * 日期时间按UTC转换成微秒，月或日为0的日期(0000-00-00等)无法表示
+     */
+    private void setDateTimeMicros(int year, int month, int day, int hour, int minute, int second, int micros) {
+        if (month < 1 || month > 12 || day < 1) {
+            return;
+        }
+        // 按公历计算距离1970-01-01的天数(每400年146097天)
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097L + doe - 719468;
+        setTemporalMicros(((days * 24 + hour) * 60 + minute) * 60000000L + second * 1000000L + micros);
+    }
+
+    /**
+     * TIME的packed格式(1位符号 + 10位小时 + 6位分 + 6位秒 + 24位微秒)转换成微秒
+     */
+    private void setTimeMicros(long packed) {
+        long tmp = Math.abs(packed);
+        long hms = tmp >> 24;
+        long micros = (((hms >> 12) % (1 << 10)) * 3600 + ((hms >> 6) % (1 << 6)) * 60 + hms % (1 << 6)) * 1000000L + tmp % (1 << 24);
+        setTemporalMicros(packed < 0 ? -micros : micros);
+    }
+
     public static String usecondsToStr(int frac, int meta) {
         String sec = String.valueOf(frac);
-        if (meta > 6) {
-            throw new IllegalArgumentException("unknow useconds meta : " + meta);
-        }
+        checkUsecondsMeta(meta);
 
         if (sec.length() < 6) {
             StringBuilder result = new StringBuilder(6);
@@ -1178,6 +1350,12 @@ public final class RowsLogBuffer {
         return sec.substring(0, meta);
     }
 
+    private static void checkUsecondsMeta(int meta) {
+        if (meta > 6) {
+            throw new IllegalArgumentException("unknow useconds meta : " + meta);
+        }
+    }
+
     public static void appendNumber4(StringBuilder builder, int d) {
         if (d >= 1000) {
             builder.append(digits[d / 1000])
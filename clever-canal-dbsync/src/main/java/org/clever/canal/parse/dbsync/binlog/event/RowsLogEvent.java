@@ -232,6 +232,21 @@ public abstract class RowsLogEvent extends LogEvent {
         return new RowsLogBuffer(rowsBuf, columnLen, charsetName, jsonColumnCount, partial);
     }
 
+    /**
+     * Return rows-buffer of [from, to), it has its own position and can be
+     * read in another thread.
+     */
+    public final RowsLogBuffer getRowsBuf(String charsetName, final int from, final int to) {
+        return new RowsLogBuffer(rowsBuf.slice(from, to - from), columnLen, charsetName, jsonColumnCount, partial);
+    }
+
+    /**
+     * Return size of rows-buffer.
+     */
+    public final int getRowsBufSize() {
+        return rowsBuf.limit();
+    }
+
     public final int getFlags(final int flags) {
         return this.flags & flags;
     }
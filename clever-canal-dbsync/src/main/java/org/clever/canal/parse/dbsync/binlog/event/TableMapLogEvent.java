@@ -1,6 +1,7 @@
 package org.clever.canal.parse.dbsync.binlog.event;
 
 import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogContext;
 import org.clever.canal.parse.dbsync.binlog.LogEvent;
 
 import java.util.ArrayList;
@@ -387,6 +388,8 @@ public final class TableMapLogEvent extends LogEvent {
 
     private int default_charset;
     private boolean existOptionalMetaData = false;
+    // 事件内容(不含common header和checksum)，用于判断后续同一tableId的table map是否有变化
+    private byte[] body;
 
     private static final class Pair {
 
@@ -394,6 +397,37 @@ public final class TableMapLogEvent extends LogEvent {
         public int col_charset;
     }
 
+    /**
+     * 解析table map，同一个tableId的内容和上一次完全相同时(每个事务都会重复写table map)直接复用上一次解析的列信息
+     */
+    public static TableMapLogEvent decode(LogHeader header, LogBuffer buffer, FormatDescriptionLogEvent descriptionEvent, LogContext context) {
+        final int commonHeaderLen = descriptionEvent.commonHeaderLen;
+        final int postHeaderLen = descriptionEvent.postHeaderLen[header.type - 1];
+        final long tableId = postHeaderLen == 6 ? buffer.getUint32(commonHeaderLen + TM_MAPID_OFFSET)
+                : buffer.getUlong48(commonHeaderLen + TM_MAPID_OFFSET);
+        TableMapLogEvent previous = context.getTable(tableId);
+        if (previous != null && previous.body != null && buffer.equalsData(commonHeaderLen, previous.body)) {
+            return new TableMapLogEvent(header, previous);
+        }
+        return new TableMapLogEvent(header, buffer, descriptionEvent);
+    }
+
+    /**
+     * 复用已经解析的table map(列信息共享，不能修改)
+     */
+    private TableMapLogEvent(LogHeader header, TableMapLogEvent decoded) {
+        super(header);
+        this.dbname = decoded.dbname;
+        this.tblname = decoded.tblname;
+        this.columnCnt = decoded.columnCnt;
+        this.columnInfo = decoded.columnInfo;
+        this.tableId = decoded.tableId;
+        this.nullBits = decoded.nullBits;
+        this.default_charset = decoded.default_charset;
+        this.existOptionalMetaData = decoded.existOptionalMetaData;
+        this.body = decoded.body;
+    }
+
     /**
      * Constructor used by slave to read the event from the binary log.
      */
@@ -402,6 +436,7 @@ public final class TableMapLogEvent extends LogEvent {
 
         final int commonHeaderLen = descriptionEvent.commonHeaderLen;
         final int postHeaderLen = descriptionEvent.postHeaderLen[header.type - 1];
+        body = buffer.getData(commonHeaderLen, buffer.limit() - commonHeaderLen);
         /* Read the post-header */
         buffer.position(commonHeaderLen + TM_MAPID_OFFSET);
         if (postHeaderLen == 6) {
@@ -0,0 +1,211 @@
+package org.clever.canal.parse.dbsync.binlog.event;
+
+import java.util.TimeZone;
+
+/**
+ * 时间类型字段值的格式化，结果和原来使用StringBuilder、appendNumber2/3/4、usecondsToStr拼接的字符串完全一致
+ *
+ * <pre>
+ * 1. 每个线程复用同一组char[]，只在最后构造一次String
+ * 2. 连续的值在同一天时，直接复用char[]中已经写好的日期部分(yyyy-MM-dd )
+ * 3. JsonStreamConversion输出json中的时间类型(OPAQUE)也使用这里的格式化
+ * </pre>
+ */
+public final class TemporalFormatter {
+    private static final ThreadLocal<TemporalFormatter> FORMATTERS = ThreadLocal.withInitial(TemporalFormatter::new);
+
+    private static final char[] digits = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final int[] powers10 = {1, 10, 100, 1000, 10000, 100000, 1000000};
+    private static final long MILLIS_PER_DAY = 24 * 3600 * 1000L;
+    /**
+     * "yyyy-MM-dd "的长度
+     */
+    private static final int DATE_LENGTH = 11;
+
+    /**
+     * DATETIME/DATE: yyyy-MM-dd HH:mm:ss.SSSSSS
+     */
+    private final char[] dateTimeChars = new char[26];
+    /**
+     * dateTimeChars中日期部分对应的日期(year &lt;&lt; 9 | month &lt;&lt; 5 | day)
+     */
+    private long dateTimeDay = -1;
+    /**
+     * TIMESTAMP: yyyy-MM-dd HH:mm:ss.SSSSSS
+     */
+    private final char[] timestampChars = new char[26];
+    /**
+     * timestampChars中日期部分对应的本地时间天数(距离1970-01-01)
+     */
+    private long timestampDay = Long.MIN_VALUE;
+    private TimeZone timeZone;
+    /**
+     * TIME: -HHHH:mm:ss.SSSSSS
+     */
+    private final char[] timeChars = new char[18];
+
+    public static TemporalFormatter current() {
+        return FORMATTERS.get();
+    }
+
+    /**
+     * yyyy-MM-dd HH:mm:ss[.fraction]
+     */
+    public String formatDateTime(int year, int month, int day, int hour, int minute, int second, int frac, int meta) {
+        final char[] buf = dateTimeChars;
+        final long key = ((long) year << 9) | (month << 5) | day;
+        if (key != dateTimeDay) {
+            writeDate(buf, year, month, day);
+            dateTimeDay = key;
+        }
+        int pos = writeTime(buf, DATE_LENGTH, hour, minute, second);
+        if (meta >= 1) {
+            pos = writeFraction(buf, pos, frac, meta);
+        }
+        return new String(buf, 0, pos);
+    }
+
+    /**
+     * yyyy-MM-dd
+     */
+    public String formatDate(int year, int month, int day) {
+        final char[] buf = dateTimeChars;
+        final long key = ((long) year << 9) | (month << 5) | day;
+        if (key != dateTimeDay) {
+            writeDate(buf, year, month, day);
+            dateTimeDay = key;
+        }
+        return new String(buf, 0, DATE_LENGTH - 1);
+    }
+
+    /**
+     * 按timeZone转换成本地时间 yyyy-MM-dd HH:mm:ss[.fraction]，和java.sql.Timestamp.toString()的秒部分相同
+     */
+    public String formatTimestamp(long seconds, int frac, int meta, TimeZone timeZone) {
+        if (seconds == 0) {
+            return formatDateTime(0, 0, 0, 0, 0, 0, frac, meta);
+        }
+        if (timeZone != this.timeZone) {
+            if (!timeZone.equals(this.timeZone)) {
+                timestampDay = Long.MIN_VALUE;
+            }
+            this.timeZone = timeZone;
+        }
+        final char[] buf = timestampChars;
+        final long millis = seconds * 1000;
+        final long localMillis = millis + timeZone.getOffset(millis);
+        final long localDay = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        if (localDay != timestampDay) {
+            writeLocalDate(buf, localDay);
+            timestampDay = localDay;
+        }
+        final int secondOfDay = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / 1000);
+        int pos = writeTime(buf, DATE_LENGTH, secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+        if (meta >= 1) {
+            pos = writeFraction(buf, pos, frac, meta);
+        }
+        return new String(buf, 0, pos);
+    }
+
+    /**
+     * [-]HH:mm:ss[.fraction]，小时数大于100时输出全部位数
+     */
+    public String formatTime(boolean negative, int hour, int minute, int second, int frac, int meta) {
+        final char[] buf = timeChars;
+        int pos = 0;
+        if (negative) {
+            buf[pos++] = '-';
+        }
+        if (hour >= 1000) {
+            // TIME的小时数最大为1023
+            pos = write4(buf, pos, hour);
+        } else if (hour > 100) {
+            pos = write3(buf, pos, hour);
+        } else {
+            pos = write2(buf, pos, hour);
+        }
+        buf[pos++] = ':';
+        pos = write2(buf, pos, minute);
+        buf[pos++] = ':';
+        pos = write2(buf, pos, second);
+        if (meta >= 1) {
+            pos = writeFraction(buf, pos, frac, meta);
+        }
+        return new String(buf, 0, pos);
+    }
+
+    // ============================ helper method ======================
+
+    private static void writeDate(char[] buf, int year, int month, int day) {
+        int pos = write4(buf, 0, year);
+        buf[pos++] = '-';
+        pos = write2(buf, pos, month);
+        buf[pos++] = '-';
+        pos = write2(buf, pos, day);
+        buf[pos] = ' ';
+    }
+
+    /**
+     * 距离1970-01-01的天数转换成公历日期(每400年146097天)
+     */
+    private static void writeLocalDate(char[] buf, long epochDay) {
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+        writeDate(buf, year, month, day);
+    }
+
+    private static int writeTime(char[] buf, int pos, int hour, int minute, int second) {
+        pos = write2(buf, pos, hour);
+        buf[pos++] = ':';
+        pos = write2(buf, pos, minute);
+        buf[pos++] = ':';
+        return write2(buf, pos, second);
+    }
+
+    /**
+     * 和usecondsToStr(frac, meta)相同: 补齐6位后取前meta位
+     */
+    private static int writeFraction(char[] buf, int pos, int frac, int meta) {
+        buf[pos++] = '.';
+        if (frac < 0 || frac >= powers10[6]) {
+            // 异常值保持原来的输出
+            String microSecond = RowsLogBuffer.usecondsToStr(frac, meta);
+            microSecond.getChars(0, meta, buf, pos);
+            return pos + meta;
+        }
+        int v = frac / powers10[6 - meta];
+        for (int i = pos + meta - 1; i >= pos; i--) {
+            buf[i] = digits[v % 10];
+            v /= 10;
+        }
+        return pos + meta;
+    }
+
+    private static int write4(char[] buf, int pos, int d) {
+        buf[pos] = digits[d / 1000];
+        buf[pos + 1] = digits[(d / 100) % 10];
+        buf[pos + 2] = digits[(d / 10) % 10];
+        buf[pos + 3] = digits[d % 10];
+        return pos + 4;
+    }
+
+    private static int write2(char[] buf, int pos, int d) {
+        buf[pos] = digits[(d / 10) % 10];
+        buf[pos + 1] = digits[d % 10];
+        return pos + 2;
+    }
+
+    private static int write3(char[] buf, int pos, int d) {
+        buf[pos] = digits[d / 100];
+        buf[pos + 1] = digits[(d / 10) % 10];
+        buf[pos + 2] = digits[d % 10];
+        return pos + 3;
+    }
+}
@@ -0,0 +1,306 @@
+package org.clever.canal.parse.dbsync.binlog;
+
+import org.clever.canal.parse.dbsync.binlog.JsonConversion.Json_Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class JsonStreamConversionTest {
+    private static final int TYPE_SMALL_OBJECT = 0x0;
+    private static final int TYPE_LARGE_OBJECT = 0x1;
+    private static final int TYPE_SMALL_ARRAY = 0x2;
+    private static final int TYPE_LARGE_ARRAY = 0x3;
+    private static final int TYPE_LITERAL = 0x4;
+    private static final int TYPE_INT16 = 0x5;
+    private static final int TYPE_INT32 = 0x7;
+    private static final int TYPE_INT64 = 0x9;
+    private static final int TYPE_DOUBLE = 0xB;
+    private static final int TYPE_STRING = 0xC;
+    private static final int TYPE_OPAQUE = 0xF;
+
+    @Test
+    public void testNested() {
+        Value value = object(false,
+                "id", int64(1234567890123L),
+                "name", string("canal"),
+                "ok", literal(1),
+                "none", literal(0),
+                "tags", array(false, string("a"), int16(-2), double64(1.5), literal(2)),
+                "child", object(false, "x", int32(-100000), "y", array(false))
+        );
+        String json = assertSame(value);
+        Assert.assertEquals("{\"id\": 1234567890123, \"ok\": true, \"name\": \"canal\", \"none\": null, \"tags\": [\"a\", -2, 1.5, false], \"child\": {\"x\": -100000, \"y\": []}}", json);
+    }
+
+    @Test
+    public void testLargeObject() {
+        Object[] keyValues = new Object[2 * 300];
+        Value[] elements = new Value[300];
+        for (int i = 0; i < 300; i++) {
+            keyValues[2 * i] = String.format("key%03d", i);
+            keyValues[2 * i + 1] = i % 2 == 0 ? int32(i * 1000) : string("value-" + i);
+            elements[i] = int32(-i);
+        }
+        assertSame(object(true, keyValues));
+        assertSame(array(true, elements));
+        assertSame(object(true, "large", array(true, elements), "small", object(false, "a", int16(1))));
+    }
+
+    @Test
+    public void testOpaque() {
+        // DECIMAL(10,2): 12345678.90
+        Value decimal = opaque(LogEvent.MYSQL_TYPE_NEWDECIMAL, new byte[]{10, 2, (byte) 0x80, (byte) 0xbc, 0x61, 0x4e, 90});
+        // TIME: -12:34:56.000789
+        long time = ((12L << 12) | (34 << 6) | 56) << 24 | 789;
+        // DATETIME: 2020-01-02 03:04:05.123456
+        long datetime = ((((2020 * 13L + 1) << 5 | 2) << 17 | (3 << 12) | (4 << 6) | 5) << 24) | 123456;
+        Value value = array(false,
+                decimal,
+                opaque(LogEvent.MYSQL_TYPE_TIME, littleEndian(-time, 8)),
+                opaque(LogEvent.MYSQL_TYPE_TIME, littleEndian(0, 8)),
+                opaque(LogEvent.MYSQL_TYPE_DATETIME, littleEndian(datetime, 8)),
+                opaque(LogEvent.MYSQL_TYPE_DATE, littleEndian(datetime, 8)),
+                opaque(LogEvent.MYSQL_TYPE_TIMESTAMP, littleEndian(0, 8)),
+                opaque(LogEvent.MYSQL_TYPE_VARCHAR, "opaque\"text".getBytes(StandardCharsets.UTF_8))
+        );
+        String json = assertSame(value);
+        Assert.assertEquals("[12345678.90, \"-12:34:56.000789\", \"00:00:00\", \"2020-01-02 03:04:05.123456\", \"2020-01-02 03:04:05.123456\", \"0000-00-00 00:00:00\", \"opaque\\\"text\"]", json);
+    }
+
+    @Test
+    public void testEscapedString() {
+        Value value = object(false,
+                "quote\"key", string("a\"b\\c"),
+                "中文", string("中文😀\n\t"),
+                "empty", string("")
+        );
+        assertSame(value);
+        assertSame(string("\\\"\\"));
+    }
+
+    @Test
+    public void testDiff() {
+        ByteArrayOutputStream diff = new ByteArrayOutputStream();
+        // JSON_REPLACE(col, '$.a', 1)
+        diffOperation(diff, 0, "$.a", int16(1));
+        // JSON_INSERT(col, '$.b', '{"x": "y"}')
+        diffOperation(diff, 1, "$.b", object(false, "x", string("y")));
+        // JSON_ARRAY_INSERT(col, '$[0]', 'v"1')
+        diffOperation(diff, 1, "$[0]", string("v\"1"));
+        // JSON_REMOVE(col, '$.c')
+        diffOperation(diff, 2, "$.c", null);
+        diffOperation(diff, 2, "$.d", null);
+        // JSON_REPLACE(col, '$.e', DECIMAL)
+        diffOperation(diff, 0, "$.e", opaque(LogEvent.MYSQL_TYPE_NEWDECIMAL, new byte[]{10, 2, (byte) 0x80, (byte) 0xbc, 0x61, 0x4e, 90}));
+        byte[] data = diff.toByteArray();
+        String expect = JsonDiffConversion.print_json_diff(new LogBuffer(data, 0, data.length), data.length, "col", 3, "UTF-8").toString();
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        String actual = JsonStreamConversion.print_json_diff(buffer, data.length, "col", 3, "UTF-8");
+        Assert.assertEquals(expect, actual);
+        Assert.assertEquals(0, buffer.position());
+        // 连续相同的操作合并成一个函数调用
+        Assert.assertEquals("JSON_REPLACE(JSON_REMOVE(JSON_ARRAY_INSERT(JSON_INSERT(JSON_REPLACE(col, '$.a', 1), '$.b', {\"x\": \"y\"}), '$[0]', \"v\\\"1\"), '$.c', '$.d'), '$.e', 12345678.90)", actual);
+    }
+
+    /**
+     * 对比JsonConversion和JsonStreamConversion的输出
+     */
+    private static String assertSame(Value value) {
+        byte[] data = new byte[value.bytes.length + 1];
+        data[0] = (byte) value.type;
+        System.arraycopy(value.bytes, 0, data, 1, value.bytes.length);
+        LogBuffer legacyBuffer = new LogBuffer(data, 0, data.length);
+        Json_Value jsonValue = JsonConversion.parse_value(legacyBuffer.getUint8(), legacyBuffer, data.length - 1, "UTF-8");
+        StringBuilder builder = new StringBuilder();
+        jsonValue.toJsonString(builder, "UTF-8");
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        String json = JsonStreamConversion.print_json(buffer, data.length, "UTF-8");
+        Assert.assertEquals(builder.toString(), json);
+        Assert.assertEquals(0, buffer.position());
+        return json;
+    }
+
+    // ============================ json二进制格式 ======================
+
+    private static class Value {
+        private final int type;
+        private final byte[] bytes;
+
+        private Value(int type, byte[] bytes) {
+            this.type = type;
+            this.bytes = bytes;
+        }
+    }
+
+    private static Value literal(int value) {
+        return new Value(TYPE_LITERAL, new byte[]{(byte) value});
+    }
+
+    private static Value int16(int value) {
+        return new Value(TYPE_INT16, littleEndian(value, 2));
+    }
+
+    private static Value int32(int value) {
+        return new Value(TYPE_INT32, littleEndian(value, 4));
+    }
+
+    private static Value int64(long value) {
+        return new Value(TYPE_INT64, littleEndian(value, 8));
+    }
+
+    private static Value double64(double value) {
+        return new Value(TYPE_DOUBLE, littleEndian(Double.doubleToLongBits(value), 8));
+    }
+
+    private static Value string(String value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVariableLength(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        return new Value(TYPE_STRING, out.toByteArray());
+    }
+
+    private static Value opaque(int fieldType, byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(fieldType);
+        writeVariableLength(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        return new Value(TYPE_OPAQUE, out.toByteArray());
+    }
+
+    private static Value array(boolean large, Value... elements) {
+        return container(false, large, new String[elements.length], elements);
+    }
+
+    private static Value object(boolean large, Object... keyValues) {
+        String[] keys = new String[keyValues.length / 2];
+        Value[] values = new Value[keyValues.length / 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (String) keyValues[2 * i];
+            values[i] = (Value) keyValues[2 * i + 1];
+        }
+        return container(true, large, keys, values);
+    }
+
+    /**
+     * 对象的key按照MySQL的顺序排列(先比较长度再比较内容)
+     */
+    private static Value container(boolean object, boolean large, String[] keys, Value[] values) {
+        final int count = values.length;
+        if (object) {
+            for (int i = 1; i < count; i++) {
+                for (int j = i; j > 0 && compareKey(keys[j - 1], keys[j]) > 0; j--) {
+                    String key = keys[j];
+                    keys[j] = keys[j - 1];
+                    keys[j - 1] = key;
+                    Value value = values[j];
+                    values[j] = values[j - 1];
+                    values[j - 1] = value;
+                }
+            }
+        }
+        final int offsetSize = large ? 4 : 2;
+        final int header = 2 * offsetSize + (object ? count * (offsetSize + 2) : 0) + count * (offsetSize + 1);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int[] keyOffsets = new int[count];
+        if (object) {
+            for (int i = 0; i < count; i++) {
+                byte[] key = keys[i].getBytes(StandardCharsets.UTF_8);
+                keyOffsets[i] = header + body.size();
+                body.write(key, 0, key.length);
+            }
+        }
+        int[] valueOffsets = new int[count];
+        boolean[] inlined = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int type = values[i].type;
+            inlined[i] = type == TYPE_LITERAL || type == TYPE_INT16 || (large && type == TYPE_INT32);
+            if (!inlined[i]) {
+                valueOffsets[i] = header + body.size();
+                body.write(values[i].bytes, 0, values[i].bytes.length);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLittleEndian(out, count, offsetSize);
+        writeLittleEndian(out, header + body.size(), offsetSize);
+        if (object) {
+            for (int i = 0; i < count; i++) {
+                writeLittleEndian(out, keyOffsets[i], offsetSize);
+                writeLittleEndian(out, keys[i].getBytes(StandardCharsets.UTF_8).length, 2);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            out.write(values[i].type);
+            if (inlined[i]) {
+                byte[] inline = new byte[offsetSize];
+                System.arraycopy(values[i].bytes, 0, inline, 0, Math.min(offsetSize, values[i].bytes.length));
+                out.write(inline, 0, inline.length);
+            } else {
+                writeLittleEndian(out, valueOffsets[i], offsetSize);
+            }
+        }
+        byte[] bytes = body.toByteArray();
+        out.write(bytes, 0, bytes.length);
+        int type = object ? (large ? TYPE_LARGE_OBJECT : TYPE_SMALL_OBJECT) : (large ? TYPE_LARGE_ARRAY : TYPE_SMALL_ARRAY);
+        return new Value(type, out.toByteArray());
+    }
+
+    private static int compareKey(String a, String b) {
+        int la = a.getBytes(StandardCharsets.UTF_8).length;
+        int lb = b.getBytes(StandardCharsets.UTF_8).length;
+        return la != lb ? Integer.compare(la, lb) : a.compareTo(b);
+    }
+
+    /**
+     * partial json的一个操作: operation + path + (value)
+     */
+    private static void diffOperation(ByteArrayOutputStream out, int operation, String path, Value value) {
+        out.write(operation);
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        writePackedLength(out, pathBytes.length);
+        out.write(pathBytes, 0, pathBytes.length);
+        if (value != null) {
+            writePackedLength(out, value.bytes.length + 1);
+            out.write(value.type);
+            out.write(value.bytes, 0, value.bytes.length);
+        }
+    }
+
+    /**
+     * json中字符串的长度(每个字节7位)
+     */
+    private static void writeVariableLength(ByteArrayOutputStream out, int length) {
+        do {
+            int b = length & 0x7f;
+            length >>>= 7;
+            out.write(length != 0 ? b | 0x80 : b);
+        } while (length != 0);
+    }
+
+    /**
+     * LogBuffer.getPackedLong的格式
+     */
+    private static void writePackedLength(ByteArrayOutputStream out, int length) {
+        if (length < 251) {
+            out.write(length);
+        } else {
+            out.write(252);
+            writeLittleEndian(out, length, 2);
+        }
+    }
+
+    private static void writeLittleEndian(ByteArrayOutputStream out, long value, int length) {
+        byte[] bytes = littleEndian(value, length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] littleEndian(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (value >>> (8 * i));
+        }
+        return bytes;
+    }
+}
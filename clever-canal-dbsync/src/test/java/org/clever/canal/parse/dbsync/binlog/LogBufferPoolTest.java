@@ -0,0 +1,109 @@
+package org.clever.canal.parse.dbsync.binlog;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LogBufferPoolTest {
+
+    @Test
+    public void testLease() {
+        LogBufferPool pool = new LogBufferPool(512, 4096, 64 * 1024);
+        byte[] source = new byte[10000];
+        new Random(0).nextBytes(source);
+        for (int len : new int[]{1, 300, 512, 513, 2000, 4096, 5000}) {
+            LogBuffer sourceBuffer = new LogBuffer(source, 7, len + 10);
+            LogBuffer buffer = pool.lease(sourceBuffer, len);
+            Assert.assertEquals(0, buffer.position());
+            Assert.assertEquals(len, buffer.limit());
+            Assert.assertEquals(len > 4096 ? len : Math.max(512, Integer.highestOneBit(len - 1) << 1), buffer.capacity());
+            for (int i = 0; i < len; i++) {
+                Assert.assertEquals(source[7 + i], (byte) buffer.getInt8(i));
+            }
+            // 不改变原来的buffer
+            Assert.assertEquals(0, sourceBuffer.position());
+        }
+        Assert.assertEquals(7, pool.getLeaseCount());
+        Assert.assertEquals(7, pool.getAllocateCount());
+        Assert.assertEquals(1, pool.getOversizeCount());
+    }
+
+    @Test
+    public void testReleaseAndReuse() {
+        LogBufferPool pool = new LogBufferPool(512, 4096, 64 * 1024);
+        LogBuffer source = new LogBuffer(new byte[4096], 0, 4096);
+        LogBuffer first = pool.lease(source, 1000);
+        byte[] slab = first.buffer;
+        // 租用中的slab不会被再次租用
+        LogBuffer second = pool.lease(source, 1000);
+        Assert.assertNotSame(slab, second.buffer);
+        Assert.assertEquals(2, pool.getAllocateCount());
+        Assert.assertEquals(0, pool.getPooledSize());
+
+        pool.release(first);
+        Assert.assertNull(first.buffer);
+        Assert.assertEquals(1024, pool.getPooledSize());
+        // 重复归还不会重复放入内存池
+        pool.release(first);
+        Assert.assertEquals(1024, pool.getPooledSize());
+
+        // 同一级别的租用复用归还的slab
+        LogBuffer third = pool.lease(source, 600);
+        Assert.assertSame(slab, third.buffer);
+        Assert.assertEquals(2, pool.getAllocateCount());
+        Assert.assertEquals(0, pool.getPooledSize());
+        // 其他级别不复用
+        pool.release(second);
+        LogBuffer fourth = pool.lease(source, 100);
+        Assert.assertEquals(3, pool.getAllocateCount());
+        Assert.assertEquals(512, fourth.capacity());
+        Assert.assertEquals(1024, pool.getPooledSize());
+    }
+
+    @Test
+    public void testNotPooled() {
+        LogBufferPool pool = new LogBufferPool(512, 4096, 64 * 1024);
+        LogBuffer source = new LogBuffer(new byte[8192], 0, 8192);
+        // 超大事件直接分配，不归还到内存池
+        LogBuffer oversize = pool.lease(source, 5000);
+        pool.release(oversize);
+        Assert.assertEquals(0, pool.getPooledSize());
+        // 不是内存池分配的byte[]
+        pool.release(new LogBuffer(new byte[1000], 0, 1000));
+        Assert.assertEquals(0, pool.getPooledSize());
+
+        // maxPooledSize <= 0 不缓存
+        LogBufferPool disabled = new LogBufferPool(0);
+        LogBuffer buffer = disabled.lease(source, 100);
+        Assert.assertEquals(100, buffer.capacity());
+        disabled.release(buffer);
+        disabled.lease(source, 100);
+        Assert.assertEquals(2, disabled.getAllocateCount());
+        Assert.assertEquals(0, disabled.getPooledSize());
+    }
+
+    @Test
+    public void testMaxPooledSize() {
+        LogBufferPool pool = new LogBufferPool(512, 4096, 2048);
+        LogBuffer source = new LogBuffer(new byte[512], 0, 512);
+        LogBuffer[] buffers = new LogBuffer[8];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.lease(source);
+        }
+        for (LogBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        Assert.assertEquals(2048, pool.getPooledSize());
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.lease(source);
+        }
+        Assert.assertEquals(8 + 4, pool.getAllocateCount());
+        Assert.assertEquals(0, pool.getPooledSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSlabSize() {
+        new LogBufferPool(500, 4096, 1024);
+    }
+}
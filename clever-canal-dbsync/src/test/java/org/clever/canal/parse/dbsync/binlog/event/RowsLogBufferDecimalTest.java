@@ -0,0 +1,170 @@
+package org.clever.canal.parse.dbsync.binlog.event;
+
+import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Random;
+
+public class RowsLogBufferDecimalTest {
+
+    private static final BitSet COLUMNS = new BitSet();
+
+    static {
+        COLUMNS.set(0);
+    }
+
+    @Test
+    public void testUnscaledDecimal() {
+        Random random = new Random(20201017L);
+        for (int precision = 1; precision <= LogBuffer.MAX_UNSCALED_PRECISION; precision++) {
+            for (int scale = 0; scale <= precision; scale++) {
+                for (int i = 0; i < 200; i++) {
+                    BigDecimal decimal = randomDecimal(random, precision, scale, i);
+                    byte[] bytes = toBinary(decimal, precision, scale);
+                    BigDecimal expect = new LogBuffer(bytes, 0, bytes.length).getDecimal(precision, scale);
+                    // LogBuffer
+                    LogBuffer buffer = new LogBuffer(bytes, 0, bytes.length);
+                    long unscaled = buffer.getDecimalUnscaled(precision, scale);
+                    Assert.assertEquals(bytes.length, buffer.position());
+                    Assert.assertEquals(0, decimal.compareTo(BigDecimal.valueOf(unscaled, scale)));
+                    // RowsLogBuffer
+                    RowsLogBuffer rowsBuffer = rowsBuffer(bytes);
+                    rowsBuffer.readNextValue("c", 0, LogEvent.MYSQL_TYPE_NEWDECIMAL, (precision << 8) | scale, false);
+                    Assert.assertTrue(rowsBuffer.isUnscaledDecimal());
+                    Assert.assertEquals(expect.toPlainString(), rowsBuffer.getDecimalPlainString());
+                    Assert.assertEquals(expect, rowsBuffer.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWideDecimal() {
+        BigDecimal decimal = new BigDecimal("-1234567890123456789.123");
+        byte[] bytes = toBinary(decimal, 22, 3);
+        RowsLogBuffer rowsBuffer = rowsBuffer(bytes);
+        rowsBuffer.readNextValue("c", 0, LogEvent.MYSQL_TYPE_NEWDECIMAL, (22 << 8) | 3, false);
+        Assert.assertFalse(rowsBuffer.isUnscaledDecimal());
+        Assert.assertEquals(decimal, rowsBuffer.getValue());
+    }
+
+    /**
+     * 对比BigDecimal和unscaled long两种解析方式的耗时(只输出耗时，需要时手动运行)
+     */
+    @Ignore("benchmark")
+    @Test
+    public void benchmark() {
+        final int precision = 12;
+        final int scale = 2;
+        final int count = 1000;
+        Random random = new Random(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = toBinary(randomDecimal(random, precision, scale, i), precision, scale);
+            out.write(bytes, 0, bytes.length);
+        }
+        byte[] data = out.toByteArray();
+        LogBuffer buffer = new LogBuffer(data, 0, data.length);
+        long checksum = 0;
+        long bigDecimalTime = 0;
+        long unscaledTime = 0;
+        for (int round = 0; round < 200; round++) {
+            long start = System.nanoTime();
+            buffer.position(0);
+            for (int i = 0; i < count; i++) {
+                checksum += buffer.getDecimal(precision, scale).signum();
+            }
+            long middle = System.nanoTime();
+            buffer.position(0);
+            for (int i = 0; i < count; i++) {
+                checksum += buffer.getDecimalUnscaled(precision, scale);
+            }
+            long end = System.nanoTime();
+            if (round >= 100) {
+                // 前100轮预热
+                bigDecimalTime += middle - start;
+                unscaledTime += end - middle;
+            }
+        }
+        System.out.println("decimal(" + precision + "," + scale + ") BigDecimal: " + bigDecimalTime / (100L * count)
+                + "ns/op, unscaled long: " + unscaledTime / (100L * count) + "ns/op, checksum: " + checksum);
+    }
+
+    private static RowsLogBuffer rowsBuffer(byte[] bytes) {
+        // 1字节的null bitmap
+        byte[] row = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, row, 1, bytes.length);
+        RowsLogBuffer rowsBuffer = new RowsLogBuffer(new LogBuffer(row, 0, row.length), 1, "UTF-8", 0, false);
+        Assert.assertTrue(rowsBuffer.nextOneRow(COLUMNS));
+        return rowsBuffer;
+    }
+
+    private static BigDecimal randomDecimal(Random random, int precision, int scale, int i) {
+        BigInteger unscaled;
+        switch (i % 4) {
+            case 0:
+                // 最大值
+                unscaled = BigInteger.TEN.pow(precision).subtract(BigInteger.ONE);
+                break;
+            case 1:
+                // 小数部分末尾为0
+                unscaled = new BigInteger(precision * 4, random).mod(BigInteger.TEN.pow(precision))
+                        .divide(BigInteger.TEN.pow(Math.min(scale, 3))).multiply(BigInteger.TEN.pow(Math.min(scale, 3)));
+                break;
+            default:
+                unscaled = new BigInteger(precision * 4, random).mod(BigInteger.TEN.pow(precision));
+        }
+        return new BigDecimal(random.nextBoolean() ? unscaled.negate() : unscaled, scale);
+    }
+
+    /**
+     * mysql decimal2bin
+     */
+    private static byte[] toBinary(BigDecimal decimal, int precision, int scale) {
+        final int intg = precision - scale;
+        String digits = decimal.abs().setScale(scale).unscaledValue().toString();
+        StringBuilder padded = new StringBuilder();
+        for (int i = digits.length(); i < precision; i++) {
+            padded.append('0');
+        }
+        padded.append(digits);
+        String intgDigits = padded.substring(0, intg);
+        String fracDigits = padded.substring(intg);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int intg0x = intg % LogBuffer.DIG_PER_DEC1;
+        writeDigits(out, intgDigits.substring(0, intg0x));
+        for (int i = intg0x; i < intg; i += LogBuffer.DIG_PER_DEC1) {
+            writeDigits(out, intgDigits.substring(i, i + LogBuffer.DIG_PER_DEC1));
+        }
+        int frac0 = scale / LogBuffer.DIG_PER_DEC1 * LogBuffer.DIG_PER_DEC1;
+        for (int i = 0; i < frac0; i += LogBuffer.DIG_PER_DEC1) {
+            writeDigits(out, fracDigits.substring(i, i + LogBuffer.DIG_PER_DEC1));
+        }
+        writeDigits(out, fracDigits.substring(frac0));
+        byte[] bytes = out.toByteArray();
+        if (decimal.signum() < 0) {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) ~bytes[i];
+            }
+        }
+        bytes[0] ^= 0x80;
+        return bytes;
+    }
+
+    private static void writeDigits(ByteArrayOutputStream out, String digits) {
+        if (digits.isEmpty()) {
+            return;
+        }
+        int value = Integer.parseInt(digits);
+        for (int i = LogBuffer.dig2bytes[digits.length()] - 1; i >= 0; i--) {
+            out.write(value >>> (8 * i));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package org.clever.canal.parse.dbsync.binlog.event;
+
+import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class TemporalFormatterTest {
+
+    private static final BitSet COLUMNS = new BitSet();
+    private static final String[] ZONES = {"UTC", "Asia/Shanghai", "America/New_York", "Australia/Lord_Howe"};
+
+    static {
+        COLUMNS.set(0);
+    }
+
+    @Test
+    public void testDateTime() {
+        TemporalFormatter formatter = TemporalFormatter.current();
+        Random random = new Random(20201017L);
+        for (int meta = 0; meta <= 6; meta++) {
+            // 零值
+            Assert.assertEquals(legacyDateTime(0, 0, 0, 0, 0, 0, 0, meta), formatter.formatDateTime(0, 0, 0, 0, 0, 0, 0, meta));
+            for (int i = 0; i < 1000; i++) {
+                int year = random.nextInt(10000);
+                int month = random.nextInt(13);
+                int day = random.nextInt(32);
+                int hour = random.nextInt(24);
+                int minute = random.nextInt(60);
+                int second = random.nextInt(60);
+                int frac = random.nextInt(1000000);
+                Assert.assertEquals(legacyDateTime(year, month, day, hour, minute, second, frac, meta), formatter.formatDateTime(year, month, day, hour, minute, second, frac, meta));
+                // 同一天的下一个值复用日期部分
+                Assert.assertEquals(legacyDateTime(year, month, day, 23, 59, 59, 999999, meta), formatter.formatDateTime(year, month, day, 23, 59, 59, 999999, meta));
+                Assert.assertEquals(legacyDate(year, month, day), formatter.formatDate(year, month, day));
+            }
+        }
+        Assert.assertEquals("0000-00-00", formatter.formatDate(0, 0, 0));
+    }
+
+    @Test
+    public void testTime() {
+        TemporalFormatter formatter = TemporalFormatter.current();
+        Random random = new Random(20201017L);
+        for (int meta = 0; meta <= 6; meta++) {
+            for (int i = 0; i < 1000; i++) {
+                boolean negative = random.nextBoolean();
+                int hour = i % 10 == 0 ? 100 + random.nextInt(924) : random.nextInt(100);
+                int minute = random.nextInt(60);
+                int second = random.nextInt(60);
+                int frac = random.nextInt(1000000);
+                Assert.assertEquals(legacyTime(negative, hour, minute, second, frac, meta), formatter.formatTime(negative, hour, minute, second, frac, meta));
+            }
+            Assert.assertEquals(legacyTime(false, 0, 0, 0, 0, meta), formatter.formatTime(false, 0, 0, 0, 0, meta));
+            Assert.assertEquals(legacyTime(true, 838, 59, 59, 0, meta), formatter.formatTime(true, 838, 59, 59, 0, meta));
+            Assert.assertEquals(legacyTime(true, 1023, 0, 1, 1, meta), formatter.formatTime(true, 1023, 0, 1, 1, meta));
+        }
+    }
+
+    @Test
+    public void testTimestamp() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        Random random = new Random(20201017L);
+        try {
+            for (String zone : ZONES) {
+                TimeZone timeZone = TimeZone.getTimeZone(zone);
+                TimeZone.setDefault(timeZone);
+                TemporalFormatter formatter = TemporalFormatter.current();
+                // 夏令时切换前后(America/New_York: 2020-03-08 02:00, 2020-11-01 02:00; Australia/Lord_Howe切换30分钟)
+                long[] transitions = {
+                        epochSecond(LocalDateTime.of(2020, 3, 8, 6, 0), "UTC"),
+                        epochSecond(LocalDateTime.of(2020, 11, 1, 5, 0), "UTC"),
+                        epochSecond(LocalDateTime.of(2020, 4, 5, 2, 0), "Australia/Lord_Howe"),
+                        epochSecond(LocalDateTime.of(2020, 10, 4, 2, 0), "Australia/Lord_Howe")
+                };
+                for (int meta = 0; meta <= 6; meta++) {
+                    Assert.assertEquals(legacyTimestamp(0, 0, meta), formatter.formatTimestamp(0, 0, meta, timeZone));
+                    for (long transition : transitions) {
+                        for (long seconds = transition - 3 * 3600; seconds <= transition + 3 * 3600; seconds += 599) {
+                            int frac = random.nextInt(1000000);
+                            Assert.assertEquals(legacyTimestamp(seconds, frac, meta), formatter.formatTimestamp(seconds, frac, meta, timeZone));
+                        }
+                    }
+                    for (int i = 0; i < 1000; i++) {
+                        long seconds = random.nextInt() & 0xffffffffL;
+                        int frac = random.nextInt(1000000);
+                        Assert.assertEquals(legacyTimestamp(seconds, frac, meta), formatter.formatTimestamp(seconds, frac, meta, timeZone));
+                    }
+                }
+            }
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    @Test
+    public void testRowsLogBuffer() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            // 零值
+            Assert.assertEquals("0000-00-00 00:00:00", value(LogEvent.MYSQL_TYPE_TIMESTAMP, 0, new byte[4]));
+            Assert.assertEquals("0000-00-00 00:00:00", value(LogEvent.MYSQL_TYPE_DATETIME, 0, new byte[8]));
+            Assert.assertEquals("0000-00-00", value(LogEvent.MYSQL_TYPE_DATE, 0, new byte[3]));
+            Assert.assertEquals("00:00:00", value(LogEvent.MYSQL_TYPE_TIME, 0, new byte[3]));
+            for (int meta = 0; meta <= 6; meta++) {
+                int fracLength = (meta + 1) / 2;
+                Assert.assertEquals(legacyTimestamp(0, 0, meta), value(LogEvent.MYSQL_TYPE_TIMESTAMP2, meta, new byte[4 + fracLength]));
+                Assert.assertEquals(legacyDateTime(0, 0, 0, 0, 0, 0, 0, meta), value(LogEvent.MYSQL_TYPE_DATETIME2, meta, bigEndian(0x8000000000L, 5, fracLength)));
+                Assert.assertEquals(legacyTime(false, 0, 0, 0, 0, meta), value(LogEvent.MYSQL_TYPE_TIME2, meta, bigEndian(meta >= 5 ? 0x800000000000L : 0x800000L, meta >= 5 ? 6 : 3, meta >= 5 ? 0 : fracLength)));
+            }
+            // TIMESTAMP: 2020-03-08 01:59:59 EST，下一秒切换到夏令时
+            long seconds = epochSecond(LocalDateTime.of(2020, 3, 8, 6, 59, 59), "UTC");
+            Assert.assertEquals("2020-03-08 01:59:59", value(LogEvent.MYSQL_TYPE_TIMESTAMP, 0, littleEndian(seconds, 4)));
+            Assert.assertEquals("2020-03-08 03:00:00.12", value(LogEvent.MYSQL_TYPE_TIMESTAMP2, 2, concat(bigEndian(seconds + 1, 4, 0), new byte[]{12})));
+            Assert.assertEquals(legacyTimestamp(seconds + 1, 120000, 2), value(LogEvent.MYSQL_TYPE_TIMESTAMP2, 2, concat(bigEndian(seconds + 1, 4, 0), new byte[]{12})));
+            // DATETIME: YYYYMMDDhhmmss
+            Assert.assertEquals("2020-01-02 03:04:05", value(LogEvent.MYSQL_TYPE_DATETIME, 0, littleEndian(20200102030405L, 8)));
+            // DATETIME2(6)
+            long ymd = ((2020 * 13L + 1) << 5) | 2;
+            long hms = (3 << 12) | (4 << 6) | 5;
+            Assert.assertEquals("2020-01-02 03:04:05.000123", value(LogEvent.MYSQL_TYPE_DATETIME2, 6, concat(bigEndian(((ymd << 17) | hms) + 0x8000000000L, 5, 0), bigEndian(123, 3, 0))));
+            // DATE
+            Assert.assertEquals("2020-01-02", value(LogEvent.MYSQL_TYPE_DATE, 0, littleEndian(2020 * 512 + 32 + 2, 3)));
+            // TIME: 负数以及大于100的小时
+            Assert.assertEquals("-838:59:59", value(LogEvent.MYSQL_TYPE_TIME, 0, littleEndian(-8385959, 3)));
+            Assert.assertEquals("12:34:56", value(LogEvent.MYSQL_TYPE_TIME, 0, littleEndian(123456, 3)));
+            // TIME2负数
+            long time = (1 << 12) | (2 << 6) | 3;
+            Assert.assertEquals("-01:02:03", value(LogEvent.MYSQL_TYPE_TIME2, 0, bigEndian(0x800000L - time, 3, 0)));
+            // -00:00:01.01 的磁盘格式为 7FFFFE.FF
+            Assert.assertEquals("-00:00:01.01", value(LogEvent.MYSQL_TYPE_TIME2, 2, new byte[]{0x7f, (byte) 0xff, (byte) 0xfe, (byte) 0xff}));
+            Assert.assertEquals("-00:00:01.0100", value(LogEvent.MYSQL_TYPE_TIME2, 4, new byte[]{0x7f, (byte) 0xff, (byte) 0xfe, (byte) 0xff, (byte) 0x9c}));
+            Assert.assertEquals("-01:02:03.000004", value(LogEvent.MYSQL_TYPE_TIME2, 6, bigEndian(0x800000000000L - ((time << 24) | 4), 6, 0)));
+            Assert.assertEquals("-01:02:03.00000", value(LogEvent.MYSQL_TYPE_TIME2, 5, bigEndian(0x800000000000L - ((time << 24) | 4), 6, 0)));
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    // ============================ 原来的实现 ======================
+
+    private static String legacyDateTime(int year, int month, int day, int hour, int minute, int second, int frac, int meta) {
+        String value;
+        if (year == 0 && month == 0 && day == 0 && hour == 0 && minute == 0 && second == 0) {
+            value = "0000-00-00 00:00:00";
+        } else {
+            StringBuilder builder = new StringBuilder(26);
+            RowsLogBuffer.appendNumber4(builder, year);
+            builder.append('-');
+            RowsLogBuffer.appendNumber2(builder, month);
+            builder.append('-');
+            RowsLogBuffer.appendNumber2(builder, day);
+            builder.append(' ');
+            RowsLogBuffer.appendNumber2(builder, hour);
+            builder.append(':');
+            RowsLogBuffer.appendNumber2(builder, minute);
+            builder.append(':');
+            RowsLogBuffer.appendNumber2(builder, second);
+            value = builder.toString();
+        }
+        return withFraction(value, frac, meta);
+    }
+
+    private static String legacyDate(int year, int month, int day) {
+        StringBuilder builder = new StringBuilder(12);
+        RowsLogBuffer.appendNumber4(builder, year);
+        builder.append('-');
+        RowsLogBuffer.appendNumber2(builder, month);
+        builder.append('-');
+        RowsLogBuffer.appendNumber2(builder, day);
+        return builder.toString();
+    }
+
+    private static String legacyTimestamp(long seconds, int frac, int meta) {
+        String value;
+        if (seconds == 0) {
+            value = "0000-00-00 00:00:00";
+        } else {
+            value = new Timestamp(seconds * 1000).toString();
+            // 去掉毫秒精度.0
+            value = value.substring(0, value.length() - 2);
+        }
+        return withFraction(value, frac, meta);
+    }
+
+    private static String legacyTime(boolean negative, int hour, int minute, int second, int frac, int meta) {
+        StringBuilder builder = new StringBuilder(12);
+        if (negative) {
+            builder.append('-');
+        }
+        if (hour > 100) {
+            builder.append(hour);
+        } else {
+            RowsLogBuffer.appendNumber2(builder, hour);
+        }
+        builder.append(':');
+        RowsLogBuffer.appendNumber2(builder, minute);
+        builder.append(':');
+        RowsLogBuffer.appendNumber2(builder, second);
+        return withFraction(builder.toString(), frac, meta);
+    }
+
+    private static String withFraction(String second, int frac, int meta) {
+        if (meta >= 1) {
+            return second + '.' + RowsLogBuffer.usecondsToStr(frac, meta).substring(0, meta);
+        }
+        return second;
+    }
+
+    // ============================ helper method ======================
+
+    private static String value(int type, int meta, byte[] bytes) {
+        // 1字节的null bitmap
+        byte[] row = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, row, 1, bytes.length);
+        RowsLogBuffer rowsBuffer = new RowsLogBuffer(new LogBuffer(row, 0, row.length), 1, "UTF-8", 0, false);
+        Assert.assertTrue(rowsBuffer.nextOneRow(COLUMNS));
+        return (String) rowsBuffer.nextValue("c", 0, type, meta);
+    }
+
+    private static long epochSecond(LocalDateTime dateTime, String zone) {
+        return dateTime.atZone(ZoneId.of(zone)).toEpochSecond();
+    }
+
+    private static byte[] littleEndian(long value, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (value >>> (8 * i));
+        }
+        return bytes;
+    }
+
+    /**
+     * 大端写入value，后面补padding个0字节
+     */
+    private static byte[] bigEndian(long value, int length, int padding) {
+        byte[] bytes = new byte[length + padding];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (value >>> (8 * (length - 1 - i)));
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] bytes = new byte[a.length + b.length];
+        System.arraycopy(a, 0, bytes, 0, a.length);
+        System.arraycopy(b, 0, bytes, a.length, b.length);
+        return bytes;
+    }
+}
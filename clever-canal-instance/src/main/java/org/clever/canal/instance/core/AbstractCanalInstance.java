@@ -12,6 +12,7 @@ import org.clever.canal.parse.inbound.AbstractEventParser;
 import org.clever.canal.parse.inbound.group.GroupEventParser;
 import org.clever.canal.parse.inbound.mysql.MysqlEventParser;
 import org.clever.canal.parse.index.CanalLogPositionManager;
+import org.clever.canal.parse.index.TimestampPositionIndex;
 import org.clever.canal.protocol.CanalEntry;
 import org.clever.canal.protocol.ClientIdentity;
 import org.clever.canal.sink.CanalEventSink;
@@ -61,6 +62,10 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
      * mq的配置
      */
     protected CanalMQConfig mqConfig;
+    /**
+     * getWithoutAck自适应batchSize的配置
+     */
+    protected CanalAdaptiveBatchConfig adaptiveBatchConfig;
 
     /**
      * 客户端发生订阅/取消订阅行为
@@ -183,6 +188,11 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
         return mqConfig;
     }
 
+    @Override
+    public CanalAdaptiveBatchConfig getAdaptiveBatchConfig() {
+        return adaptiveBatchConfig;
+    }
+
     /**
      * 启动binlog解析之前
      */
@@ -247,6 +257,10 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
             if (!logPositionManager.isStart()) {
                 logPositionManager.start();
             }
+            TimestampPositionIndex timestampPositionIndex = abstractEventParser.getTimestampPositionIndex();
+            if (timestampPositionIndex != null && !timestampPositionIndex.isStart()) {
+                timestampPositionIndex.start();
+            }
         }
         if (eventParser instanceof MysqlEventParser) {
             MysqlEventParser mysqlEventParser = (MysqlEventParser) eventParser;
@@ -271,6 +285,10 @@ public class AbstractCanalInstance extends AbstractCanalLifeCycle implements Can
             if (logPositionManager.isStart()) {
                 logPositionManager.stop();
             }
+            TimestampPositionIndex timestampPositionIndex = abstractEventParser.getTimestampPositionIndex();
+            if (timestampPositionIndex != null && timestampPositionIndex.isStart()) {
+                timestampPositionIndex.stop();
+            }
         }
         if (eventParser instanceof MysqlEventParser) {
             MysqlEventParser mysqlEventParser = (MysqlEventParser) eventParser;
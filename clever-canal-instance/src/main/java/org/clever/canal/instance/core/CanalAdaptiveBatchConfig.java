@@ -0,0 +1,27 @@
+package org.clever.canal.instance.core;
+
+import lombok.Data;
+
+/**
+ * getWithoutAck自适应batchSize的配置
+ */
+@Data
+public class CanalAdaptiveBatchConfig {
+
+    /**
+     * 是否启用
+     */
+    private boolean enabled = false;
+    /**
+     * 最小的batchSize
+     */
+    private int minBatchSize = 1;
+    /**
+     * 最大的batchSize
+     */
+    private int maxBatchSize = 16384;
+    /**
+     * 目标ack延迟(毫秒)
+     */
+    private long targetLatency = 1000;
+}
@@ -37,4 +37,9 @@ public interface CanalInstance extends CanalLifeCycle {
     boolean subscribeChange(ClientIdentity identity);
 
     CanalMQConfig getMqConfig();
+
+    /**
+     * getWithoutAck自适应batchSize的配置
+     */
+    CanalAdaptiveBatchConfig getAdaptiveBatchConfig();
 }
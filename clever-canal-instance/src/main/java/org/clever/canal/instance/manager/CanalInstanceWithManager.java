@@ -7,6 +7,7 @@ import org.clever.canal.common.utils.CollectionUtils;
 import org.clever.canal.common.utils.JsonUtils;
 import org.clever.canal.filter.aviater.AviaterRegexFilter;
 import org.clever.canal.instance.core.AbstractCanalInstance;
+import org.clever.canal.instance.core.CanalAdaptiveBatchConfig;
 import org.clever.canal.instance.manager.model.*;
 import org.clever.canal.meta.FileMixedMetaManager;
 import org.clever.canal.meta.MemoryMetaManager;
@@ -23,12 +24,18 @@ import org.clever.canal.parse.index.CanalLogPositionManager;
 import org.clever.canal.parse.index.FailBackLogPositionManager;
 import org.clever.canal.parse.index.MemoryLogPositionManager;
 import org.clever.canal.parse.index.MetaLogPositionManager;
+import org.clever.canal.parse.index.StoreCheckpointLogPositionManager;
+import org.clever.canal.parse.index.TimestampPositionIndex;
 import org.clever.canal.parse.support.AuthenticationInfo;
 import org.clever.canal.protocol.position.EntryPosition;
 import org.clever.canal.sink.entry.EntryEventSink;
 import org.clever.canal.sink.entry.group.GroupEventSink;
 import org.clever.canal.store.AbstractCanalStoreScavenge;
+import org.clever.canal.store.file.FileEventStoreWithBuffer;
+import org.clever.canal.store.memory.ColumnarEventStoreWithBuffer;
+import org.clever.canal.store.memory.LockFreeEventStoreWithBuffer;
 import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
+import org.clever.canal.store.memory.wait.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +77,8 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
         initEventSink();
         // 初始化eventParser;
         initEventParser();
+        // 初始化自适应batchSize配置
+        initAdaptiveBatchConfig();
         // 基础工具，需要提前start，会有先订阅再根据filter条件启动parse的需求
         if (!alarmHandler.isStart()) {
             alarmHandler.start();
@@ -138,8 +147,48 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             memoryEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
             memoryEventStore.setBatchMode(parameters.getStorageBatchMode());
             memoryEventStore.setRaw(parameters.isMemoryStorageRawEntry());
+            memoryEventStore.setOffHeap(parameters.isMemoryStorageOffHeap());
+            memoryEventStore.setOffHeapSlabSize(parameters.getMemoryStorageOffHeapSlabSize());
+            memoryEventStore.setOffHeapMaxSize(parameters.getMemoryStorageOffHeapMaxSize());
             memoryEventStore.setDdlIsolation(parameters.isDdlIsolation());
+            memoryEventStore.setLaggardPolicy(parameters.getStorageLaggardPolicy());
+            memoryEventStore.setCheckpointDir(parameters.getMemoryStorageCheckpointDir());
             eventStore = memoryEventStore;
+        } else if (StorageMode.MEMORY_LOCK_FREE.equals(mode)) {
+            LockFreeEventStoreWithBuffer lockFreeEventStore = new LockFreeEventStoreWithBuffer();
+            lockFreeEventStore.setBufferSize(parameters.getMemoryStorageBufferSize());
+            lockFreeEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
+            lockFreeEventStore.setBatchMode(parameters.getStorageBatchMode());
+            lockFreeEventStore.setRaw(parameters.isMemoryStorageRawEntry());
+            lockFreeEventStore.setOffHeap(parameters.isMemoryStorageOffHeap());
+            lockFreeEventStore.setOffHeapSlabSize(parameters.getMemoryStorageOffHeapSlabSize());
+            lockFreeEventStore.setOffHeapMaxSize(parameters.getMemoryStorageOffHeapMaxSize());
+            lockFreeEventStore.setDdlIsolation(parameters.isDdlIsolation());
+            lockFreeEventStore.setWaitStrategy(createStoreWaitStrategy(parameters.getMemoryStorageWaitStrategy()));
+            eventStore = lockFreeEventStore;
+        } else if (StorageMode.MEMORY_COLUMNAR.equals(mode)) {
+            ColumnarEventStoreWithBuffer columnarEventStore = new ColumnarEventStoreWithBuffer();
+            columnarEventStore.setBufferSize(parameters.getMemoryStorageBufferSize());
+            columnarEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
+            columnarEventStore.setBatchMode(parameters.getStorageBatchMode());
+            columnarEventStore.setRaw(parameters.isMemoryStorageRawEntry());
+            columnarEventStore.setOffHeap(parameters.isMemoryStorageOffHeap());
+            columnarEventStore.setOffHeapSlabSize(parameters.getMemoryStorageOffHeapSlabSize());
+            columnarEventStore.setOffHeapMaxSize(parameters.getMemoryStorageOffHeapMaxSize());
+            columnarEventStore.setDdlIsolation(parameters.isDdlIsolation());
+            eventStore = columnarEventStore;
+        } else if (StorageMode.FILE.equals(mode) || StorageMode.MIXED.equals(mode)) {
+            FileEventStoreWithBuffer fileEventStore = new FileEventStoreWithBuffer();
+            fileEventStore.setBufferSize(parameters.getMemoryStorageBufferSize());
+            fileEventStore.setBufferMemUnit(parameters.getMemoryStorageBufferMemUnit());
+            fileEventStore.setBatchMode(parameters.getStorageBatchMode());
+            fileEventStore.setRaw(parameters.isMemoryStorageRawEntry());
+            fileEventStore.setDdlIsolation(parameters.isDdlIsolation());
+            fileEventStore.setDataDir(parameters.getFileStorageDataDir());
+            fileEventStore.setSegmentSize(parameters.getFileStorageSegmentSize());
+            fileEventStore.setMaxStorageSize(parameters.getFileStorageMaxSize());
+            fileEventStore.setMixed(StorageMode.MIXED.equals(mode));
+            eventStore = fileEventStore;
         } else {
             throw new CanalException("unsupported StorageMode for " + mode);
         }
@@ -155,10 +204,28 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             if (StorageScavengeMode.ON_SCHEDULE.equals(scavengeMode)) {
                 eventScavengeStore.setScavengeSchedule(parameters.getScavengeSchedule());
             }
+            eventScavengeStore.setHeapPressureThreshold(parameters.getScavengeHeapPressureThreshold());
         }
         logger.info("[{}-{}] Init eventStore end! -> load CanalEventStore: {}", canalId, destination, eventStore.getClass().getName());
     }
 
+    /**
+     * 根据配置创建store的等待策略
+     */
+    protected StoreWaitStrategy createStoreWaitStrategy(StorageWaitStrategy waitStrategy) {
+        if (waitStrategy == null || StorageWaitStrategy.BLOCKING.equals(waitStrategy)) {
+            return new BlockingStoreWaitStrategy();
+        } else if (StorageWaitStrategy.SLEEPING.equals(waitStrategy)) {
+            return new SleepingStoreWaitStrategy();
+        } else if (StorageWaitStrategy.YIELDING.equals(waitStrategy)) {
+            return new YieldingStoreWaitStrategy();
+        } else if (StorageWaitStrategy.BUSY_SPIN.equals(waitStrategy)) {
+            return new BusySpinStoreWaitStrategy();
+        } else {
+            throw new CanalException("unsupported StorageWaitStrategy for " + waitStrategy);
+        }
+    }
+
     /**
      * 初始化eventSink
      */
@@ -174,10 +241,23 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
         if (eventSink instanceof EntryEventSink) {
             ((EntryEventSink) eventSink).setFilterTransactionEntry(false);
             ((EntryEventSink) eventSink).setEventStore(getEventStore());
+            ((EntryEventSink) eventSink).setCompactRowData(parameters.isSinkCompactRowData());
+            ((EntryEventSink) eventSink).setCompactRowDataMaxSize(parameters.getSinkCompactRowDataMaxSize());
         }
         logger.info("[{}-{}] Init eventSink end! -> load CanalEventSink: {}", canalId, destination, eventSink.getClass().getName());
     }
 
+    /**
+     * 初始化getWithoutAck自适应batchSize配置
+     */
+    protected void initAdaptiveBatchConfig() {
+        adaptiveBatchConfig = new CanalAdaptiveBatchConfig();
+        adaptiveBatchConfig.setEnabled(parameters.isAdaptiveBatchEnable());
+        adaptiveBatchConfig.setMinBatchSize(parameters.getAdaptiveBatchMinSize());
+        adaptiveBatchConfig.setMaxBatchSize(parameters.getAdaptiveBatchMaxSize());
+        adaptiveBatchConfig.setTargetLatency(parameters.getAdaptiveBatchTargetLatency());
+    }
+
     /**
      * 初始化eventParser
      */
@@ -276,7 +356,12 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             mysqlEventParser.setFallbackIntervalInSeconds(parameters.getFallbackIntervalInSeconds());
             mysqlEventParser.setProfilingEnabled(false);
             mysqlEventParser.setFilterTableError(parameters.isFilterTableError());
+            mysqlEventParser.setUpdateChangedColumnsOnly(parameters.isUpdateChangedColumnsOnly());
+            mysqlEventParser.setUpdateKeepBeforeImage(parameters.isUpdateKeepBeforeImage());
+            mysqlEventParser.setTypedColumnValue(parameters.isTypedColumnValue());
             mysqlEventParser.setParallel(parameters.isParallel());
+            mysqlEventParser.setParallelBufferPoolMaxSize(parameters.getParallelBufferPoolMaxSize());
+            mysqlEventParser.setParallelRowsShardSize(parameters.getParallelRowsShardSize());
             mysqlEventParser.setGtIdMode(parameters.isGtIdEnable());
             // TsBb
             mysqlEventParser.setTsDbSnapshotInterval(parameters.getTsDbSnapshotInterval());
@@ -302,7 +387,12 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             localBinlogEventParser.setDetectingEnable(parameters.isDetectingEnable());
             localBinlogEventParser.setDetectingIntervalInSeconds(parameters.getDetectingIntervalInSeconds());
             localBinlogEventParser.setFilterTableError(parameters.isFilterTableError());
+            localBinlogEventParser.setUpdateChangedColumnsOnly(parameters.isUpdateChangedColumnsOnly());
+            localBinlogEventParser.setUpdateKeepBeforeImage(parameters.isUpdateKeepBeforeImage());
+            localBinlogEventParser.setTypedColumnValue(parameters.isTypedColumnValue());
             localBinlogEventParser.setParallel(parameters.isParallel());
+            localBinlogEventParser.setParallelBufferPoolMaxSize(parameters.getParallelBufferPoolMaxSize());
+            localBinlogEventParser.setParallelRowsShardSize(parameters.getParallelRowsShardSize());
             // 数据库信息，反查表结构时需要
             if (!CollectionUtils.isEmpty(dbAddresses)) {
                 AuthenticationInfo authInfo = new AuthenticationInfo(dbAddresses.get(0), parameters.getDbUsername(), parameters.getDbPassword(), parameters.getDefaultDatabaseName());
@@ -319,6 +409,8 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
         if (eventParser instanceof AbstractEventParser) {
             AbstractEventParser abstractEventParser = (AbstractEventParser) eventParser;
             abstractEventParser.setTransactionSize(parameters.getTransactionSize());
+            abstractEventParser.setTransactionAsyncFlush(parameters.isTransactionAsyncFlush());
+            abstractEventParser.setTransactionFlushQueueSize(parameters.getTransactionFlushQueueSize());
             abstractEventParser.setLogPositionManager(initLogPositionManager());
             abstractEventParser.setAlarmHandler(getAlarmHandler());
             abstractEventParser.setEventSink(getEventSink());
@@ -338,6 +430,13 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
             // 初始化haController，绑定与eventParser的关系，haController会控制eventParser
             CanalHAController haController = initHaController();
             mysqlEventParser.setHaController(haController);
+            // 一个destination有多个parser(group)时不启用，避免共用同一个索引文件
+            if (StringUtils.isNotBlank(parameters.getTimestampIndexDir()) && getGroupSize() <= 1) {
+                TimestampPositionIndex timestampPositionIndex = new TimestampPositionIndex(new File(parameters.getTimestampIndexDir()), destination);
+                timestampPositionIndex.setInterval(parameters.getTimestampIndexInterval());
+                timestampPositionIndex.setIntervalBytes(parameters.getTimestampIndexBytes());
+                mysqlEventParser.setTimestampPositionIndex(timestampPositionIndex);
+            }
         }
         return eventParser;
     }
@@ -372,6 +471,10 @@ public class CanalInstanceWithManager extends AbstractCanalInstance {
         } else {
             throw new CanalException("unsupported LogPositionMode for " + logPositionMode);
         }
+        if (eventStore instanceof MemoryEventStoreWithBuffer && StringUtils.isNotBlank(parameters.getMemoryStorageCheckpointDir())) {
+            // store从检查点恢复数据之后，parser从恢复的位置继续解析
+            logPositionManager = new StoreCheckpointLogPositionManager(logPositionManager, (MemoryEventStoreWithBuffer) eventStore);
+        }
         logger.info("[{}-{}] Init logPositionManager end! -> load CanalLogPositionManager:{}", canalId, destination, logPositionManager.getClass().getName());
         return logPositionManager;
     }
@@ -6,6 +6,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.clever.canal.common.CanalException;
 import org.clever.canal.common.utils.CanalToStringStyle;
 import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.LaggardPolicy;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -63,6 +64,42 @@ public class CanalParameter implements Serializable {
      * 使用Embedded模式时, 建议关闭raw模式(raw = false)<br />
      */
     private boolean memoryStorageRawEntry = true;
+    /**
+     * StorageMode.MEMORY、StorageMode.MEMORY_LOCK_FREE、StorageMode.MEMORY_COLUMNAR时，raw模式的原始数据是否存放到堆外内存
+     */
+    private boolean memoryStorageOffHeap = false;
+    /**
+     * StorageMode.MEMORY、StorageMode.MEMORY_LOCK_FREE、StorageMode.MEMORY_COLUMNAR时，堆外内存slab的大小
+     */
+    private int memoryStorageOffHeapSlabSize = 4 * 1024 * 1024;
+    /**
+     * StorageMode.MEMORY、StorageMode.MEMORY_LOCK_FREE、StorageMode.MEMORY_COLUMNAR时，堆外内存的最大使用量
+     */
+    private long memoryStorageOffHeapMaxSize = 512L * 1024 * 1024;
+    /**
+     * StorageMode.MEMORY_LOCK_FREE时，阻塞put/get的等待策略
+     */
+    private StorageWaitStrategy memoryStorageWaitStrategy = StorageWaitStrategy.BLOCKING;
+    /**
+     * StorageMode.MEMORY时，多客户端消费时最慢的客户端阻塞数据写入的处理策略
+     */
+    private LaggardPolicy storageLaggardPolicy = LaggardPolicy.BLOCK;
+    /**
+     * StorageMode.MEMORY时，正常停止时保存未ack数据的检查点目录(启动时重新加载，客户端可以立即继续消费)，为空表示不启用
+     */
+    private String memoryStorageCheckpointDir;
+    /**
+     * StorageMode.FILE、StorageMode.MIXED时，segment文件存储路径
+     */
+    private String fileStorageDataDir = "./event-store";
+    /**
+     * StorageMode.FILE、StorageMode.MIXED时，单个segment文件的大小
+     */
+    private int fileStorageSegmentSize = 64 * 1024 * 1024;
+    /**
+     * StorageMode.FILE、StorageMode.MIXED时，segment文件占用的最大存储空间
+     */
+    private long fileStorageMaxSize = 16L * 1024 * 1024 * 1024;
     /**
      * 是否将ddl单条返回
      */
@@ -72,9 +109,41 @@ public class CanalParameter implements Serializable {
      */
     private StorageScavengeMode storageScavengeMode = StorageScavengeMode.ON_ACK;
     /**
-     * StorageScavengeMode.ON_SCHEDULE时，调度规则
+     * StorageScavengeMode.ON_SCHEDULE时，调度规则(固定间隔"30s"/"5m"，或者cron表达式"0 0/5 * * * ?")
      */
     private String scavengeSchedule;
+    /**
+     * 堆内存使用率(0~1)超过该值时在后台回收store中已经ack的数据，小于等于0表示不启用(例如: 0.9)
+     */
+    private double scavengeHeapPressureThreshold = 0;
+
+    // ============================================================================================================================== CanalServer
+    /**
+     * 是否按客户端的ack延迟自适应调整getWithoutAck的batchSize
+     */
+    private boolean adaptiveBatchEnable = false;
+    /**
+     * adaptiveBatchEnable = true时，最小的batchSize
+     */
+    private int adaptiveBatchMinSize = 1;
+    /**
+     * adaptiveBatchEnable = true时，最大的batchSize
+     */
+    private int adaptiveBatchMaxSize = 16384;
+    /**
+     * adaptiveBatchEnable = true时，目标ack延迟(单位：ms)
+     */
+    private long adaptiveBatchTargetLatency = 1000;
+
+    // ============================================================================================================================== CanalEventSink
+    /**
+     * 是否合并事务中相邻的同表、同类型的ROW_DATA数据(减少store/server/client中每条数据的额外开销)
+     */
+    private boolean sinkCompactRowData = false;
+    /**
+     * sinkCompactRowData = true时，合并后数据的最大值(单位：字节)
+     */
+    private int sinkCompactRowDataMaxSize = 1024 * 1024;
 
     // ============================================================================================================================== CanalEventParser
     // ============================================================ AbstractEventParser
@@ -82,6 +151,14 @@ public class CanalParameter implements Serializable {
      * 支持处理的transaction事务大小
      */
     private int transactionSize = 1024;
+    /**
+     * 是否异步刷新事务(由单独的线程sink到store并记录位点，store满了时解析不会停顿)
+     */
+    private boolean transactionAsyncFlush = false;
+    /**
+     * transactionAsyncFlush = true时，等待刷新的事务队列容量
+     */
+    private int transactionFlushQueueSize = 64;
     /**
      * 匹配黑名单,忽略解析
      */
@@ -103,10 +180,30 @@ public class CanalParameter implements Serializable {
      * 是否忽略表解析异常
      */
     private boolean filterTableError = false;
+    /**
+     * update的after记录是否只输出有变化的列和主键(宽表只更新少数列时可以大幅减少数据量)
+     */
+    private boolean updateChangedColumnsOnly = false;
+    /**
+     * updateChangedColumnsOnly = true时，是否保留完整的before记录(false: before记录也只保留有变化的列和主键)
+     */
+    private boolean updateKeepBeforeImage = true;
+    /**
+     * 是否使用Column中类型化的字段值(整数、浮点、二进制、decimal、时间微秒)代替文本value(减少字符串格式化和下游解析开销)
+     */
+    private boolean typedColumnValue = false;
     /**
      * 是否开启并行解析模式
      */
     private boolean parallel = false;
+    /**
+     * 并行解析时存放binlog事件的内存池中空闲内存的最大值，小于等于0表示不缓存(每个事件都分配新的byte[])
+     */
+    private long parallelBufferPoolMaxSize = 64L * 1024 * 1024;
+    /**
+     * 并行解析时行数据超过该值的事件(例如一次更新几千行的update)按行拆分成多个分片并行解析，小于等于0表示不拆分(例如: 1048576)
+     */
+    private int parallelRowsShardSize = 0;
     /**
      * 是否开启GtId
      */
@@ -232,6 +329,20 @@ public class CanalParameter implements Serializable {
      */
     private LogPositionMode logPositionMode = LogPositionMode.MEMORY;
 
+    // ============================================================================================================================== TimestampPositionIndex
+    /**
+     * 时间戳到binlog位点的稀疏索引文件存储路径，为空表示不启用(按时间戳、位点定位时从binlog文件头扫描)
+     */
+    private String timestampIndexDir;
+    /**
+     * 两条索引记录的最小时间间隔(单位：ms)
+     */
+    private long timestampIndexInterval = 1000;
+    /**
+     * 两条索引记录的最小binlog间隔(单位：字节)
+     */
+    private long timestampIndexBytes = 16L * 1024 * 1024;
+
     /**
      * 新增一个数据源组(主库，备库)
      */
@@ -11,12 +11,20 @@ public enum StorageMode {
      * 内存存储模式
      */
     MEMORY,
-//        /**
-//         * 文件存储模式
-//         */
-//        FILE,
-//        /**
-//         * 混合模式，内存+文件
-//         */
-//        MIXED,
+    /**
+     * 无锁内存存储模式(单生产者/多消费者，put/get不竞争同一把锁)
+     */
+    MEMORY_LOCK_FREE,
+    /**
+     * 列式内存存储模式(位点信息保存在基本类型数组中，不保存Event对象)
+     */
+    MEMORY_COLUMNAR,
+    /**
+     * 文件存储模式(内存映射的segment文件)
+     */
+    FILE,
+    /**
+     * 混合模式，内存+文件(内存不足时溢出到文件)
+     */
+    MIXED,
 }
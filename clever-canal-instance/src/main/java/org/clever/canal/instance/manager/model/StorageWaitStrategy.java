@@ -0,0 +1,24 @@
+package org.clever.canal.instance.manager.model;
+
+/**
+ * StorageMode.MEMORY_LOCK_FREE时，阻塞put/get的等待策略
+ */
+@SuppressWarnings("unused")
+public enum StorageWaitStrategy {
+    /**
+     * 基于锁和条件变量等待，CPU占用最低
+     */
+    BLOCKING,
+    /**
+     * 自旋 + 让出CPU + 短暂休眠
+     */
+    SLEEPING,
+    /**
+     * 自旋 + 让出CPU
+     */
+    YIELDING,
+    /**
+     * 忙等待，延迟最低，独占一个CPU核心
+     */
+    BUSY_SPIN,
+}
@@ -16,6 +16,7 @@ import org.clever.canal.parse.exception.CanalParseException;
 import org.clever.canal.parse.exception.PositionNotFoundException;
 import org.clever.canal.parse.inbound.mysql.MysqlMultiStageCoprocessor;
 import org.clever.canal.parse.index.CanalLogPositionManager;
+import org.clever.canal.parse.index.TimestampPositionIndex;
 import org.clever.canal.parse.support.AuthenticationInfo;
 import org.clever.canal.protocol.CanalEntry;
 import org.clever.canal.protocol.CanalEntry.Entry;
@@ -48,6 +49,12 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     @Setter
     @Getter
     protected CanalLogPositionManager logPositionManager = null;
+    /**
+     * 时间戳到binlog位点的稀疏索引(为空表示不记录)
+     */
+    @Setter
+    @Getter
+    protected TimestampPositionIndex timestampPositionIndex = null;
     /**
      * binlog event事件消费(连接parse 与 store)
      */
@@ -142,7 +149,7 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
     /**
      * 解析binlog的线程
      */
-    protected Thread parseThread = null;
+    protected volatile Thread parseThread = null;
     /**
      * 解析binlog的线程异常处理
      */
@@ -156,6 +163,16 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
      */
     @Setter
     protected int transactionSize = 1024;
+    /**
+     * 是否异步刷新事务(由单独的线程sink、记录位点，解析不需要等待store)
+     */
+    @Setter
+    protected boolean transactionAsyncFlush = false;
+    /**
+     * 异步刷新时，等待刷新的事务队列容量
+     */
+    @Setter
+    protected int transactionFlushQueueSize = 64;
     /**
      * 对事务的支持
      */
@@ -301,6 +318,7 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
             if (position != null) {
                 // 可能position为空
                 logPositionManager.persistLogPosition(AbstractEventParser.this.destination, position);
+                appendTimestampIndex(transaction);
             }
         });
     }
@@ -313,6 +331,17 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         MDC.put("destination", destination);
         // 设置buffer大小
         transactionBuffer.setBufferSize(transactionSize);
+        transactionBuffer.setAsyncFlush(transactionAsyncFlush);
+        transactionBuffer.setFlushQueueSize(transactionFlushQueueSize);
+        transactionBuffer.setDestination(destination);
+        // 异步刷新失败时中断解析线程，由解析线程的异常处理统一重置并重新dump
+        transactionBuffer.setFlushExceptionHandler(e -> {
+            logger.error("async flush transaction failed, interrupt the parse thread", e);
+            Thread thread = parseThread;
+            if (running && thread != null) {
+                thread.interrupt();
+            }
+        });
         // 初始化缓冲队列
         transactionBuffer.start();
 
@@ -554,7 +583,7 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
 
     // 初始化一下
     protected LogPosition buildLastTransactionPosition(List<CanalEntry.Entry> entries) {
-        for (int i = entries.size() - 1; i > 0; i--) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
             CanalEntry.Entry entry = entries.get(i);
             // 尽量记录一个事务做为position
             if (entry.getEntryType() == EntryType.TRANSACTION_END) {
@@ -564,6 +593,31 @@ public abstract class AbstractEventParser<EVENT> extends AbstractCanalLifeCycle
         return null;
     }
 
+    /**
+     * 记录最后一个事务结束之后的位点到时间戳索引
+     */
+    protected void appendTimestampIndex(List<CanalEntry.Entry> entries) {
+        if (timestampPositionIndex == null) {
+            return;
+        }
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            CanalEntry.Entry entry = entries.get(i);
+            if (entry.getEntryType() == EntryType.TRANSACTION_END) {
+                Header header = entry.getHeader();
+                // 事务结束事件之后的位点，可以直接从该位点开始dump
+                EntryPosition position = new EntryPosition(
+                        header.getLogfileName(),
+                        header.getLogfileOffset() + header.getEventLength(),
+                        header.getExecuteTime(),
+                        header.getServerId()
+                );
+                position.setGtId(header.getGtId());
+                timestampPositionIndex.append(position);
+                return;
+            }
+        }
+    }
+
     // 初始化一下
     protected LogPosition buildLastPosition(CanalEntry.Entry entry) {
         LogPosition logPosition = new LogPosition();
@@ -4,20 +4,36 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.clever.canal.common.AbstractCanalLifeCycle;
 import org.clever.canal.common.utils.Assert;
+import org.clever.canal.common.utils.NamedThreadFactory;
+import org.clever.canal.parse.exception.CanalParseException;
 import org.clever.canal.protocol.CanalEntry;
 import org.clever.canal.protocol.CanalEntry.EventType;
 import org.clever.canal.store.exception.CanalStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 缓冲event队列，提供按事务刷新数据的机制 (环形队列)
+ *
+ * <pre>
+ * asyncFlush = true时，满足刷新条件的事务先放入有界队列(环形队列的空间立即释放)，由单独的线程按顺序调用flushCallback，
+ * sink阻塞(store满了)时解析线程可以继续解析，直到队列满了才等待
+ * 1. 只有一个刷新线程，事务严格按照放入的顺序刷新
+ * 2. 刷新失败后丢弃之后的所有事务(不会跳过失败的事务继续sink、记录位点)，下一次add时抛出异常，由上层重置后重新dump
+ * 3. 刷新失败时立即通知flushExceptionHandler，解析线程不需要等到下一次add才感知失败
+ * </pre>
  */
 @SuppressWarnings("WeakerAccess")
 @NoArgsConstructor
 public class EventTransactionBuffer extends AbstractCanalLifeCycle {
+    private static final Logger logger = LoggerFactory.getLogger(EventTransactionBuffer.class);
     /**
      * 队列位置
      */
@@ -47,6 +63,51 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
      * 事务刷新机制(事务刷新回调)
      */
     private TransactionFlushCallback flushCallback;
+    /**
+     * 所属的destination(用于刷新线程的名称)
+     */
+    @Setter
+    private String destination;
+    /**
+     * 是否异步刷新事务
+     */
+    @Setter
+    private boolean asyncFlush = false;
+    /**
+     * asyncFlush = true时，等待刷新的事务队列容量(事务数量)
+     */
+    @Setter
+    private int flushQueueSize = 64;
+    /**
+     * stop时等待刷新线程结束的最长时间(单位ms)
+     */
+    @Setter
+    private long flushStopTimeout = 10000;
+    /**
+     * asyncFlush = true时，刷新失败的处理(在刷新线程中调用)
+     */
+    @Setter
+    private ParserExceptionHandler flushExceptionHandler;
+    /**
+     * 等待刷新的事务队列
+     */
+    private BlockingQueue<FlushTask> flushQueue;
+    /**
+     * 刷新线程
+     */
+    private Thread flushThread;
+    /**
+     * 调用flushCallback时持有的锁(reset时等待正在刷新的事务结束)
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /**
+     * 每次reset加1，丢弃reset之前放入队列的事务
+     */
+    private final AtomicLong generation = new AtomicLong();
+    /**
+     * 异步刷新失败的异常
+     */
+    private volatile Throwable flushException;
 
     public EventTransactionBuffer(TransactionFlushCallback flushCallback) {
         this.flushCallback = flushCallback;
@@ -60,13 +121,33 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
         Assert.notNull(flushCallback, "flush callback is null!");
         indexMask = bufferSize - 1;
         entries = new CanalEntry.Entry[bufferSize];
+        if (asyncFlush) {
+            flushException = null;
+            flushQueue = new ArrayBlockingQueue<>(flushQueueSize);
+            flushThread = new NamedThreadFactory("EventTransactionBuffer-Flush-" + destination).newThread(this::flushLoop);
+            flushThread.start();
+        }
     }
 
     public void stop() throws CanalStoreException {
+        super.stop();
+        if (flushThread != null) {
+            flushThread.interrupt();
+            try {
+                flushThread.join(flushStopTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (flushThread.isAlive()) {
+                // flushCallback不响应中断，不再等待(刷新线程是daemon线程，isStart()为false之后不会再刷新新的事务)
+                logger.warn("flush thread {} is still running after {}ms, stop without waiting it", flushThread.getName(), flushStopTimeout);
+            }
+            flushThread = null;
+            flushQueue = null;
+        }
         putSequence.set(INIT_SEQUENCE);
         flushSequence.set(INIT_SEQUENCE);
         entries = null;
-        super.stop();
     }
 
     public void add(List<CanalEntry.Entry> entryList) throws InterruptedException {
@@ -103,6 +184,19 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
     }
 
     public void reset() {
+        if (flushThread != null) {
+            // 丢弃还没有刷新的事务，中断并等待正在刷新的事务
+            generation.incrementAndGet();
+            flushQueue.clear();
+            flushThread.interrupt();
+            flushLock.lock();
+            try {
+                flushQueue.clear();
+                flushException = null;
+            } finally {
+                flushLock.unlock();
+            }
+        }
         putSequence.set(INIT_SEQUENCE);
         flushSequence.set(INIT_SEQUENCE);
     }
@@ -131,12 +225,66 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
             for (long next = start; next <= end; next++) {
                 transaction.add(this.entries[getIndex(next)]);
             }
-            flushCallback.flush(transaction);
+            if (flushThread != null) {
+                checkFlushException();
+                // 放入队列之后环形队列的空间就可以复用了
+                flushQueue.put(new FlushTask(generation.get(), transaction));
+            } else {
+                flushCallback.flush(transaction);
+            }
             // flush成功后，更新flush位置
             flushSequence.set(end);
         }
     }
 
+    private void checkFlushException() {
+        Throwable exception = flushException;
+        if (exception != null) {
+            throw new CanalParseException("async flush transaction failed", exception);
+        }
+    }
+
+    /**
+     * 刷新线程，按顺序刷新队列中的事务
+     */
+    private void flushLoop() {
+        while (isStart()) {
+            FlushTask task;
+            try {
+                task = flushQueue.take();
+            } catch (InterruptedException e) {
+                // stop或者reset
+                continue;
+            }
+            Throwable failed = null;
+            flushLock.lock();
+            try {
+                // 清除reset时发出的中断(只针对reset之前的事务)
+                // noinspection ResultOfMethodCallIgnored (压制警告)
+                Thread.interrupted();
+                if (task.generation != generation.get() || flushException != null) {
+                    // reset之前的事务，或者前面的事务已经刷新失败
+                    continue;
+                }
+                flushCallback.flush(task.transaction);
+            } catch (Throwable e) {
+                if (task.generation == generation.get() && isStart()) {
+                    flushException = e;
+                    failed = e;
+                }
+            } finally {
+                flushLock.unlock();
+            }
+            if (failed != null && flushExceptionHandler != null) {
+                try {
+                    flushExceptionHandler.handle(failed);
+                } catch (Throwable e) {
+                    logger.warn("handle flush exception failed", e);
+                }
+            }
+        }
+    }
+
     /**
      * 查询是否有空位
      */
@@ -159,6 +307,16 @@ public class EventTransactionBuffer extends AbstractCanalLifeCycle {
         return eventType == EventType.INSERT || eventType == EventType.UPDATE || eventType == EventType.DELETE;
     }
 
+    private static class FlushTask {
+        private final long generation;
+        private final List<CanalEntry.Entry> transaction;
+
+        private FlushTask(long generation, List<CanalEntry.Entry> transaction) {
+            this.generation = generation;
+            this.transaction = transaction;
+        }
+    }
+
     /**
      * 事务刷新机制
      */
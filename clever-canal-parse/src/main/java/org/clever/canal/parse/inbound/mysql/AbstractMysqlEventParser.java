@@ -5,6 +5,7 @@ import lombok.Setter;
 import org.clever.canal.filter.CanalEventFilter;
 import org.clever.canal.filter.aviater.AviaterRegexFilter;
 import org.clever.canal.parse.CanalEventParser;
+import org.clever.canal.parse.dbsync.binlog.LogBufferPool;
 import org.clever.canal.parse.dbsync.binlog.LogEvent;
 import org.clever.canal.parse.exception.CanalParseException;
 import org.clever.canal.parse.inbound.AbstractEventParser;
@@ -103,6 +104,24 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser<LogEv
     @Getter
     @Setter
     protected boolean useDruidDdlFilter = true;
+    /**
+     * update的after记录是否只输出有变化的列和主键
+     */
+    @Getter
+    @Setter
+    protected boolean updateChangedColumnsOnly = false;
+    /**
+     * updateChangedColumnsOnly = true时，是否保留完整的before记录
+     */
+    @Getter
+    @Setter
+    protected boolean updateKeepBeforeImage = true;
+    /**
+     * 是否使用Column中类型化的字段值代替文本value
+     */
+    @Getter
+    @Setter
+    protected boolean typedColumnValue = false;
 
     // ================================================================================================================================= 配置信息
     /**
@@ -115,6 +134,22 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser<LogEv
      */
     @Getter
     private final AtomicLong eventsPublishBlockingTime = new AtomicLong(0L);
+    /**
+     * 并行解析时存放binlog事件的内存池中空闲内存的最大值(单位: 字节)，小于等于0表示不缓存
+     */
+    @Getter
+    @Setter
+    protected long parallelBufferPoolMaxSize = LogBufferPool.DEFAULT_MAX_POOLED_SIZE;
+    /**
+     * 并行解析时存放binlog事件的内存池
+     */
+    private volatile LogBufferPool logBufferPool;
+    /**
+     * 并行解析时行数据超过该值(单位: 字节)的事件按行拆分成多个分片并行解析，小于等于0表示不拆分
+     */
+    @Getter
+    @Setter
+    protected int parallelRowsShardSize = 0;
 
     @Override
     protected BinlogParser<LogEvent> buildParser() {
@@ -134,6 +169,9 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser<LogEv
         convert.setFilterRows(filterRows);
         convert.setFilterTableError(filterTableError);
         convert.setUseDruidDdlFilter(useDruidDdlFilter);
+        convert.setUpdateChangedColumnsOnly(updateChangedColumnsOnly);
+        convert.setUpdateKeepBeforeImage(updateKeepBeforeImage);
+        convert.setTypedColumnValue(typedColumnValue);
         return convert;
     }
 
@@ -235,9 +273,25 @@ public abstract class AbstractMysqlEventParser extends AbstractEventParser<LogEv
     protected MultiStageCoprocessor buildMultiStageCoprocessor() {
         MysqlMultiStageCoprocessor mysqlMultiStageCoprocessor = new MysqlMultiStageCoprocessor(parallelBufferSize, parallelThreadSize, (LogEventConvert) binlogParser, transactionBuffer, destination);
         mysqlMultiStageCoprocessor.setEventsPublishBlockingTime(eventsPublishBlockingTime);
+        mysqlMultiStageCoprocessor.setLogBufferPool(getLogBufferPool());
+        mysqlMultiStageCoprocessor.setRowsShardSize(parallelRowsShardSize);
         return mysqlMultiStageCoprocessor;
     }
 
+    /**
+     * 并行解析时存放binlog事件的内存池(第一次使用时创建)
+     */
+    public LogBufferPool getLogBufferPool() {
+        if (logBufferPool == null) {
+            synchronized (this) {
+                if (logBufferPool == null) {
+                    logBufferPool = new LogBufferPool(parallelBufferPoolMaxSize);
+                }
+            }
+        }
+        return logBufferPool;
+    }
+
     public void setEnableTsDb(boolean enableTsDb) {
         this.enableTsDb = enableTsDb;
         if (this.enableTsDb) {
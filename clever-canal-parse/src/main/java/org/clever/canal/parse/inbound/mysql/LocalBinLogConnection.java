@@ -3,6 +3,7 @@ package org.clever.canal.parse.inbound.mysql;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 import org.clever.canal.parse.dbsync.binlog.*;
+import org.clever.canal.parse.dbsync.binlog.event.FormatDescriptionLogEvent;
 import org.clever.canal.parse.dbsync.binlog.event.QueryLogEvent;
 import org.clever.canal.parse.driver.mysql.packets.GtIdSet;
 import org.clever.canal.parse.exception.CanalParseException;
@@ -32,6 +33,7 @@ public class LocalBinLogConnection implements ErosaConnection {
     private boolean running = false;
     private long serverId;
     private FileParserListener parserListener;
+    private LogBufferPool logBufferPool;
 
     public LocalBinLogConnection() {
     }
@@ -206,25 +208,28 @@ public class LocalBinLogConnection implements ErosaConnection {
         if (!current.exists()) {
             throw new CanalParseException("binlog:" + binlogFileName + " is not found");
         }
+        MysqlMultiStageCoprocessor mysqlCoprocessor = (MysqlMultiStageCoprocessor) coprocessor;
         try (FileLogFetcher fetcher = new FileLogFetcher(bufferSize)) {
-            LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
-            LogContext context = new LogContext();
             fetcher.open(current, binlogPosition);
-            context.setLogPosition(new LogPosition(binlogFileName, binlogPosition));
+            // 每个文件的第一个事件携带文件名
+            String fileName = binlogFileName;
             while (running) {
                 boolean needContinue = true;
-                LogEvent event;
-                while (fetcher.fetch()) {
-                    event = decoder.decode(fetcher, context);
-                    if (event == null) {
-                        continue;
-                    }
-                    if (serverId != 0 && event.getServerId() != serverId) {
-                        throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
-                    }
-                    if (!coprocessor.publish(event)) {
-                        needContinue = false;
-                        break;
+                while (needContinue && fetcher.fetch()) {
+                    // 只拆分出完整的事件投递，事件的解码交给coprocessor的解析线程
+                    int eventLen;
+                    while (fetcher.limit() >= FormatDescriptionLogEvent.LOG_EVENT_HEADER_LEN
+                            && fetcher.limit() >= (eventLen = (int) fetcher.getUint32(LogEvent.EVENT_LEN_OFFSET))) {
+                        if (serverId != 0 && fetcher.getUint32(LogEvent.SERVER_ID_OFFSET) != serverId) {
+                            throw new ServerIdNotMatchException("unexpected serverId " + serverId + " in binlog file !");
+                        }
+                        LogBuffer buffer = logBufferPool != null ? logBufferPool.lease(fetcher, eventLen) : fetcher.duplicate(0, eventLen);
+                        fetcher.consume(eventLen);
+                        if (!mysqlCoprocessor.publish(buffer, fileName)) {
+                            needContinue = false;
+                            break;
+                        }
+                        fileName = null;
                     }
                 }
                 fetcher.close(); // 关闭上一个文件
@@ -242,6 +247,7 @@ public class LocalBinLogConnection implements ErosaConnection {
                     current = nextFile;
                     fetcher.open(current);
                     binlogFileName = nextFile.getName();
+                    fileName = binlogFileName;
                 } else {
                     break;// 跳出
                 }
@@ -344,6 +350,7 @@ public class LocalBinLogConnection implements ErosaConnection {
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setLogBufferPool(this.logBufferPool);
         return connection;
     }
 
@@ -388,6 +395,10 @@ public class LocalBinLogConnection implements ErosaConnection {
         this.parserListener = parserListener;
     }
 
+    public void setLogBufferPool(LogBufferPool logBufferPool) {
+        this.logBufferPool = logBufferPool;
+    }
+
     public interface FileParserListener {
         void onFinish(String fileName);
     }
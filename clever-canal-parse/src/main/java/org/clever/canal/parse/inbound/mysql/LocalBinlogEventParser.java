@@ -101,6 +101,7 @@ public class LocalBinlogEventParser extends AbstractMysqlEventParser implements
         connection.setBufferSize(this.bufferSize);
         connection.setDirectory(this.directory);
         connection.setNeedWait(this.needWait);
+        connection.setLogBufferPool(getLogBufferPool());
         return connection;
     }
 
@@ -3,10 +3,12 @@ package org.clever.canal.parse.inbound.mysql;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogBufferPool;
 import org.clever.canal.parse.dbsync.binlog.LogContext;
 import org.clever.canal.parse.dbsync.binlog.LogDecoder;
 import org.clever.canal.parse.dbsync.binlog.LogEvent;
 import org.clever.canal.parse.dbsync.binlog.event.FormatDescriptionLogEvent;
+import org.clever.canal.parse.dbsync.binlog.event.QueryLogEvent;
 import org.clever.canal.parse.driver.mysql.MysqlConnector;
 import org.clever.canal.parse.driver.mysql.MysqlQueryExecutor;
 import org.clever.canal.parse.driver.mysql.MysqlUpdateExecutor;
@@ -26,6 +28,7 @@ import org.clever.canal.parse.inbound.MultiStageCoprocessor;
 import org.clever.canal.parse.inbound.SinkFunction;
 import org.clever.canal.parse.inbound.mysql.dbsync.DirectLogFetcher;
 import org.clever.canal.parse.support.AuthenticationInfo;
+import org.clever.canal.protocol.position.EntryPosition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +37,7 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -58,6 +62,8 @@ public class MysqlConnection implements ErosaConnection {
     private int binlogChecksum = LogEvent.BINLOG_CHECKSUM_ALG_OFF;
     // dump binlog bytes, 暂不包括meta与TSDB
     private AtomicLong receivedBinlogBytes;
+    // 并行解析时存放binlog事件的内存池，为null时每个事件都分配新的byte[]
+    private LogBufferPool logBufferPool;
 
     public MysqlConnection() {
     }
@@ -207,8 +213,10 @@ public class MysqlConnection implements ErosaConnection {
         }
     }
 
-    public void dump(long timestamp, SinkFunction func) {
-        throw new NullPointerException("Not implement yet");
+    public void dump(long timestamp, SinkFunction func) throws IOException {
+        EntryPosition position = findPositionByTimestamp(timestamp);
+        reconnect();
+        dump(position.getJournalName(), position.getPosition(), func);
     }
 
     @Override
@@ -223,7 +231,7 @@ public class MysqlConnection implements ErosaConnection {
             fetcher.start(connector.getChannel());
             while (fetcher.fetch()) {
                 accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
+                LogBuffer buffer = logBufferPool != null ? logBufferPool.lease(fetcher) : fetcher.duplicate();
                 fetcher.consume(fetcher.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
@@ -233,8 +241,10 @@ public class MysqlConnection implements ErosaConnection {
     }
 
     @Override
-    public void dump(long timestamp, MultiStageCoprocessor coprocessor) {
-        throw new NullPointerException("Not implement yet");
+    public void dump(long timestamp, MultiStageCoprocessor coprocessor) throws IOException {
+        EntryPosition position = findPositionByTimestamp(timestamp);
+        reconnect();
+        dump(position.getJournalName(), position.getPosition(), coprocessor);
     }
 
     @Override
@@ -248,7 +258,7 @@ public class MysqlConnection implements ErosaConnection {
             fetcher.start(connector.getChannel());
             while (fetcher.fetch()) {
                 accumulateReceivedBytes(fetcher.limit());
-                LogBuffer buffer = fetcher.duplicate();
+                LogBuffer buffer = logBufferPool != null ? logBufferPool.lease(fetcher) : fetcher.duplicate();
                 fetcher.consume(fetcher.limit());
                 if (!coprocessor.publish(buffer)) {
                     break;
@@ -338,6 +348,133 @@ public class MysqlConnection implements ErosaConnection {
         connector.setDumping(true);
     }
 
+    /**
+     * 根据时间戳查找binlog位点
+     *
+     * <pre>
+     * 1. 在show binary logs的文件列表中二分查找，找到第一个事件时间小于timestamp的最后一个binlog文件
+     * 2. 在该文件内顺序扫描，返回时间小于timestamp的最后一个事务结束位置(不存在时为文件头)
+     * </pre>
+     */
+    public EntryPosition findPositionByTimestamp(long timestamp) throws IOException {
+        List<EntryPosition> binlogs = showBinaryLogs();
+        int index = searchBinlogByTimestamp(binlogs, timestamp);
+        if (index < 0) {
+            throw new CanalParseException("can't find binlog position by timestamp:" + timestamp + ", the first binlog is later than it");
+        }
+        return findTransactionEndPosition(binlogs.get(index), timestamp);
+    }
+
+    /**
+     * 查询binlog文件列表
+     *
+     * @return binlog文件名以及文件大小
+     */
+    public List<EntryPosition> showBinaryLogs() throws IOException {
+        ResultSetPacket packet = query("show binary logs");
+        List<String> fields = packet.getFieldValues();
+        int columns = packet.getFieldDescriptors().size();
+        if (fields == null || fields.isEmpty() || columns < 2) {
+            throw new CanalParseException("command : 'show binary logs' has an error! pls check. you need (at least one of) the SUPER,REPLICATION CLIENT privilege(s) for this operation");
+        }
+        List<EntryPosition> binlogs = new ArrayList<>(fields.size() / columns);
+        for (int i = 0; i + 1 < fields.size(); i += columns) {
+            binlogs.add(new EntryPosition(fields.get(i), NumberUtils.toLong(fields.get(i + 1))));
+        }
+        return binlogs;
+    }
+
+    /**
+     * 二分查找第一个事件时间小于timestamp的最后一个binlog文件，每次探测只读取文件的第一个事件
+     *
+     * @return binlogs中的下标，所有文件都不满足时返回-1
+     */
+    public int searchBinlogByTimestamp(List<EntryPosition> binlogs, long timestamp) throws IOException {
+        int low = 0;
+        int high = binlogs.size() - 1;
+        int found = -1;
+        int probes = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long firstTimestamp = findFirstEventTimestamp(binlogs.get(mid).getJournalName());
+            probes++;
+            if (firstTimestamp > 0 && firstTimestamp < timestamp) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        logger.info("search binlog by timestamp:{} in {} binlogs with {} probes, found:{}",
+                timestamp, binlogs.size(), probes, found < 0 ? null : binlogs.get(found).getJournalName());
+        return found;
+    }
+
+    /**
+     * 读取binlog文件第一个事件(FORMAT_DESCRIPTION，即文件创建时间)的时间戳(毫秒)，读取失败返回-1
+     */
+    public long findFirstEventTimestamp(String binlogFileName) throws IOException {
+        final AtomicLong timestamp = new AtomicLong(-1);
+        reconnect();
+        seek(binlogFileName, 4L, null, new SinkFunction<LogEvent>() {
+            @Override
+            public boolean sink(LogEvent event) {
+                // 跳过时间为0的伪造rotate事件和心跳事件
+                if (event.getWhen() > 0) {
+                    timestamp.set(event.getWhen() * 1000);
+                    return false;
+                }
+                return true;
+            }
+        });
+        return timestamp.get();
+    }
+
+    /**
+     * 扫描binlog文件，查找时间小于timestamp的最后一个事务结束位置，扫描到文件末尾(或者切换到下一个文件)时结束
+     */
+    private EntryPosition findTransactionEndPosition(final EntryPosition binlog, final long timestamp) throws IOException {
+        final String binlogFileName = binlog.getJournalName();
+        final EntryPosition position = new EntryPosition(binlogFileName, 4L);
+        reconnect();
+        seek(binlogFileName, 4L, null, new SinkFunction<LogEvent>() {
+            private boolean inTransaction = false;
+
+            @Override
+            public boolean sink(LogEvent event) {
+                if (event.getWhen() == 0) {
+                    return true;
+                }
+                if (!StringUtils.equals(binlogFileName, event.getHeader().getLogFileName()) || event.getWhen() * 1000 >= timestamp) {
+                    return false;
+                }
+                int type = event.getHeader().getType();
+                boolean transactionEnd = false;
+                if (LogEvent.XID_EVENT == type) {
+                    transactionEnd = true;
+                } else if (LogEvent.QUERY_EVENT == type) {
+                    String query = ((QueryLogEvent) event).getQuery();
+                    if (StringUtils.endsWithIgnoreCase(query, "BEGIN")) {
+                        inTransaction = true;
+                    } else {
+                        // COMMIT或者事务之外的语句(ddl)
+                        transactionEnd = StringUtils.endsWithIgnoreCase(query, "COMMIT") || !inTransaction;
+                    }
+                }
+                if (transactionEnd) {
+                    inTransaction = false;
+                    position.setPosition(event.getLogPos());
+                    position.setTimestamp(event.getWhen() * 1000);
+                    position.setServerId(event.getServerId());
+                }
+                // 文件大小取自show binary logs，最后一个文件不会等待新的事件
+                return event.getLogPos() < binlog.getPosition();
+            }
+        });
+        logger.info("find position by timestamp:{} in binlog:{}, found:{}", timestamp, binlogFileName, position);
+        return position;
+    }
+
     public MysqlConnection fork() {
         MysqlConnection connection = new MysqlConnection();
         connection.setCharset(getCharset());
@@ -666,4 +803,8 @@ public class MysqlConnection implements ErosaConnection {
         this.receivedBinlogBytes = receivedBinlogBytes;
     }
 
+    public void setLogBufferPool(LogBufferPool logBufferPool) {
+        this.logBufferPool = logBufferPool;
+    }
+
 }
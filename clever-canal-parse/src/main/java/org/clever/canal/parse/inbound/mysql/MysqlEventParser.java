@@ -376,6 +376,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         connection.getConnector().setSoTimeout(defaultConnectionTimeoutInSeconds * 1000);
         connection.setCharset(connectionCharset);
         connection.setReceivedBinlogBytes(receivedBinlogBytes);
+        connection.setLogBufferPool(getLogBufferPool());
         // 随机生成slaveId
         if (this.slaveId <= 0) {
             this.slaveId = generateUniqueServerId();
@@ -442,7 +443,8 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         final EntryPosition endPosition = findEndPosition(connection);
         if (tableMetaTsDb != null) {
             long startTimestamp = System.currentTimeMillis();
-            return findAsPerTimestampInSpecificLogFile(connection, startTimestamp, endPosition, endPosition.getJournalName(), true);
+            EntryPosition fromPosition = findIndexedPosition(connection, endPosition.getJournalName(), endPosition.getPosition());
+            return findAsPerTimestampInSpecificLogFile(connection, startTimestamp, endPosition, endPosition.getJournalName(), true, fromPosition);
         } else {
             return endPosition;
         }
@@ -453,7 +455,8 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
             // 使用一个未来极大的时间，基于位点进行定位
             long startTimestamp = System.currentTimeMillis() + 102L * 365 * 24 * 3600 * 1000;
             // 当前时间的未来102年
-            EntryPosition entryPosition = findAsPerTimestampInSpecificLogFile(connection, startTimestamp, fixedPosition, fixedPosition.getJournalName(), true);
+            EntryPosition fromPosition = findIndexedPosition(connection, fixedPosition.getJournalName(), fixedPosition.getPosition());
+            EntryPosition entryPosition = findAsPerTimestampInSpecificLogFile(connection, startTimestamp, fixedPosition, fixedPosition.getJournalName(), true, fromPosition);
             if (entryPosition == null) {
                 throw new CanalParseException("[fixed timestamp] can't found begin/commit position before with fixed position" + fixedPosition.getJournalName() + ":" + fixedPosition.getPosition());
             }
@@ -588,57 +591,80 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
     }
 
     // 根据时间查找binlog位置
+    // 先在show binary logs的文件列表中二分查找(只读取每个探测文件的第一个事件)，再在找到的文件内扫描
+    // 时间戳索引中有该文件的记录时，只需要从索引记录的位点开始扫描
     private EntryPosition findByStartTimeStamp(MysqlConnection mysqlConnection, Long startTimestamp) {
         EntryPosition endPosition = findEndPosition(mysqlConnection);
-        EntryPosition startPosition = findStartPosition(mysqlConnection);
-        String maxBinlogFileName = endPosition.getJournalName();
-        String minBinlogFileName = startPosition.getJournalName();
         logger.info("show master status to set search end condition:{} ", endPosition);
-        String startSearchBinlogFile = endPosition.getJournalName();
-        boolean shouldBreak = false;
-        while (running && !shouldBreak) {
-            try {
-                EntryPosition entryPosition = findAsPerTimestampInSpecificLogFile(mysqlConnection, startTimestamp, endPosition, startSearchBinlogFile, false);
-                if (entryPosition == null) {
-                    if (StringUtils.equalsIgnoreCase(minBinlogFileName, startSearchBinlogFile)) {
-                        // 已经找到最早的一个binlog，没必要往前找了
-                        shouldBreak = true;
-                        logger.info("Didn't find the corresponding binlog files from {} to {}", minBinlogFileName, maxBinlogFileName);
-                    } else {
-                        // 继续往前找
-                        int binlogSeqNum = Integer.parseInt(startSearchBinlogFile.substring(startSearchBinlogFile.indexOf(".") + 1));
-                        if (binlogSeqNum <= 1) {
-                            logger.info("Didn't find the corresponding binlog files");
-                            shouldBreak = true;
-                        } else {
-                            int nextBinlogSeqNum = binlogSeqNum - 1;
-                            String binlogFileNamePrefix = startSearchBinlogFile.substring(0, startSearchBinlogFile.indexOf(".") + 1);
-                            String binlogFileNameSuffix = String.format("%06d", nextBinlogSeqNum);
-                            startSearchBinlogFile = binlogFileNamePrefix + binlogFileNameSuffix;
-                        }
-                    }
-                } else {
-                    logger.info("found and return:{} in findByStartTimeStamp operation.", entryPosition);
-                    return entryPosition;
-                }
-            } catch (Exception e) {
-                logger.info(String.format("the binlogFile:%s doesn't exist, to continue to search the next binlogFile , caused by", startSearchBinlogFile), e);
-                int binlogSeqNum = Integer.parseInt(startSearchBinlogFile.substring(startSearchBinlogFile.indexOf(".") + 1));
-                if (binlogSeqNum <= 1) {
-                    logger.info("Didn't find the corresponding binlog files");
-                    shouldBreak = true;
-                } else {
-                    int nextBinlogSeqNum = binlogSeqNum - 1;
-                    String binlogFileNamePrefix = startSearchBinlogFile.substring(0, startSearchBinlogFile.indexOf(".") + 1);
-                    String binlogFileNameSuffix = String.format("%06d", nextBinlogSeqNum);
-                    startSearchBinlogFile = binlogFileNamePrefix + binlogFileNameSuffix;
-                }
+        List<EntryPosition> binlogs;
+        int index;
+        try {
+            binlogs = mysqlConnection.showBinaryLogs();
+            index = mysqlConnection.searchBinlogByTimestamp(binlogs, startTimestamp);
+        } catch (IOException e) {
+            logger.error("ERROR ## search binlog by timestamp has an error", e);
+            return null;
+        }
+        EntryPosition fromPosition = null;
+        if (index >= 0 && timestampPositionIndex != null) {
+            Long serverId = findServerId(mysqlConnection);
+            fromPosition = timestampPositionIndex.findByTimestamp(serverId, startTimestamp);
+            if (fromPosition != null && fromPosition.getJournalName().equals(binlogs.get(index).getJournalName())) {
+                fromPosition = checkIndexedPosition(mysqlConnection, serverId, fromPosition);
+            }
+            if (fromPosition != null && fromPosition.getJournalName().equals(binlogs.get(index).getJournalName())) {
+                logger.info("found {} in timestamp index, search from it", fromPosition);
+            } else {
+                fromPosition = null;
             }
         }
+        // 找到的文件中可能没有满足条件的事务，继续往前找
+        for (int i = index; i >= 0 && running; i--) {
+            String searchBinlogFile = binlogs.get(i).getJournalName();
+            EntryPosition entryPosition = findAsPerTimestampInSpecificLogFile(mysqlConnection, startTimestamp, endPosition, searchBinlogFile, false, fromPosition);
+            if (entryPosition != null) {
+                logger.info("found and return:{} in findByStartTimeStamp operation.", entryPosition);
+                return entryPosition;
+            }
+        }
+        logger.info("Didn't find the corresponding binlog files from {} to {}", binlogs.get(0).getJournalName(), binlogs.get(binlogs.size() - 1).getJournalName());
         // 找不到
         return null;
     }
 
+    /**
+     * 从时间戳索引中查找同一个binlog文件中不超过position的事务结束位点，找不到返回null(从文件头扫描)
+     */
+    private EntryPosition findIndexedPosition(MysqlConnection mysqlConnection, String journalName, Long position) {
+        if (timestampPositionIndex == null || journalName == null || position == null) {
+            return null;
+        }
+        Long serverId = findServerId(mysqlConnection);
+        return checkIndexedPosition(mysqlConnection, serverId, timestampPositionIndex.findByPosition(serverId, journalName, position));
+    }
+
+    /**
+     * 索引记录的时间早于binlog文件的第一个事件时，说明binlog被重置过(文件名被重复使用)，删除过期的索引记录
+     */
+    private EntryPosition checkIndexedPosition(MysqlConnection mysqlConnection, Long serverId, EntryPosition indexed) {
+        if (indexed == null) {
+            return null;
+        }
+        long firstTimestamp;
+        try {
+            firstTimestamp = mysqlConnection.findFirstEventTimestamp(indexed.getJournalName());
+        } catch (IOException e) {
+            logger.warn("find first event timestamp of binlog:{} failed, ignore timestamp index", indexed.getJournalName(), e);
+            return null;
+        }
+        if (firstTimestamp > 0 && indexed.getTimestamp() < firstTimestamp) {
+            int removed = timestampPositionIndex.removeStale(serverId, indexed.getJournalName(), firstTimestamp);
+            logger.warn("{} is earlier than the first event of binlog:{}, remove {} stale records from timestamp index", indexed, indexed.getJournalName(), removed);
+            return null;
+        }
+        return indexed;
+    }
+
     /**
      * 查询当前db的serverId信息
      */
@@ -675,22 +701,6 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
         }
     }
 
-    /**
-     * 查询当前的binlog位置
-     */
-    private EntryPosition findStartPosition(MysqlConnection mysqlConnection) {
-        try {
-            ResultSetPacket packet = mysqlConnection.query("show binlog events limit 1");
-            List<String> fields = packet.getFieldValues();
-            if (CollectionUtils.isEmpty(fields)) {
-                throw new CanalParseException("command : 'show binlog events limit 1' has an error! pls check. you need (at least one of) the SUPER,REPLICATION CLIENT privilege(s) for this operation");
-            }
-            return new EntryPosition(fields.get(0), Long.valueOf(fields.get(1)));
-        } catch (IOException e) {
-            throw new CanalParseException("command : 'show binlog events limit 1' has an error!", e);
-        }
-    }
-
     /**
      * 查询当前的slave视图的binlog位置
      */
@@ -738,12 +748,36 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
             final EntryPosition endPosition,
             final String searchBinlogFile,
             final Boolean justForPositionTimestamp
+    ) {
+        return findAsPerTimestampInSpecificLogFile(mysqlConnection, startTimestamp, endPosition, searchBinlogFile, justForPositionTimestamp, null);
+    }
+
+    /**
+     * 同上，fromPosition不为空时从该位点(时间戳索引记录的事务结束位点)开始遍历，而不是从文件头开始
+     */
+    private EntryPosition findAsPerTimestampInSpecificLogFile(
+            MysqlConnection mysqlConnection,
+            final Long startTimestamp,
+            final EntryPosition endPosition,
+            final String searchBinlogFile,
+            final Boolean justForPositionTimestamp,
+            final EntryPosition fromPosition
     ) {
         final LogPosition logPosition = new LogPosition();
+        final Long startPosition;
+        if (fromPosition != null && StringUtils.equals(fromPosition.getJournalName(), searchBinlogFile)) {
+            startPosition = fromPosition.getPosition();
+            // 索引记录本身就是一个时间戳小于startTimestamp的事务结束位点
+            EntryPosition entryPosition = new EntryPosition(searchBinlogFile, fromPosition.getPosition(), fromPosition.getTimestamp(), fromPosition.getServerId());
+            entryPosition.setGtId(fromPosition.getGtId());
+            logPosition.setPosition(entryPosition);
+        } else {
+            startPosition = BINLOG_START_OFFSET;
+        }
         try {
             mysqlConnection.reconnect();
             // 开始遍历文件
-            mysqlConnection.seek(searchBinlogFile, 4L, endPosition.getGtId(), new SinkFunction<LogEvent>() {
+            mysqlConnection.seek(searchBinlogFile, startPosition, endPosition.getGtId(), new SinkFunction<LogEvent>() {
                 private LogPosition lastPosition;
 
                 @Override
@@ -793,7 +827,7 @@ public class MysqlEventParser extends AbstractMysqlEventParser implements CanalE
                         }
                         lastPosition = buildLastPosition(entry);
                     } catch (Throwable e) {
-                        processSinkError(e, lastPosition, searchBinlogFile, 4L);
+                        processSinkError(e, lastPosition, searchBinlogFile, startPosition);
                     }
                     return running;
                 }
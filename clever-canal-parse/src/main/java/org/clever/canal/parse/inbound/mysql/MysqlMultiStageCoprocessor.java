@@ -4,9 +4,11 @@ import com.lmax.disruptor.*;
 import org.clever.canal.common.AbstractCanalLifeCycle;
 import org.clever.canal.common.utils.NamedThreadFactory;
 import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogBufferPool;
 import org.clever.canal.parse.dbsync.binlog.LogContext;
 import org.clever.canal.parse.dbsync.binlog.LogDecoder;
 import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.clever.canal.parse.dbsync.binlog.LogPosition;
 import org.clever.canal.parse.dbsync.binlog.event.*;
 import org.clever.canal.parse.driver.mysql.packets.GtIdSet;
 import org.clever.canal.parse.exception.CanalParseException;
@@ -31,6 +33,9 @@ import java.util.concurrent.locks.LockSupport;
  * 2. 事件基本解析 (单线程，事件类型、DDL解析构造TableMeta、维护位点信息)
  * 3. 事件深度解析 (多线程, DML事件数据的完整解析)
  * 4. 投递到store (单线程)
+ *
+ * 网络接收(或者本地binlog文件读取)的数据从logBufferPool中租用，投递到store之后归还
+ * 设置rowsShardSize时，行数据超过rowsShardSize的事件按行拆分成多个分片，由rowsShardExecutor和当前线程一起解析
  * </pre>
  */
 @SuppressWarnings({"WeakerAccess", "unchecked", "unused", "UnusedAssignment"})
@@ -54,6 +59,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     private BatchEventProcessor<MessageEvent> simpleParserStage;
     private BatchEventProcessor<MessageEvent> sinkStoreStage;
     private LogContext logContext;
+    private LogBufferPool logBufferPool;
+    private int rowsShardSize = 0;
+    private ExecutorService rowsShardExecutor;
 
     public MysqlMultiStageCoprocessor(
             int ringBufferSize,
@@ -77,6 +85,9 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         int tc = parserThreadCount > 0 ? parserThreadCount : 1;
         this.parserExecutor = Executors.newFixedThreadPool(tc, new NamedThreadFactory("MultiStageCoprocessor-Parser-" + destination));
         this.stageExecutor = Executors.newFixedThreadPool(2, new NamedThreadFactory("MultiStageCoprocessor-other-" + destination));
+        if (rowsShardSize > 0) {
+            this.rowsShardExecutor = Executors.newFixedThreadPool(tc, new NamedThreadFactory("MultiStageCoprocessor-RowsShard-" + destination));
+        }
         SequenceBarrier sequenceBarrier = disruptorMsgBuffer.newBarrier();
         ExceptionHandler exceptionHandler = new SimpleFatalExceptionHandler();
         // stage 2
@@ -127,6 +138,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         } catch (Throwable e) {
             // ignore
         }
+        if (rowsShardExecutor != null) {
+            rowsShardExecutor.shutdownNow();
+            rowsShardExecutor = null;
+        }
         try {
             stageExecutor.shutdownNow();
             while (!stageExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
@@ -141,18 +156,30 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
         super.stop();
     }
 
+    /**
+     * 网络数据投递
+     */
     public boolean publish(LogBuffer buffer) {
-        return this.publish(buffer, null);
+        return this.publish(buffer, null, null);
     }
 
     /**
-     * 网络数据投递
+     * 本地binlog文件数据投递
+     *
+     * @param binlogFileName 切换到新的binlog文件时传入文件名，由解析线程更新位点中的文件名，其他情况为null
+     */
+    public boolean publish(LogBuffer buffer, String binlogFileName) {
+        return this.publish(buffer, binlogFileName, null);
+    }
+
+    /**
+     * 已解析的事件投递
      */
     public boolean publish(LogEvent event) {
-        return this.publish(null, event);
+        return this.publish(null, null, event);
     }
 
-    private boolean publish(LogBuffer buffer, LogEvent event) {
+    private boolean publish(LogBuffer buffer, String binlogFileName, LogEvent event) {
         if (!isStart()) {
             if (exception != null) {
                 throw exception;
@@ -175,6 +202,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 MessageEvent data = disruptorMsgBuffer.get(next);
                 if (buffer != null) {
                     data.setBuffer(buffer);
+                    data.setBinlogFileName(binlogFileName);
                 } else {
                     data.setEvent(event);
                 }
@@ -229,6 +257,10 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 LogEvent logEvent = event.getEvent();
                 if (logEvent == null) {
                     LogBuffer buffer = event.getBuffer();
+                    if (event.getBinlogFileName() != null) {
+                        // 本地binlog文件切换(文件之间不一定有rotate事件)
+                        context.setLogPosition(new LogPosition(event.getBinlogFileName()));
+                    }
                     logEvent = decoder.decode(buffer, context);
                     event.setEvent(logEvent);
                 }
@@ -236,7 +268,17 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                 int eventType = logEvent.getHeader().getType();
                 TableMeta tableMeta = null;
                 boolean needDmlParse = false;
+                if (logEvent instanceof RowsLogEvent && isTableRejected((RowsLogEvent) logEvent)) {
+                    // 被表名过滤的行数据事件，不需要获取表结构和解析行数据
+                    event.setNeedDmlParse(false);
+                    return;
+                }
                 switch (eventType) {
+                    case LogEvent.TABLE_MAP_EVENT:
+                        // 每个TableMapLogEvent只做一次表名过滤，结果按tableId记录下来
+                        TableMapLogEvent tableMapEvent = (TableMapLogEvent) logEvent;
+                        context.putTableFilterResult(tableMapEvent.getTableId(), logEventConvert.isTableAccepted(tableMapEvent));
+                        break;
                     case LogEvent.WRITE_ROWS_EVENT_V1:
                     case LogEvent.WRITE_ROWS_EVENT:
                         tableMeta = logEventConvert.parseRowsEventForTableMeta((WriteRowsLogEvent) logEvent);
@@ -269,6 +311,11 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             }
         }
 
+        private boolean isTableRejected(RowsLogEvent rowsLogEvent) {
+            Boolean accepted = context.getTableFilterResult(rowsLogEvent.getTableId());
+            return accepted != null && !accepted;
+        }
+
         @Override
         public void onStart() {
         }
@@ -289,7 +336,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                     if (eventType == LogEvent.ROWS_QUERY_LOG_EVENT) {
                         entry = logEventConvert.parse(event.getEvent(), false);
                     } else {// 单独解析dml事件
-                        entry = logEventConvert.parseRowsEvent((RowsLogEvent) event.getEvent(), event.getTable());
+                        RowsLogEvent rowsLogEvent = (RowsLogEvent) event.getEvent();
+                        int shardCount = rowsShardSize > 0 && event.getTable() != null ? rowsLogEvent.getRowsBufSize() / rowsShardSize : 0;
+                        if (shardCount > 1) {
+                            // 大事件按行拆分，并行解析之后按原来的顺序合并
+                            entry = logEventConvert.parseRowsEvent(rowsLogEvent, event.getTable(), Math.min(shardCount, Math.max(parserThreadCount, 1) + 1), rowsShardExecutor);
+                        } else {
+                            entry = logEventConvert.parseRowsEvent(rowsLogEvent, event.getTable());
+                        }
                     }
                     event.setEntry(entry);
                 }
@@ -320,8 +374,13 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
                     // semi ack回报
                     ((MysqlConnection) connection).sendSemiAck(logEvent.getHeader().getLogFileName(), logEvent.getHeader().getLogPos());
                 }
+                // 事件已经转换成Entry，归还网络数据占用的内存
+                if (logBufferPool != null) {
+                    logBufferPool.release(event.getBuffer());
+                }
                 // clear for gc
                 event.setBuffer(null);
+                event.setBinlogFileName(null);
                 event.setEvent(null);
                 event.setTable(null);
                 event.setEntry(null);
@@ -343,6 +402,7 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
 
     static class MessageEvent {
         private LogBuffer buffer;
+        private String binlogFileName;
         private CanalEntry.Entry entry;
         private boolean needDmlParse = false;
         private TableMeta table;
@@ -356,6 +416,14 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
             this.buffer = buffer;
         }
 
+        public String getBinlogFileName() {
+            return binlogFileName;
+        }
+
+        public void setBinlogFileName(String binlogFileName) {
+            this.binlogFileName = binlogFileName;
+        }
+
         public LogEvent getEvent() {
             return event;
         }
@@ -430,4 +498,12 @@ public class MysqlMultiStageCoprocessor extends AbstractCanalLifeCycle implement
     public void setGtidSet(GtIdSet gtidSet) {
         this.gtidSet = gtidSet;
     }
+
+    public void setLogBufferPool(LogBufferPool logBufferPool) {
+        this.logBufferPool = logBufferPool;
+    }
+
+    public void setRowsShardSize(int rowsShardSize) {
+        this.rowsShardSize = rowsShardSize;
+    }
 }
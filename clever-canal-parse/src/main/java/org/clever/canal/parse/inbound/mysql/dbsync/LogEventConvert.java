@@ -1,6 +1,7 @@
 package org.clever.canal.parse.inbound.mysql.dbsync;
 
 import com.google.protobuf.ByteString;
+import lombok.EqualsAndHashCode;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.clever.canal.common.AbstractCanalLifeCycle;
@@ -29,6 +30,10 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * 基于{@linkplain LogEvent}转化为Entry对象的处理
@@ -58,6 +63,8 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     private volatile AviaterRegexFilter nameBlackFilter;
     private Map<String, List<String>> fieldFilterMap = new HashMap<>();
     private Map<String, List<String>> fieldBlackFilterMap = new HashMap<>();
+    // 预先编译的解码计划 表名 ---> 每一列的解析方式(TableMeta或者列定义变化后重新生成)
+    private final Map<String, DecodePlan> decodePlans = new ConcurrentHashMap<>();
 
     private TableMetaCache tableMetaCache;
     private Charset charset = Charset.defaultCharset();
@@ -69,6 +76,12 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     // 新增rows过滤，用于仅订阅除rows以外的数据
     private boolean filterRows = false;
     private boolean useDruidDdlFilter = true;
+    // update的after记录只输出有变化的列和主键
+    private boolean updateChangedColumnsOnly = false;
+    // updateChangedColumnsOnly = true时，是否保留完整的before记录(false: before记录也只保留有变化的列和主键)
+    private boolean updateKeepBeforeImage = true;
+    // 是否使用Column中类型化的字段值(longValue/doubleValue/bytesValue/decimalValue/temporalValue)代替文本value
+    private boolean typedColumnValue = false;
 
     public LogEventConvert() {
 
@@ -119,7 +132,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     }
 
     public void reset() {
-        // do nothing
+        decodePlans.clear();
         if (tableMetaCache != null) {
             tableMetaCache.clearTableMeta();
         }
@@ -400,10 +413,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
         String fullname = table.getDbName() + "." + table.getTableName();
         // check name filter
-        if (nameFilter != null && !nameFilter.filter(fullname)) {
-            return null;
-        }
-        if (nameBlackFilter != null && nameBlackFilter.filter(fullname)) {
+        if (!isTableAccepted(fullname)) {
             return null;
         }
 
@@ -439,11 +449,35 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         return tableMeta;
     }
 
+    /**
+     * 按表名过滤(nameFilter/nameBlackFilter)判断是否需要解析该表的行数据
+     */
+    public boolean isTableAccepted(TableMapLogEvent table) {
+        return isTableAccepted(table.getDbName() + "." + table.getTableName());
+    }
+
+    private boolean isTableAccepted(String fullname) {
+        if (nameFilter != null && !nameFilter.filter(fullname)) {
+            return false;
+        }
+        return nameBlackFilter == null || !nameBlackFilter.filter(fullname);
+    }
+
     public Entry parseRowsEvent(RowsLogEvent event) {
         return parseRowsEvent(event, null);
     }
 
     public Entry parseRowsEvent(RowsLogEvent event, TableMeta tableMeta) {
+        return parseRowsEvent(event, tableMeta, 1, null);
+    }
+
+    /**
+     * 解析行数据事件，行数据较大时按行拆分成多个分片并行解析，解析结果按原来的顺序合并
+     *
+     * @param shardCount 最多拆分的分片数量，小于等于1时不拆分
+     * @param executor   解析分片的线程池(第一个分片在当前线程解析)
+     */
+    public Entry parseRowsEvent(RowsLogEvent event, TableMeta tableMeta, int shardCount, Executor executor) {
         if (filterRows) {
             return null;
         }
@@ -457,52 +491,39 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 return null;
             }
 
-            EventType eventType;
-            int type = event.getHeader().getType();
-            if (LogEvent.WRITE_ROWS_EVENT_V1 == type || LogEvent.WRITE_ROWS_EVENT == type) {
-                eventType = EventType.INSERT;
-            } else if (LogEvent.UPDATE_ROWS_EVENT_V1 == type || LogEvent.UPDATE_ROWS_EVENT == type
-                    || LogEvent.PARTIAL_UPDATE_ROWS_EVENT == type) {
-                eventType = EventType.UPDATE;
-            } else if (LogEvent.DELETE_ROWS_EVENT_V1 == type || LogEvent.DELETE_ROWS_EVENT == type) {
-                eventType = EventType.DELETE;
+            EventType eventType = getRowsEventType(event);
+            List<RowsShard> shards;
+            int[] bounds = shardCount > 1 && executor != null ? splitRows(event, eventType, shardCount) : null;
+            if (bounds == null || bounds.length <= 2) {
+                shards = Collections.singletonList(parseRows(event, eventType, event.getRowsBuf(charset.name()), tableMeta));
             } else {
-                throw new CanalParseException("unsupport event type :" + event.getHeader().getType());
+                final TableMeta meta = tableMeta;
+                List<CompletableFuture<RowsShard>> futures = new ArrayList<>(bounds.length - 2);
+                for (int i = 1; i < bounds.length - 1; i++) {
+                    final RowsLogBuffer buffer = event.getRowsBuf(charset.name(), bounds[i], bounds[i + 1]);
+                    futures.add(CompletableFuture.supplyAsync(() -> parseRows(event, eventType, buffer, meta), executor));
+                }
+                shards = new ArrayList<>(bounds.length - 1);
+                shards.add(parseRows(event, eventType, event.getRowsBuf(charset.name(), bounds[0], bounds[1]), tableMeta));
+                for (CompletableFuture<RowsShard> future : futures) {
+                    try {
+                        shards.add(future.join());
+                    } catch (CompletionException e) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
             }
 
             RowChange.Builder rowChangeBuider = RowChange.newBuilder();
             rowChangeBuider.setTableId(event.getTableId());
             rowChangeBuider.setIsDdl(false);
-
             rowChangeBuider.setEventType(eventType);
-            RowsLogBuffer buffer = event.getRowsBuf(charset.name());
-            BitSet columns = event.getColumns();
-            BitSet changeColumns = event.getChangeColumns();
-
             boolean tableError = false;
             int rowsCount = 0;
-            while (buffer.nextOneRow(columns, false)) {
-                // 处理row记录
-                RowData.Builder rowDataBuilder = RowData.newBuilder();
-                if (EventType.INSERT == eventType) {
-                    // insert的记录放在before字段中
-                    tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, true, tableMeta);
-                } else if (EventType.DELETE == eventType) {
-                    // delete的记录放在before字段中
-                    tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, false, tableMeta);
-                } else {
-                    // update需要处理before/after
-                    tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, false, tableMeta);
-                    if (!buffer.nextOneRow(changeColumns, true)) {
-                        rowChangeBuider.addRowData(rowDataBuilder.build());
-                        break;
-                    }
-
-                    tableError |= parseOneRow(rowDataBuilder, event, buffer, changeColumns, true, tableMeta);
-                }
-
-                rowsCount++;
-                rowChangeBuider.addRowData(rowDataBuilder.build());
+            for (RowsShard shard : shards) {
+                rowChangeBuider.addAllRowData(shard.rowDatas);
+                tableError |= shard.tableError;
+                rowsCount += shard.rowsCount;
             }
             TableMapLogEvent table = event.getTable();
             Header header = createHeader(event.getHeader(),
@@ -524,6 +545,85 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         }
     }
 
+    private EventType getRowsEventType(RowsLogEvent event) {
+        int type = event.getHeader().getType();
+        if (LogEvent.WRITE_ROWS_EVENT_V1 == type || LogEvent.WRITE_ROWS_EVENT == type) {
+            return EventType.INSERT;
+        } else if (LogEvent.UPDATE_ROWS_EVENT_V1 == type || LogEvent.UPDATE_ROWS_EVENT == type
+                || LogEvent.PARTIAL_UPDATE_ROWS_EVENT == type) {
+            return EventType.UPDATE;
+        } else if (LogEvent.DELETE_ROWS_EVENT_V1 == type || LogEvent.DELETE_ROWS_EVENT == type) {
+            return EventType.DELETE;
+        } else {
+            throw new CanalParseException("unsupport event type :" + event.getHeader().getType());
+        }
+    }
+
+    /**
+     * 预先扫描行的边界(不解析字段值)，按数据大小均匀拆分成最多shardCount个分片
+     *
+     * @return 分片的边界[0, ..., size]，update的before/after在同一个分片中
+     */
+    private int[] splitRows(RowsLogEvent event, EventType eventType, int shardCount) {
+        final int size = event.getRowsBufSize();
+        final TableMapLogEvent.ColumnInfo[] columnInfo = event.getTable().getColumnInfo();
+        final BitSet columns = event.getColumns();
+        final BitSet changeColumns = event.getChangeColumns();
+        RowsLogBuffer buffer = event.getRowsBuf(charset.name(), 0, size);
+        int[] bounds = new int[shardCount + 1];
+        int count = 1;
+        while (count < shardCount && buffer.skipOneRow(columns, false, columnInfo)) {
+            if (EventType.UPDATE == eventType && !buffer.skipOneRow(changeColumns, true, columnInfo)) {
+                break;
+            }
+            int position = buffer.position();
+            if (position < size && position >= (long) size * count / shardCount) {
+                bounds[count++] = position;
+            }
+        }
+        bounds[count] = size;
+        return Arrays.copyOf(bounds, count + 1);
+    }
+
+    /**
+     * 解析buffer中的所有行
+     */
+    private RowsShard parseRows(RowsLogEvent event, EventType eventType, RowsLogBuffer buffer, TableMeta tableMeta) {
+        BitSet columns = event.getColumns();
+        BitSet changeColumns = event.getChangeColumns();
+        RowsShard shard = new RowsShard();
+        // update的before记录(按列下标)，用于判断after中的列是否有变化
+        Column[] beforeColumns = EventType.UPDATE == eventType ? new Column[event.getTable().getColumnCnt()] : null;
+        while (buffer.nextOneRow(columns, false)) {
+            // 处理row记录
+            RowData.Builder rowDataBuilder = RowData.newBuilder();
+            if (EventType.INSERT == eventType) {
+                // insert的记录放在before字段中
+                shard.tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, true, tableMeta, null);
+            } else if (EventType.DELETE == eventType) {
+                // delete的记录放在before字段中
+                shard.tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, false, tableMeta, null);
+            } else {
+                // update需要处理before/after
+                Arrays.fill(beforeColumns, null);
+                shard.tableError |= parseOneRow(rowDataBuilder, event, buffer, columns, false, tableMeta, beforeColumns);
+                if (!buffer.nextOneRow(changeColumns, true)) {
+                    shard.rowDatas.add(rowDataBuilder.build());
+                    break;
+                }
+
+                shard.tableError |= parseOneRow(rowDataBuilder, event, buffer, changeColumns, true, tableMeta, beforeColumns);
+                if (updateChangedColumnsOnly && !updateKeepBeforeImage) {
+                    trimBeforeImage(rowDataBuilder, beforeColumns.length);
+                }
+            }
+
+            shard.rowsCount++;
+            shard.rowDatas.add(rowDataBuilder.build());
+        }
+        return shard;
+    }
+
     private EntryPosition createPosition(LogHeader logHeader) {
         return new EntryPosition(
                 logHeader.getLogFileName(),
@@ -533,22 +633,17 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         ); // 记录到秒
     }
 
-    private boolean parseOneRow(RowData.Builder rowDataBuilder, RowsLogEvent event, RowsLogBuffer buffer, BitSet cols, boolean isAfter, TableMeta tableMeta) {
+    /**
+     * @param beforeColumns update时解析before记录填充该数组，解析after记录时按列下标比较是否有变化(insert/delete为null)
+     */
+    private boolean parseOneRow(RowData.Builder rowDataBuilder, RowsLogEvent event, RowsLogBuffer buffer, BitSet cols, boolean isAfter, TableMeta tableMeta, Column[] beforeColumns) {
         int columnCnt = event.getTable().getColumnCnt();
         TableMapLogEvent.ColumnInfo[] columnInfo = event.getTable().getColumnInfo();
-        // mysql8.0针对set @@global.binlog_row_metadata='FULL' 可以记录部分的metadata信息
-        boolean existOptionalMetaData = event.getTable().isExistOptionalMetaData();
         boolean tableError = false;
         // check table fileds count，只能处理加字段
         boolean existRDSNoPrimaryKey = false;
-        //获取字段过滤条件
-        List<String> fieldList = null;
-        List<String> blackFieldList = null;
-
-        if (tableMeta != null) {
-            fieldList = fieldFilterMap.get(tableMeta.getFullName().toUpperCase());
-            blackFieldList = fieldBlackFilterMap.get(tableMeta.getFullName().toUpperCase());
-        }
+        // 字段过滤条件对应的表(reload之前的tableMeta)
+        TableMeta filterTableMeta = tableMeta;
 
         if (tableMeta != null && columnInfo.length > tableMeta.getFields().size()) {
             if (tableMetaCache.isOnRDS()) {
@@ -593,6 +688,8 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 // + "] is no primary key , skip alibaba_rds_row_id column");
             }
         }
+        // 预先编译的解码计划(每一列的名称、类型标记、是否被字段过滤)
+        DecodePlan plan = getDecodePlan(event, tableError ? null : tableMeta, filterTableMeta);
 
         for (int i = 0; i < columnCnt; i++) {
             TableMapLogEvent.ColumnInfo info = columnInfo[i];
@@ -616,7 +713,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 columnBuilder.setSqlType(Types.BIGINT);
                 columnBuilder.setUpdated(false);
 
-                if (needField(fieldList, blackFieldList, columnBuilder.getName())) {
+                if (plan.rdsRowIdProjected) {
                     if (isAfter) {
                         rowDataBuilder.addAfterColumns(columnBuilder.build());
                     } else {
@@ -626,60 +723,40 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                 continue;
             }
 
-            FieldMeta fieldMeta = null;
-            if (tableMeta != null && !tableError) {
-                // 处理file meta
-                fieldMeta = tableMeta.getFields().get(i);
-            }
-
-            if (fieldMeta != null && existOptionalMetaData && tableMetaCache.isOnTSDB()) {
-                // check column info
-                boolean check = StringUtils.equalsIgnoreCase(fieldMeta.getColumnName(), info.name);
-                check &= (fieldMeta.isUnsigned() == info.unsigned);
-                check &= (fieldMeta.isNullable() == info.nullable);
-
-                if (!check) {
-                    throw new CanalParseException("MySQL8.0 unmatch column metadata & pls submit issue , table : "
-                            + tableMeta.getFullName() + ", db fieldMeta : "
-                            + fieldMeta.toString() + " , binlog fieldMeta : " + info.toString()
-                            + " , on : " + event.getHeader().getLogFileName() + ":"
-                            + (event.getHeader().getLogPos() - event.getHeader().getEventLen()));
-                }
+            ColumnPlan column = plan.columns[i];
+            if (!column.projected) {
+                // 被字段过滤掉的列只跳过数据，不解析字段值
+                buffer.skipNextValue(info.type, info.meta);
+                continue;
             }
 
             Column.Builder columnBuilder = Column.newBuilder();
-            if (fieldMeta != null) {
-                columnBuilder.setName(fieldMeta.getColumnName());
-                columnBuilder.setIsKey(fieldMeta.isKey());
+            if (column.name != null) {
+                columnBuilder.setName(column.name);
+                columnBuilder.setIsKey(column.key);
+            }
+            if (column.mysqlType != null) {
                 // 增加mysql type类型,issue 73
-                columnBuilder.setMysqlType(fieldMeta.getColumnType());
-            } else if (existOptionalMetaData) {
-                columnBuilder.setName(info.name);
-                columnBuilder.setIsKey(info.pk);
-                // mysql8.0里没有mysql type类型
-                // columnBuilder.setMysqlType(fieldMeta.getColumnType());
+                columnBuilder.setMysqlType(column.mysqlType);
             }
             columnBuilder.setIndex(i);
             columnBuilder.setIsNull(false);
 
-            // fixed issue
-            // https://github.com/alibaba/canal/issues/66，特殊处理binary/varbinary，不能做编码处理
-            boolean isBinary = false;
-            boolean isSingleBit = false;
-            if (fieldMeta != null) {
-                if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "VARBINARY")) {
-                    isBinary = true;
-                } else if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "BINARY")) {
-                    isBinary = true;
-                } else if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "TINYINT(1)")) {
-                    isSingleBit = true;
-                }
-            }
-
-            buffer.nextValue(columnBuilder.getName(), i, info.type, info.meta, isBinary);
+            buffer.readNextValue(columnBuilder.getName(), i, info.type, info.meta, column.binary);
             int javaType = buffer.getJavaType();
             if (buffer.isNull()) {
                 columnBuilder.setIsNull(true);
+            } else if (buffer.isUnscaledDecimal()) {
+                // precision<=18的decimal，不需要构造BigDecimal
+                if (typedColumnValue) {
+                    columnBuilder.setDecimalValue(ByteString.copyFrom(toByteArray(buffer.getDecimalUnscaled())));
+                    columnBuilder.setDecimalScale(buffer.getDecimalScale());
+                } else {
+                    columnBuilder.setValue(buffer.getDecimalPlainString());
+                }
+            } else if (typedColumnValue && buffer.isTemporal()) {
+                // 时间类型直接使用微秒，不需要格式化字符串
+                columnBuilder.setTemporalValue(buffer.getTemporalMicros());
             } else {
                 final Serializable value = buffer.getValue();
                 // 处理各种类型
@@ -690,59 +767,74 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                     case Types.BIGINT:
                         // 处理unsigned类型
                         Number number = (Number) value;
-                        boolean isUnsigned = (fieldMeta != null ? fieldMeta.isUnsigned() : (existOptionalMetaData && info.unsigned));
-                        if (isUnsigned && number.longValue() < 0) {
+                        if (column.unsigned && number.longValue() < 0) {
                             switch (buffer.getLength()) {
                                 case 1: /* MYSQL_TYPE_TINY */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(TINYINT_MAX_VALUE
-                                            + number.intValue())));
+                                    setLongValue(columnBuilder, TINYINT_MAX_VALUE + number.intValue());
                                     javaType = Types.SMALLINT; // 往上加一个量级
                                     break;
 
                                 case 2: /* MYSQL_TYPE_SHORT */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(SMALLINT_MAX_VALUE
-                                            + number.intValue())));
+                                    setLongValue(columnBuilder, SMALLINT_MAX_VALUE + number.intValue());
                                     javaType = Types.INTEGER; // 往上加一个量级
                                     break;
 
                                 case 3: /* MYSQL_TYPE_INT24 */
-                                    columnBuilder.setValue(String.valueOf(Integer.valueOf(MEDIUMINT_MAX_VALUE
-                                            + number.intValue())));
+                                    setLongValue(columnBuilder, MEDIUMINT_MAX_VALUE + number.intValue());
                                     javaType = Types.INTEGER; // 往上加一个量级
                                     break;
 
                                 case 4: /* MYSQL_TYPE_LONG */
-                                    columnBuilder.setValue(String.valueOf(Long.valueOf(INTEGER_MAX_VALUE
-                                            + number.longValue())));
+                                    setLongValue(columnBuilder, INTEGER_MAX_VALUE + number.longValue());
                                     javaType = Types.BIGINT; // 往上加一个量级
                                     break;
 
                                 case 8: /* MYSQL_TYPE_LONGLONG */
-                                    columnBuilder.setValue(BIGINT_MAX_VALUE.add(BigInteger.valueOf(number.longValue()))
-                                            .toString());
+                                    BigInteger unsigned = BIGINT_MAX_VALUE.add(BigInteger.valueOf(number.longValue()));
+                                    if (typedColumnValue) {
+                                        // 超出sint64范围，使用scale=0的decimal
+                                        columnBuilder.setDecimalValue(ByteString.copyFrom(unsigned.toByteArray()));
+                                    } else {
+                                        columnBuilder.setValue(unsigned.toString());
+                                    }
                                     javaType = Types.DECIMAL; // 往上加一个量级，避免执行出错
                                     break;
                             }
                         } else {
                             // 对象为number类型，直接valueof即可
-                            columnBuilder.setValue(String.valueOf(value));
+                            setLongValue(columnBuilder, number.longValue());
                         }
 
-                        if (isSingleBit && javaType == Types.TINYINT) {
+                        if (column.singleBit && javaType == Types.TINYINT) {
                             javaType = Types.BIT;
                         }
                         break;
                     case Types.REAL: // float
                     case Types.DOUBLE: // double
-                        // 对象为number类型，直接valueof即可
-                        columnBuilder.setValue(String.valueOf(value));
+                        if (typedColumnValue) {
+                            // float转double不会丢失精度
+                            columnBuilder.setDoubleValue(((Number) value).doubleValue());
+                        } else {
+                            // 对象为number类型，直接valueof即可
+                            columnBuilder.setValue(String.valueOf(value));
+                        }
                         break;
                     case Types.BIT:// bit
                         // 对象为number类型
-                        columnBuilder.setValue(String.valueOf(value));
+                        if (typedColumnValue) {
+                            columnBuilder.setLongValue(((Number) value).longValue());
+                        } else {
+                            columnBuilder.setValue(String.valueOf(value));
+                        }
                         break;
                     case Types.DECIMAL:
-                        columnBuilder.setValue(((BigDecimal) value).toPlainString());
+                        if (typedColumnValue) {
+                            BigDecimal decimal = (BigDecimal) value;
+                            columnBuilder.setDecimalValue(ByteString.copyFrom(decimal.unscaledValue().toByteArray()));
+                            columnBuilder.setDecimalScale(decimal.scale());
+                        } else {
+                            columnBuilder.setValue(((BigDecimal) value).toPlainString());
+                        }
                         break;
                     case Types.TIMESTAMP:
                         // 修复时间边界值
@@ -762,9 +854,12 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
                         // https://github.com/AlibabaTech/canal/issues/18
                         // mysql binlog中blob/text都处理为blob类型，需要反查table
                         // meta，按编码解析text
-                        if (fieldMeta != null && isText(fieldMeta.getColumnType())) {
+                        if (column.text) {
                             columnBuilder.setValue(new String((byte[]) value, charset));
                             javaType = Types.CLOB;
+                        } else if (typedColumnValue) {
+                            columnBuilder.setBytesValue(ByteString.copyFrom((byte[]) value));
+                            javaType = Types.BLOB;
                         } else {
                             // byte数组，直接使用iso-8859-1保留对应编码，浪费内存
                             columnBuilder.setValue(new String((byte[]) value, StandardCharsets.ISO_8859_1));
@@ -784,16 +879,20 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
 
             columnBuilder.setSqlType(javaType);
             // 设置是否update的标记位
-            columnBuilder.setUpdated(isAfter
-                    && isUpdate(rowDataBuilder.getBeforeColumnsList(),
-                    columnBuilder.getIsNull() ? null : columnBuilder.getValue(),
-                    i));
-            if (needField(fieldList, blackFieldList, columnBuilder.getName())) {
-                if (isAfter) {
-                    rowDataBuilder.addAfterColumns(columnBuilder.build());
-                } else {
-                    rowDataBuilder.addBeforeColumns(columnBuilder.build());
+            boolean updated = isAfter && isUpdate(beforeColumns, columnBuilder, i);
+            columnBuilder.setUpdated(updated);
+            if (isAfter) {
+                if (beforeColumns != null && updateChangedColumnsOnly && !updated && !column.key) {
+                    // update的after记录只输出有变化的列和主键
+                    continue;
                 }
+                rowDataBuilder.addAfterColumns(columnBuilder.build());
+            } else {
+                Column built = columnBuilder.build();
+                if (beforeColumns != null) {
+                    beforeColumns[i] = built;
+                }
+                rowDataBuilder.addBeforeColumns(built);
             }
         }
 
@@ -872,30 +971,78 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         return headerBuilder.build();
     }
 
-    private boolean isUpdate(List<Column> bfColumns, String newValue, int index) {
-        if (bfColumns == null) {
-            throw new CanalParseException("ERROR ## the bfColumns is null");
+    private boolean isUpdate(Column[] beforeColumns, Column.Builder newColumn, int index) {
+        if (beforeColumns == null) {
+            // insert
+            return true;
         }
+        Column column = beforeColumns[index];
+        if (column == null) {
+            // 比如nolob/minial模式下,可能找不到before记录,认为是有变化
+            return true;
+        }
+        if (column.getIsNull()) {
+            // 如果全是null
+            return !newColumn.getIsNull();
+        }
+        // fixed issue #135, old column is Null
+        if (newColumn.getIsNull() || column.getTypedValueCase() != newColumn.getTypedValueCase()) {
+            return true;
+        }
+        // 如果不为null，并且相等
+        switch (newColumn.getTypedValueCase()) {
+            case LONGVALUE:
+                return column.getLongValue() != newColumn.getLongValue();
+            case DOUBLEVALUE:
+                return Double.doubleToLongBits(column.getDoubleValue()) != Double.doubleToLongBits(newColumn.getDoubleValue());
+            case BYTESVALUE:
+                return !column.getBytesValue().equals(newColumn.getBytesValue());
+            case DECIMALVALUE:
+                return column.getDecimalScale() != newColumn.getDecimalScale() || !column.getDecimalValue().equals(newColumn.getDecimalValue());
+            case TEMPORALVALUE:
+                return column.getTemporalValue() != newColumn.getTemporalValue();
+            default:
+                return !column.getValue().equals(newColumn.getValue());
+        }
+    }
 
-        if (index < 0) {
-            return false;
+    private void setLongValue(Column.Builder columnBuilder, long value) {
+        if (typedColumnValue) {
+            columnBuilder.setLongValue(value);
+        } else {
+            columnBuilder.setValue(String.valueOf(value));
         }
+    }
 
-        for (Column column : bfColumns) {
-            if (column.getIndex() == index) {// 比较before / after的column index
-                if (column.getIsNull() && newValue == null) {
-                    // 如果全是null
-                    return false;
-                } else if (newValue != null && (!column.getIsNull() && column.getValue().equals(newValue))) {
-                    // fixed issue #135, old column is Null
-                    // 如果不为null，并且相等
-                    return false;
-                }
-            }
+    /**
+     * 和BigInteger.valueOf(value).toByteArray()相同(最短的大端补码)
+     */
+    private static byte[] toByteArray(long value) {
+        int length = (Long.SIZE - Long.numberOfLeadingZeros(value < 0 ? ~value : value)) / 8 + 1;
+        byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>= 8;
         }
+        return bytes;
+    }
 
-        // 比如nolob/minial模式下,可能找不到before记录,认为是有变化
-        return true;
+    /**
+     * update的before记录只保留after中输出的列(有变化的列)和主键
+     */
+    private void trimBeforeImage(RowData.Builder rowDataBuilder, int columnCnt) {
+        BitSet afterIndexes = new BitSet(columnCnt);
+        for (Column column : rowDataBuilder.getAfterColumnsList()) {
+            afterIndexes.set(column.getIndex());
+        }
+        List<Column> before = new ArrayList<>(afterIndexes.cardinality());
+        for (Column column : rowDataBuilder.getBeforeColumnsList()) {
+            if (column.getIsKey() || afterIndexes.get(column.getIndex())) {
+                before.add(column);
+            }
+        }
+        rowDataBuilder.clearBeforeColumns();
+        rowDataBuilder.addAllBeforeColumns(before);
     }
 
     private TableMeta getTableMeta(String dbName, String tbName, boolean useCache, EntryPosition position) {
@@ -942,6 +1089,125 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         }
     }
 
+    /**
+     * 获取表的解码计划，按tableMeta实例和table map的列定义缓存(tableMeta为空时不缓存)
+     *
+     * @param tableMeta       表结构，为空或者表结构异常时按binlog中的列信息解析
+     * @param filterTableMeta 查找字段过滤条件的表
+     */
+    private DecodePlan getDecodePlan(RowsLogEvent event, TableMeta tableMeta, TableMeta filterTableMeta) {
+        TableMapLogEvent table = event.getTable();
+        if (tableMeta == null) {
+            return buildDecodePlan(event, null, filterTableMeta, null);
+        }
+        DecodePlan plan = decodePlans.get(tableMeta.getFullName());
+        if (plan != null && plan.tableMeta == tableMeta) {
+            if (plan.table == table) {
+                return plan;
+            }
+            if (isSameLayout(plan.table, table)) {
+                // 每个事务都会有新的table map，列定义没有变化时复用之前的结果
+                plan = new DecodePlan(tableMeta, table, plan.columns, plan.rdsRowIdProjected);
+                decodePlans.put(tableMeta.getFullName(), plan);
+                return plan;
+            }
+        }
+        plan = buildDecodePlan(event, tableMeta, filterTableMeta, plan);
+        decodePlans.put(tableMeta.getFullName(), plan);
+        return plan;
+    }
+
+    private DecodePlan buildDecodePlan(RowsLogEvent event, TableMeta tableMeta, TableMeta filterTableMeta, DecodePlan previous) {
+        TableMapLogEvent table = event.getTable();
+        TableMapLogEvent.ColumnInfo[] columnInfo = table.getColumnInfo();
+        // mysql8.0针对set @@global.binlog_row_metadata='FULL' 可以记录部分的metadata信息
+        boolean existOptionalMetaData = table.isExistOptionalMetaData();
+        //获取字段过滤条件
+        List<String> fieldList = null;
+        List<String> blackFieldList = null;
+        if (filterTableMeta != null) {
+            String fullName = filterTableMeta.getFullName().toUpperCase();
+            fieldList = fieldFilterMap.get(fullName);
+            blackFieldList = fieldBlackFilterMap.get(fullName);
+        }
+        ColumnPlan[] columns = new ColumnPlan[table.getColumnCnt()];
+        for (int i = 0; i < columns.length; i++) {
+            TableMapLogEvent.ColumnInfo info = columnInfo[i];
+            FieldMeta fieldMeta = null;
+            if (tableMeta != null && i < tableMeta.getFields().size()) {
+                // 处理file meta
+                fieldMeta = tableMeta.getFields().get(i);
+            }
+            if (fieldMeta != null && existOptionalMetaData && tableMetaCache.isOnTSDB()) {
+                // check column info
+                boolean check = StringUtils.equalsIgnoreCase(fieldMeta.getColumnName(), info.name);
+                check &= (fieldMeta.isUnsigned() == info.unsigned);
+                check &= (fieldMeta.isNullable() == info.nullable);
+
+                if (!check) {
+                    throw new CanalParseException("MySQL8.0 unmatch column metadata & pls submit issue , table : "
+                            + tableMeta.getFullName() + ", db fieldMeta : "
+                            + fieldMeta.toString() + " , binlog fieldMeta : " + info.toString()
+                            + " , on : " + event.getHeader().getLogFileName() + ":"
+                            + (event.getHeader().getLogPos() - event.getHeader().getEventLen()));
+                }
+            }
+            ColumnPlan column = new ColumnPlan();
+            if (fieldMeta != null) {
+                column.name = fieldMeta.getColumnName();
+                column.key = fieldMeta.isKey();
+                column.mysqlType = fieldMeta.getColumnType();
+                column.unsigned = fieldMeta.isUnsigned();
+                // fixed issue
+                // https://github.com/alibaba/canal/issues/66，特殊处理binary/varbinary，不能做编码处理
+                if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "VARBINARY")) {
+                    column.binary = true;
+                } else if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "BINARY")) {
+                    column.binary = true;
+                } else if (StringUtils.containsIgnoreCase(fieldMeta.getColumnType(), "TINYINT(1)")) {
+                    column.singleBit = true;
+                }
+                column.text = isText(fieldMeta.getColumnType());
+            } else if (existOptionalMetaData) {
+                column.name = info.name;
+                column.key = info.pk;
+                // mysql8.0里没有mysql type类型
+                column.unsigned = info.unsigned;
+            }
+            column.projected = needField(fieldList, blackFieldList, column.name == null ? "" : column.name);
+            columns[i] = column;
+        }
+        if (previous != null && Arrays.equals(previous.columns, columns)) {
+            // 表结构重新加载但是列没有变化
+            columns = previous.columns;
+        }
+        return new DecodePlan(tableMeta, table, columns, needField(fieldList, blackFieldList, "#alibaba_rds_row_id#"));
+    }
+
+    /**
+     * 两个table map的列定义是否相同
+     */
+    private boolean isSameLayout(TableMapLogEvent table1, TableMapLogEvent table2) {
+        if (table1.getColumnCnt() != table2.getColumnCnt() || table1.isExistOptionalMetaData() != table2.isExistOptionalMetaData()) {
+            return false;
+        }
+        TableMapLogEvent.ColumnInfo[] columnInfo1 = table1.getColumnInfo();
+        TableMapLogEvent.ColumnInfo[] columnInfo2 = table2.getColumnInfo();
+        if (columnInfo1 == columnInfo2) {
+            // 内容没有变化的table map共享同一份列信息
+            return true;
+        }
+        for (int i = 0; i < columnInfo1.length; i++) {
+            TableMapLogEvent.ColumnInfo info1 = columnInfo1[i];
+            TableMapLogEvent.ColumnInfo info2 = columnInfo2[i];
+            if (info1.type != info2.type || info1.meta != info2.meta || info1.unsigned != info2.unsigned
+                    || info1.pk != info2.pk || info1.nullable != info2.nullable || !StringUtils.equals(info1.name, info2.name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static TransactionBegin createTransactionBegin(long threadId) {
         TransactionBegin.Builder beginBuilder = TransactionBegin.newBuilder();
         beginBuilder.setThreadId(threadId);
@@ -989,6 +1255,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         } else {
             this.fieldFilterMap = new HashMap<>();
         }
+        decodePlans.clear();
         for (Map.Entry<String, List<String>> entry : this.fieldFilterMap.entrySet()) {
             logger.info("--> init field filter : " + entry.getKey() + "->" + entry.getValue());
         }
@@ -1000,6 +1267,7 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
         } else {
             this.fieldBlackFilterMap = new HashMap<>();
         }
+        decodePlans.clear();
         for (Map.Entry<String, List<String>> entry : this.fieldBlackFilterMap.entrySet()) {
             logger.info("--> init field black filter : " + entry.getKey() + "->" + entry.getValue());
         }
@@ -1032,4 +1300,63 @@ public class LogEventConvert extends AbstractCanalLifeCycle implements BinlogPar
     public void setUseDruidDdlFilter(boolean useDruidDdlFilter) {
         this.useDruidDdlFilter = useDruidDdlFilter;
     }
+
+    public void setUpdateChangedColumnsOnly(boolean updateChangedColumnsOnly) {
+        this.updateChangedColumnsOnly = updateChangedColumnsOnly;
+    }
+
+    public void setUpdateKeepBeforeImage(boolean updateKeepBeforeImage) {
+        this.updateKeepBeforeImage = updateKeepBeforeImage;
+    }
+
+    public void setTypedColumnValue(boolean typedColumnValue) {
+        this.typedColumnValue = typedColumnValue;
+    }
+
+    /**
+     * 行数据事件中一个分片的解析结果
+     */
+    private static class RowsShard {
+        private final List<RowData> rowDatas = new ArrayList<>();
+        private int rowsCount = 0;
+        private boolean tableError = false;
+    }
+
+    /**
+     * 表的解码计划(不可变)，解析每一行时直接按列下标取值，不需要重复判断字段类型、字段过滤条件
+     */
+    private static class DecodePlan {
+        private final TableMeta tableMeta;
+        private final TableMapLogEvent table;
+        private final ColumnPlan[] columns;
+        /**
+         * RDS无主键表隐藏的主键列是否需要输出
+         */
+        private final boolean rdsRowIdProjected;
+
+        private DecodePlan(TableMeta tableMeta, TableMapLogEvent table, ColumnPlan[] columns, boolean rdsRowIdProjected) {
+            this.tableMeta = tableMeta;
+            this.table = table;
+            this.columns = columns;
+            this.rdsRowIdProjected = rdsRowIdProjected;
+        }
+    }
+
+    /**
+     * 一列的解析方式
+     */
+    @EqualsAndHashCode
+    private static class ColumnPlan {
+        private String name;
+        private boolean key;
+        private String mysqlType;
+        private boolean unsigned;
+        private boolean binary;
+        private boolean text;
+        private boolean singleBit;
+        /**
+         * 是否需要输出(没有被字段过滤)
+         */
+        private boolean projected;
+    }
 }
@@ -57,6 +57,9 @@ public class RdsBinlogEventParserProxy extends MysqlEventParser {
             rdsLocalBinlogEventParser.setFilterQueryDml(this.filterQueryDml);
             rdsLocalBinlogEventParser.setFilterRows(this.filterRows);
             rdsLocalBinlogEventParser.setFilterTableError(this.filterTableError);
+            rdsLocalBinlogEventParser.setUpdateChangedColumnsOnly(this.updateChangedColumnsOnly);
+            rdsLocalBinlogEventParser.setUpdateKeepBeforeImage(this.updateKeepBeforeImage);
+            rdsLocalBinlogEventParser.setTypedColumnValue(this.typedColumnValue);
             // rdsLocalBinlogEventParser.setIsGTIDMode(this.isGTIDMode);
             rdsLocalBinlogEventParser.setMasterInfo(this.masterInfo);
             rdsLocalBinlogEventParser.setEventFilter(this.eventFilter);
@@ -0,0 +1,80 @@
+package org.clever.canal.parse.index;
+
+import org.clever.canal.parse.exception.CanalParseException;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 管理binlog消费位置信息 (优先使用store检查点恢复的位置)
+ *
+ * <pre>
+ *     store从检查点文件恢复了未ack的数据之后，parser需要从恢复的最后一个事务之后开始解析，避免重复写入store
+ *     parser保存过位置信息之后，完全使用被代理的管理器
+ * </pre>
+ */
+public class StoreCheckpointLogPositionManager extends AbstractLogPositionManager {
+    private final static Logger logger = LoggerFactory.getLogger(StoreCheckpointLogPositionManager.class);
+
+    /**
+     * 被代理的管理binlog消费位置信息
+     */
+    private final CanalLogPositionManager delegate;
+    /**
+     * 支持检查点的store
+     */
+    private final MemoryEventStoreWithBuffer eventStore;
+    /**
+     * parser是否已经保存过位置信息
+     */
+    private volatile boolean persisted = false;
+
+    /**
+     * @param delegate   被代理的管理binlog消费位置信息
+     * @param eventStore 支持检查点的store
+     */
+    public StoreCheckpointLogPositionManager(CanalLogPositionManager delegate, MemoryEventStoreWithBuffer eventStore) {
+        if (delegate == null) {
+            throw new NullPointerException("null delegate LogPositionManager");
+        }
+        if (eventStore == null) {
+            throw new NullPointerException("null eventStore");
+        }
+        this.delegate = delegate;
+        this.eventStore = eventStore;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        persisted = false;
+        if (!delegate.isStart()) {
+            delegate.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (delegate.isStart()) {
+            delegate.stop();
+        }
+    }
+
+    @Override
+    public LogPosition getLatestIndexBy(String destination) {
+        LogPosition restoredPosition = eventStore.getRestoredPosition();
+        if (!persisted && restoredPosition != null) {
+            logger.info("use store checkpoint LogPosition:{} - {}", destination, restoredPosition);
+            return restoredPosition;
+        }
+        return delegate.getLatestIndexBy(destination);
+    }
+
+    @Override
+    public void persistLogPosition(String destination, LogPosition logPosition) throws CanalParseException {
+        persisted = true;
+        delegate.persistLogPosition(destination, logPosition);
+    }
+}
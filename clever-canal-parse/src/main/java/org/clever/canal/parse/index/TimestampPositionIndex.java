@@ -0,0 +1,395 @@
+package org.clever.canal.parse.index;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.clever.canal.common.AbstractCanalLifeCycle;
+import org.clever.canal.parse.exception.CanalParseException;
+import org.clever.canal.protocol.position.EntryPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 时间戳到binlog位点的稀疏索引(本地文件实现)
+ *
+ * <pre>
+ * 1. 每隔interval毫秒或者binlog每前进intervalBytes字节，记录一次(serverId, 时间戳) -> (binlog文件, 事务结束位点, gtid)
+ * 2. 按时间戳或者位点查找时，先从索引中找到最近的事务边界，只需要从该位点开始扫描binlog，不需要从文件头(或者逐个文件)扫描
+ * 3. 数据追加写入文件，启动时加载到内存；记录数超过maxRecords时删除最早的1/4并重写文件
+ * 4. binlog被重置(reset master)之后文件名会被重复使用，时间早于binlog文件第一个事件的记录不属于该文件，需要删除
+ * </pre>
+ */
+public class TimestampPositionIndex extends AbstractCanalLifeCycle {
+    private final static Logger logger = LoggerFactory.getLogger(TimestampPositionIndex.class);
+
+    private static final int MAGIC = 0xCA7A1D01;
+    private static final int VERSION = 1;
+    /**
+     * gtid超过该长度时不记录(writeUTF的长度限制)
+     */
+    private static final int MAX_GTID_LENGTH = 16 * 1024;
+    /**
+     * 文件名称
+     */
+    private final static String Default_File_Name = "timestamp.idx";
+
+    /**
+     * 索引文件
+     */
+    private final File dataFile;
+    /**
+     * 两条索引记录的最小时间间隔(单位ms)
+     */
+    @Getter
+    @Setter
+    private long interval = 1000;
+    /**
+     * 两条索引记录的最小binlog间隔(单位字节)
+     */
+    @Getter
+    @Setter
+    private long intervalBytes = 16 * 1024 * 1024;
+    /**
+     * 最多保留的索引记录数量
+     */
+    @Getter
+    @Setter
+    private int maxRecords = 200000;
+    /**
+     * 索引记录 serverId ---> 按时间戳(位点)顺序排列的记录
+     */
+    private final Map<Long, List<EntryPosition>> records = new HashMap<>();
+    /**
+     * 索引记录数量
+     */
+    private int size;
+    /**
+     * 最后一条记录(判断是否需要追加新记录)
+     */
+    private EntryPosition last;
+    private DataOutputStream output;
+
+    /**
+     * @param dataDir     保存文件位置
+     * @param destination 通道名称
+     */
+    public TimestampPositionIndex(File dataDir, String destination) {
+        if (dataDir == null) {
+            throw new NullPointerException("null dataDir");
+        }
+        this.dataFile = new File(new File(dataDir, destination), Default_File_Name);
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        try {
+            FileUtils.forceMkdir(dataFile.getParentFile());
+            long validLength = load();
+            if (validLength == 0 || size > maxRecords) {
+                if (size > maxRecords) {
+                    evict();
+                }
+                rewrite();
+            } else {
+                if (validLength < dataFile.length()) {
+                    // 丢弃异常停止时写了一半的记录
+                    try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+                        file.setLength(validLength);
+                    }
+                }
+                output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, true)));
+            }
+        } catch (IOException e) {
+            throw new CanalParseException("open timestamp index failed: " + dataFile, e);
+        }
+        logger.info("load timestamp index {} with {} records", dataFile, size);
+    }
+
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        closeOutput();
+        records.clear();
+        size = 0;
+        last = null;
+    }
+
+    /**
+     * 记录一个事务结束的位点，距离上一条记录的时间和binlog间隔都没有达到阈值时忽略
+     *
+     * @param position 事务结束的位点(可以从该位点开始dump)
+     */
+    public synchronized void append(EntryPosition position) {
+        if (!running || position.getTimestamp() == null || position.getServerId() == null || position.getJournalName() == null) {
+            return;
+        }
+        if (last != null && last.getServerId().equals(position.getServerId())
+                && StringUtils.equals(last.getJournalName(), position.getJournalName())
+                && position.getTimestamp() - last.getTimestamp() < interval
+                && position.getPosition() - last.getPosition() < intervalBytes) {
+            return;
+        }
+        EntryPosition record = new EntryPosition(position.getJournalName(), position.getPosition(), position.getTimestamp(), position.getServerId());
+        record.setGtId(position.getGtId());
+        List<EntryPosition> serverRecords = records.computeIfAbsent(record.getServerId(), serverId -> new ArrayList<>());
+        boolean stale = false;
+        if (!serverRecords.isEmpty()) {
+            EntryPosition serverLast = serverRecords.get(serverRecords.size() - 1);
+            if (record.getTimestamp() > serverLast.getTimestamp() && compare(record, serverLast) <= 0) {
+                // 时间前进但是位点回退，binlog被重置过，之后的记录都已经过期
+                stale = removeStale(serverRecords, record.getJournalName(), record.getTimestamp()) > 0;
+            } else if (record.getTimestamp() < serverLast.getTimestamp() || compare(record, serverLast) <= 0) {
+                // 时间或者位点回退(重复解析)
+                return;
+            }
+        }
+        serverRecords.add(record);
+        size++;
+        last = record;
+        try {
+            if (size > maxRecords) {
+                evict();
+                rewrite();
+            } else if (stale) {
+                rewrite();
+            } else {
+                write(output, record);
+                output.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("write timestamp index failed: " + dataFile, e);
+        }
+    }
+
+    /**
+     * 查找时间戳小于timestamp的最后一条记录
+     */
+    public synchronized EntryPosition findByTimestamp(Long serverId, long timestamp) {
+        List<EntryPosition> serverRecords = records.get(serverId);
+        if (serverRecords == null) {
+            return null;
+        }
+        int low = 0;
+        int high = serverRecords.size() - 1;
+        EntryPosition found = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            EntryPosition record = serverRecords.get(mid);
+            if (record.getTimestamp() < timestamp) {
+                found = record;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 查找同一个binlog文件中位点小于等于position的最后一条记录
+     */
+    public synchronized EntryPosition findByPosition(Long serverId, String journalName, long position) {
+        List<EntryPosition> serverRecords = records.get(serverId);
+        if (serverRecords == null) {
+            return null;
+        }
+        EntryPosition target = new EntryPosition(journalName, position);
+        int low = 0;
+        int high = serverRecords.size() - 1;
+        EntryPosition found = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            EntryPosition record = serverRecords.get(mid);
+            if (compare(record, target) <= 0) {
+                found = record;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found != null && StringUtils.equals(found.getJournalName(), journalName) ? found : null;
+    }
+
+    /**
+     * 删除binlog文件(以及之后文件)中时间早于该文件第一个事件的记录，这些记录是binlog被重置之前的同名文件的
+     *
+     * @param firstEventTimestamp binlog文件第一个事件的时间戳
+     * @return 删除的记录数量
+     */
+    public synchronized int removeStale(Long serverId, String journalName, long firstEventTimestamp) {
+        List<EntryPosition> serverRecords = records.get(serverId);
+        if (serverRecords == null) {
+            return 0;
+        }
+        int removed = removeStale(serverRecords, journalName, firstEventTimestamp);
+        if (serverRecords.isEmpty()) {
+            records.remove(serverId);
+        }
+        if (removed > 0 && running) {
+            try {
+                rewrite();
+            } catch (IOException e) {
+                logger.warn("rewrite timestamp index failed: " + dataFile, e);
+            }
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // ============================ helper method ======================
+
+    private static int compare(EntryPosition o1, EntryPosition o2) {
+        int result = o1.getJournalName().compareTo(o2.getJournalName());
+        return result != 0 ? result : Long.compare(o1.getPosition(), o2.getPosition());
+    }
+
+    private int removeStale(List<EntryPosition> serverRecords, String journalName, long firstEventTimestamp) {
+        int removed = 0;
+        for (Iterator<EntryPosition> iterator = serverRecords.iterator(); iterator.hasNext(); ) {
+            EntryPosition record = iterator.next();
+            if (record.getJournalName().compareTo(journalName) >= 0 && record.getTimestamp() < firstEventTimestamp) {
+                iterator.remove();
+                removed++;
+                if (record == last) {
+                    // 最后一条记录被删除之后不再用于判断追加间隔
+                    last = null;
+                }
+            }
+        }
+        size -= removed;
+        return removed;
+    }
+
+    /**
+     * 加载索引文件
+     *
+     * @return 文件中完整记录的长度
+     */
+    private long load() throws IOException {
+        if (!dataFile.exists() || dataFile.length() == 0) {
+            return 0;
+        }
+        long validLength = 0;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(dataFile)));
+             DataInputStream input = new DataInputStream(counter)) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                logger.warn("unsupported timestamp index {}, rebuild it", dataFile);
+                return 0;
+            }
+            validLength = counter.count;
+            while (true) {
+                EntryPosition record = new EntryPosition();
+                record.setServerId(input.readLong());
+                record.setTimestamp(input.readLong());
+                record.setJournalName(input.readUTF());
+                record.setPosition(input.readLong());
+                String gtId = input.readUTF();
+                record.setGtId(gtId.isEmpty() ? null : gtId);
+                records.computeIfAbsent(record.getServerId(), serverId -> new ArrayList<>()).add(record);
+                size++;
+                last = record;
+                validLength = counter.count;
+            }
+        } catch (EOFException e) {
+            // 文件结束
+        }
+        return validLength;
+    }
+
+    /**
+     * 删除最早的1/4记录(按每个serverId的记录数量比例)
+     */
+    private void evict() {
+        int remove = size - maxRecords * 3 / 4;
+        for (List<EntryPosition> serverRecords : records.values()) {
+            int count = (int) Math.min(serverRecords.size(), (long) remove * serverRecords.size() / size + 1);
+            serverRecords.subList(0, count).clear();
+        }
+        records.values().removeIf(List::isEmpty);
+        size = 0;
+        for (List<EntryPosition> serverRecords : records.values()) {
+            size += serverRecords.size();
+        }
+    }
+
+    /**
+     * 重写整个索引文件(先写临时文件再重命名)
+     */
+    private void rewrite() throws IOException {
+        closeOutput();
+        File tmp = new File(dataFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (List<EntryPosition> serverRecords : records.values()) {
+                for (EntryPosition record : serverRecords) {
+                    write(out, record);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, true)));
+    }
+
+    private static void write(DataOutputStream out, EntryPosition record) throws IOException {
+        out.writeLong(record.getServerId());
+        out.writeLong(record.getTimestamp());
+        out.writeUTF(record.getJournalName());
+        out.writeLong(record.getPosition());
+        out.writeUTF(record.getGtId() == null || record.getGtId().length() > MAX_GTID_LENGTH ? "" : record.getGtId());
+    }
+
+    private void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                logger.warn("close timestamp index failed: " + dataFile, e);
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * 记录已读取的字节数
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.clever.canal.parse.inbound;
+
+import org.clever.canal.parse.exception.CanalParseException;
+import org.clever.canal.protocol.CanalEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 异步刷新事务：刷新顺序、失败传播、reset丢弃队列中的事务
+ */
+public class EventTransactionBufferTest {
+
+    @Test(timeout = 60000)
+    public void testAsyncFlushOrder() throws Exception {
+        List<List<CanalEntry.Entry>> expected = new ArrayList<>();
+        EventTransactionBuffer syncBuffer = new EventTransactionBuffer(expected::add);
+        syncBuffer.setBufferSize(16);
+        syncBuffer.start();
+
+        List<List<CanalEntry.Entry>> flushed = new CopyOnWriteArrayList<>();
+        Random sleep = new Random(0);
+        EventTransactionBuffer asyncBuffer = new EventTransactionBuffer(transaction -> {
+            if (sleep.nextInt(50) == 0) {
+                Thread.sleep(1);
+            }
+            flushed.add(transaction);
+        });
+        asyncBuffer.setBufferSize(16);
+        asyncBuffer.setAsyncFlush(true);
+        asyncBuffer.setFlushQueueSize(4);
+        asyncBuffer.start();
+
+        // 同样的数据分别同步和异步刷新，刷新的事务相同并且顺序一致
+        Random random = new Random(1);
+        long position = 0;
+        for (int i = 0; i < 2000; i++) {
+            List<CanalEntry.Entry> transaction = transaction(position, random.nextInt(40), random.nextInt(20) == 0);
+            position += transaction.size();
+            syncBuffer.add(transaction);
+            asyncBuffer.add(transaction);
+        }
+        waitSize(flushed, expected.size());
+        Assert.assertEquals(expected, new ArrayList<>(flushed));
+        long next = 0;
+        for (List<CanalEntry.Entry> transaction : flushed) {
+            for (CanalEntry.Entry entry : transaction) {
+                Assert.assertEquals(next++, entry.getHeader().getLogfileOffset());
+            }
+        }
+        syncBuffer.stop();
+        asyncBuffer.stop();
+    }
+
+    @Test(timeout = 60000)
+    public void testAsyncFlushFailure() throws Exception {
+        List<List<CanalEntry.Entry>> flushed = new CopyOnWriteArrayList<>();
+        AtomicBoolean fail = new AtomicBoolean(true);
+        EventTransactionBuffer buffer = new EventTransactionBuffer(transaction -> {
+            if (flushed.size() == 2 && fail.compareAndSet(true, false)) {
+                throw new CanalParseException("sink failed");
+            }
+            flushed.add(transaction);
+        });
+        AtomicReference<Throwable> handled = new AtomicReference<>();
+        CountDownLatch failed = new CountDownLatch(1);
+        buffer.setAsyncFlush(true);
+        buffer.setFlushExceptionHandler(e -> {
+            handled.set(e);
+            failed.countDown();
+        });
+        buffer.start();
+
+        long position = 0;
+        for (int i = 0; i < 3; i++) {
+            List<CanalEntry.Entry> transaction = transaction(position, 2, false);
+            position += transaction.size();
+            buffer.add(transaction);
+        }
+        // 刷新失败时立即通知，不需要等下一次add
+        Assert.assertTrue(failed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals("sink failed", handled.get().getMessage());
+        // 之后的add抛出异常，失败之后的事务不会被刷新
+        try {
+            buffer.add(transaction(position, 2, false));
+            buffer.add(transaction(position + 4, 2, false));
+            Assert.fail();
+        } catch (CanalParseException e) {
+            Assert.assertSame(handled.get(), e.getCause());
+        }
+        Assert.assertEquals(2, flushed.size());
+
+        // reset之后可以继续刷新
+        buffer.reset();
+        buffer.add(transaction(100, 2, false));
+        buffer.add(transaction(104, 2, false));
+        waitSize(flushed, 4);
+        Assert.assertEquals(100, flushed.get(2).get(0).getHeader().getLogfileOffset());
+        Assert.assertEquals(104, flushed.get(3).get(0).getHeader().getLogfileOffset());
+        buffer.stop();
+    }
+
+    @Test(timeout = 60000)
+    public void testResetDiscardQueued() throws Exception {
+        List<List<CanalEntry.Entry>> flushed = new CopyOnWriteArrayList<>();
+        CountDownLatch entered = new CountDownLatch(1);
+        AtomicBoolean block = new AtomicBoolean(true);
+        EventTransactionBuffer buffer = new EventTransactionBuffer(transaction -> {
+            if (block.get()) {
+                entered.countDown();
+                // 阻塞刷新线程，之后的事务留在队列中，直到reset中断刷新线程
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            flushed.add(transaction);
+        });
+        buffer.setAsyncFlush(true);
+        buffer.setFlushQueueSize(16);
+        buffer.start();
+
+        long position = 0;
+        for (int i = 0; i < 5; i++) {
+            List<CanalEntry.Entry> transaction = transaction(position, 2, false);
+            position += transaction.size();
+            buffer.add(transaction);
+        }
+        Assert.assertTrue(entered.await(10, TimeUnit.SECONDS));
+        block.set(false);
+        buffer.reset();
+
+        // reset之前放入队列的事务全部丢弃，reset不会当作刷新失败
+        buffer.add(transaction(1000, 2, false));
+        buffer.add(transaction(1004, 2, false));
+        waitSize(flushed, 2);
+        Thread.sleep(100);
+        Assert.assertEquals(2, flushed.size());
+        Assert.assertEquals(1000, flushed.get(0).get(0).getHeader().getLogfileOffset());
+        Assert.assertEquals(1004, flushed.get(1).get(0).getHeader().getLogfileOffset());
+        buffer.stop();
+    }
+
+    @Test(timeout = 60000)
+    public void testStopTimeout() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        AtomicBoolean release = new AtomicBoolean(false);
+        EventTransactionBuffer buffer = new EventTransactionBuffer(transaction -> {
+            entered.countDown();
+            // 不响应中断的刷新
+            while (!release.get()) {
+                Thread.yield();
+            }
+        });
+        buffer.setAsyncFlush(true);
+        buffer.setFlushStopTimeout(200);
+        buffer.start();
+        buffer.add(transaction(0, 2, false));
+        buffer.add(transaction(4, 2, false));
+        Assert.assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        long start = System.currentTimeMillis();
+        buffer.stop();
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        release.set(true);
+    }
+
+    // ============================ helper method ======================
+
+    /**
+     * BEGIN + rowCount条INSERT + END，ddl = true时为一条DDL
+     */
+    private static List<CanalEntry.Entry> transaction(long position, int rowCount, boolean ddl) {
+        List<CanalEntry.Entry> transaction = new ArrayList<>();
+        if (ddl) {
+            transaction.add(entry(position, CanalEntry.EntryType.ROW_DATA, CanalEntry.EventType.CREATE));
+            return transaction;
+        }
+        transaction.add(entry(position++, CanalEntry.EntryType.TRANSACTION_BEGIN, CanalEntry.EventType.QUERY));
+        for (int i = 0; i < rowCount; i++) {
+            transaction.add(entry(position++, CanalEntry.EntryType.ROW_DATA, CanalEntry.EventType.INSERT));
+        }
+        transaction.add(entry(position, CanalEntry.EntryType.TRANSACTION_END, CanalEntry.EventType.QUERY));
+        return transaction;
+    }
+
+    private static CanalEntry.Entry entry(long position, CanalEntry.EntryType entryType, CanalEntry.EventType eventType) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(eventType)
+                .build();
+        return CanalEntry.Entry.newBuilder().setHeader(header).setEntryType(entryType).build();
+    }
+
+    private static void waitSize(List<?> list, int size) throws InterruptedException {
+        while (list.size() < size) {
+            Thread.sleep(1);
+        }
+    }
+}
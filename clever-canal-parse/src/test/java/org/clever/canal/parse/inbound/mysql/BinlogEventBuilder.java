@@ -0,0 +1,177 @@
+package org.clever.canal.parse.inbound.mysql;
+
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 构造测试用的binlog事件(v4格式，不带checksum)
+ */
+class BinlogEventBuilder {
+    private static final int TIMESTAMP = 1600000000;
+    private static final int SERVER_ID = 1;
+    private static final int HEADER_LENGTH = 19;
+
+    /**
+     * 事件头(19字节) + 事件内容
+     */
+    static byte[] event(int type, byte[] body, long logPos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLittleEndian(out, TIMESTAMP, 4);
+        out.write(type);
+        writeLittleEndian(out, SERVER_ID, 4);
+        writeLittleEndian(out, HEADER_LENGTH + body.length, 4);
+        writeLittleEndian(out, logPos, 4);
+        writeLittleEndian(out, 0, 2);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * 设置binlog文件名和位置(dump开始时的第一个事件)
+     */
+    static byte[] rotate(String fileName, long position) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLittleEndian(out, position, 8);
+        byte[] fileNameBytes = fileName.getBytes(StandardCharsets.UTF_8);
+        out.write(fileNameBytes, 0, fileNameBytes.length);
+        return event(LogEvent.ROTATE_EVENT, out.toByteArray(), 0);
+    }
+
+    static byte[] query(String schema, String sql, long logPos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        // thread_id, exec_time, schema长度, error_code, status_vars长度
+        writeLittleEndian(out, 1, 4);
+        writeLittleEndian(out, 0, 4);
+        out.write(schemaBytes.length);
+        writeLittleEndian(out, 0, 2);
+        writeLittleEndian(out, 0, 2);
+        out.write(schemaBytes, 0, schemaBytes.length);
+        out.write(0);
+        byte[] sqlBytes = sql.getBytes(StandardCharsets.UTF_8);
+        out.write(sqlBytes, 0, sqlBytes.length);
+        return event(LogEvent.QUERY_EVENT, out.toByteArray(), logPos);
+    }
+
+    static byte[] xid(long xid, long logPos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLittleEndian(out, xid, 8);
+        return event(LogEvent.XID_EVENT, out.toByteArray(), logPos);
+    }
+
+    /**
+     * 表结构事件，metas为每一列的元数据(按列类型决定写入的字节数)，列都可以为null
+     */
+    static byte[] tableMap(long tableId, String schema, String table, int[] types, int[] metas, long logPos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLittleEndian(out, tableId, 6);
+        writeLittleEndian(out, 0, 2);
+        writeName(out, schema);
+        writeName(out, table);
+        writePackedLong(out, types.length);
+        for (int type : types) {
+            out.write(type);
+        }
+        ByteArrayOutputStream metaOut = new ByteArrayOutputStream();
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LogEvent.MYSQL_TYPE_BLOB:
+                case LogEvent.MYSQL_TYPE_DOUBLE:
+                case LogEvent.MYSQL_TYPE_FLOAT:
+                case LogEvent.MYSQL_TYPE_GEOMETRY:
+                case LogEvent.MYSQL_TYPE_JSON:
+                case LogEvent.MYSQL_TYPE_TIMESTAMP2:
+                case LogEvent.MYSQL_TYPE_DATETIME2:
+                case LogEvent.MYSQL_TYPE_TIME2:
+                    metaOut.write(metas[i]);
+                    break;
+                case LogEvent.MYSQL_TYPE_STRING:
+                case LogEvent.MYSQL_TYPE_NEWDECIMAL:
+                    writeBigEndian(metaOut, metas[i], 2);
+                    break;
+                case LogEvent.MYSQL_TYPE_BIT:
+                case LogEvent.MYSQL_TYPE_VARCHAR:
+                    writeLittleEndian(metaOut, metas[i], 2);
+                    break;
+                default:
+                    break;
+            }
+        }
+        writePackedLong(out, metaOut.size());
+        out.write(metaOut.toByteArray(), 0, metaOut.size());
+        byte[] nullBits = new byte[(types.length + 7) / 8];
+        Arrays.fill(nullBits, (byte) 0xff);
+        out.write(nullBits, 0, nullBits.length);
+        return event(LogEvent.TABLE_MAP_EVENT, out.toByteArray(), logPos);
+    }
+
+    /**
+     * v2行数据事件，rows为已经编码好的行数据(每行: null位图 + 列值)
+     *
+     * @param type          WRITE_ROWS_EVENT、UPDATE_ROWS_EVENT或DELETE_ROWS_EVENT
+     * @param changeColumns UPDATE_ROWS_EVENT的变更后镜像包含的列，其他类型忽略
+     */
+    static byte[] rows(int type, long tableId, int columnCount, BitSet columns, BitSet changeColumns, byte[] rows, long logPos) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLittleEndian(out, tableId, 6);
+        writeLittleEndian(out, 0, 2);
+        // extra data长度(只有长度本身)
+        writeLittleEndian(out, 2, 2);
+        writePackedLong(out, columnCount);
+        writeBitmap(out, columns, columnCount);
+        if (type == LogEvent.UPDATE_ROWS_EVENT) {
+            writeBitmap(out, changeColumns, columnCount);
+        }
+        out.write(rows, 0, rows.length);
+        return event(type, out.toByteArray(), logPos);
+    }
+
+    static void writeBitmap(ByteArrayOutputStream out, BitSet bits, int length) {
+        byte[] bytes = new byte[(length + 7) / 8];
+        for (int i = bits.nextSetBit(0); i >= 0 && i < length; i = bits.nextSetBit(i + 1)) {
+            bytes[i / 8] |= (byte) (1 << (i % 8));
+        }
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeName(ByteArrayOutputStream out, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+        out.write(0);
+    }
+
+    static void writeLittleEndian(ByteArrayOutputStream out, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+
+    static void writeBigEndian(ByteArrayOutputStream out, long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+
+    /**
+     * 长度编码的整数(packed integer)
+     */
+    static void writePackedLong(ByteArrayOutputStream out, long value) {
+        if (value < 251) {
+            out.write((int) value);
+        } else if (value < 65536) {
+            out.write(252);
+            writeLittleEndian(out, value, 2);
+        } else if (value < 16777216) {
+            out.write(253);
+            writeLittleEndian(out, value, 3);
+        } else {
+            out.write(254);
+            writeLittleEndian(out, value, 8);
+        }
+    }
+}
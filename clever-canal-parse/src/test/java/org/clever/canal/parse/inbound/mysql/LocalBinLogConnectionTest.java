@@ -0,0 +1,162 @@
+package org.clever.canal.parse.inbound.mysql;
+
+import org.clever.canal.parse.dbsync.binlog.FileLogFetcher;
+import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogBufferPool;
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 本地binlog文件按事件拆分投递给coprocessor，跨越读取缓冲区和binlog文件边界时事件完整并且有序
+ */
+public class LocalBinLogConnectionTest {
+    private static final String FILE_1 = "mysql-bin.000001";
+    private static final String FILE_2 = "mysql-bin.000002";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDumpAcrossFiles() throws Exception {
+        List<byte[]> events1 = binlog(FILE_1, 200, 1);
+        List<byte[]> events2 = binlog(FILE_2, 200, 2);
+        for (LogBufferPool pool : new LogBufferPool[]{null, new LogBufferPool(64, 1024, 1024 * 1024)}) {
+            RecordingCoprocessor coprocessor = new RecordingCoprocessor(pool, -1);
+            List<String> finished = new ArrayList<>();
+            LocalBinLogConnection connection = connection(pool, finished);
+            connection.dump(FILE_1, 4L, coprocessor);
+            connection.disconnect();
+
+            List<byte[]> expected = new ArrayList<>(events1);
+            expected.addAll(events2);
+            assertEvents(expected, coprocessor.events);
+            // 每个文件的第一个事件携带文件名
+            List<String> fileNames = new ArrayList<>();
+            fileNames.add(FILE_1);
+            for (int i = 1; i < expected.size(); i++) {
+                fileNames.add(i == events1.size() ? FILE_2 : null);
+            }
+            Assert.assertEquals(fileNames, coprocessor.fileNames);
+            Assert.assertEquals(2, finished.size());
+            Assert.assertEquals(FILE_1, finished.get(0));
+            Assert.assertEquals(FILE_2, finished.get(1));
+        }
+    }
+
+    @Test
+    public void testDumpFromPosition() throws Exception {
+        List<byte[]> events1 = binlog(FILE_1, 50, 3);
+        List<byte[]> events2 = binlog(FILE_2, 50, 4);
+        // 从第一个文件的中间开始，先投递文件的FORMAT_DESCRIPTION事件
+        long position = 4;
+        for (int i = 0; i < 20; i++) {
+            position += events1.get(i).length;
+        }
+        RecordingCoprocessor coprocessor = new RecordingCoprocessor(null, -1);
+        LocalBinLogConnection connection = connection(null, new ArrayList<>());
+        connection.dump(FILE_1, position, coprocessor);
+        connection.disconnect();
+
+        List<byte[]> expected = new ArrayList<>();
+        expected.add(events1.get(0));
+        expected.addAll(events1.subList(20, events1.size()));
+        expected.addAll(events2);
+        assertEvents(expected, coprocessor.events);
+    }
+
+    @Test
+    public void testStopPublish() throws Exception {
+        binlog(FILE_1, 50, 5);
+        binlog(FILE_2, 50, 6);
+        // coprocessor停止接收时不再继续读取
+        RecordingCoprocessor coprocessor = new RecordingCoprocessor(null, 10);
+        List<String> finished = new ArrayList<>();
+        LocalBinLogConnection connection = connection(null, finished);
+        connection.dump(FILE_1, 4L, coprocessor);
+        connection.disconnect();
+        Assert.assertEquals(10, coprocessor.events.size());
+        Assert.assertEquals(1, finished.size());
+    }
+
+    // ============================ helper method ======================
+
+    private LocalBinLogConnection connection(LogBufferPool pool, List<String> finished) {
+        LocalBinLogConnection connection = new LocalBinLogConnection(folder.getRoot().getPath(), false);
+        // 读取缓冲区远小于事件，事件会跨越多次读取
+        connection.setBufferSize(64);
+        connection.setLogBufferPool(pool);
+        connection.setParserListener(finished::add);
+        connection.connect();
+        return connection;
+    }
+
+    /**
+     * 写入binlog文件：FORMAT_DESCRIPTION事件 + 大小随机的事件(部分事件远大于读取缓冲区)
+     *
+     * @return 文件中的所有事件
+     */
+    private List<byte[]> binlog(String fileName, int count, long seed) throws Exception {
+        Random random = new Random(seed);
+        List<byte[]> events = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(FileLogFetcher.BINLOG_MAGIC);
+        long logPos = 4;
+        for (int i = 0; i <= count; i++) {
+            byte[] body = new byte[i == 0 ? 80 : random.nextInt(10) == 0 ? 4096 + random.nextInt(4096) : random.nextInt(200)];
+            random.nextBytes(body);
+            int type = i == 0 ? LogEvent.FORMAT_DESCRIPTION_EVENT : LogEvent.QUERY_EVENT;
+            logPos += 19 + body.length;
+            byte[] event = BinlogEventBuilder.event(type, body, logPos);
+            events.add(event);
+            out.write(event);
+        }
+        try (FileOutputStream output = new FileOutputStream(new File(folder.getRoot(), fileName))) {
+            out.writeTo(output);
+        }
+        return events;
+    }
+
+    private static void assertEvents(List<byte[]> expected, List<byte[]> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals("event " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * 只记录投递的事件，不解析
+     */
+    private static class RecordingCoprocessor extends MysqlMultiStageCoprocessor {
+        private final LogBufferPool pool;
+        private final int maxEvents;
+        private final List<byte[]> events = new ArrayList<>();
+        private final List<String> fileNames = new ArrayList<>();
+
+        RecordingCoprocessor(LogBufferPool pool, int maxEvents) {
+            super(16, 1, null, null, "test");
+            this.pool = pool;
+            this.maxEvents = maxEvents;
+        }
+
+        @Override
+        public boolean publish(LogBuffer buffer, String binlogFileName) {
+            events.add(buffer.getData(0, buffer.limit()));
+            fileNames.add(binlogFileName);
+            if (pool != null) {
+                // 拷贝之后归还，后续事件会复用同一块slab
+                pool.release(buffer);
+            }
+            return maxEvents < 0 || events.size() < maxEvents;
+        }
+    }
+}
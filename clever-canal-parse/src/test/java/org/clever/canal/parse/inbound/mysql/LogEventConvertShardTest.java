@@ -0,0 +1,131 @@
+package org.clever.canal.parse.inbound.mysql;
+
+import org.clever.canal.parse.dbsync.binlog.*;
+import org.clever.canal.parse.dbsync.binlog.event.FormatDescriptionLogEvent;
+import org.clever.canal.parse.dbsync.binlog.event.RowsLogEvent;
+import org.clever.canal.parse.inbound.TableMeta;
+import org.clever.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import org.clever.canal.protocol.CanalEntry;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大事件按行拆分成多个分片并行解析，结果和串行解析一致
+ */
+public class LogEventConvertShardTest {
+    private final LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+    private LogContext context;
+    private TableMeta tableMeta;
+    private ExecutorService executorService;
+    private AtomicInteger shardTasks;
+    private Executor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new LogContext(new FormatDescriptionLogEvent(4, LogEvent.BINLOG_CHECKSUM_ALG_OFF));
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4));
+        decode(RandomRows.tableMap(1000));
+        tableMeta = RandomRows.tableMeta();
+        executorService = Executors.newFixedThreadPool(4);
+        shardTasks = new AtomicInteger();
+        // 记录提交到线程池的分片数量，确认确实拆分了
+        executor = command -> {
+            shardTasks.incrementAndGet();
+            executorService.execute(command);
+        };
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testWriteRows() throws Exception {
+        assertShardEquals(newConvert(false), LogEvent.WRITE_ROWS_EVENT, RandomRows.allColumns());
+    }
+
+    @Test
+    public void testUpdateRows() throws Exception {
+        assertShardEquals(newConvert(false), LogEvent.UPDATE_ROWS_EVENT, RandomRows.allColumns());
+        // after镜像只包含部分列
+        assertShardEquals(newConvert(false), LogEvent.UPDATE_ROWS_EVENT, RandomRows.halfColumns());
+    }
+
+    @Test
+    public void testUpdateChangedColumnsOnly() throws Exception {
+        assertShardEquals(newConvert(true), LogEvent.UPDATE_ROWS_EVENT, RandomRows.allColumns());
+    }
+
+    @Test
+    public void testDeleteRows() throws Exception {
+        assertShardEquals(newConvert(false), LogEvent.DELETE_ROWS_EVENT, RandomRows.allColumns());
+        assertShardEquals(newConvert(false), LogEvent.DELETE_ROWS_EVENT, RandomRows.halfColumns());
+    }
+
+    @Test
+    public void testNoShard() throws Exception {
+        LogEventConvert convert = newConvert(false);
+        byte[] event = RandomRows.rowsEvent(LogEvent.WRITE_ROWS_EVENT, 500, 1, RandomRows.allColumns());
+        CanalEntry.Entry serial = convert.parseRowsEvent(rowsLogEvent(event), tableMeta);
+        // shardCount <= 1 或者没有线程池时在当前线程解析
+        Assert.assertEquals(serial, convert.parseRowsEvent(rowsLogEvent(event), tableMeta, 1, executor));
+        Assert.assertEquals(serial, convert.parseRowsEvent(rowsLogEvent(event), tableMeta, 4, null));
+        // 只有一行时无法拆分
+        byte[] single = RandomRows.rowsEvent(LogEvent.WRITE_ROWS_EVENT, 1, 2, RandomRows.allColumns());
+        Assert.assertEquals(convert.parseRowsEvent(rowsLogEvent(single), tableMeta), convert.parseRowsEvent(rowsLogEvent(single), tableMeta, 4, executor));
+        Assert.assertEquals(0, shardTasks.get());
+    }
+
+    // ============================ helper method ======================
+
+    /**
+     * 同一批事件分别串行和并行解析，得到的Entry序列相同
+     */
+    private void assertShardEquals(LogEventConvert convert, int type, BitSet columns) throws Exception {
+        List<CanalEntry.Entry> serial = new ArrayList<>();
+        List<CanalEntry.Entry> sharded = new ArrayList<>();
+        for (int rowCount : new int[]{2, 3, 17, 1000, 5000}) {
+            byte[] event = RandomRows.rowsEvent(type, rowCount, rowCount * 31L + type, columns);
+            CanalEntry.Entry entry = convert.parseRowsEvent(rowsLogEvent(event), tableMeta);
+            CanalEntry.RowChange rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
+            Assert.assertEquals(rowCount, rowChange.getRowDataCount());
+            for (int shardCount : new int[]{2, 3, 4, 7}) {
+                int tasks = shardTasks.get();
+                serial.add(entry);
+                sharded.add(convert.parseRowsEvent(rowsLogEvent(event), tableMeta, shardCount, executor));
+                // 按数据大小拆分，行数较少时不一定能拆分
+                if (rowCount >= 1000) {
+                    Assert.assertEquals(tasks + shardCount - 1, shardTasks.get());
+                }
+            }
+        }
+        Assert.assertEquals(serial, sharded);
+    }
+
+    private LogEventConvert newConvert(boolean updateChangedColumnsOnly) {
+        LogEventConvert convert = new LogEventConvert();
+        convert.setCharset(StandardCharsets.UTF_8);
+        convert.setUpdateChangedColumnsOnly(updateChangedColumnsOnly);
+        return convert;
+    }
+
+    private RowsLogEvent rowsLogEvent(byte[] event) throws Exception {
+        return (RowsLogEvent) decode(event);
+    }
+
+    private LogEvent decode(byte[] event) throws Exception {
+        return decoder.decode(new LogBuffer(event, 0, event.length), context);
+    }
+}
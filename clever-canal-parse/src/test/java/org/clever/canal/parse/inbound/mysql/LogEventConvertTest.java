@@ -0,0 +1,202 @@
+package org.clever.canal.parse.inbound.mysql;
+
+import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogContext;
+import org.clever.canal.parse.dbsync.binlog.LogDecoder;
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.clever.canal.parse.dbsync.binlog.LogPosition;
+import org.clever.canal.parse.dbsync.binlog.event.FormatDescriptionLogEvent;
+import org.clever.canal.parse.dbsync.binlog.event.RowsLogEvent;
+import org.clever.canal.parse.inbound.TableMeta;
+import org.clever.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import org.clever.canal.protocol.CanalEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行数据解析：解码计划缓存、字段投影、update只输出有变化的列
+ */
+public class LogEventConvertTest {
+    private final LogDecoder decoder = new LogDecoder(LogEvent.UNKNOWN_EVENT, LogEvent.ENUM_END_EVENT);
+    private LogContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new LogContext(new FormatDescriptionLogEvent(4, LogEvent.BINLOG_CHECKSUM_ALG_OFF));
+        context.setLogPosition(new LogPosition("mysql-bin.000001", 4));
+        decode(RandomRows.tableMap(1000));
+    }
+
+    @Test
+    public void testDecodePlanInvalidatedOnTableMetaChange() throws Exception {
+        LogEventConvert convert = newConvert();
+        convert.setFieldFilterMap(fieldFilter("C0", "C2", "C5"));
+        byte[] event = RandomRows.rowsEvent(LogEvent.WRITE_ROWS_EVENT, 20, 1, RandomRows.allColumns());
+        List<CanalEntry.RowData> full = rowDatas(newConvert(), event, RandomRows.tableMeta());
+
+        TableMeta tableMeta = RandomRows.tableMeta();
+        List<CanalEntry.RowData> rowDatas = rowDatas(convert, event, tableMeta);
+        assertColumns(rowDatas, full, Arrays.asList(0, 2, 5), Arrays.asList("c0", "c2", "c5"), 0);
+
+        // 新的table map(列定义不变)复用解码计划，结果不变
+        decode(RandomRows.tableMap(2000));
+        Assert.assertEquals(rowDatas, rowDatas(convert, event, tableMeta));
+
+        // 表结构重新加载(新的TableMeta实例)：c1/c2改名互换、主键变为第2列，按新的表结构重新计算
+        List<TableMeta.FieldMeta> fields = new ArrayList<>();
+        for (int i = 0; i < RandomRows.TYPES.length; i++) {
+            String name = i == 1 ? "c2" : i == 2 ? "c1" : "c" + i;
+            fields.add(new TableMeta.FieldMeta(name, RandomRows.SQL_TYPES[i], true, i == 1, null));
+        }
+        TableMeta reloaded = new TableMeta("test", "t", fields);
+        assertColumns(rowDatas(convert, event, reloaded), full, Arrays.asList(0, 1, 5), Arrays.asList("c0", "c2", "c5"), 1);
+
+        // 修改字段过滤条件之后重新计算
+        convert.setFieldFilterMap(fieldFilter("C3"));
+        assertColumns(rowDatas(convert, event, reloaded), full, Collections.singletonList(3), Collections.singletonList("c3"), -1);
+    }
+
+    @Test
+    public void testProjectedDecode() throws Exception {
+        LogEventConvert projected = newConvert();
+        projected.setFieldFilterMap(fieldFilter("C1", "C3", "C4", "C6"));
+        LogEventConvert black = newConvert();
+        black.setFieldBlackFilterMap(fieldFilter("C1", "C3", "C4", "C6"));
+        List<Integer> kept = Arrays.asList(1, 3, 4, 6);
+        List<Integer> blackKept = Arrays.asList(0, 2, 5);
+        int seed = 0;
+        for (int type : new int[]{LogEvent.WRITE_ROWS_EVENT, LogEvent.UPDATE_ROWS_EVENT, LogEvent.DELETE_ROWS_EVENT}) {
+            for (BitSet columns : new BitSet[]{RandomRows.allColumns(), RandomRows.halfColumns()}) {
+                byte[] event = RandomRows.rowsEvent(type, 200, seed++, columns);
+                List<CanalEntry.RowData> full = rowDatas(newConvert(), event, RandomRows.tableMeta());
+                // 跳过的列不解析，保留的列与完整解析的结果完全相同(包括update标记)
+                assertProjected(full, rowDatas(projected, event, RandomRows.tableMeta()), kept);
+                assertProjected(full, rowDatas(black, event, RandomRows.tableMeta()), blackKept);
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateChangedColumnsOnly() throws Exception {
+        LogEventConvert changedOnly = newConvert();
+        changedOnly.setUpdateChangedColumnsOnly(true);
+        LogEventConvert trimmed = newConvert();
+        trimmed.setUpdateChangedColumnsOnly(true);
+        trimmed.setUpdateKeepBeforeImage(false);
+        int unchangedRows = 0;
+        for (BitSet columns : new BitSet[]{RandomRows.allColumns(), RandomRows.halfColumns()}) {
+            byte[] event = RandomRows.rowsEvent(LogEvent.UPDATE_ROWS_EVENT, 200, columns.cardinality(), columns);
+            List<CanalEntry.RowData> full = rowDatas(newConvert(), event, RandomRows.tableMeta());
+            List<CanalEntry.RowData> changed = rowDatas(changedOnly, event, RandomRows.tableMeta());
+            List<CanalEntry.RowData> trimmedRows = rowDatas(trimmed, event, RandomRows.tableMeta());
+            Assert.assertEquals(full.size(), changed.size());
+            Assert.assertEquals(full.size(), trimmedRows.size());
+            for (int row = 0; row < full.size(); row++) {
+                CanalEntry.RowData fullRow = full.get(row);
+                // 按列下标比较before/after，得到updated标记
+                for (CanalEntry.Column after : fullRow.getAfterColumnsList()) {
+                    CanalEntry.Column before = fullRow.getBeforeColumns(after.getIndex());
+                    boolean updated = before.getIsNull() != after.getIsNull() || !before.getValue().equals(after.getValue());
+                    Assert.assertEquals(updated, after.getUpdated());
+                }
+                // after只保留有变化的列和主键，before保持完整
+                List<CanalEntry.Column> expectedAfter = new ArrayList<>();
+                List<Integer> afterIndexes = new ArrayList<>();
+                for (CanalEntry.Column after : fullRow.getAfterColumnsList()) {
+                    if (after.getUpdated() || after.getIsKey()) {
+                        expectedAfter.add(after);
+                        afterIndexes.add(after.getIndex());
+                    }
+                }
+                if (expectedAfter.size() == 1) {
+                    unchangedRows++;
+                }
+                Assert.assertEquals(expectedAfter, changed.get(row).getAfterColumnsList());
+                Assert.assertEquals(fullRow.getBeforeColumnsList(), changed.get(row).getBeforeColumnsList());
+                // 不保留完整的before时，before只保留after中输出的列和主键
+                Assert.assertEquals(expectedAfter, trimmedRows.get(row).getAfterColumnsList());
+                Assert.assertEquals(filter(fullRow.getBeforeColumnsList(), afterIndexes), trimmedRows.get(row).getBeforeColumnsList());
+            }
+        }
+        // 部分行的所有列都没有变化，after只有主键
+        Assert.assertTrue(unchangedRows > 0);
+
+        // insert/delete不受影响
+        for (int type : new int[]{LogEvent.WRITE_ROWS_EVENT, LogEvent.DELETE_ROWS_EVENT}) {
+            byte[] event = RandomRows.rowsEvent(type, 50, type, RandomRows.allColumns());
+            Assert.assertEquals(rowDatas(newConvert(), event, RandomRows.tableMeta()), rowDatas(trimmed, event, RandomRows.tableMeta()));
+        }
+    }
+
+    // ============================ helper method ======================
+
+    private static LogEventConvert newConvert() {
+        LogEventConvert convert = new LogEventConvert();
+        convert.setCharset(StandardCharsets.UTF_8);
+        return convert;
+    }
+
+    private static Map<String, List<String>> fieldFilter(String... columns) {
+        Map<String, List<String>> fieldFilter = new HashMap<>();
+        fieldFilter.put("TEST.T", Arrays.asList(columns));
+        return fieldFilter;
+    }
+
+    private List<CanalEntry.RowData> rowDatas(LogEventConvert convert, byte[] event, TableMeta tableMeta) throws Exception {
+        CanalEntry.Entry entry = convert.parseRowsEvent((RowsLogEvent) decode(event), tableMeta);
+        return CanalEntry.RowChange.parseFrom(entry.getStoreValue()).getRowDataList();
+    }
+
+    /**
+     * 只包含indexes中的列，名称为names，主键为keyIndex，列值与完整解析的结果相同
+     */
+    private static void assertColumns(List<CanalEntry.RowData> rowDatas, List<CanalEntry.RowData> full, List<Integer> indexes, List<String> names, int keyIndex) {
+        Assert.assertEquals(full.size(), rowDatas.size());
+        for (int row = 0; row < rowDatas.size(); row++) {
+            List<CanalEntry.Column> columns = rowDatas.get(row).getAfterColumnsList();
+            Assert.assertEquals(indexes.size(), columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                CanalEntry.Column column = columns.get(i);
+                CanalEntry.Column expected = full.get(row).getAfterColumns(indexes.get(i));
+                Assert.assertEquals((int) indexes.get(i), column.getIndex());
+                Assert.assertEquals(names.get(i), column.getName());
+                Assert.assertEquals(column.getIndex() == keyIndex, column.getIsKey());
+                Assert.assertEquals(expected.getMysqlType(), column.getMysqlType());
+                Assert.assertEquals(expected.getIsNull(), column.getIsNull());
+                Assert.assertEquals(expected.getValue(), column.getValue());
+            }
+        }
+    }
+
+    private static void assertProjected(List<CanalEntry.RowData> full, List<CanalEntry.RowData> projected, List<Integer> kept) {
+        Assert.assertEquals(full.size(), projected.size());
+        for (int row = 0; row < full.size(); row++) {
+            Assert.assertEquals(filter(full.get(row).getBeforeColumnsList(), kept), projected.get(row).getBeforeColumnsList());
+            Assert.assertEquals(filter(full.get(row).getAfterColumnsList(), kept), projected.get(row).getAfterColumnsList());
+        }
+    }
+
+    private static List<CanalEntry.Column> filter(List<CanalEntry.Column> columns, List<Integer> kept) {
+        List<CanalEntry.Column> result = new ArrayList<>();
+        for (CanalEntry.Column column : columns) {
+            if (kept.contains(column.getIndex())) {
+                result.add(column);
+            }
+        }
+        return result;
+    }
+
+    private LogEvent decode(byte[] event) throws Exception {
+        return decoder.decode(new LogBuffer(event, 0, event.length), context);
+    }
+}
@@ -0,0 +1,205 @@
+package org.clever.canal.parse.inbound.mysql;
+
+import org.clever.canal.filter.aviater.AviaterRegexFilter;
+import org.clever.canal.parse.dbsync.binlog.LogBuffer;
+import org.clever.canal.parse.dbsync.binlog.LogBufferPool;
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.clever.canal.parse.dbsync.binlog.event.RowsLogEvent;
+import org.clever.canal.parse.inbound.EventTransactionBuffer;
+import org.clever.canal.parse.inbound.TableMeta;
+import org.clever.canal.parse.inbound.mysql.dbsync.LogEventConvert;
+import org.clever.canal.protocol.CanalEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MysqlMultiStageCoprocessorTest {
+
+    @Test
+    public void testLogBufferPool() throws Exception {
+        LogBufferPool pool = new LogBufferPool(512, 4096, 1024 * 1024);
+        BlockingTransactionBuffer transactionBuffer = new BlockingTransactionBuffer();
+        MysqlMultiStageCoprocessor coprocessor = new MysqlMultiStageCoprocessor(16, 2, new LogEventConvert(), transactionBuffer, "test");
+        coprocessor.setLogBufferPool(pool);
+        coprocessor.setEventsPublishBlockingTime(new AtomicLong(0));
+        coprocessor.start();
+        try {
+            byte[] rotate = BinlogEventBuilder.rotate("mysql-bin.000001", 4);
+            byte[] begin = BinlogEventBuilder.query("test", "BEGIN", 100);
+            byte[] commit = BinlogEventBuilder.xid(1, 200);
+            // ROTATE事件不产生Entry，SinkStoreStage处理完直接归还slab
+            Assert.assertTrue(coprocessor.publish(pool.lease(new LogBuffer(rotate, 0, rotate.length))));
+            waitPooledSize(pool, 512);
+            Assert.assertEquals(1, pool.getAllocateCount());
+
+            // 复用ROTATE事件归还的slab
+            Assert.assertTrue(coprocessor.publish(pool.lease(new LogBuffer(begin, 0, begin.length))));
+            Assert.assertEquals(1, pool.getAllocateCount());
+            // SinkStoreStage阻塞在BEGIN事件上，事件使用的slab还没有归还
+            Assert.assertTrue(transactionBuffer.entered.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(0, pool.getPooledSize());
+            // 新租用的slab不会复用还在处理中的slab
+            Assert.assertTrue(coprocessor.publish(pool.lease(new LogBuffer(commit, 0, commit.length))));
+            Assert.assertEquals(2, pool.getAllocateCount());
+            Assert.assertEquals(0, pool.getPooledSize());
+
+            transactionBuffer.proceed.countDown();
+            // SinkStoreStage处理完成之后归还slab
+            waitPooledSize(pool, 2 * 512);
+            Assert.assertEquals(2 * 512, pool.getPooledSize());
+            Assert.assertEquals(2, transactionBuffer.entries.size());
+            Assert.assertEquals(CanalEntry.EntryType.TRANSACTION_BEGIN, transactionBuffer.entries.get(0).getEntryType());
+            Assert.assertEquals(CanalEntry.EntryType.TRANSACTION_END, transactionBuffer.entries.get(1).getEntryType());
+            Assert.assertEquals(200, transactionBuffer.entries.get(1).getHeader().getLogfileOffset() + transactionBuffer.entries.get(1).getHeader().getEventLength());
+
+            // 归还之后的slab可以再次租用
+            Assert.assertTrue(coprocessor.publish(pool.lease(new LogBuffer(begin, 0, begin.length))));
+            Assert.assertEquals(2, pool.getAllocateCount());
+            Assert.assertEquals(512, pool.getPooledSize());
+        } finally {
+            coprocessor.stop();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTableFilterBeforeDecode() throws Exception {
+        RecordingConvert convert = new RecordingConvert();
+        convert.setCharset(StandardCharsets.UTF_8);
+        convert.setNameFilter(new AviaterRegexFilter("test\\.t1"));
+        RecordingTransactionBuffer transactionBuffer = new RecordingTransactionBuffer();
+        MysqlMultiStageCoprocessor coprocessor = new MysqlMultiStageCoprocessor(16, 2, convert, transactionBuffer, "test");
+        coprocessor.setEventsPublishBlockingTime(new AtomicLong(0));
+        coprocessor.start();
+        try {
+            publish(coprocessor, BinlogEventBuilder.rotate("mysql-bin.000001", 4));
+            publish(coprocessor, tableMap(1, "t1", 100));
+            publish(coprocessor, tableMap(2, "t2", 200));
+            publish(coprocessor, rows(1, 1, 300));
+            // 被过滤的表，不获取表结构、不解析行数据
+            publish(coprocessor, rows(2, 2, 400));
+            // tableId重新映射到其它表之后重新过滤
+            publish(coprocessor, tableMap(2, "t1", 500));
+            publish(coprocessor, rows(2, 3, 600));
+            publish(coprocessor, tableMap(1, "t2", 700));
+            publish(coprocessor, rows(1, 4, 800));
+            publish(coprocessor, BinlogEventBuilder.xid(1, 900));
+            Assert.assertTrue(transactionBuffer.end.await(10, TimeUnit.SECONDS));
+
+            Assert.assertEquals(Arrays.asList(1L, 2L), convert.tableIds);
+            List<CanalEntry.Entry> entries = transactionBuffer.entries;
+            Assert.assertEquals(3, entries.size());
+            for (int i = 0; i < 2; i++) {
+                CanalEntry.Entry entry = entries.get(i);
+                Assert.assertEquals(CanalEntry.EntryType.ROW_DATA, entry.getEntryType());
+                Assert.assertEquals("t1", entry.getHeader().getTableName());
+                CanalEntry.RowChange rowChange = CanalEntry.RowChange.parseFrom(entry.getStoreValue());
+                Assert.assertEquals(String.valueOf(i * 2 + 1), rowChange.getRowData(0).getAfterColumns(0).getValue());
+            }
+            Assert.assertEquals(CanalEntry.EntryType.TRANSACTION_END, entries.get(2).getEntryType());
+        } finally {
+            coprocessor.stop();
+        }
+    }
+
+    // ============================ helper method ======================
+
+    private static void publish(MysqlMultiStageCoprocessor coprocessor, byte[] event) {
+        Assert.assertTrue(coprocessor.publish(new LogBuffer(event, 0, event.length)));
+    }
+
+    private static byte[] tableMap(long tableId, String table, long logPos) {
+        int[] types = {LogEvent.MYSQL_TYPE_LONG, LogEvent.MYSQL_TYPE_VARCHAR};
+        return BinlogEventBuilder.tableMap(tableId, "test", table, types, new int[]{0, 100}, logPos);
+    }
+
+    /**
+     * 一行数据(id, name)的insert
+     */
+    private static byte[] rows(long tableId, int id, long logPos) {
+        ByteArrayOutputStream row = new ByteArrayOutputStream();
+        row.write(0);
+        BinlogEventBuilder.writeLittleEndian(row, id, 4);
+        byte[] name = ("name" + id).getBytes(StandardCharsets.UTF_8);
+        row.write(name.length);
+        row.write(name, 0, name.length);
+        BitSet columns = new BitSet();
+        columns.set(0, 2);
+        return BinlogEventBuilder.rows(LogEvent.WRITE_ROWS_EVENT, tableId, 2, columns, null, row.toByteArray(), logPos);
+    }
+
+    private static void waitPooledSize(LogBufferPool pool, long pooledSize) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getPooledSize() < pooledSize && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(pooledSize, pool.getPooledSize());
+    }
+
+    /**
+     * 记录获取表结构的tableId，不访问数据库
+     */
+    private static class RecordingConvert extends LogEventConvert {
+        private final List<Long> tableIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public TableMeta parseRowsEventForTableMeta(RowsLogEvent event) {
+            tableIds.add(event.getTableId());
+            if (!isTableAccepted(event.getTable())) {
+                return null;
+            }
+            List<TableMeta.FieldMeta> fields = Arrays.asList(
+                    new TableMeta.FieldMeta("id", "int(11)", false, true, null),
+                    new TableMeta.FieldMeta("name", "varchar(100)", true, false, null)
+            );
+            return new TableMeta(event.getTable().getDbName(), event.getTable().getTableName(), fields);
+        }
+    }
+
+    private static class RecordingTransactionBuffer extends EventTransactionBuffer {
+        private final CountDownLatch end = new CountDownLatch(1);
+        private final List<CanalEntry.Entry> entries = new CopyOnWriteArrayList<>();
+
+        private RecordingTransactionBuffer() {
+            super(transaction -> {
+            });
+        }
+
+        @Override
+        public void add(CanalEntry.Entry entry) {
+            entries.add(entry);
+            if (entry.getEntryType() == CanalEntry.EntryType.TRANSACTION_END) {
+                end.countDown();
+            }
+        }
+    }
+
+    /**
+     * 第一次add时阻塞，直到proceed
+     */
+    private static class BlockingTransactionBuffer extends EventTransactionBuffer {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch proceed = new CountDownLatch(1);
+        private final List<CanalEntry.Entry> entries = new CopyOnWriteArrayList<>();
+
+        private BlockingTransactionBuffer() {
+            super(transaction -> {
+            });
+        }
+
+        @Override
+        public void add(CanalEntry.Entry entry) throws InterruptedException {
+            entered.countDown();
+            proceed.await();
+            entries.add(entry);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.clever.canal.parse.inbound.mysql;
+
+import org.clever.canal.parse.dbsync.binlog.LogEvent;
+import org.clever.canal.parse.inbound.TableMeta;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试表test.t(多种列类型)的随机行数据事件
+ */
+class RandomRows {
+    static final long TABLE_ID = 42;
+    static final int[] TYPES = {
+            LogEvent.MYSQL_TYPE_LONG,
+            LogEvent.MYSQL_TYPE_VARCHAR,
+            LogEvent.MYSQL_TYPE_NEWDECIMAL,
+            LogEvent.MYSQL_TYPE_DATETIME2,
+            LogEvent.MYSQL_TYPE_BLOB,
+            LogEvent.MYSQL_TYPE_LONGLONG,
+            LogEvent.MYSQL_TYPE_DOUBLE,
+    };
+    static final int[] METAS = {0, 100, (10 << 8) | 2, 0, 2, 0, 8};
+    static final String[] SQL_TYPES = {"int(11)", "varchar(100)", "decimal(10,2)", "datetime", "blob", "bigint(20)", "double"};
+
+    static byte[] tableMap(long logPos) {
+        return BinlogEventBuilder.tableMap(TABLE_ID, "test", "t", TYPES, METAS, logPos);
+    }
+
+    /**
+     * 列名为c0~c6，c0为主键
+     */
+    static TableMeta tableMeta() {
+        List<TableMeta.FieldMeta> fields = new ArrayList<>();
+        for (int i = 0; i < TYPES.length; i++) {
+            fields.add(new TableMeta.FieldMeta("c" + i, SQL_TYPES[i], true, i == 0, null));
+        }
+        return new TableMeta("test", "t", fields);
+    }
+
+    /**
+     * update的before镜像包含所有列，after镜像包含columns；其他类型只包含columns
+     */
+    static byte[] rowsEvent(int type, int rowCount, long seed, BitSet columns) {
+        Random random = new Random(seed);
+        BitSet before = type == LogEvent.UPDATE_ROWS_EVENT ? allColumns() : columns;
+        ByteArrayOutputStream rows = new ByteArrayOutputStream();
+        for (int i = 0; i < rowCount; i++) {
+            long rowSeed = random.nextLong();
+            writeRow(rows, new Random(rowSeed), before);
+            if (type == LogEvent.UPDATE_ROWS_EVENT) {
+                // 部分行的after使用和before相同的随机数，列值不变
+                writeRow(rows, random.nextInt(4) == 0 ? new Random(rowSeed) : random, columns);
+            }
+        }
+        return BinlogEventBuilder.rows(type, TABLE_ID, TYPES.length, before, columns, rows.toByteArray(), 5000);
+    }
+
+    static BitSet allColumns() {
+        BitSet columns = new BitSet();
+        columns.set(0, TYPES.length);
+        return columns;
+    }
+
+    static BitSet halfColumns() {
+        BitSet columns = new BitSet();
+        for (int i = 0; i < TYPES.length; i += 2) {
+            columns.set(i);
+        }
+        return columns;
+    }
+
+    private static void writeRow(ByteArrayOutputStream out, Random random, BitSet columns) {
+        boolean[] nulls = new boolean[TYPES.length];
+        BitSet nullBits = new BitSet();
+        int index = 0;
+        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+            // 主键不为null
+            nulls[i] = i > 0 && random.nextInt(5) == 0;
+            if (nulls[i]) {
+                nullBits.set(index);
+            }
+            index++;
+        }
+        BinlogEventBuilder.writeBitmap(out, nullBits, index);
+        for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+            if (!nulls[i]) {
+                writeValue(out, random, TYPES[i]);
+            }
+        }
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Random random, int type) {
+        switch (type) {
+            case LogEvent.MYSQL_TYPE_LONG:
+                BinlogEventBuilder.writeLittleEndian(out, random.nextInt(), 4);
+                break;
+            case LogEvent.MYSQL_TYPE_VARCHAR: {
+                byte[] value = randomString(random, random.nextInt(100));
+                out.write(value.length);
+                out.write(value, 0, value.length);
+                break;
+            }
+            case LogEvent.MYSQL_TYPE_NEWDECIMAL:
+                // 8位整数(4字节，带符号位) + 2位小数(1字节)
+                BinlogEventBuilder.writeBigEndian(out, 0x80000000L | random.nextInt(100000000), 4);
+                out.write(random.nextInt(100));
+                break;
+            case LogEvent.MYSQL_TYPE_DATETIME2: {
+                long yearMonth = (2000 + random.nextInt(30)) * 13L + 1 + random.nextInt(12);
+                long ymd = (yearMonth << 5) | (1 + random.nextInt(28));
+                long hms = ((long) random.nextInt(24) << 12) | (random.nextInt(60) << 6) | random.nextInt(60);
+                BinlogEventBuilder.writeBigEndian(out, ((ymd << 17) | hms) + 0x8000000000L, 5);
+                break;
+            }
+            case LogEvent.MYSQL_TYPE_BLOB: {
+                byte[] value = new byte[random.nextInt(300)];
+                random.nextBytes(value);
+                BinlogEventBuilder.writeLittleEndian(out, value.length, 2);
+                out.write(value, 0, value.length);
+                break;
+            }
+            case LogEvent.MYSQL_TYPE_LONGLONG:
+                BinlogEventBuilder.writeLittleEndian(out, random.nextLong(), 8);
+                break;
+            case LogEvent.MYSQL_TYPE_DOUBLE:
+                BinlogEventBuilder.writeLittleEndian(out, Double.doubleToLongBits(random.nextDouble() * 1e6), 8);
+                break;
+            default:
+                throw new IllegalArgumentException("type " + type);
+        }
+    }
+
+    private static byte[] randomString(Random random, int length) {
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = (byte) ('a' + random.nextInt(26));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,94 @@
+package org.clever.canal.parse.index;
+
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.EntryPosition;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StoreCheckpointLogPositionManagerTest {
+    private static final String DESTINATION = "example";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoredPosition() {
+        MemoryEventStoreWithBuffer eventStore = store();
+        List<Event> events = new ArrayList<>();
+        events.add(event(100, CanalEntry.EntryType.TRANSACTION_BEGIN));
+        events.add(event(200, CanalEntry.EntryType.ROW_DATA));
+        events.add(event(300, CanalEntry.EntryType.TRANSACTION_END));
+        events.add(event(400, CanalEntry.EntryType.TRANSACTION_BEGIN));
+        Assert.assertTrue(eventStore.tryPut(events));
+        Events<Event> got = eventStore.tryGet(null, 1);
+        eventStore.ack(got.getPositionRange().getEnd(), got.getPositionRange().getEndSeq());
+        eventStore.stop();
+
+        eventStore = store();
+        MemoryLogPositionManager delegate = new MemoryLogPositionManager();
+        StoreCheckpointLogPositionManager logPositionManager = new StoreCheckpointLogPositionManager(delegate, eventStore);
+        logPositionManager.start();
+        Assert.assertTrue(delegate.isStart());
+        // parser从检查点恢复的最后一个完整事务之后开始解析
+        LogPosition restored = logPositionManager.getLatestIndexBy(DESTINATION);
+        Assert.assertNotNull(restored);
+        Assert.assertEquals("mysql-bin.000001", restored.getPosition().getJournalName());
+        Assert.assertEquals(Long.valueOf(300), restored.getPosition().getPosition());
+        Assert.assertEquals(Long.valueOf(1300), restored.getPosition().getTimestamp());
+
+        // parser保存过位置信息之后使用被代理的管理器
+        LogPosition persisted = new LogPosition();
+        persisted.setPosition(new EntryPosition("mysql-bin.000002", 4L));
+        logPositionManager.persistLogPosition(DESTINATION, persisted);
+        Assert.assertEquals(persisted, logPositionManager.getLatestIndexBy(DESTINATION));
+        Assert.assertEquals(persisted, delegate.getLatestIndexBy(DESTINATION));
+
+        logPositionManager.stop();
+        Assert.assertFalse(delegate.isStart());
+        eventStore.stop();
+    }
+
+    @Test
+    public void testWithoutCheckpoint() {
+        MemoryEventStoreWithBuffer eventStore = store();
+        StoreCheckpointLogPositionManager logPositionManager = new StoreCheckpointLogPositionManager(new MemoryLogPositionManager(), eventStore);
+        logPositionManager.start();
+        Assert.assertNull(logPositionManager.getLatestIndexBy(DESTINATION));
+        logPositionManager.stop();
+        eventStore.stop();
+    }
+
+    private MemoryEventStoreWithBuffer store() {
+        MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+        eventStore.setBufferSize(16);
+        eventStore.setBatchMode(BatchMode.ITEM_SIZE);
+        eventStore.setDestination(DESTINATION);
+        eventStore.setCheckpointDir(folder.getRoot().getPath());
+        eventStore.start();
+        return eventStore;
+    }
+
+    private static Event event(long position, CanalEntry.EntryType entryType) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .build();
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder().setHeader(header).setEntryType(entryType).build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry);
+    }
+}
@@ -0,0 +1,182 @@
+package org.clever.canal.parse.index;
+
+import org.clever.canal.protocol.position.EntryPosition;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+public class TimestampPositionIndexTest {
+    private static final String DESTINATION = "example";
+    private static final Long SERVER_ID = 1L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppendAndLoad() {
+        TimestampPositionIndex index = index(100);
+        for (int i = 1; i <= 10; i++) {
+            index.append(position("mysql-bin.000001", i * 1000L, i * 1000L));
+            // 时间和位点间隔都没有达到阈值，忽略
+            index.append(position("mysql-bin.000001", i * 1000L + 10, i * 1000L + 10));
+        }
+        // 位点回退(重复解析)，忽略
+        index.append(position("mysql-bin.000001", 5000L, 5000L));
+        index.append(position("mysql-bin.000002", 4L, 11000L));
+        EntryPosition withGtId = position("mysql-bin.000002", 1000L, 12000L);
+        withGtId.setGtId("uuid:1-100");
+        index.append(withGtId);
+        Assert.assertEquals(12, index.size());
+        index.stop();
+
+        index = index(100);
+        Assert.assertEquals(12, index.size());
+        EntryPosition found = index.findByTimestamp(SERVER_ID, 12001L);
+        Assert.assertEquals("mysql-bin.000002", found.getJournalName());
+        Assert.assertEquals(Long.valueOf(1000), found.getPosition());
+        Assert.assertEquals("uuid:1-100", found.getGtId());
+        Assert.assertNull(index.findByTimestamp(SERVER_ID, 1500L).getGtId());
+        index.stop();
+    }
+
+    @Test
+    public void testTruncateCorruptTail() throws Exception {
+        TimestampPositionIndex index = index(100);
+        for (int i = 1; i <= 3; i++) {
+            index.append(position("mysql-bin.000001", i * 1000L, i * 1000L));
+        }
+        index.stop();
+        File file = new File(new File(folder.getRoot(), DESTINATION), "timestamp.idx");
+        long validLength = file.length();
+        // 模拟异常停止时写了一半的记录
+        try (FileOutputStream output = new FileOutputStream(file, true)) {
+            output.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0});
+        }
+
+        index = index(100);
+        Assert.assertEquals(3, index.size());
+        Assert.assertEquals(validLength, file.length());
+        // 截断之后继续追加，重新加载时不会读到损坏的数据
+        index.append(position("mysql-bin.000001", 4000L, 4000L));
+        index.stop();
+        index = index(100);
+        Assert.assertEquals(4, index.size());
+        Assert.assertEquals(Long.valueOf(4000), index.findByTimestamp(SERVER_ID, 5000L).getPosition());
+        index.stop();
+    }
+
+    @Test
+    public void testEvict() {
+        TimestampPositionIndex index = index(8);
+        for (int i = 1; i <= 9; i++) {
+            index.append(position("mysql-bin.000001", i * 1000L, i * 1000L));
+        }
+        // 超过maxRecords时删除最早的记录
+        Assert.assertTrue(index.size() <= 8 * 3 / 4);
+        Assert.assertNull(index.findByTimestamp(SERVER_ID, 2000L));
+        Assert.assertEquals(Long.valueOf(9000), index.findByTimestamp(SERVER_ID, 10000L).getPosition());
+        int size = index.size();
+        index.stop();
+
+        index = index(8);
+        Assert.assertEquals(size, index.size());
+        Assert.assertNull(index.findByTimestamp(SERVER_ID, 2000L));
+        Assert.assertEquals(Long.valueOf(9000), index.findByPosition(SERVER_ID, "mysql-bin.000001", 9000L).getPosition());
+        index.stop();
+    }
+
+    @Test
+    public void testFindByTimestamp() {
+        TimestampPositionIndex index = index(100);
+        index.append(position("mysql-bin.000001", 1000L, 1000L));
+        index.append(position("mysql-bin.000001", 3000L, 3000L));
+        index.append(position("mysql-bin.000002", 1000L, 5000L));
+        // 时间戳严格小于查找的时间戳
+        Assert.assertNull(index.findByTimestamp(SERVER_ID, 1000L));
+        Assert.assertEquals(Long.valueOf(1000), index.findByTimestamp(SERVER_ID, 1001L).getPosition());
+        Assert.assertEquals(Long.valueOf(1000), index.findByTimestamp(SERVER_ID, 3000L).getPosition());
+        Assert.assertEquals(Long.valueOf(3000), index.findByTimestamp(SERVER_ID, 4000L).getPosition());
+        EntryPosition found = index.findByTimestamp(SERVER_ID, Long.MAX_VALUE);
+        Assert.assertEquals("mysql-bin.000002", found.getJournalName());
+        // 不同serverId的记录互不影响
+        Assert.assertNull(index.findByTimestamp(2L, Long.MAX_VALUE));
+        index.stop();
+    }
+
+    @Test
+    public void testFindByPosition() {
+        TimestampPositionIndex index = index(100);
+        index.append(position("mysql-bin.000001", 1000L, 1000L));
+        index.append(position("mysql-bin.000001", 3000L, 3000L));
+        index.append(position("mysql-bin.000002", 2000L, 5000L));
+        Assert.assertEquals(Long.valueOf(1000), index.findByPosition(SERVER_ID, "mysql-bin.000001", 2999L).getPosition());
+        Assert.assertEquals(Long.valueOf(3000), index.findByPosition(SERVER_ID, "mysql-bin.000001", 3000L).getPosition());
+        Assert.assertEquals(Long.valueOf(3000), index.findByPosition(SERVER_ID, "mysql-bin.000001", 100000L).getPosition());
+        Assert.assertNull(index.findByPosition(SERVER_ID, "mysql-bin.000001", 999L));
+        // 只返回同一个binlog文件中的记录
+        Assert.assertNull(index.findByPosition(SERVER_ID, "mysql-bin.000002", 1000L));
+        Assert.assertNull(index.findByPosition(SERVER_ID, "mysql-bin.000003", 1000L));
+        Assert.assertEquals(Long.valueOf(2000), index.findByPosition(SERVER_ID, "mysql-bin.000002", 2000L).getPosition());
+        Assert.assertNull(index.findByPosition(2L, "mysql-bin.000001", 3000L));
+        index.stop();
+    }
+
+    @Test
+    public void testRemoveStale() {
+        TimestampPositionIndex index = index(100);
+        index.append(position("mysql-bin.000001", 1000L, 1000L));
+        index.append(position("mysql-bin.000002", 1000L, 2000L));
+        index.append(position("mysql-bin.000003", 1000L, 3000L));
+        // binlog被重置之后，mysql-bin.000002的第一个事件晚于索引中的记录
+        Assert.assertEquals(2, index.removeStale(SERVER_ID, "mysql-bin.000002", 10000L));
+        Assert.assertEquals(1, index.size());
+        Assert.assertNull(index.findByPosition(SERVER_ID, "mysql-bin.000002", 1000L));
+        Assert.assertEquals("mysql-bin.000001", index.findByTimestamp(SERVER_ID, Long.MAX_VALUE).getJournalName());
+        // 没有过期的记录
+        Assert.assertEquals(0, index.removeStale(SERVER_ID, "mysql-bin.000001", 1000L));
+        index.stop();
+
+        index = index(100);
+        Assert.assertEquals(1, index.size());
+        index.stop();
+    }
+
+    @Test
+    public void testAppendAfterReset() {
+        TimestampPositionIndex index = index(100);
+        index.append(position("mysql-bin.000001", 1000L, 1000L));
+        index.append(position("mysql-bin.000002", 1000L, 2000L));
+        index.append(position("mysql-bin.000003", 1000L, 3000L));
+        // binlog被重置，文件名从头开始，时间前进但是位点回退
+        index.append(position("mysql-bin.000001", 500L, 10000L));
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals(Long.valueOf(500), index.findByPosition(SERVER_ID, "mysql-bin.000001", 1000L).getPosition());
+        index.append(position("mysql-bin.000002", 500L, 11000L));
+        Assert.assertEquals(2, index.size());
+        index.stop();
+
+        index = index(100);
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals(Long.valueOf(10000), index.findByTimestamp(SERVER_ID, 10001L).getTimestamp());
+        index.stop();
+    }
+
+    // ============================ helper method ======================
+
+    private TimestampPositionIndex index(int maxRecords) {
+        TimestampPositionIndex index = new TimestampPositionIndex(folder.getRoot(), DESTINATION);
+        index.setInterval(1000);
+        index.setIntervalBytes(1024 * 1024);
+        index.setMaxRecords(maxRecords);
+        index.start();
+        return index;
+    }
+
+    private static EntryPosition position(String journalName, long position, long timestamp) {
+        return new EntryPosition(journalName, position, timestamp, SERVER_ID);
+    }
+}
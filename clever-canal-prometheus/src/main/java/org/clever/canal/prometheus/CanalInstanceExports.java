@@ -23,6 +23,7 @@ public class CanalInstanceExports {
     private final Collector metaCollector;
     private final Collector sinkCollector;
     private final Collector parserCollector;
+    private final Collector batchSizeCollector;
 
     private CanalInstanceExports() {
         this.storeCollector = StoreCollector.Instance;
@@ -30,6 +31,7 @@ public class CanalInstanceExports {
         this.metaCollector = MetaCollector.Instance;
         this.sinkCollector = SinkCollector.Instance;
         this.parserCollector = ParserCollector.Instance;
+        this.batchSizeCollector = BatchSizeCollector.Instance;
     }
 
     /**
@@ -41,6 +43,7 @@ public class CanalInstanceExports {
         metaCollector.register();
         sinkCollector.register();
         parserCollector.register();
+        batchSizeCollector.register();
     }
 
     /**
@@ -52,6 +55,7 @@ public class CanalInstanceExports {
         CollectorRegistry.defaultRegistry.unregister(metaCollector);
         CollectorRegistry.defaultRegistry.unregister(sinkCollector);
         CollectorRegistry.defaultRegistry.unregister(parserCollector);
+        CollectorRegistry.defaultRegistry.unregister(batchSizeCollector);
     }
 
     /**
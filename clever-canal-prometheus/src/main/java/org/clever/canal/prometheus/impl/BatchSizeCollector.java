@@ -0,0 +1,63 @@
+package org.clever.canal.prometheus.impl;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import org.clever.canal.server.embedded.AdaptiveBatchSizer;
+import org.clever.canal.server.embedded.CanalServerWithEmbedded;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.clever.canal.prometheus.CanalInstanceExports.DEST;
+
+/**
+ * 自适应batchSize的监控数据(按客户端)
+ */
+public class BatchSizeCollector extends Collector {
+    /**
+     * 单例对象
+     */
+    public static final BatchSizeCollector Instance = new BatchSizeCollector();
+
+    private static final String BATCH_SIZE = "canal_instance_client_batch_size";
+    private static final String ACK_LATENCY = "canal_instance_client_ack_latency";
+    private static final String BATCH_GROW = "canal_instance_client_batch_grow";
+    private static final String BATCH_SHRINK = "canal_instance_client_batch_shrink";
+    private static final String BATCH_SIZE_HELP = "Adaptive batch size of client";
+    private static final String ACK_LATENCY_HELP = "Average latency(ms) from getWithoutAck to ack of client";
+    private static final String BATCH_GROW_HELP = "Total adaptive batch size grow decisions of client";
+    private static final String BATCH_SHRINK_HELP = "Total adaptive batch size shrink decisions of client";
+
+    private final List<String> clientLabelsList = Arrays.asList(DEST, "clientId");
+
+    private BatchSizeCollector() {
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> mfs = new ArrayList<>();
+        // 实例可以单独启用自适应batchSize，只要有客户端状态就输出
+        List<AdaptiveBatchSizer.ClientBatchState> states = CanalServerWithEmbedded.Instance.getAdaptiveBatchSizer().getStates();
+        if (states.isEmpty()) {
+            return mfs;
+        }
+        GaugeMetricFamily batchSize = new GaugeMetricFamily(BATCH_SIZE, BATCH_SIZE_HELP, clientLabelsList);
+        GaugeMetricFamily ackLatency = new GaugeMetricFamily(ACK_LATENCY, ACK_LATENCY_HELP, clientLabelsList);
+        CounterMetricFamily grow = new CounterMetricFamily(BATCH_GROW, BATCH_GROW_HELP, clientLabelsList);
+        CounterMetricFamily shrink = new CounterMetricFamily(BATCH_SHRINK, BATCH_SHRINK_HELP, clientLabelsList);
+        for (AdaptiveBatchSizer.ClientBatchState state : states) {
+            List<String> labelValues = Arrays.asList(state.getClientIdentity().getDestination(), String.valueOf(state.getClientIdentity().getClientId()));
+            batchSize.addMetric(labelValues, state.getBatchSize());
+            ackLatency.addMetric(labelValues, state.getAckLatency());
+            grow.addMetric(labelValues, state.getGrowCount());
+            shrink.addMetric(labelValues, state.getShrinkCount());
+        }
+        mfs.add(batchSize);
+        mfs.add(ackLatency);
+        mfs.add(grow);
+        mfs.add(shrink);
+        return mfs;
+    }
+}
@@ -6,6 +6,7 @@ import io.prometheus.client.CounterMetricFamily;
 import io.prometheus.client.GaugeMetricFamily;
 import org.clever.canal.instance.core.CanalInstance;
 import org.clever.canal.parse.CanalEventParser;
+import org.clever.canal.parse.dbsync.binlog.LogBufferPool;
 import org.clever.canal.parse.inbound.group.GroupEventParser;
 import org.clever.canal.parse.inbound.mysql.AbstractMysqlEventParser;
 import org.clever.canal.prometheus.InstanceRegistry;
@@ -32,11 +33,17 @@ public class ParserCollector extends Collector implements InstanceRegistry {
     private static final String PUBLISH_BLOCKING = "canal_instance_publish_blocking_time";
     private static final String RECEIVED_BINLOG = "canal_instance_received_binlog_bytes";
     private static final String PARSER_MODE = "canal_instance_parser_mode";
+    private static final String BUFFER_LEASE = "canal_instance_parser_buffer_lease";
+    private static final String BUFFER_ALLOCATE = "canal_instance_parser_buffer_allocate";
+    private static final String BUFFER_ALLOCATE_BYTES = "canal_instance_parser_buffer_allocate_bytes";
     private static final String MODE_LABEL = "parallel";
     private static final String PARSER_LABEL = "parser";
     private static final String PUBLISH_BLOCKING_HELP = "Publish blocking time of dump thread in milliseconds";
     private static final String RECEIVED_BINLOG_HELP = "Received binlog bytes";
     private static final String MODE_HELP = "Parser mode(parallel/serial) of instance";
+    private static final String BUFFER_LEASE_HELP = "Total binlog event buffers leased by dump thread";
+    private static final String BUFFER_ALLOCATE_HELP = "Total binlog event buffers newly allocated(pool miss or oversize)";
+    private static final String BUFFER_ALLOCATE_BYTES_HELP = "Total bytes of binlog event buffers newly allocated";
 
     private final ConcurrentMap<String, ParserMetricsHolder> instances = new ConcurrentHashMap<>();
     private final List<String> modeLabels = Arrays.asList(DEST, MODE_LABEL);
@@ -51,14 +58,19 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         CounterMetricFamily bytesCounter = new CounterMetricFamily(RECEIVED_BINLOG, RECEIVED_BINLOG_HELP, parserLabels);
         GaugeMetricFamily modeGauge = new GaugeMetricFamily(PARSER_MODE, MODE_HELP, modeLabels);
         CounterMetricFamily blockingCounter = new CounterMetricFamily(PUBLISH_BLOCKING, PUBLISH_BLOCKING_HELP, parserLabels);
+        CounterMetricFamily leaseCounter = new CounterMetricFamily(BUFFER_LEASE, BUFFER_LEASE_HELP, parserLabels);
+        CounterMetricFamily allocateCounter = new CounterMetricFamily(BUFFER_ALLOCATE, BUFFER_ALLOCATE_HELP, parserLabels);
+        CounterMetricFamily allocateBytesCounter = new CounterMetricFamily(BUFFER_ALLOCATE_BYTES, BUFFER_ALLOCATE_BYTES_HELP, parserLabels);
         for (ParserMetricsHolder emh : instances.values()) {
             if (emh instanceof GroupParserMetricsHolder) {
                 GroupParserMetricsHolder group = (GroupParserMetricsHolder) emh;
                 for (ParserMetricsHolder holder : group.holders) {
                     singleCollect(bytesCounter, blockingCounter, modeGauge, holder);
+                    bufferCollect(leaseCounter, allocateCounter, allocateBytesCounter, holder);
                 }
             } else {
                 singleCollect(bytesCounter, blockingCounter, modeGauge, emh);
+                bufferCollect(leaseCounter, allocateCounter, allocateBytesCounter, emh);
             }
         }
         mfs.add(bytesCounter);
@@ -66,9 +78,27 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         if (!blockingCounter.samples.isEmpty()) {
             mfs.add(blockingCounter);
         }
+        if (!leaseCounter.samples.isEmpty()) {
+            mfs.add(leaseCounter);
+            mfs.add(allocateCounter);
+            mfs.add(allocateBytesCounter);
+        }
         return mfs;
     }
 
+    private void bufferCollect(
+            CounterMetricFamily leaseCounter,
+            CounterMetricFamily allocateCounter,
+            CounterMetricFamily allocateBytesCounter,
+            ParserMetricsHolder holder
+    ) {
+        if (holder.isParallel && holder.logBufferPool != null) {
+            leaseCounter.addMetric(holder.parserLabelValues, holder.logBufferPool.getLeaseCount());
+            allocateCounter.addMetric(holder.parserLabelValues, holder.logBufferPool.getAllocateCount());
+            allocateBytesCounter.addMetric(holder.parserLabelValues, holder.logBufferPool.getAllocateBytes());
+        }
+    }
+
     private void singleCollect(
             CounterMetricFamily bytesCounter,
             CounterMetricFamily blockingCounter,
@@ -108,6 +138,7 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         holder.eventsPublishBlockingTime = parser.getEventsPublishBlockingTime();
         holder.receivedBinlogBytes = parser.getReceivedBinlogBytes();
         holder.isParallel = parser.isParallel();
+        holder.logBufferPool = parser.getLogBufferPool();
         Preconditions.checkNotNull(holder.eventsPublishBlockingTime);
         Preconditions.checkNotNull(holder.receivedBinlogBytes);
         return holder;
@@ -141,6 +172,7 @@ public class ParserCollector extends Collector implements InstanceRegistry {
         // metrics for single parser
         private AtomicLong receivedBinlogBytes;
         private AtomicLong eventsPublishBlockingTime;
+        private LogBufferPool logBufferPool;
         // parser mode
         private boolean isParallel;
     }
@@ -6,8 +6,8 @@ import io.prometheus.client.CounterMetricFamily;
 import io.prometheus.client.GaugeMetricFamily;
 import org.clever.canal.instance.core.CanalInstance;
 import org.clever.canal.prometheus.InstanceRegistry;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
 import org.clever.canal.store.CanalEventStore;
-import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
 import org.clever.canal.store.model.BatchMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import static org.clever.canal.prometheus.CanalInstanceExports.DEST;
 import static org.clever.canal.prometheus.CanalInstanceExports.DEST_LABELS_LIST;
@@ -41,6 +42,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
     private static final String PUT_ROWS = "canal_instance_put_rows";
     private static final String GET_ROWS = "canal_instance_get_rows";
     private static final String ACK_ROWS = "canal_instance_ack_rows";
+    private static final String RECLAIMED_MEM = "canal_instance_store_reclaimed_mem";
     private static final String PRODUCE_HELP = "Produced events counter of canal instance";
     private static final String CONSUME_HELP = "Consumed events counter of canal instance";
     private static final String STORE_HELP = "Canal instance info";
@@ -52,6 +54,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
     private static final String PUT_ROWS_HELP = "Put table rows of canal instance";
     private static final String GET_ROWS_HELP = "Got table rows of canal instance";
     private static final String ACK_ROWS_HELP = "Acked table rows of canal instance";
+    private static final String RECLAIMED_MEM_HELP = "Mem bytes reclaimed by store scavenger of canal instance";
 
     private final ConcurrentMap<String, StoreMetricsHolder> instances = new ConcurrentHashMap<>();
     private final List<String> storeLabelsList = Arrays.asList(DEST, "batchMode", "size");
@@ -74,11 +77,12 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         CounterMetricFamily putRows = new CounterMetricFamily(PUT_ROWS, PUT_ROWS_HELP, DEST_LABELS_LIST);
         CounterMetricFamily getRows = new CounterMetricFamily(GET_ROWS, GET_ROWS_HELP, DEST_LABELS_LIST);
         CounterMetricFamily ackRows = new CounterMetricFamily(ACK_ROWS, ACK_ROWS_HELP, DEST_LABELS_LIST);
+        CounterMetricFamily reclaimedMem = new CounterMetricFamily(RECLAIMED_MEM, RECLAIMED_MEM_HELP, DEST_LABELS_LIST);
         boolean hasMem = false;
         for (StoreMetricsHolder smh : instances.values()) {
             final boolean isMem = smh.batchMode.isMemSize();
-            put.addMetric(smh.destLabelValues, smh.putSeq.doubleValue());
-            ack.addMetric(smh.destLabelValues, smh.ackSeq.doubleValue());
+            put.addMetric(smh.destLabelValues, smh.putSeq.getAsLong());
+            ack.addMetric(smh.destLabelValues, smh.ackSeq.getAsLong());
             long pet = smh.putExecTime.get();
             // 防止出现启动时，未消费造成的get, ack延时小于前阶段的情况
             long get = Math.min(smh.getExecTime.get(), pet);
@@ -94,6 +98,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
             putRows.addMetric(smh.destLabelValues, smh.putTableRows.doubleValue());
             getRows.addMetric(smh.destLabelValues, smh.getTableRows.doubleValue());
             ackRows.addMetric(smh.destLabelValues, smh.ackTableRows.doubleValue());
+            reclaimedMem.addMetric(smh.destLabelValues, smh.reclaimedSize.doubleValue());
             store.addMetric(smh.storeLabelValues, 1);
             if (isMem) {
                 hasMem = true;
@@ -110,6 +115,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         mfs.add(putRows);
         mfs.add(getRows);
         mfs.add(ackRows);
+        mfs.add(reclaimedMem);
         if (hasMem) {
             mfs.add(putMem);
             mfs.add(ackMem);
@@ -122,13 +128,13 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         final String destination = instance.getDestination();
         StoreMetricsHolder holder = new StoreMetricsHolder();
         CanalEventStore store = instance.getEventStore();
-        if (!(store instanceof MemoryEventStoreWithBuffer)) {
-            throw new IllegalArgumentException("EventStore must be MemoryEventStoreWithBuffer");
+        if (!(store instanceof AbstractEventStoreWithBuffer)) {
+            throw new IllegalArgumentException("EventStore must be AbstractEventStoreWithBuffer");
         }
-        MemoryEventStoreWithBuffer memStore = (MemoryEventStoreWithBuffer) store;
+        AbstractEventStoreWithBuffer memStore = (AbstractEventStoreWithBuffer) store;
         holder.batchMode = memStore.getBatchMode();
-        holder.putSeq = memStore.getPutSequence();
-        holder.ackSeq = memStore.getAckSequence();
+        holder.putSeq = memStore::currentPutSequence;
+        holder.ackSeq = memStore::currentAckSequence;
         holder.destLabelValues = Collections.singletonList(destination);
         holder.size = memStore.getBufferSize();
         holder.storeLabelValues = Arrays.asList(destination, holder.batchMode.name(), Integer.toString(holder.size));
@@ -138,6 +144,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         holder.putTableRows = memStore.getPutTableRows();
         holder.getTableRows = memStore.getGetTableRows();
         holder.ackTableRows = memStore.getAckTableRows();
+        holder.reclaimedSize = memStore.getReclaimedSize();
         Preconditions.checkNotNull(holder.batchMode);
         Preconditions.checkNotNull(holder.putSeq);
         Preconditions.checkNotNull(holder.ackSeq);
@@ -160,8 +167,8 @@ public class StoreCollector extends Collector implements InstanceRegistry {
     }
 
     private static class StoreMetricsHolder {
-        private AtomicLong putSeq;
-        private AtomicLong ackSeq;
+        private LongSupplier putSeq;
+        private LongSupplier ackSeq;
         private BatchMode batchMode;
         private AtomicLong putMemSize;
         private AtomicLong ackMemSize;
@@ -171,6 +178,7 @@ public class StoreCollector extends Collector implements InstanceRegistry {
         private AtomicLong putTableRows;
         private AtomicLong getTableRows;
         private AtomicLong ackTableRows;
+        private AtomicLong reclaimedSize;
         private int size;
         private List<String> destLabelValues;
         private List<String> storeLabelValues;
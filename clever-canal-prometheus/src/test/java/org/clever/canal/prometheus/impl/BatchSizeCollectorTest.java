@@ -0,0 +1,58 @@
+package org.clever.canal.prometheus.impl;
+
+import io.prometheus.client.Collector;
+import org.clever.canal.protocol.ClientIdentity;
+import org.clever.canal.server.embedded.AdaptiveBatchSizer;
+import org.clever.canal.server.embedded.CanalServerWithEmbedded;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class BatchSizeCollectorTest {
+    private static final ClientIdentity CLIENT = new ClientIdentity("example", (short) 1001);
+
+    private final AdaptiveBatchSizer sizer = CanalServerWithEmbedded.Instance.getAdaptiveBatchSizer();
+
+    @After
+    public void tearDown() {
+        sizer.remove(CLIENT);
+        sizer.setEnabled(false);
+    }
+
+    @Test
+    public void testNoClient() {
+        Assert.assertTrue(BatchSizeCollector.Instance.collect().isEmpty());
+    }
+
+    @Test
+    public void testCollect() {
+        sizer.setEnabled(true);
+        sizer.setMinBatchSize(1);
+        sizer.setMaxBatchSize(64);
+        sizer.setTargetLatency(60000);
+        sizer.batchSize(CLIENT, 4, null);
+        // 增大两次，减小一次
+        sizer.onGet(CLIENT, 1, true);
+        sizer.onAck(CLIENT, 1);
+        sizer.onGet(CLIENT, 2, true);
+        sizer.onAck(CLIENT, 2);
+        sizer.onRollback(CLIENT);
+
+        Map<String, Double> samples = new HashMap<>();
+        for (Collector.MetricFamilySamples family : BatchSizeCollector.Instance.collect()) {
+            for (Collector.MetricFamilySamples.Sample sample : family.samples) {
+                Assert.assertEquals(Arrays.asList("destination", "clientId"), sample.labelNames);
+                Assert.assertEquals(Arrays.asList("example", "1001"), sample.labelValues);
+                samples.put(sample.name, sample.value);
+            }
+        }
+        Assert.assertEquals(8, samples.get("canal_instance_client_batch_size"), 0);
+        Assert.assertEquals(2, samples.get("canal_instance_client_batch_grow"), 0);
+        Assert.assertEquals(1, samples.get("canal_instance_client_batch_shrink"), 0);
+        Assert.assertTrue(samples.get("canal_instance_client_ack_latency") >= 0);
+    }
+}
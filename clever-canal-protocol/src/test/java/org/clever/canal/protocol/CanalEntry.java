@@ -5322,7 +5322,69 @@ public final class CanalEntry {
     com.google.protobuf.ByteString
         getMysqlTypeBytes();
 
+    /**
+     * <pre>
+     * 整数类型(TINYINT~BIGINT/BIT/ENUM)，无符号BIGINT超出范围时使用decimalValue
+     * </pre>
+     *
+     * <code>sint64 longValue = 11;</code>
+     * @return The longValue.
+     */
+    long getLongValue();
+
+    /**
+     * <pre>
+     * 浮点类型(FLOAT/DOUBLE)
+     * </pre>
+     *
+     * <code>double doubleValue = 12;</code>
+     * @return The doubleValue.
+     */
+    double getDoubleValue();
+
+    /**
+     * <pre>
+     * 二进制类型(BINARY/VARBINARY/BLOB/GEOMETRY)的原始字节
+     * </pre>
+     *
+     * <code>bytes bytesValue = 13;</code>
+     * @return The bytesValue.
+     */
+    com.google.protobuf.ByteString getBytesValue();
+
+    /**
+     * <pre>
+     * DECIMAL的unscaled值(BigInteger补码大端字节)，小数位数见decimalScale
+     * </pre>
+     *
+     * <code>bytes decimalValue = 14;</code>
+     * @return The decimalValue.
+     */
+    com.google.protobuf.ByteString getDecimalValue();
+
+    /**
+     * <pre>
+     * 时间类型的微秒数(TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒，TIME为时长微秒)
+     * </pre>
+     *
+     * <code>sint64 temporalValue = 15;</code>
+     * @return The temporalValue.
+     */
+    long getTemporalValue();
+
+    /**
+     * <pre>
+     * decimalValue的小数位数
+     * </pre>
+     *
+     * <code>int32 decimalScale = 16;</code>
+     * @return The decimalScale.
+     */
+    int getDecimalScale();
+
     public org.clever.canal.protocol.CanalEntry.Column.IsNullPresentCase getIsNullPresentCase();
+
+    public org.clever.canal.protocol.CanalEntry.Column.TypedValueCase getTypedValueCase();
   }
   /**
    * <pre>
@@ -5435,6 +5497,36 @@ public final class CanalEntry {
               mysqlType_ = s;
               break;
             }
+            case 88: {
+              typedValueCase_ = 11;
+              typedValue_ = input.readSInt64();
+              break;
+            }
+            case 97: {
+              typedValueCase_ = 12;
+              typedValue_ = input.readDouble();
+              break;
+            }
+            case 106: {
+              typedValueCase_ = 13;
+              typedValue_ = input.readBytes();
+              break;
+            }
+            case 114: {
+              typedValueCase_ = 14;
+              typedValue_ = input.readBytes();
+              break;
+            }
+            case 120: {
+              typedValueCase_ = 15;
+              typedValue_ = input.readSInt64();
+              break;
+            }
+            case 128: {
+
+              decimalScale_ = input.readInt32();
+              break;
+            }
             default: {
               if (!parseUnknownField(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -5509,6 +5601,53 @@ public final class CanalEntry {
           isNullPresentCase_);
     }
 
+    private int typedValueCase_ = 0;
+    private java.lang.Object typedValue_;
+    public enum TypedValueCase
+        implements com.google.protobuf.Internal.EnumLite,
+            com.google.protobuf.AbstractMessage.InternalOneOfEnum {
+      LONGVALUE(11),
+      DOUBLEVALUE(12),
+      BYTESVALUE(13),
+      DECIMALVALUE(14),
+      TEMPORALVALUE(15),
+      TYPEDVALUE_NOT_SET(0);
+      private final int value;
+      private TypedValueCase(int value) {
+        this.value = value;
+      }
+      /**
+       * @param value The number of the enum to look for.
+       * @return The enum associated with the given number.
+       * @deprecated Use {@link #forNumber(int)} instead.
+       */
+      @java.lang.Deprecated
+      public static TypedValueCase valueOf(int value) {
+        return forNumber(value);
+      }
+
+      public static TypedValueCase forNumber(int value) {
+        switch (value) {
+          case 11: return LONGVALUE;
+          case 12: return DOUBLEVALUE;
+          case 13: return BYTESVALUE;
+          case 14: return DECIMALVALUE;
+          case 15: return TEMPORALVALUE;
+          case 0: return TYPEDVALUE_NOT_SET;
+          default: return null;
+        }
+      }
+      public int getNumber() {
+        return this.value;
+      }
+    };
+
+    public TypedValueCase
+    getTypedValueCase() {
+      return TypedValueCase.forNumber(
+          typedValueCase_);
+    }
+
     public static final int INDEX_FIELD_NUMBER = 1;
     private int index_;
     /**
@@ -5778,6 +5917,100 @@ public final class CanalEntry {
       }
     }
 
+    public static final int LONGVALUE_FIELD_NUMBER = 11;
+    /**
+     * <pre>
+     * 整数类型(TINYINT~BIGINT/BIT/ENUM)，无符号BIGINT超出范围时使用decimalValue
+     * </pre>
+     *
+     * <code>sint64 longValue = 11;</code>
+     * @return The longValue.
+     */
+    public long getLongValue() {
+      if (typedValueCase_ == 11) {
+        return (java.lang.Long) typedValue_;
+      }
+      return 0L;
+    }
+
+    public static final int DOUBLEVALUE_FIELD_NUMBER = 12;
+    /**
+     * <pre>
+     * 浮点类型(FLOAT/DOUBLE)
+     * </pre>
+     *
+     * <code>double doubleValue = 12;</code>
+     * @return The doubleValue.
+     */
+    public double getDoubleValue() {
+      if (typedValueCase_ == 12) {
+        return (java.lang.Double) typedValue_;
+      }
+      return 0D;
+    }
+
+    public static final int BYTESVALUE_FIELD_NUMBER = 13;
+    /**
+     * <pre>
+     * 二进制类型(BINARY/VARBINARY/BLOB/GEOMETRY)的原始字节
+     * </pre>
+     *
+     * <code>bytes bytesValue = 13;</code>
+     * @return The bytesValue.
+     */
+    public com.google.protobuf.ByteString getBytesValue() {
+      if (typedValueCase_ == 13) {
+        return (com.google.protobuf.ByteString) typedValue_;
+      }
+      return com.google.protobuf.ByteString.EMPTY;
+    }
+
+    public static final int DECIMALVALUE_FIELD_NUMBER = 14;
+    /**
+     * <pre>
+     * DECIMAL的unscaled值(BigInteger补码大端字节)，小数位数见decimalScale
+     * </pre>
+     *
+     * <code>bytes decimalValue = 14;</code>
+     * @return The decimalValue.
+     */
+    public com.google.protobuf.ByteString getDecimalValue() {
+      if (typedValueCase_ == 14) {
+        return (com.google.protobuf.ByteString) typedValue_;
+      }
+      return com.google.protobuf.ByteString.EMPTY;
+    }
+
+    public static final int TEMPORALVALUE_FIELD_NUMBER = 15;
+    /**
+     * <pre>
+     * 时间类型的微秒数(TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒，TIME为时长微秒)
+     * </pre>
+     *
+     * <code>sint64 temporalValue = 15;</code>
+     * @return The temporalValue.
+     */
+    public long getTemporalValue() {
+      if (typedValueCase_ == 15) {
+        return (java.lang.Long) typedValue_;
+      }
+      return 0L;
+    }
+
+    public static final int DECIMALSCALE_FIELD_NUMBER = 16;
+    private int decimalScale_;
+    /**
+     * <pre>
+     * decimalValue的小数位数
+     * </pre>
+     *
+     * <code>int32 decimalScale = 16;</code>
+     * @return The decimalScale.
+     */
+    public int getDecimalScale() {
+      return decimalScale_;
+    }
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -5823,6 +6056,29 @@ public final class CanalEntry {
       if (!getMysqlTypeBytes().isEmpty()) {
         com.google.protobuf.GeneratedMessageV3.writeString(output, 10, mysqlType_);
       }
+      if (typedValueCase_ == 11) {
+        output.writeSInt64(
+            11, (long)((java.lang.Long) typedValue_));
+      }
+      if (typedValueCase_ == 12) {
+        output.writeDouble(
+            12, (double)((java.lang.Double) typedValue_));
+      }
+      if (typedValueCase_ == 13) {
+        output.writeBytes(
+            13, (com.google.protobuf.ByteString) typedValue_);
+      }
+      if (typedValueCase_ == 14) {
+        output.writeBytes(
+            14, (com.google.protobuf.ByteString) typedValue_);
+      }
+      if (typedValueCase_ == 15) {
+        output.writeSInt64(
+            15, (long)((java.lang.Long) typedValue_));
+      }
+      if (decimalScale_ != 0) {
+        output.writeInt32(16, decimalScale_);
+      }
       unknownFields.writeTo(output);
     }
 
@@ -5870,6 +6126,35 @@ public final class CanalEntry {
       if (!getMysqlTypeBytes().isEmpty()) {
         size += com.google.protobuf.GeneratedMessageV3.computeStringSize(10, mysqlType_);
       }
+      if (typedValueCase_ == 11) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeSInt64Size(
+              11, (long)((java.lang.Long) typedValue_));
+      }
+      if (typedValueCase_ == 12) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeDoubleSize(
+              12, (double)((java.lang.Double) typedValue_));
+      }
+      if (typedValueCase_ == 13) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(
+              13, (com.google.protobuf.ByteString) typedValue_);
+      }
+      if (typedValueCase_ == 14) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeBytesSize(
+              14, (com.google.protobuf.ByteString) typedValue_);
+      }
+      if (typedValueCase_ == 15) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeSInt64Size(
+              15, (long)((java.lang.Long) typedValue_));
+      }
+      if (decimalScale_ != 0) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(16, decimalScale_);
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -5903,6 +6188,8 @@ public final class CanalEntry {
           != other.getLength()) return false;
       if (!getMysqlType()
           .equals(other.getMysqlType())) return false;
+      if (getDecimalScale()
+          != other.getDecimalScale()) return false;
       if (!getIsNullPresentCase().equals(other.getIsNullPresentCase())) return false;
       switch (isNullPresentCase_) {
         case 6:
@@ -5912,6 +6199,32 @@ public final class CanalEntry {
         case 0:
         default:
       }
+      if (!getTypedValueCase().equals(other.getTypedValueCase())) return false;
+      switch (typedValueCase_) {
+        case 11:
+          if (getLongValue()
+              != other.getLongValue()) return false;
+          break;
+        case 12:
+          if (java.lang.Double.doubleToLongBits(getDoubleValue())
+              != java.lang.Double.doubleToLongBits(
+                  other.getDoubleValue())) return false;
+          break;
+        case 13:
+          if (!getBytesValue()
+              .equals(other.getBytesValue())) return false;
+          break;
+        case 14:
+          if (!getDecimalValue()
+              .equals(other.getDecimalValue())) return false;
+          break;
+        case 15:
+          if (getTemporalValue()
+              != other.getTemporalValue()) return false;
+          break;
+        case 0:
+        default:
+      }
       if (!unknownFields.equals(other.unknownFields)) return false;
       return true;
     }
@@ -5945,6 +6258,8 @@ public final class CanalEntry {
       hash = (53 * hash) + getLength();
       hash = (37 * hash) + MYSQLTYPE_FIELD_NUMBER;
       hash = (53 * hash) + getMysqlType().hashCode();
+      hash = (37 * hash) + DECIMALSCALE_FIELD_NUMBER;
+      hash = (53 * hash) + getDecimalScale();
       switch (isNullPresentCase_) {
         case 6:
           hash = (37 * hash) + ISNULL_FIELD_NUMBER;
@@ -5954,6 +6269,33 @@ public final class CanalEntry {
         case 0:
         default:
       }
+      switch (typedValueCase_) {
+        case 11:
+          hash = (37 * hash) + LONGVALUE_FIELD_NUMBER;
+          hash = (53 * hash) + com.google.protobuf.Internal.hashLong(
+              getLongValue());
+          break;
+        case 12:
+          hash = (37 * hash) + DOUBLEVALUE_FIELD_NUMBER;
+          hash = (53 * hash) + com.google.protobuf.Internal.hashLong(
+              java.lang.Double.doubleToLongBits(getDoubleValue()));
+          break;
+        case 13:
+          hash = (37 * hash) + BYTESVALUE_FIELD_NUMBER;
+          hash = (53 * hash) + getBytesValue().hashCode();
+          break;
+        case 14:
+          hash = (37 * hash) + DECIMALVALUE_FIELD_NUMBER;
+          hash = (53 * hash) + getDecimalValue().hashCode();
+          break;
+        case 15:
+          hash = (37 * hash) + TEMPORALVALUE_FIELD_NUMBER;
+          hash = (53 * hash) + com.google.protobuf.Internal.hashLong(
+              getTemporalValue());
+          break;
+        case 0:
+        default:
+      }
       hash = (29 * hash) + unknownFields.hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -6114,8 +6456,12 @@ public final class CanalEntry {
 
         mysqlType_ = "";
 
+        decimalScale_ = 0;
+
         isNullPresentCase_ = 0;
         isNullPresent_ = null;
+        typedValueCase_ = 0;
+        typedValue_ = null;
         return this;
       }
 
@@ -6163,7 +6509,24 @@ public final class CanalEntry {
         result.value_ = value_;
         result.length_ = length_;
         result.mysqlType_ = mysqlType_;
+        if (typedValueCase_ == 11) {
+          result.typedValue_ = typedValue_;
+        }
+        if (typedValueCase_ == 12) {
+          result.typedValue_ = typedValue_;
+        }
+        if (typedValueCase_ == 13) {
+          result.typedValue_ = typedValue_;
+        }
+        if (typedValueCase_ == 14) {
+          result.typedValue_ = typedValue_;
+        }
+        if (typedValueCase_ == 15) {
+          result.typedValue_ = typedValue_;
+        }
+        result.decimalScale_ = decimalScale_;
         result.isNullPresentCase_ = isNullPresentCase_;
+        result.typedValueCase_ = typedValueCase_;
         onBuilt();
         return result;
       }
@@ -6265,6 +6628,9 @@ public final class CanalEntry {
           mysqlType_ = other.mysqlType_;
           onChanged();
         }
+        if (other.getDecimalScale() != 0) {
+          setDecimalScale(other.getDecimalScale());
+        }
         switch (other.getIsNullPresentCase()) {
           case ISNULL: {
             setIsNull(other.getIsNull());
@@ -6274,6 +6640,31 @@ public final class CanalEntry {
             break;
           }
         }
+        switch (other.getTypedValueCase()) {
+          case LONGVALUE: {
+            setLongValue(other.getLongValue());
+            break;
+          }
+          case DOUBLEVALUE: {
+            setDoubleValue(other.getDoubleValue());
+            break;
+          }
+          case BYTESVALUE: {
+            setBytesValue(other.getBytesValue());
+            break;
+          }
+          case DECIMALVALUE: {
+            setDecimalValue(other.getDecimalValue());
+            break;
+          }
+          case TEMPORALVALUE: {
+            setTemporalValue(other.getTemporalValue());
+            break;
+          }
+          case TYPEDVALUE_NOT_SET: {
+            break;
+          }
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -6317,6 +6708,21 @@ public final class CanalEntry {
         return this;
       }
 
+      private int typedValueCase_ = 0;
+      private java.lang.Object typedValue_;
+      public TypedValueCase
+          getTypedValueCase() {
+        return TypedValueCase.forNumber(
+            typedValueCase_);
+      }
+
+      public Builder clearTypedValue() {
+        typedValueCase_ = 0;
+        typedValue_ = null;
+        onChanged();
+        return this;
+      }
+
       private int bitField0_;
 
       private int index_ ;
@@ -7162,6 +7568,284 @@ public final class CanalEntry {
         onChanged();
         return this;
       }
+
+      /**
+       * <pre>
+       * 整数类型(TINYINT~BIGINT/BIT/ENUM)，无符号BIGINT超出范围时使用decimalValue
+       * </pre>
+       *
+       * <code>sint64 longValue = 11;</code>
+       * @return The longValue.
+       */
+      public long getLongValue() {
+        if (typedValueCase_ == 11) {
+          return (java.lang.Long) typedValue_;
+        }
+        return 0L;
+      }
+      /**
+       * <pre>
+       * 整数类型(TINYINT~BIGINT/BIT/ENUM)，无符号BIGINT超出范围时使用decimalValue
+       * </pre>
+       *
+       * <code>sint64 longValue = 11;</code>
+       * @param value The longValue to set.
+       * @return This builder for chaining.
+       */
+      public Builder setLongValue(long value) {
+        typedValueCase_ = 11;
+        typedValue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * 整数类型(TINYINT~BIGINT/BIT/ENUM)，无符号BIGINT超出范围时使用decimalValue
+       * </pre>
+       *
+       * <code>sint64 longValue = 11;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearLongValue() {
+        if (typedValueCase_ == 11) {
+          typedValueCase_ = 0;
+          typedValue_ = null;
+          onChanged();
+        }
+        return this;
+      }
+
+      /**
+       * <pre>
+       * 浮点类型(FLOAT/DOUBLE)
+       * </pre>
+       *
+       * <code>double doubleValue = 12;</code>
+       * @return The doubleValue.
+       */
+      public double getDoubleValue() {
+        if (typedValueCase_ == 12) {
+          return (java.lang.Double) typedValue_;
+        }
+        return 0D;
+      }
+      /**
+       * <pre>
+       * 浮点类型(FLOAT/DOUBLE)
+       * </pre>
+       *
+       * <code>double doubleValue = 12;</code>
+       * @param value The doubleValue to set.
+       * @return This builder for chaining.
+       */
+      public Builder setDoubleValue(double value) {
+        typedValueCase_ = 12;
+        typedValue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * 浮点类型(FLOAT/DOUBLE)
+       * </pre>
+       *
+       * <code>double doubleValue = 12;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearDoubleValue() {
+        if (typedValueCase_ == 12) {
+          typedValueCase_ = 0;
+          typedValue_ = null;
+          onChanged();
+        }
+        return this;
+      }
+
+      /**
+       * <pre>
+       * 二进制类型(BINARY/VARBINARY/BLOB/GEOMETRY)的原始字节
+       * </pre>
+       *
+       * <code>bytes bytesValue = 13;</code>
+       * @return The bytesValue.
+       */
+      public com.google.protobuf.ByteString getBytesValue() {
+        if (typedValueCase_ == 13) {
+          return (com.google.protobuf.ByteString) typedValue_;
+        }
+        return com.google.protobuf.ByteString.EMPTY;
+      }
+      /**
+       * <pre>
+       * 二进制类型(BINARY/VARBINARY/BLOB/GEOMETRY)的原始字节
+       * </pre>
+       *
+       * <code>bytes bytesValue = 13;</code>
+       * @param value The bytesValue to set.
+       * @return This builder for chaining.
+       */
+      public Builder setBytesValue(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  typedValueCase_ = 13;
+        typedValue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * 二进制类型(BINARY/VARBINARY/BLOB/GEOMETRY)的原始字节
+       * </pre>
+       *
+       * <code>bytes bytesValue = 13;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearBytesValue() {
+        if (typedValueCase_ == 13) {
+          typedValueCase_ = 0;
+          typedValue_ = null;
+          onChanged();
+        }
+        return this;
+      }
+
+      /**
+       * <pre>
+       * DECIMAL的unscaled值(BigInteger补码大端字节)，小数位数见decimalScale
+       * </pre>
+       *
+       * <code>bytes decimalValue = 14;</code>
+       * @return The decimalValue.
+       */
+      public com.google.protobuf.ByteString getDecimalValue() {
+        if (typedValueCase_ == 14) {
+          return (com.google.protobuf.ByteString) typedValue_;
+        }
+        return com.google.protobuf.ByteString.EMPTY;
+      }
+      /**
+       * <pre>
+       * DECIMAL的unscaled值(BigInteger补码大端字节)，小数位数见decimalScale
+       * </pre>
+       *
+       * <code>bytes decimalValue = 14;</code>
+       * @param value The decimalValue to set.
+       * @return This builder for chaining.
+       */
+      public Builder setDecimalValue(com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  typedValueCase_ = 14;
+        typedValue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * DECIMAL的unscaled值(BigInteger补码大端字节)，小数位数见decimalScale
+       * </pre>
+       *
+       * <code>bytes decimalValue = 14;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearDecimalValue() {
+        if (typedValueCase_ == 14) {
+          typedValueCase_ = 0;
+          typedValue_ = null;
+          onChanged();
+        }
+        return this;
+      }
+
+      /**
+       * <pre>
+       * 时间类型的微秒数(TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒，TIME为时长微秒)
+       * </pre>
+       *
+       * <code>sint64 temporalValue = 15;</code>
+       * @return The temporalValue.
+       */
+      public long getTemporalValue() {
+        if (typedValueCase_ == 15) {
+          return (java.lang.Long) typedValue_;
+        }
+        return 0L;
+      }
+      /**
+       * <pre>
+       * 时间类型的微秒数(TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒，TIME为时长微秒)
+       * </pre>
+       *
+       * <code>sint64 temporalValue = 15;</code>
+       * @param value The temporalValue to set.
+       * @return This builder for chaining.
+       */
+      public Builder setTemporalValue(long value) {
+        typedValueCase_ = 15;
+        typedValue_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * 时间类型的微秒数(TIMESTAMP为epoch微秒，DATETIME/DATE为按UTC计算的微秒，TIME为时长微秒)
+       * </pre>
+       *
+       * <code>sint64 temporalValue = 15;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearTemporalValue() {
+        if (typedValueCase_ == 15) {
+          typedValueCase_ = 0;
+          typedValue_ = null;
+          onChanged();
+        }
+        return this;
+      }
+
+      private int decimalScale_ ;
+      /**
+       * <pre>
+       * decimalValue的小数位数
+       * </pre>
+       *
+       * <code>int32 decimalScale = 16;</code>
+       * @return The decimalScale.
+       */
+      public int getDecimalScale() {
+        return decimalScale_;
+      }
+      /**
+       * <pre>
+       * decimalValue的小数位数
+       * </pre>
+       *
+       * <code>int32 decimalScale = 16;</code>
+       * @param value The decimalScale to set.
+       * @return This builder for chaining.
+       */
+      public Builder setDecimalScale(int value) {
+        
+        decimalScale_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <pre>
+       * decimalValue的小数位数
+       * </pre>
+       *
+       * <code>int32 decimalScale = 16;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearDecimalScale() {
+        
+        decimalScale_ = 0;
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -13794,43 +14478,47 @@ public final class CanalEntry {
       "\n\005Entry\0221\n\006header\030\001 \001(\0132!.org.clever.can" +
       "al.protocol.Header\0229\n\tentryType\030\002 \001(\0162$." +
       "org.clever.canal.protocol.EntryTypeH\000\022\022\n" +
-      "\nstoreValue\030\003 \001(\014B\023\n\021entryType_present\"\334" +
-      "\001\n\006Column\022\r\n\005index\030\001 \001(\005\022\017\n\007sqlType\030\002 \001(" +
+      "\nstoreValue\030\003 \001(\014B\023\n\021entryType_present\"\363" +
+      "\002\n\006Column\022\r\n\005index\030\001 \001(\005\022\017\n\007sqlType\030\002 \001(" +
       "\005\022\014\n\004name\030\003 \001(\t\022\r\n\005isKey\030\004 \001(\010\022\017\n\007update" +
       "d\030\005 \001(\010\022\020\n\006isNull\030\006 \001(\010H\000\022.\n\005props\030\007 \003(\013" +
       "2\037.org.clever.canal.protocol.Pair\022\r\n\005val" +
       "ue\030\010 \001(\t\022\016\n\006length\030\t \001(\005\022\021\n\tmysqlType\030\n " +
-      "\001(\tB\020\n\016isNull_present\"\254\001\n\007RowData\0228\n\rbef" +
-      "oreColumns\030\001 \003(\0132!.org.clever.canal.prot" +
-      "ocol.Column\0227\n\014afterColumns\030\002 \003(\0132!.org." +
-      "clever.canal.protocol.Column\022.\n\005props\030\003 " +
-      "\003(\0132\037.org.clever.canal.protocol.Pair\"\227\002\n" +
-      "\tRowChange\022\017\n\007tableId\030\001 \001(\003\0229\n\teventType" +
-      "\030\002 \001(\0162$.org.clever.canal.protocol.Event" +
-      "TypeH\000\022\017\n\005isDdl\030\n \001(\010H\001\022\013\n\003sql\030\013 \001(\t\0223\n\007" +
-      "rowData\030\014 \003(\0132\".org.clever.canal.protoco" +
-      "l.RowData\022.\n\005props\030\r \003(\0132\037.org.clever.ca" +
-      "nal.protocol.Pair\022\025\n\rddlSchemaName\030\016 \001(\t" +
-      "B\023\n\021eventType_presentB\017\n\risDdl_present\"\200" +
-      "\001\n\020TransactionBegin\022\023\n\013executeTime\030\001 \001(\003" +
-      "\022\025\n\rtransactionId\030\002 \001(\t\022.\n\005props\030\003 \003(\0132\037" +
-      ".org.clever.canal.protocol.Pair\022\020\n\010threa" +
-      "dId\030\004 \001(\003\"l\n\016TransactionEnd\022\023\n\013executeTi" +
-      "me\030\001 \001(\003\022\025\n\rtransactionId\030\002 \001(\t\022.\n\005props" +
-      "\030\003 \003(\0132\037.org.clever.canal.protocol.Pair*" +
-      "\213\001\n\tEntryType\022 \n\034ENTRY_TYPE_COMPATIBLE_P" +
-      "ROTO2\020\000\022\025\n\021TRANSACTION_BEGIN\020\001\022\014\n\010ROW_DA" +
-      "TA\020\002\022\023\n\017TRANSACTION_END\020\003\022\023\n\017ENTRY_HEART" +
-      "BEAT\020\004\022\r\n\tGT_ID_LOG\020\005*\356\001\n\tEventType\022 \n\034E" +
-      "VENT_TYPE_COMPATIBLE_PROTO2\020\000\022\n\n\006INSERT\020" +
-      "\001\022\n\n\006UPDATE\020\002\022\n\n\006DELETE\020\003\022\n\n\006CREATE\020\004\022\t\n" +
-      "\005ALTER\020\005\022\t\n\005ERASE\020\006\022\t\n\005QUERY\020\007\022\014\n\010TRUNCA" +
-      "TE\020\010\022\n\n\006RENAME\020\t\022\013\n\007C_INDEX\020\n\022\013\n\007D_INDEX" +
-      "\020\013\022\t\n\005GT_ID\020\014\022\r\n\tXA_COMMIT\020\r\022\017\n\013XA_ROLLB" +
-      "ACK\020\016\022\017\n\013M_HEARTBEAT\020\017*D\n\004Type\022\032\n\026TYPE_C" +
-      "OMPATIBLE_PROTO2\020\000\022\n\n\006ORACLE\020\001\022\t\n\005MYSQL\020" +
-      "\002\022\t\n\005PgSQL\020\003B+\n\031org.clever.canal.protoco" +
-      "lB\nCanalEntryH\001P\000b\006proto3"
+      "\001(\t\022\023\n\tlongValue\030\013 \001(\022H\001\022\025\n\013doubleValue\030" +
+      "\014 \001(\001H\001\022\024\n\nbytesValue\030\r \001(\014H\001\022\026\n\014decimal" +
+      "Value\030\016 \001(\014H\001\022\027\n\rtemporalValue\030\017 \001(\022H\001\022\024" +
+      "\n\014decimalScale\030\020 \001(\005B\020\n\016isNull_presentB\014" +
+      "\n\ntypedValue\"\254\001\n\007RowData\0228\n\rbeforeColumn" +
+      "s\030\001 \003(\0132!.org.clever.canal.protocol.Colu" +
+      "mn\0227\n\014afterColumns\030\002 \003(\0132!.org.clever.ca" +
+      "nal.protocol.Column\022.\n\005props\030\003 \003(\0132\037.org" +
+      ".clever.canal.protocol.Pair\"\227\002\n\tRowChang" +
+      "e\022\017\n\007tableId\030\001 \001(\003\0229\n\teventType\030\002 \001(\0162$." +
+      "org.clever.canal.protocol.EventTypeH\000\022\017\n" +
+      "\005isDdl\030\n \001(\010H\001\022\013\n\003sql\030\013 \001(\t\0223\n\007rowData\030\014" +
+      " \003(\0132\".org.clever.canal.protocol.RowData" +
+      "\022.\n\005props\030\r \003(\0132\037.org.clever.canal.proto" +
+      "col.Pair\022\025\n\rddlSchemaName\030\016 \001(\tB\023\n\021event" +
+      "Type_presentB\017\n\risDdl_present\"\200\001\n\020Transa" +
+      "ctionBegin\022\023\n\013executeTime\030\001 \001(\003\022\025\n\rtrans" +
+      "actionId\030\002 \001(\t\022.\n\005props\030\003 \003(\0132\037.org.clev" +
+      "er.canal.protocol.Pair\022\020\n\010threadId\030\004 \001(\003" +
+      "\"l\n\016TransactionEnd\022\023\n\013executeTime\030\001 \001(\003\022" +
+      "\025\n\rtransactionId\030\002 \001(\t\022.\n\005props\030\003 \003(\0132\037." +
+      "org.clever.canal.protocol.Pair*\213\001\n\tEntry" +
+      "Type\022 \n\034ENTRY_TYPE_COMPATIBLE_PROTO2\020\000\022\025" +
+      "\n\021TRANSACTION_BEGIN\020\001\022\014\n\010ROW_DATA\020\002\022\023\n\017T" +
+      "RANSACTION_END\020\003\022\023\n\017ENTRY_HEARTBEAT\020\004\022\r\n" +
+      "\tGT_ID_LOG\020\005*\356\001\n\tEventType\022 \n\034EVENT_TYPE" +
+      "_COMPATIBLE_PROTO2\020\000\022\n\n\006INSERT\020\001\022\n\n\006UPDA" +
+      "TE\020\002\022\n\n\006DELETE\020\003\022\n\n\006CREATE\020\004\022\t\n\005ALTER\020\005\022" +
+      "\t\n\005ERASE\020\006\022\t\n\005QUERY\020\007\022\014\n\010TRUNCATE\020\010\022\n\n\006R" +
+      "ENAME\020\t\022\013\n\007C_INDEX\020\n\022\013\n\007D_INDEX\020\013\022\t\n\005GT_" +
+      "ID\020\014\022\r\n\tXA_COMMIT\020\r\022\017\n\013XA_ROLLBACK\020\016\022\017\n\013" +
+      "M_HEARTBEAT\020\017*D\n\004Type\022\032\n\026TYPE_COMPATIBLE" +
+      "_PROTO2\020\000\022\n\n\006ORACLE\020\001\022\t\n\005MYSQL\020\002\022\t\n\005PgSQ" +
+      "L\020\003B+\n\031org.clever.canal.protocolB\nCanalE" +
+      "ntryH\001P\000b\006proto3"
     };
     descriptor = com.google.protobuf.Descriptors.FileDescriptor
       .internalBuildGeneratedFileFrom(descriptorData,
@@ -13859,7 +14547,7 @@ public final class CanalEntry {
     internal_static_org_clever_canal_protocol_Column_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_org_clever_canal_protocol_Column_descriptor,
-        new java.lang.String[] { "Index", "SqlType", "Name", "IsKey", "Updated", "IsNull", "Props", "Value", "Length", "MysqlType", "IsNullPresent", });
+        new java.lang.String[] { "Index", "SqlType", "Name", "IsKey", "Updated", "IsNull", "Props", "Value", "Length", "MysqlType", "LongValue", "DoubleValue", "BytesValue", "DecimalValue", "TemporalValue", "DecimalScale", "IsNullPresent", "TypedValue", });
     internal_static_org_clever_canal_protocol_RowData_descriptor =
       getDescriptor().getMessageTypes().get(4);
     internal_static_org_clever_canal_protocol_RowData_fieldAccessorTable = new
@@ -0,0 +1,97 @@
+package org.clever.canal.protocol;
+
+import com.google.protobuf.ByteString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Column类型化字段值(typedValue)和decimalScale的序列化/反序列化
+ */
+public class EntryProtocolTest {
+
+    @Test
+    public void testLongValue() throws Exception {
+        for (long value : new long[]{0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            CanalEntry.Column column = roundTrip(column().setLongValue(value));
+            Assert.assertEquals(CanalEntry.Column.TypedValueCase.LONGVALUE, column.getTypedValueCase());
+            Assert.assertEquals(value, column.getLongValue());
+        }
+    }
+
+    @Test
+    public void testDoubleValue() throws Exception {
+        for (double value : new double[]{0, -1.5, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN}) {
+            CanalEntry.Column column = roundTrip(column().setDoubleValue(value));
+            Assert.assertEquals(CanalEntry.Column.TypedValueCase.DOUBLEVALUE, column.getTypedValueCase());
+            Assert.assertEquals(value, column.getDoubleValue(), 0);
+        }
+    }
+
+    @Test
+    public void testBytesValue() throws Exception {
+        ByteString value = ByteString.copyFrom(new byte[]{0, 1, (byte) 0xff, 127});
+        CanalEntry.Column column = roundTrip(column().setBytesValue(value));
+        Assert.assertEquals(CanalEntry.Column.TypedValueCase.BYTESVALUE, column.getTypedValueCase());
+        Assert.assertEquals(value, column.getBytesValue());
+    }
+
+    @Test
+    public void testDecimalValue() throws Exception {
+        for (String value : new String[]{"0", "123.4500", "-98765432109876543210.123456789", "18446744073709551615"}) {
+            BigDecimal decimal = new BigDecimal(value);
+            CanalEntry.Column column = roundTrip(column()
+                    .setDecimalValue(ByteString.copyFrom(decimal.unscaledValue().toByteArray()))
+                    .setDecimalScale(decimal.scale()));
+            Assert.assertEquals(CanalEntry.Column.TypedValueCase.DECIMALVALUE, column.getTypedValueCase());
+            Assert.assertEquals(decimal.scale(), column.getDecimalScale());
+            BigDecimal actual = new BigDecimal(new BigInteger(column.getDecimalValue().toByteArray()), column.getDecimalScale());
+            Assert.assertEquals(decimal, actual);
+        }
+    }
+
+    @Test
+    public void testTemporalValue() throws Exception {
+        for (long value : new long[]{0, 1571299200123456L, -62135596800000000L}) {
+            CanalEntry.Column column = roundTrip(column().setTemporalValue(value));
+            Assert.assertEquals(CanalEntry.Column.TypedValueCase.TEMPORALVALUE, column.getTypedValueCase());
+            Assert.assertEquals(value, column.getTemporalValue());
+        }
+    }
+
+    @Test
+    public void testTypedValueNotSet() throws Exception {
+        CanalEntry.Column column = roundTrip(column().setValue("abc"));
+        Assert.assertEquals(CanalEntry.Column.TypedValueCase.TYPEDVALUE_NOT_SET, column.getTypedValueCase());
+        Assert.assertEquals("abc", column.getValue());
+        Assert.assertEquals(0, column.getDecimalScale());
+        // oneof只保留最后设置的值
+        column = roundTrip(column().setLongValue(1).setDoubleValue(2.5));
+        Assert.assertEquals(CanalEntry.Column.TypedValueCase.DOUBLEVALUE, column.getTypedValueCase());
+        Assert.assertEquals(0, column.getLongValue());
+    }
+
+    // ============================ helper method ======================
+
+    private static CanalEntry.Column.Builder column() {
+        return CanalEntry.Column.newBuilder().setIndex(1).setName("c1").setMysqlType("bigint(20)");
+    }
+
+    /**
+     * 放在RowData/RowChange中序列化再反序列化
+     */
+    private static CanalEntry.Column roundTrip(CanalEntry.Column.Builder column) throws Exception {
+        CanalEntry.Column expected = column.build();
+        CanalEntry.RowChange rowChange = CanalEntry.RowChange.newBuilder()
+                .setEventType(CanalEntry.EventType.INSERT)
+                .addRowData(CanalEntry.RowData.newBuilder().addAfterColumns(expected))
+                .build();
+        CanalEntry.RowChange parsed = CanalEntry.RowChange.parseFrom(rowChange.toByteString());
+        CanalEntry.Column actual = parsed.getRowData(0).getAfterColumns(0);
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals("c1", actual.getName());
+        return actual;
+    }
+}
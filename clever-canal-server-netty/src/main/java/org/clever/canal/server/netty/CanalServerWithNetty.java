@@ -18,6 +18,7 @@ import org.clever.canal.protocol.CanalPacket;
 import org.clever.canal.server.CanalServer;
 import org.clever.canal.server.embedded.CanalServerWithEmbedded;
 import org.clever.canal.server.netty.handler.ClientAuthenticationHandler;
+import org.clever.canal.server.netty.handler.FramedPacketEncoder;
 import org.clever.canal.server.netty.handler.HandshakeHandler;
 import org.clever.canal.server.netty.handler.SessionHandler;
 
@@ -100,6 +101,8 @@ public class CanalServerWithNetty extends AbstractCanalLifeCycle implements Cana
                 // -------------------------- 解码和编码，应和客户端一致 (传输的协议 Protobuf) -------------------------- //
                 // 用于decode前解决半包和粘包问题（利用包头中的包含数组长度来识别半包粘包）
                 pipeline.addLast("ProtobufVarint32FrameDecoder", new ProtobufVarint32FrameDecoder());
+                // 直接输出已经编码好的Packet(堆外内存中的原始数据不经过Protobuf序列化)
+                pipeline.addLast("FramedPacketEncoder", new FramedPacketEncoder());
                 // 反序列化指定的 Protobuf 字节数组为 Protobuf 类型
                 pipeline.addLast("ProtobufDecoder", new ProtobufDecoder(CanalPacket.Packet.getDefaultInstance()));
                 // 用于在序列化的字节数组前加上一个简单的包头，只包含序列化的字节长度
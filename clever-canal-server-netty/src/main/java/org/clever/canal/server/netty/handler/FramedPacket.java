@@ -0,0 +1,24 @@
+package org.clever.canal.server.netty.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+
+/**
+ * 已经完成序列化并且加上了长度包头的Packet(不再经过ProtobufEncoder和ProtobufVarint32LengthFieldPrepender)<br />
+ * 用于直接发送堆外内存中的原始数据，避免拷贝回堆内存
+ */
+public class FramedPacket extends DefaultByteBufHolder {
+    /**
+     * Packet序列化后的大小(不包含长度包头)
+     */
+    private final int serializedSize;
+
+    public FramedPacket(ByteBuf content, int serializedSize) {
+        super(content);
+        this.serializedSize = serializedSize;
+    }
+
+    public int getSerializedSize() {
+        return serializedSize;
+    }
+}
@@ -0,0 +1,19 @@
+package org.clever.canal.server.netty.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 把{@link FramedPacket}中已经编码好的数据直接交给下一个Handler
+ */
+@ChannelHandler.Sharable
+public class FramedPacketEncoder extends MessageToMessageEncoder<FramedPacket> {
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, FramedPacket msg, List<Object> out) {
+        out.add(msg.content().retain());
+    }
+}
@@ -1,13 +1,20 @@
 package org.clever.canal.server.netty.handler;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.WireFormat;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import org.clever.canal.protocol.CanalPacket;
 import org.clever.canal.server.netty.NettyServerConstant;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * 作者：lizw <br/>
  * 创建时间：2019/11/07 09:40 <br/>
@@ -46,6 +53,68 @@ public class HandlerUtils {
         return createPacket(CanalPacket.PacketType.ACK, ack);
     }
 
+    /**
+     * 是否存在使用堆外内存的原始数据
+     */
+    public static boolean hasDirectEntry(List<ByteString> rawEntries) {
+        for (ByteString rawEntry : rawEntries) {
+            if (!rawEntry.isEmpty() && rawEntry.asReadOnlyByteBuffer().isDirect()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 创建MESSAGES类型的Packet，原始数据直接包装成ByteBuf(不拷贝)，只有protobuf的字段头在堆内存中编码<br />
+     * 编码结果与 Packet{version, type=MESSAGES, body=Messages{batchId, messages}} 的序列化结果一致
+     */
+    public static FramedPacket createMessagesPacket(long batchId, List<ByteString> rawEntries) throws IOException {
+        // Messages
+        int bodySize = batchId != 0 ? CodedOutputStream.computeInt64Size(1, batchId) : 0;
+        for (ByteString rawEntry : rawEntries) {
+            bodySize += CodedOutputStream.computeBytesSize(2, rawEntry);
+        }
+        // Packet
+        int packetSize = CodedOutputStream.computeInt32Size(2, NettyServerConstant.VERSION)
+                + CodedOutputStream.computeEnumSize(3, CanalPacket.PacketType.MESSAGES_VALUE)
+                + CodedOutputStream.computeTagSize(5)
+                + CodedOutputStream.computeUInt32SizeNoTag(bodySize)
+                + bodySize;
+        // 所有的字段头写入同一个数组: 长度包头 + Packet字段 + Messages.batchId + 每条数据的字段头
+        byte[] headers = new byte[CodedOutputStream.computeUInt32SizeNoTag(packetSize) + 32 + rawEntries.size() * 10];
+        CodedOutputStream output = CodedOutputStream.newInstance(headers);
+        output.writeUInt32NoTag(packetSize);
+        output.writeInt32(2, NettyServerConstant.VERSION);
+        output.writeEnum(3, CanalPacket.PacketType.MESSAGES_VALUE);
+        output.writeTag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(bodySize);
+        if (batchId != 0) {
+            output.writeInt64(1, batchId);
+        }
+        CompositeByteBuf content = Unpooled.compositeBuffer(rawEntries.size() * 2 + 1);
+        int offset = 0;
+        for (ByteString rawEntry : rawEntries) {
+            output.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(rawEntry.size());
+            int written = output.getTotalBytesWritten();
+            content.addComponent(true, Unpooled.wrappedBuffer(headers, offset, written - offset));
+            content.addComponent(true, Unpooled.wrappedBuffer(rawEntry.asReadOnlyByteBuffer()));
+            offset = written;
+        }
+        if (output.getTotalBytesWritten() > offset) {
+            content.addComponent(true, Unpooled.wrappedBuffer(headers, offset, output.getTotalBytesWritten() - offset));
+        }
+        return new FramedPacket(content, packetSize);
+    }
+
+    public static void write(Channel channel, FramedPacket resMsg, ChannelFutureListener channelFutureListener) {
+        ChannelFuture channelFuture = channel.writeAndFlush(resMsg);
+        if (channelFutureListener != null) {
+            channelFuture.addListener(channelFutureListener);
+        }
+    }
+
     public static void write(Channel channel, GeneratedMessageV3 resMsg, ChannelFutureListener channelFutureListener) {
         if (resMsg == null) {
             return;
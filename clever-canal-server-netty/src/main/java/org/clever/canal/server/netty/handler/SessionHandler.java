@@ -163,6 +163,20 @@ public class SessionHandler extends SimpleChannelInboundHandler<CanalPacket.Pack
             TimeUnit unit = convertTimeUnit(get.getUnit());
             message = embeddedServer.getWithoutAck(clientIdentity, get.getFetchSize(), get.getTimeout(), unit);
         }
+        if (message.getId() != -1 && message.isRaw() && HandlerUtils.hasDirectEntry(message.getRawEntries())) {
+            // 原始数据在堆外内存中，直接发送不拷贝回堆内存
+            FramedPacket packet = HandlerUtils.createMessagesPacket(message.getId(), message.getRawEntries());
+            ChannelFutureAggregator channelFutureAggregator = new ChannelFutureAggregator(
+                    get.getDestination(),
+                    get,
+                    msg.getType(),
+                    packet.getSerializedSize(),
+                    System.nanoTime() - start,
+                    false
+            );
+            HandlerUtils.write(ctx.channel(), packet, channelFutureAggregator);
+            return;
+        }
         // 组装返回数据
         CanalPacket.Messages.Builder messageBuilder = CanalPacket.Messages.newBuilder();
         messageBuilder.setBatchId(message.getId());
@@ -0,0 +1,230 @@
+package org.clever.canal.server.embedded;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.clever.canal.instance.core.CanalAdaptiveBatchConfig;
+import org.clever.canal.protocol.ClientIdentity;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按客户端自适应调整getWithoutAck的batchSize
+ *
+ * <pre>
+ * 1. 记录每个batch从get到ack的耗时，计算ack延迟的滑动平均值(EWMA)
+ * 2. ack延迟低于目标延迟的一半，并且batch是满的(store中还有积压的数据)时，batchSize翻倍
+ * 3. ack延迟高于目标延迟，或者客户端rollback时，batchSize减半
+ * 4. batchSize始终在[minBatchSize, maxBatchSize]范围内，第一次get时使用客户端指定的batchSize
+ * 5. 实例配置了CanalAdaptiveBatchConfig时使用实例的配置，否则使用当前对象上的配置
+ * </pre>
+ */
+@SuppressWarnings("WeakerAccess")
+public class AdaptiveBatchSizer {
+    /**
+     * ack延迟滑动平均值的权重
+     */
+    private static final double EWMA_ALPHA = 0.3;
+    /**
+     * 每个客户端最多记录的未ack的batch数量
+     */
+    private static final int MAX_IN_FLIGHT = 1024;
+
+    /**
+     * 是否启用(实例没有配置CanalAdaptiveBatchConfig时使用)
+     */
+    @Getter
+    @Setter
+    private volatile boolean enabled = false;
+    /**
+     * 最小的batchSize
+     */
+    @Getter
+    @Setter
+    private volatile int minBatchSize = 1;
+    /**
+     * 最大的batchSize
+     */
+    @Getter
+    @Setter
+    private volatile int maxBatchSize = 16384;
+    /**
+     * 目标ack延迟(毫秒)
+     */
+    @Getter
+    @Setter
+    private volatile long targetLatency = 1000;
+
+    /**
+     * 客户端的batchSize状态
+     */
+    private final ConcurrentMap<ClientIdentity, ClientBatchState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 获取客户端当前的batchSize
+     *
+     * @param requestBatchSize 客户端指定的batchSize
+     * @param config           实例的配置(为null时使用当前对象上的配置)
+     */
+    public int batchSize(ClientIdentity clientIdentity, int requestBatchSize, CanalAdaptiveBatchConfig config) {
+        if (config == null ? !enabled : !config.isEnabled()) {
+            return requestBatchSize;
+        }
+        ClientBatchState state = states.computeIfAbsent(clientIdentity, client -> config == null
+                ? new ClientBatchState(client, minBatchSize, maxBatchSize, targetLatency, requestBatchSize)
+                : new ClientBatchState(client, config.getMinBatchSize(), config.getMaxBatchSize(), config.getTargetLatency(), requestBatchSize));
+        return state.getBatchSize();
+    }
+
+    /**
+     * 记录客户端get到的batch
+     *
+     * @param batchId batchId
+     * @param full    本次get是否达到了batchSize的限制(store中还有积压的数据)
+     */
+    public void onGet(ClientIdentity clientIdentity, long batchId, boolean full) {
+        ClientBatchState state = states.get(clientIdentity);
+        if (state != null) {
+            state.onGet(batchId, full);
+        }
+    }
+
+    /**
+     * 客户端ack，根据ack延迟调整batchSize
+     */
+    public void onAck(ClientIdentity clientIdentity, long batchId) {
+        ClientBatchState state = states.get(clientIdentity);
+        if (state != null) {
+            state.onAck(batchId);
+        }
+    }
+
+    /**
+     * 客户端rollback，batchSize减半
+     */
+    public void onRollback(ClientIdentity clientIdentity) {
+        ClientBatchState state = states.get(clientIdentity);
+        if (state != null) {
+            state.onRollback();
+        }
+    }
+
+    /**
+     * 客户端取消订阅
+     */
+    public void remove(ClientIdentity clientIdentity) {
+        states.remove(clientIdentity);
+    }
+
+    /**
+     * 所有客户端的batchSize状态
+     */
+    public List<ClientBatchState> getStates() {
+        return new ArrayList<>(states.values());
+    }
+
+    /**
+     * 单个客户端的batchSize状态
+     */
+    public class ClientBatchState {
+        @Getter
+        private final ClientIdentity clientIdentity;
+        private final int minBatchSize;
+        private final int maxBatchSize;
+        /**
+         * 目标ack延迟(纳秒)
+         */
+        private final long targetLatency;
+        /**
+         * 当前的batchSize
+         */
+        @Getter
+        private volatile int batchSize;
+        /**
+         * ack延迟的滑动平均值(纳秒)
+         */
+        private volatile double ackLatency = 0;
+        /**
+         * batchSize增大的次数
+         */
+        @Getter
+        private volatile long growCount = 0;
+        /**
+         * batchSize减小的次数
+         */
+        @Getter
+        private volatile long shrinkCount = 0;
+        /**
+         * 未ack的batch, batchId --> [get的时间, 是否是满的batch]
+         */
+        private final LinkedHashMap<Long, long[]> inFlight = new LinkedHashMap<Long, long[]>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                return size() > MAX_IN_FLIGHT;
+            }
+        };
+
+        private ClientBatchState(ClientIdentity clientIdentity, int minBatchSize, int maxBatchSize, long targetLatency, int batchSize) {
+            this.clientIdentity = clientIdentity;
+            this.minBatchSize = minBatchSize;
+            this.maxBatchSize = maxBatchSize;
+            this.targetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+            this.batchSize = clamp(batchSize);
+        }
+
+        /**
+         * ack延迟的滑动平均值(毫秒)
+         */
+        public double getAckLatency() {
+            return ackLatency / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        private synchronized void onGet(long batchId, boolean full) {
+            inFlight.put(batchId, new long[]{System.nanoTime(), full ? 1 : 0});
+        }
+
+        private synchronized void onAck(long batchId) {
+            long[] batch = inFlight.remove(batchId);
+            if (batch == null) {
+                return;
+            }
+            long latency = System.nanoTime() - batch[0];
+            ackLatency = ackLatency <= 0 ? latency : EWMA_ALPHA * latency + (1 - EWMA_ALPHA) * ackLatency;
+            if (ackLatency > targetLatency) {
+                shrink();
+            } else if (batch[1] == 1 && ackLatency < targetLatency / 2.0) {
+                grow();
+            }
+        }
+
+        private synchronized void onRollback() {
+            inFlight.clear();
+            shrink();
+        }
+
+        private void grow() {
+            int size = clamp(batchSize > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : batchSize * 2);
+            if (size != batchSize) {
+                batchSize = size;
+                growCount++;
+            }
+        }
+
+        private void shrink() {
+            int size = clamp(batchSize / 2);
+            if (size != batchSize) {
+                batchSize = size;
+                shrinkCount++;
+            }
+        }
+
+        private int clamp(int batchSize) {
+            return Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+        }
+    }
+}
@@ -22,8 +22,9 @@ import org.clever.canal.server.exception.CanalServerException;
 import org.clever.canal.spi.CanalMetricsProvider;
 import org.clever.canal.spi.CanalMetricsService;
 import org.clever.canal.spi.NopCanalMetricsService;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
 import org.clever.canal.store.CanalEventStore;
-import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
+import org.clever.canal.store.CanalMultiClientEventStore;
 import org.clever.canal.store.model.Event;
 import org.clever.canal.store.model.Events;
 import org.slf4j.Logger;
@@ -77,6 +78,11 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     @Getter
     @Setter
     private int metricsPort = 18000;
+    /**
+     * getWithoutAck自适应batchSize(默认不启用)
+     */
+    @Getter
+    private final AdaptiveBatchSizer adaptiveBatchSizer = new AdaptiveBatchSizer();
 
     private CanalServerWithEmbedded() {
     }
@@ -141,10 +147,15 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
         // 执行一下meta订阅
         canalInstance.getMetaManager().subscribe(clientIdentity);
+        // 多客户端store需要为客户端创建独立的游标
+        CanalEventStore<Event> eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof CanalMultiClientEventStore) {
+            ((CanalMultiClientEventStore<Event>) eventStore).subscribe(clientIdentity);
+        }
         Position position = canalInstance.getMetaManager().getCursor(clientIdentity);
         if (position == null) {
             // 获取一下store中的第一条
-            position = canalInstance.getEventStore().getFirstPosition();
+            position = getFirstPosition(eventStore, clientIdentity);
             if (position != null) {
                 // 更新一下cursor
                 canalInstance.getMetaManager().updateCursor(clientIdentity, position);
@@ -165,6 +176,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         // 执行一下meta订阅
         canalInstance.getMetaManager().unsubscribe(clientIdentity);
+        if (canalInstance.getEventStore() instanceof CanalMultiClientEventStore) {
+            ((CanalMultiClientEventStore<Event>) canalInstance.getEventStore()).unsubscribe(clientIdentity);
+        }
+        adaptiveBatchSizer.remove(clientIdentity);
         logger.info("unsubscribe successfully, {}", clientIdentity);
     }
 
@@ -208,7 +223,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             }
             Events<Event> events;
             Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
-            events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+            events = getEvents(canalInstance.getEventStore(), clientIdentity, start, batchSize, timeout, unit);
             if (CollectionUtils.isEmpty(events.getEvents())) {
                 logger.debug("get successfully, clientId:{} batchSize:{} but result is null", clientIdentity.getClientId(), batchSize);
                 // 返回空包，避免生成batchId，浪费性能
@@ -220,7 +235,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                 List<ByteString> rawEntries = Collections.emptyList();
                 boolean raw = isRaw(canalInstance.getEventStore());
                 if (raw) {
-                    rawEntries = events.getEvents().stream().map(Event::getRawEntry).collect(Collectors.toList());
+                    // 直接提交ack之后堆外内存会被回收，需要拷贝到堆内存
+                    rawEntries = events.getEvents().stream().map(event -> toHeap(event.getRawEntry())).collect(Collectors.toList());
                 } else {
                     entries = events.getEvents().stream().map(Event::getEntry).collect(Collectors.toList());
                 }
@@ -276,20 +292,22 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         CanalInstance canalInstance = canalInstances.get(clientIdentity.getDestination());
         // noinspection SynchronizationOnLocalVariableOrMethodParameter (压制警告)
         synchronized (canalInstance) {
+            // 启用自适应batchSize时使用服务端调整后的batchSize
+            batchSize = adaptiveBatchSizer.batchSize(clientIdentity, batchSize, canalInstance.getAdaptiveBatchConfig());
             // 获取到流式数据中的最后一批获取的位置
             PositionRange<LogPosition> positionRanges = canalInstance.getMetaManager().getLatestBatch(clientIdentity);
             Events<Event> events;
             if (positionRanges != null) {
                 // 存在流数据
-                events = getEvents(canalInstance.getEventStore(), positionRanges.getStart(), batchSize, timeout, unit);
+                events = getEvents(canalInstance.getEventStore(), clientIdentity, positionRanges.getStart(), batchSize, timeout, unit);
             } else {
                 // ack后第一次获取
                 Position start = canalInstance.getMetaManager().getCursor(clientIdentity);
                 if (start == null) {
                     // 第一次，还没有过ack记录，则获取当前store中的第一条
-                    start = canalInstance.getEventStore().getFirstPosition();
+                    start = getFirstPosition(canalInstance.getEventStore(), clientIdentity);
                 }
-                events = getEvents(canalInstance.getEventStore(), start, batchSize, timeout, unit);
+                events = getEvents(canalInstance.getEventStore(), clientIdentity, start, batchSize, timeout, unit);
             }
             if (CollectionUtils.isEmpty(events.getEvents())) {
                 logger.debug("getWithoutAck successfully, clientId:{} batchSize:{} but result is null", clientIdentity.getClientId(), batchSize);
@@ -298,6 +316,7 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             } else {
                 // 记录到流式信息
                 Long batchId = canalInstance.getMetaManager().addBatch(clientIdentity, events.getPositionRange());
+                adaptiveBatchSizer.onGet(clientIdentity, batchId, isFullBatch(canalInstance.getEventStore(), events.getEvents(), batchSize));
                 List<CanalEntry.Entry> entries = Collections.emptyList();
                 List<ByteString> rawEntries = Collections.emptyList();
                 boolean raw = isRaw(canalInstance.getEventStore());
@@ -347,7 +366,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             }
         }
         // 可定时清理数据
-        canalInstance.getEventStore().ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+        CanalEventStore<Event> eventStore = canalInstance.getEventStore();
+        if (eventStore instanceof CanalMultiClientEventStore) {
+            ((CanalMultiClientEventStore<Event>) eventStore).ack(clientIdentity, positionRanges.getEnd(), positionRanges.getEndSeq());
+        } else {
+            eventStore.ack(positionRanges.getEnd(), positionRanges.getEndSeq());
+        }
+        adaptiveBatchSizer.onAck(clientIdentity, batchId);
     }
 
     /**
@@ -367,7 +392,8 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             // 清除batch信息
             canalInstance.getMetaManager().clearAllBatches(clientIdentity);
             // rollback eventStore中的状态信息
-            canalInstance.getEventStore().rollback();
+            rollbackStore(canalInstance.getEventStore(), clientIdentity);
+            adaptiveBatchSizer.onRollback(clientIdentity);
             logger.info("rollback successfully, clientId:{}", new Object[]{clientIdentity.getClientId()});
         }
     }
@@ -392,8 +418,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
             if (positionRanges == null) {
                 throw new CanalServerException(String.format("rollback error, clientId:%s batchId:%d is not exist , please check", clientIdentity.getClientId(), batchId));
             }
-            // rollback TODO 后续rollback到指定的batchId位置
-            canalInstance.getEventStore().rollback();
+            // removeBatch要求batchId是第一个未ack的batch，剩下的都是之后get的batch，一并回滚
+            canalInstance.getMetaManager().clearAllBatches(clientIdentity);
+            // store的get游标移动到当前batch的开始位置，定位不到时回滚所有未ack的数据
+            if (!seekStore(canalInstance.getEventStore(), clientIdentity, positionRanges.getStart())) {
+                rollbackStore(canalInstance.getEventStore(), clientIdentity);
+            }
+            adaptiveBatchSizer.onRollback(clientIdentity);
             // eventStore中的状态信息
             logger.info("rollback successfully, clientId:{} batchId:{} position:{}", clientIdentity.getClientId(), batchId, positionRanges);
         }
@@ -413,6 +444,13 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
                     metrics.register(canalInstance);
                 }
                 canalInstance.start();
+                // 恢复已有订阅在多客户端store中的游标
+                if (canalInstance.getEventStore() instanceof CanalMultiClientEventStore && canalInstance.getMetaManager().isStart()) {
+                    CanalMultiClientEventStore<Event> eventStore = (CanalMultiClientEventStore<Event>) canalInstance.getEventStore();
+                    for (ClientIdentity clientIdentity : canalInstance.getMetaManager().listAllSubscribeInfo(destination)) {
+                        eventStore.subscribe(clientIdentity);
+                    }
+                }
                 logger.info("start CanalInstances[{}] successfully", destination);
             } finally {
                 MDC.remove("destination");
@@ -552,7 +590,10 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
     /**
      * 根据不同的参数，选择不同的方式获取数据
      */
-    private Events<Event> getEvents(CanalEventStore<Event> eventStore, Position start, int batchSize, Long timeout, TimeUnit unit) {
+    private Events<Event> getEvents(CanalEventStore<Event> eventStore, ClientIdentity clientIdentity, Position start, int batchSize, Long timeout, TimeUnit unit) {
+        if (eventStore instanceof CanalMultiClientEventStore) {
+            return getEvents((CanalMultiClientEventStore<Event>) eventStore, clientIdentity, start, batchSize, timeout, unit);
+        }
         if (timeout == null) {
             return eventStore.tryGet(start, batchSize);
         } else {
@@ -568,12 +609,85 @@ public class CanalServerWithEmbedded extends AbstractCanalLifeCycle implements C
         }
     }
 
+    /**
+     * 使用客户端独立的游标获取数据
+     */
+    private Events<Event> getEvents(CanalMultiClientEventStore<Event> eventStore, ClientIdentity clientIdentity, Position start, int batchSize, Long timeout, TimeUnit unit) {
+        if (timeout == null) {
+            return eventStore.tryGet(clientIdentity, start, batchSize);
+        } else {
+            try {
+                if (timeout <= 0) {
+                    return eventStore.get(clientIdentity, start, batchSize);
+                } else {
+                    return eventStore.get(clientIdentity, start, batchSize, timeout, unit);
+                }
+            } catch (Exception e) {
+                throw new CanalServerException(e);
+            }
+        }
+    }
+
+    /**
+     * 获取store中客户端可消费的第一条数据的位置
+     */
+    private Position getFirstPosition(CanalEventStore<Event> eventStore, ClientIdentity clientIdentity) {
+        if (eventStore instanceof CanalMultiClientEventStore) {
+            return ((CanalMultiClientEventStore<Event>) eventStore).getFirstPosition(clientIdentity);
+        }
+        return eventStore.getFirstPosition();
+    }
+
+    /**
+     * 回滚store中客户端的get游标
+     */
+    private void rollbackStore(CanalEventStore<Event> eventStore, ClientIdentity clientIdentity) {
+        if (eventStore instanceof CanalMultiClientEventStore) {
+            ((CanalMultiClientEventStore<Event>) eventStore).rollback(clientIdentity);
+        } else {
+            eventStore.rollback();
+        }
+    }
+
+    private boolean seekStore(CanalEventStore<Event> eventStore, ClientIdentity clientIdentity, Position position) {
+        if (eventStore instanceof CanalMultiClientEventStore) {
+            return ((CanalMultiClientEventStore<Event>) eventStore).seek(clientIdentity, position);
+        }
+        return eventStore.seek(position);
+    }
+
+    /**
+     * 把堆外内存中的原始数据拷贝到堆内存
+     */
+    private ByteString toHeap(ByteString rawEntry) {
+        if (rawEntry != null && !rawEntry.isEmpty() && rawEntry.asReadOnlyByteBuffer().isDirect()) {
+            return ByteString.copyFrom(rawEntry.asReadOnlyByteBuffer());
+        }
+        return rawEntry;
+    }
+
+    /**
+     * get到的数据是否达到了batchSize的限制(MEM_SIZE模式下batchSize的单位是bufferMemUnit，按数据的内存大小判断)
+     */
+    private boolean isFullBatch(CanalEventStore<Event> eventStore, List<Event> events, int batchSize) {
+        if (eventStore instanceof AbstractEventStoreWithBuffer && ((AbstractEventStoreWithBuffer) eventStore).getBatchMode().isMemSize()) {
+            long maxMemSize = (long) batchSize * ((AbstractEventStoreWithBuffer) eventStore).getBufferMemUnit();
+            long memSize = 0;
+            for (Event event : events) {
+                memSize += event.getRawLength();
+            }
+            // 和store中的判断一致: 累计大小超过maxMemSize时停止获取
+            return memSize > maxMemSize;
+        }
+        return events.size() >= batchSize;
+    }
+
     /**
      * 判断 CanalEventStore 是否是使用的原始数据(raw)
      */
     private boolean isRaw(CanalEventStore eventStore) {
-        if (eventStore instanceof MemoryEventStoreWithBuffer) {
-            return ((MemoryEventStoreWithBuffer) eventStore).isRaw();
+        if (eventStore instanceof AbstractEventStoreWithBuffer) {
+            return ((AbstractEventStoreWithBuffer) eventStore).isRaw();
         }
         return true;
     }
@@ -0,0 +1,132 @@
+package org.clever.canal.server.embedded;
+
+import org.clever.canal.instance.core.CanalAdaptiveBatchConfig;
+import org.clever.canal.protocol.ClientIdentity;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+    private static final ClientIdentity CLIENT = new ClientIdentity("example", (short) 1001);
+
+    @Test
+    public void testDisabled() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        Assert.assertEquals(100, sizer.batchSize(CLIENT, 100, null));
+        Assert.assertEquals(100, sizer.batchSize(CLIENT, 100, config(false, 1, 16, 1000)));
+        // 没有启用时不记录客户端状态
+        sizer.onGet(CLIENT, 1, true);
+        sizer.onAck(CLIENT, 1);
+        Assert.assertTrue(sizer.getStates().isEmpty());
+    }
+
+    @Test
+    public void testGrowOnFullBatch() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        CanalAdaptiveBatchConfig config = config(true, 1, 64, 60000);
+        Assert.assertEquals(4, sizer.batchSize(CLIENT, 4, config));
+        // ack很快并且batch是满的，batchSize翻倍直到maxBatchSize
+        int[] expected = {8, 16, 32, 64, 64};
+        for (int i = 0; i < expected.length; i++) {
+            sizer.onGet(CLIENT, i, true);
+            sizer.onAck(CLIENT, i);
+            Assert.assertEquals(expected[i], sizer.batchSize(CLIENT, 4, config));
+        }
+        AdaptiveBatchSizer.ClientBatchState state = sizer.getStates().get(0);
+        Assert.assertEquals(4, state.getGrowCount());
+        Assert.assertEquals(0, state.getShrinkCount());
+    }
+
+    @Test
+    public void testNotGrowOnPartialBatch() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        CanalAdaptiveBatchConfig config = config(true, 1, 64, 60000);
+        Assert.assertEquals(4, sizer.batchSize(CLIENT, 4, config));
+        // store中没有积压的数据，即使ack很快也不增大batchSize
+        for (int i = 0; i < 5; i++) {
+            sizer.onGet(CLIENT, i, false);
+            sizer.onAck(CLIENT, i);
+        }
+        Assert.assertEquals(4, sizer.batchSize(CLIENT, 4, config));
+        Assert.assertEquals(0, sizer.getStates().get(0).getGrowCount());
+        Assert.assertEquals(0, sizer.getStates().get(0).getShrinkCount());
+    }
+
+    @Test
+    public void testShrinkOnSlowBatch() throws Exception {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        CanalAdaptiveBatchConfig config = config(true, 2, 64, 1);
+        Assert.assertEquals(16, sizer.batchSize(CLIENT, 16, config));
+        // ack延迟超过目标延迟，batchSize减半直到minBatchSize(即使batch是满的)
+        int[] expected = {8, 4, 2, 2};
+        for (int i = 0; i < expected.length; i++) {
+            sizer.onGet(CLIENT, i, true);
+            Thread.sleep(5);
+            sizer.onAck(CLIENT, i);
+            Assert.assertEquals(expected[i], sizer.batchSize(CLIENT, 16, config));
+        }
+        AdaptiveBatchSizer.ClientBatchState state = sizer.getStates().get(0);
+        Assert.assertEquals(3, state.getShrinkCount());
+        Assert.assertTrue(state.getAckLatency() >= 5);
+    }
+
+    @Test
+    public void testShrinkOnRollback() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        CanalAdaptiveBatchConfig config = config(true, 8, 64, 60000);
+        Assert.assertEquals(32, sizer.batchSize(CLIENT, 32, config));
+        sizer.onGet(CLIENT, 1, true);
+        sizer.onRollback(CLIENT);
+        Assert.assertEquals(16, sizer.batchSize(CLIENT, 32, config));
+        // rollback之后之前get的batch不再参与计算
+        sizer.onAck(CLIENT, 1);
+        Assert.assertEquals(16, sizer.batchSize(CLIENT, 32, config));
+        sizer.onRollback(CLIENT);
+        sizer.onRollback(CLIENT);
+        Assert.assertEquals(8, sizer.batchSize(CLIENT, 32, config));
+        Assert.assertEquals(2, sizer.getStates().get(0).getShrinkCount());
+    }
+
+    @Test
+    public void testClamp() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        CanalAdaptiveBatchConfig config = config(true, 4, 64, 60000);
+        // 客户端指定的batchSize也限制在[minBatchSize, maxBatchSize]范围内
+        Assert.assertEquals(64, sizer.batchSize(CLIENT, 100000, config));
+        ClientIdentity other = new ClientIdentity("example", (short) 1002);
+        Assert.assertEquals(4, sizer.batchSize(other, 1, config));
+        // 第一次get之后不再使用客户端指定的batchSize
+        Assert.assertEquals(64, sizer.batchSize(CLIENT, 1, config));
+
+        // 取消订阅之后重新计算
+        sizer.remove(CLIENT);
+        Assert.assertEquals(8, sizer.batchSize(CLIENT, 8, config));
+    }
+
+    @Test
+    public void testServerConfig() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer();
+        sizer.setEnabled(true);
+        sizer.setMinBatchSize(2);
+        sizer.setMaxBatchSize(8);
+        sizer.setTargetLatency(60000);
+        // 实例没有配置时使用当前对象上的配置
+        Assert.assertEquals(8, sizer.batchSize(CLIENT, 100, null));
+        sizer.onGet(CLIENT, 1, true);
+        sizer.onAck(CLIENT, 1);
+        Assert.assertEquals(8, sizer.batchSize(CLIENT, 100, null));
+        // 未知的batch忽略
+        sizer.onAck(CLIENT, 2);
+        Assert.assertEquals(0, sizer.getStates().get(0).getShrinkCount());
+    }
+
+    // ============================ helper method ======================
+
+    private static CanalAdaptiveBatchConfig config(boolean enabled, int minBatchSize, int maxBatchSize, long targetLatency) {
+        CanalAdaptiveBatchConfig config = new CanalAdaptiveBatchConfig();
+        config.setEnabled(enabled);
+        config.setMinBatchSize(minBatchSize);
+        config.setMaxBatchSize(maxBatchSize);
+        config.setTargetLatency(targetLatency);
+        return config;
+    }
+}
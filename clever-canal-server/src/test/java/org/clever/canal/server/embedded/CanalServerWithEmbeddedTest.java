@@ -0,0 +1,228 @@
+package org.clever.canal.server.embedded;
+
+import org.clever.canal.common.AbstractCanalLifeCycle;
+import org.clever.canal.common.alarm.CanalAlarmHandler;
+import org.clever.canal.instance.core.CanalAdaptiveBatchConfig;
+import org.clever.canal.instance.core.CanalInstance;
+import org.clever.canal.instance.core.CanalMQConfig;
+import org.clever.canal.meta.CanalMetaManager;
+import org.clever.canal.meta.MemoryMetaManager;
+import org.clever.canal.meta.exception.CanalMetaManagerException;
+import org.clever.canal.parse.CanalEventParser;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.ClientIdentity;
+import org.clever.canal.protocol.Message;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.sink.CanalEventSink;
+import org.clever.canal.store.CanalEventStore;
+import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CanalServerWithEmbeddedTest {
+    private static final CanalServerWithEmbedded server = CanalServerWithEmbedded.Instance;
+
+    @BeforeClass
+    public static void startServer() {
+        server.setCanalInstanceGenerator(TestCanalInstance::new);
+        server.start();
+    }
+
+    @Test
+    public void testRollbackWithLaterBatches() {
+        ClientIdentity clientIdentity = subscribe("rollback-later", 200);
+        // 先ack一部分，让batchId超过HashMap的容量，listAllBatches遍历时不再按batchId排序
+        for (int i = 0; i < 30; i++) {
+            server.ack(clientIdentity, server.getWithoutAck(clientIdentity, 2).getId());
+        }
+        List<Long> batchIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Message message = server.getWithoutAck(clientIdentity, 2);
+            Assert.assertEquals(2, message.getEntries().size());
+            Assert.assertEquals(60 + 2 * i, message.getEntries().get(0).getHeader().getLogfileOffset());
+            batchIds.add(message.getId());
+        }
+        Assert.assertEquals(batchIds, server.listBatchIds(clientIdentity));
+
+        server.rollback(clientIdentity, batchIds.get(0));
+        // 之后的batch一并回滚，下次从第一个batch的开始位置重新获取
+        Assert.assertTrue(server.listBatchIds(clientIdentity).isEmpty());
+        assertOffsets(server.getWithoutAck(clientIdentity, 3), 60, 61, 62);
+    }
+
+    @Test
+    public void testRollbackAfterAck() {
+        ClientIdentity clientIdentity = subscribe("rollback-after-ack", 20);
+        List<Long> batchIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batchIds.add(server.getWithoutAck(clientIdentity, 2).getId());
+        }
+        server.ack(clientIdentity, batchIds.get(0));
+        server.ack(clientIdentity, batchIds.get(1));
+        server.rollback(clientIdentity, batchIds.get(2));
+        Assert.assertTrue(server.listBatchIds(clientIdentity).isEmpty());
+        assertOffsets(server.getWithoutAck(clientIdentity, 4), 4, 5, 6, 7);
+    }
+
+    @Test
+    public void testRollbackNotFirstBatch() {
+        ClientIdentity clientIdentity = subscribe("rollback-not-first", 20);
+        List<Long> batchIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            batchIds.add(server.getWithoutAck(clientIdentity, 2).getId());
+        }
+        try {
+            server.rollback(clientIdentity, batchIds.get(1));
+            Assert.fail();
+        } catch (CanalMetaManagerException ignored) {
+        }
+        // 回滚失败时不改变batch信息
+        Assert.assertEquals(batchIds, server.listBatchIds(clientIdentity));
+        assertOffsets(server.getWithoutAck(clientIdentity, 2), 6, 7);
+    }
+
+    @Test
+    public void testAdaptiveBatchSize() {
+        AdaptiveBatchSizer sizer = server.getAdaptiveBatchSizer();
+        sizer.setEnabled(true);
+        sizer.setMinBatchSize(1);
+        sizer.setMaxBatchSize(8);
+        sizer.setTargetLatency(60000);
+        try {
+            ClientIdentity clientIdentity = subscribe("adaptive-batch", 30);
+            // get到满的batch并且很快ack，batchSize翻倍直到maxBatchSize
+            int[] expected = {2, 4, 8, 8};
+            for (int size : expected) {
+                Message message = server.getWithoutAck(clientIdentity, 2);
+                Assert.assertEquals(size, message.getEntries().size());
+                server.ack(clientIdentity, message.getId());
+            }
+            // rollback之后batchSize减半
+            server.getWithoutAck(clientIdentity, 2);
+            server.rollback(clientIdentity);
+            Assert.assertEquals(4, server.getWithoutAck(clientIdentity, 2).getEntries().size());
+        } finally {
+            sizer.setEnabled(false);
+        }
+    }
+
+    // ============================ helper method ======================
+
+    private static ClientIdentity subscribe(String destination, int eventCount) {
+        server.start(destination);
+        TestCanalInstance canalInstance = (TestCanalInstance) server.getCanalInstances().get(destination);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < eventCount; i++) {
+            events.add(event(i));
+        }
+        Assert.assertTrue(canalInstance.getEventStore().tryPut(events));
+        ClientIdentity clientIdentity = new ClientIdentity(destination, (short) 1001);
+        server.subscribe(clientIdentity);
+        return clientIdentity;
+    }
+
+    private static void assertOffsets(Message message, long... offsets) {
+        Assert.assertEquals(offsets.length, message.getEntries().size());
+        for (int i = 0; i < offsets.length; i++) {
+            Assert.assertEquals(offsets[i], message.getEntries().get(i).getHeader().getLogfileOffset());
+        }
+    }
+
+    private static Event event(long position) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .setEventLength(100)
+                .build();
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(CanalEntry.EntryType.ROW_DATA)
+                .build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, false);
+    }
+
+    /**
+     * 只有meta和store的CanalInstance
+     */
+    private static class TestCanalInstance extends AbstractCanalLifeCycle implements CanalInstance {
+        private final String destination;
+        private final MemoryMetaManager metaManager = new MemoryMetaManager();
+        private final MemoryEventStoreWithBuffer eventStore = new MemoryEventStoreWithBuffer();
+
+        private TestCanalInstance(String destination) {
+            this.destination = destination;
+            eventStore.setBufferSize(256);
+            eventStore.setBatchMode(BatchMode.ITEM_SIZE);
+            eventStore.setRaw(false);
+        }
+
+        @Override
+        public void start() {
+            super.start();
+            metaManager.start();
+            eventStore.start();
+        }
+
+        @Override
+        public void stop() {
+            super.stop();
+            eventStore.stop();
+            metaManager.stop();
+        }
+
+        @Override
+        public String getDestination() {
+            return destination;
+        }
+
+        @Override
+        public CanalEventParser getEventParser() {
+            return null;
+        }
+
+        @Override
+        public CanalEventSink getEventSink() {
+            return null;
+        }
+
+        @Override
+        public CanalEventStore<Event> getEventStore() {
+            return eventStore;
+        }
+
+        @Override
+        public CanalMetaManager getMetaManager() {
+            return metaManager;
+        }
+
+        @Override
+        public CanalAlarmHandler getAlarmHandler() {
+            return null;
+        }
+
+        @Override
+        public boolean subscribeChange(ClientIdentity identity) {
+            return true;
+        }
+
+        @Override
+        public CanalMQConfig getMqConfig() {
+            return null;
+        }
+
+        @Override
+        public CanalAdaptiveBatchConfig getAdaptiveBatchConfig() {
+            return null;
+        }
+    }
+}
@@ -11,8 +11,8 @@ import org.clever.canal.sink.AbstractCanalEventSink;
 import org.clever.canal.sink.CanalEventDownStreamHandler;
 import org.clever.canal.sink.CanalEventSink;
 import org.clever.canal.sink.exception.CanalSinkException;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
 import org.clever.canal.store.CanalEventStore;
-import org.clever.canal.store.memory.MemoryEventStoreWithBuffer;
 import org.clever.canal.store.model.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +61,18 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     @Getter
     @Setter
     protected long emptyTransactionThreshold = 8192;
+    /**
+     * 是否合并事务中相邻的同表、同类型的ROW_DATA数据
+     */
+    @Getter
+    @Setter
+    protected boolean compactRowData = false;
+    /**
+     * 合并ROW_DATA数据时，合并后数据的最大值(单位：字节)
+     */
+    @Getter
+    @Setter
+    protected int compactRowDataMaxSize = 1024 * 1024;
 
     protected volatile long lastTransactionTimestamp = 0L;
     protected AtomicLong lastTransactionCount = new AtomicLong(0L);
@@ -72,6 +84,10 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
      * 是否以原始数据的方式保存(保存原始数据为了方便网络传输)
      */
     protected boolean raw;
+    /**
+     * 合并ROW_DATA数据(compactRowData = false时为null)
+     */
+    protected RowDataCompactor rowDataCompactor;
 
     public EntryEventSink() {
         addHandler(new HeartBeatEntryEventHandler());
@@ -81,8 +97,11 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     public void start() {
         super.start();
         Assert.notNull(eventStore);
-        if (eventStore instanceof MemoryEventStoreWithBuffer) {
-            this.raw = ((MemoryEventStoreWithBuffer) eventStore).isRaw();
+        if (eventStore instanceof AbstractEventStoreWithBuffer) {
+            this.raw = ((AbstractEventStoreWithBuffer) eventStore).isRaw();
+        }
+        if (compactRowData) {
+            rowDataCompactor = new RowDataCompactor(compactRowDataMaxSize);
         }
         for (CanalEventDownStreamHandler handler : getHandlers()) {
             if (!handler.isStart()) {
@@ -107,6 +126,9 @@ public class EntryEventSink extends AbstractCanalEventSink<List<CanalEntry.Entry
     }
 
     private boolean sinkData(List<CanalEntry.Entry> entryList, InetSocketAddress remoteAddress) {
+        if (rowDataCompactor != null) {
+            entryList = rowDataCompactor.compact(entryList);
+        }
         boolean hasRowData = false;
         boolean hasHeartBeat = false;
         List<Event> events = new ArrayList<>();
@@ -0,0 +1,119 @@
+package org.clever.canal.sink.entry;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.lang3.StringUtils;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.CanalEntry.EntryType;
+import org.clever.canal.protocol.CanalEntry.EventType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并事务中相邻的同表、同类型的ROW_DATA数据
+ *
+ * <pre>
+ * 1. 只合并INSERT/UPDATE/DELETE的ROW_DATA，事务头/尾、ddl、query等数据保持不变(所以不会跨事务合并)
+ * 2. 行变更的RowChange只有tableId、eventType、isDdl、rowData几个字段，
+ *    按照protobuf的规则直接拼接序列化数据等价于合并(repeated字段追加，其他字段取后者)，不需要重新解析rowData
+ * 3. 合并后的数据使用最后一条数据的header(position指向合并的最后一条数据，ack位点保持有效)，eventLength、rowsCount累加
+ * 4. 合并后的storeValue不超过maxSize
+ * </pre>
+ */
+public class RowDataCompactor {
+    private static final String ROWS_COUNT = "rowsCount";
+
+    /**
+     * 合并后storeValue的最大值
+     */
+    private final int maxSize;
+
+    public RowDataCompactor(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public List<CanalEntry.Entry> compact(List<CanalEntry.Entry> entryList) {
+        if (entryList == null || entryList.size() < 2) {
+            return entryList;
+        }
+        List<CanalEntry.Entry> result = new ArrayList<>(entryList.size());
+        List<CanalEntry.Entry> group = new ArrayList<>();
+        int groupSize = 0;
+        for (CanalEntry.Entry entry : entryList) {
+            if (!group.isEmpty() && (!canMerge(group.get(0), entry) || groupSize + entry.getStoreValue().size() > maxSize)) {
+                result.add(merge(group));
+                group.clear();
+                groupSize = 0;
+            }
+            if (isRowChange(entry)) {
+                group.add(entry);
+                groupSize += entry.getStoreValue().size();
+            } else {
+                result.add(entry);
+            }
+        }
+        if (!group.isEmpty()) {
+            result.add(merge(group));
+        }
+        return result;
+    }
+
+    private boolean isRowChange(CanalEntry.Entry entry) {
+        if (entry.getEntryType() != EntryType.ROW_DATA || entry.getStoreValue().isEmpty()) {
+            return false;
+        }
+        EventType eventType = entry.getHeader().getEventType();
+        return eventType == EventType.INSERT || eventType == EventType.UPDATE || eventType == EventType.DELETE;
+    }
+
+    private boolean canMerge(CanalEntry.Entry first, CanalEntry.Entry entry) {
+        if (!isRowChange(entry)) {
+            return false;
+        }
+        CanalEntry.Header header1 = first.getHeader();
+        CanalEntry.Header header2 = entry.getHeader();
+        return header1.getEventType() == header2.getEventType()
+                && header1.getServerId() == header2.getServerId()
+                && StringUtils.equals(header1.getLogfileName(), header2.getLogfileName())
+                && StringUtils.equals(header1.getSchemaName(), header2.getSchemaName())
+                && StringUtils.equals(header1.getTableName(), header2.getTableName());
+    }
+
+    private CanalEntry.Entry merge(List<CanalEntry.Entry> group) {
+        CanalEntry.Entry last = group.get(group.size() - 1);
+        if (group.size() == 1) {
+            return last;
+        }
+        ByteString storeValue = ByteString.EMPTY;
+        long eventLength = 0;
+        int rowsCount = 0;
+        for (CanalEntry.Entry entry : group) {
+            storeValue = storeValue.concat(entry.getStoreValue());
+            eventLength += entry.getHeader().getEventLength();
+            rowsCount += getRowsCount(entry.getHeader());
+        }
+        CanalEntry.Header.Builder header = last.getHeader().toBuilder().setEventLength(eventLength);
+        int index = indexOfRowsCount(header.getPropsList());
+        if (index >= 0) {
+            header.removeProps(index);
+        }
+        if (rowsCount > 0) {
+            header.addProps(CanalEntry.Pair.newBuilder().setKey(ROWS_COUNT).setValue(String.valueOf(rowsCount)));
+        }
+        return last.toBuilder().setHeader(header).setStoreValue(storeValue).build();
+    }
+
+    private int getRowsCount(CanalEntry.Header header) {
+        int index = indexOfRowsCount(header.getPropsList());
+        return index < 0 ? 0 : Integer.parseInt(header.getProps(index).getValue());
+    }
+
+    private int indexOfRowsCount(List<CanalEntry.Pair> props) {
+        for (int i = 0; i < props.size(); i++) {
+            if (ROWS_COUNT.equals(props.get(i).getKey())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
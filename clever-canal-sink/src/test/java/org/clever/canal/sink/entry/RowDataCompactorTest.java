@@ -0,0 +1,205 @@
+package org.clever.canal.sink.entry;
+
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.CanalEntry.EntryType;
+import org.clever.canal.protocol.CanalEntry.EventType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 合并相邻的同表、同类型行变更：rowData顺序、rowsCount/eventLength累加、header和ack位点、合并边界
+ */
+public class RowDataCompactorTest {
+
+    @Test
+    public void testMerge() throws Exception {
+        RowDataCompactor compactor = new RowDataCompactor(1024 * 1024);
+        List<CanalEntry.Entry> entries = new ArrayList<>();
+        entries.add(transaction(EntryType.TRANSACTION_BEGIN, 100));
+        entries.add(rows(200, "t1", EventType.INSERT, 1, 2));
+        entries.add(rows(300, "t1", EventType.INSERT, 3));
+        entries.add(rows(400, "t1", EventType.INSERT, 4, 5, 6));
+        entries.add(transaction(EntryType.TRANSACTION_END, 500));
+
+        List<CanalEntry.Entry> result = compactor.compact(entries);
+        Assert.assertEquals(3, result.size());
+        Assert.assertSame(entries.get(0), result.get(0));
+        Assert.assertSame(entries.get(4), result.get(2));
+
+        CanalEntry.Entry merged = result.get(1);
+        // 合并后包含所有rowData并且顺序不变
+        CanalEntry.RowChange rowChange = CanalEntry.RowChange.parseFrom(merged.getStoreValue());
+        Assert.assertEquals(EventType.INSERT, rowChange.getEventType());
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L), ids(rowChange));
+        // rowsCount、eventLength累加
+        Assert.assertEquals("6", prop(merged.getHeader(), "rowsCount"));
+        Assert.assertEquals(200 + 100 + 300, merged.getHeader().getEventLength());
+        // 使用最后一条数据的header，ack位点指向合并的最后一条数据
+        CanalEntry.Header last = entries.get(3).getHeader();
+        Assert.assertEquals(last.getLogfileName(), merged.getHeader().getLogfileName());
+        Assert.assertEquals(last.getLogfileOffset(), merged.getHeader().getLogfileOffset());
+        Assert.assertEquals(last.getExecuteTime(), merged.getHeader().getExecuteTime());
+        Assert.assertEquals("v", prop(merged.getHeader(), "k400"));
+        Assert.assertEquals(1, countProps(merged.getHeader(), "rowsCount"));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        CanalEntry.Entry entry = rows(100, "t1", EventType.UPDATE, 1);
+        int size = entry.getStoreValue().size();
+        // 最多合并两条
+        RowDataCompactor compactor = new RowDataCompactor(size * 2 + 1);
+        List<CanalEntry.Entry> entries = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            entries.add(rows(i * 100, "t1", EventType.UPDATE, i));
+        }
+        List<CanalEntry.Entry> result = compactor.compact(entries);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(Arrays.asList(1L, 2L), ids(CanalEntry.RowChange.parseFrom(result.get(0).getStoreValue())));
+        Assert.assertEquals(Arrays.asList(3L, 4L), ids(CanalEntry.RowChange.parseFrom(result.get(1).getStoreValue())));
+        Assert.assertSame(entries.get(4), result.get(2));
+        for (CanalEntry.Entry merged : result) {
+            Assert.assertTrue(merged.getStoreValue().size() <= size * 2 + 1);
+        }
+        Assert.assertEquals(200, result.get(0).getHeader().getLogfileOffset());
+        Assert.assertEquals(400, result.get(1).getHeader().getLogfileOffset());
+    }
+
+    @Test
+    public void testTransactionBoundary() throws Exception {
+        RowDataCompactor compactor = new RowDataCompactor(1024 * 1024);
+        List<CanalEntry.Entry> entries = new ArrayList<>();
+        entries.add(transaction(EntryType.TRANSACTION_BEGIN, 100));
+        entries.add(rows(200, "t1", EventType.DELETE, 1));
+        entries.add(rows(300, "t1", EventType.DELETE, 2));
+        entries.add(transaction(EntryType.TRANSACTION_END, 400));
+        entries.add(transaction(EntryType.TRANSACTION_BEGIN, 500));
+        entries.add(rows(600, "t1", EventType.DELETE, 3));
+        entries.add(rows(700, "t1", EventType.DELETE, 4));
+        entries.add(transaction(EntryType.TRANSACTION_END, 800));
+
+        // 不会跨事务合并
+        List<CanalEntry.Entry> result = compactor.compact(entries);
+        Assert.assertEquals(6, result.size());
+        Assert.assertEquals(Arrays.asList(1L, 2L), ids(CanalEntry.RowChange.parseFrom(result.get(1).getStoreValue())));
+        Assert.assertEquals(EntryType.TRANSACTION_END, result.get(2).getEntryType());
+        Assert.assertEquals(EntryType.TRANSACTION_BEGIN, result.get(3).getEntryType());
+        Assert.assertEquals(Arrays.asList(3L, 4L), ids(CanalEntry.RowChange.parseFrom(result.get(4).getStoreValue())));
+        Assert.assertEquals(700, result.get(4).getHeader().getLogfileOffset());
+    }
+
+    @Test
+    public void testDdlBoundary() throws Exception {
+        RowDataCompactor compactor = new RowDataCompactor(1024 * 1024);
+        List<CanalEntry.Entry> entries = new ArrayList<>();
+        entries.add(rows(100, "t1", EventType.INSERT, 1));
+        entries.add(rows(200, "t1", EventType.INSERT, 2));
+        entries.add(ddl(300, "t1"));
+        entries.add(rows(400, "t1", EventType.INSERT, 3));
+        entries.add(rows(500, "t1", EventType.INSERT, 4));
+
+        // ddl前后的数据不合并
+        List<CanalEntry.Entry> result = compactor.compact(entries);
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(Arrays.asList(1L, 2L), ids(CanalEntry.RowChange.parseFrom(result.get(0).getStoreValue())));
+        Assert.assertSame(entries.get(2), result.get(1));
+        Assert.assertEquals(Arrays.asList(3L, 4L), ids(CanalEntry.RowChange.parseFrom(result.get(2).getStoreValue())));
+    }
+
+    @Test
+    public void testDifferentTableOrType() throws Exception {
+        RowDataCompactor compactor = new RowDataCompactor(1024 * 1024);
+        List<CanalEntry.Entry> entries = new ArrayList<>();
+        entries.add(rows(100, "t1", EventType.INSERT, 1));
+        entries.add(rows(200, "t2", EventType.INSERT, 2));
+        entries.add(rows(300, "t2", EventType.UPDATE, 3));
+        entries.add(rows(400, "t2", EventType.UPDATE, 4));
+
+        List<CanalEntry.Entry> result = compactor.compact(entries);
+        Assert.assertEquals(3, result.size());
+        Assert.assertSame(entries.get(0), result.get(0));
+        Assert.assertSame(entries.get(1), result.get(1));
+        Assert.assertEquals(Arrays.asList(3L, 4L), ids(CanalEntry.RowChange.parseFrom(result.get(2).getStoreValue())));
+    }
+
+    // ============================ helper method ======================
+
+    private static CanalEntry.Header.Builder header(long position, String tableName, EventType eventType) {
+        return CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setSchemaName("test")
+                .setTableName(tableName)
+                .setEventType(eventType);
+    }
+
+    private static CanalEntry.Entry rows(long position, String tableName, EventType eventType, long... ids) {
+        CanalEntry.RowChange.Builder rowChange = CanalEntry.RowChange.newBuilder().setTableId(1).setEventType(eventType).setIsDdl(false);
+        for (long id : ids) {
+            CanalEntry.Column column = CanalEntry.Column.newBuilder().setIndex(0).setName("id").setValue(String.valueOf(id)).setIsKey(true).build();
+            rowChange.addRowData(CanalEntry.RowData.newBuilder().addAfterColumns(column));
+        }
+        CanalEntry.Header.Builder header = header(position, tableName, eventType)
+                .setEventLength(100L * ids.length)
+                .addProps(CanalEntry.Pair.newBuilder().setKey("k" + position).setValue("v"))
+                .addProps(CanalEntry.Pair.newBuilder().setKey("rowsCount").setValue(String.valueOf(ids.length)));
+        return CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(EntryType.ROW_DATA)
+                .setStoreValue(rowChange.build().toByteString())
+                .build();
+    }
+
+    private static CanalEntry.Entry ddl(long position, String tableName) {
+        CanalEntry.RowChange rowChange = CanalEntry.RowChange.newBuilder()
+                .setEventType(EventType.ALTER)
+                .setIsDdl(true)
+                .setSql("alter table t1 add column c1 int")
+                .build();
+        return CanalEntry.Entry.newBuilder()
+                .setHeader(header(position, tableName, EventType.ALTER).setEventLength(100))
+                .setEntryType(EntryType.ROW_DATA)
+                .setStoreValue(rowChange.toByteString())
+                .build();
+    }
+
+    private static CanalEntry.Entry transaction(EntryType entryType, long position) {
+        return CanalEntry.Entry.newBuilder()
+                .setHeader(header(position, "", EventType.QUERY).setEventLength(50))
+                .setEntryType(entryType)
+                .build();
+    }
+
+    private static List<Long> ids(CanalEntry.RowChange rowChange) {
+        List<Long> ids = new ArrayList<>();
+        for (CanalEntry.RowData rowData : rowChange.getRowDataList()) {
+            ids.add(Long.parseLong(rowData.getAfterColumns(0).getValue()));
+        }
+        return ids;
+    }
+
+    private static String prop(CanalEntry.Header header, String key) {
+        for (CanalEntry.Pair pair : header.getPropsList()) {
+            if (key.equals(pair.getKey())) {
+                return pair.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static int countProps(CanalEntry.Header header, String key) {
+        int count = 0;
+        for (CanalEntry.Pair pair : header.getPropsList()) {
+            if (key.equals(pair.getKey())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,19 +1,36 @@
 package org.clever.canal.store;
 
+import lombok.Getter;
 import lombok.Setter;
 import org.clever.canal.common.AbstractCanalLifeCycle;
 import org.clever.canal.common.utils.CollectionUtils;
+import org.clever.canal.common.utils.NamedThreadFactory;
 import org.clever.canal.meta.CanalMetaManager;
 import org.clever.canal.protocol.ClientIdentity;
 import org.clever.canal.protocol.position.LogPosition;
 import org.clever.canal.protocol.position.Position;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * store回收机制
+ *
+ * <pre>
+ * 1. onAck: 在ack时回收已经ack的数据占用的内存
+ * 2. onFull: 在store满的时候回收
+ * 3. onSchedule: 按照scavengeSchedule在后台线程中回收，ack时只移动游标
+ * 4. heapPressureThreshold > 0 时，堆内存使用率超过阈值也会在后台线程中触发回收
+ * </pre>
  */
 public abstract class AbstractCanalStoreScavenge extends AbstractCanalLifeCycle implements CanalStoreScavenge {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractCanalStoreScavenge.class);
 
     @Setter
     protected String destination;
@@ -27,6 +44,58 @@ public abstract class AbstractCanalStoreScavenge extends AbstractCanalLifeCycle
     protected boolean onSchedule = false;
     @Setter
     protected String scavengeSchedule = null;
+    /**
+     * 堆内存使用率(0~1)超过该值时触发回收，小于等于0表示不启用
+     */
+    @Setter
+    protected double heapPressureThreshold = 0;
+    /**
+     * 检查堆内存使用率的时间间隔(单位：毫秒)
+     */
+    @Setter
+    protected long heapPressureCheckInterval = 1000;
+    /**
+     * 后台回收累计释放的内存大小(单位：字节)
+     */
+    @Getter
+    protected final AtomicLong reclaimedSize = new AtomicLong(0);
+    /**
+     * 后台回收线程
+     */
+    private ScheduledExecutorService scavengeExecutor;
+
+    @Override
+    public void start() {
+        super.start();
+        ScavengeSchedule schedule = onSchedule ? ScavengeSchedule.parse(scavengeSchedule) : null;
+        if (schedule != null || heapPressureThreshold > 0) {
+            scavengeExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("canal-store-scavenge-" + destination));
+        }
+        if (schedule != null) {
+            scheduleNext(schedule);
+        }
+        if (heapPressureThreshold > 0) {
+            scavengeExecutor.scheduleWithFixedDelay(this::checkHeapPressure, heapPressureCheckInterval, heapPressureCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        if (scavengeExecutor != null) {
+            scavengeExecutor.shutdownNow();
+            scavengeExecutor = null;
+        }
+    }
+
+    /**
+     * 回收所有客户端都已经ack的数据占用的内存(不移动ack游标)
+     *
+     * @return 回收的内存大小(单位：字节)
+     */
+    public long reclaim() {
+        return 0;
+    }
 
     @SuppressWarnings("unused")
     public void scavenge() {
@@ -34,6 +103,40 @@ public abstract class AbstractCanalStoreScavenge extends AbstractCanalLifeCycle
         cleanUntil(position);
     }
 
+    private void scheduleNext(ScavengeSchedule schedule) {
+        final ScheduledExecutorService executor = scavengeExecutor;
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        executor.schedule(() -> {
+            doReclaim("schedule");
+            scheduleNext(schedule);
+        }, schedule.nextDelay(LocalDateTime.now()), TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHeapPressure() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used >= runtime.maxMemory() * heapPressureThreshold) {
+            doReclaim("heap pressure");
+        }
+    }
+
+    private void doReclaim(String trigger) {
+        if (!isStart()) {
+            return;
+        }
+        try {
+            long size = reclaim();
+            if (size > 0) {
+                reclaimedSize.addAndGet(size);
+                logger.debug("[{}] store scavenge by {}, reclaimed {} bytes", destination, trigger, size);
+            }
+        } catch (Throwable e) {
+            logger.warn(String.format("[%s] store scavenge by %s has an error", destination, trigger), e);
+        }
+    }
+
     /**
      * 找出该destination中可被清理掉的position位置
      */
@@ -0,0 +1,301 @@
+package org.clever.canal.store;
+
+import com.google.protobuf.ByteString;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.CanalEntry.EventType;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.protocol.position.PositionRange;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.helper.CanalEventUtils;
+import org.clever.canal.store.memory.DirectEntryArena;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于环形buffer的store公共实现(配置项、memSize/execTime/tableRows统计信息以及get结果的组装)
+ */
+public abstract class AbstractEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge {
+    /**
+     * 初始状态下环形队列的位置
+     */
+    protected static final long INIT_SEQUENCE = -1;
+    /**
+     * 环形队列的大小
+     */
+    @Getter
+    @Setter
+    protected int bufferSize = 16 * 1024;
+    /**
+     * memSize的单位，默认为1kb大小
+     */
+    @Getter
+    @Setter
+    protected int bufferMemUnit = 1024;
+    /**
+     * 用于对putSequence、getSequence、ackSequence进行取余操作，canal通过位操作进行取余，其值为 bufferSize-1
+     */
+    protected int indexMask;
+
+    // ================================================================================================= 记录下put/get/ack操作的三个memSize大小
+
+    /**
+     * put操作的memSize大小
+     */
+    @Getter
+    protected AtomicLong putMemSize = new AtomicLong(0);
+    /**
+     * get操作的memSize大小
+     */
+    @Getter
+    protected AtomicLong getMemSize = new AtomicLong(0);
+    /**
+     * ack操作的memSize大小
+     */
+    @Getter
+    protected AtomicLong ackMemSize = new AtomicLong(0);
+
+    // ================================================================================================= 记录下put/get/ack操作的三个execTime
+
+    /**
+     * put操作的execTime
+     */
+    @Getter
+    protected AtomicLong putExecTime = new AtomicLong(System.currentTimeMillis());
+    /**
+     * get操作的execTime
+     */
+    @Getter
+    protected AtomicLong getExecTime = new AtomicLong(System.currentTimeMillis());
+    /**
+     * ack操作的execTime
+     */
+    @Getter
+    protected AtomicLong ackExecTime = new AtomicLong(System.currentTimeMillis());
+
+    // ================================================================================================= 记录下put/get/ack操作的三个table rows
+
+    /**
+     * put操作的table rows
+     */
+    @Getter
+    protected AtomicLong putTableRows = new AtomicLong(0);
+    /**
+     * get操作的table rows
+     */
+    @Getter
+    protected AtomicLong getTableRows = new AtomicLong(0);
+    /**
+     * ack操作的table rows
+     */
+    @Getter
+    protected AtomicLong ackTableRows = new AtomicLong(0);
+
+    // ================================================================================================= EventStore配置
+
+    /**
+     * 默认为内存大小模式
+     */
+    @Getter
+    @Setter
+    protected BatchMode batchMode = BatchMode.MEM_SIZE;
+    /**
+     * 是否需要DDL隔离
+     */
+    @Getter
+    @Setter
+    protected boolean ddlIsolation = false;
+    /**
+     * 针对entry是否开启raw模式<br />
+     * 使用server/client模式时, 建议开启raw模式(raw = true)<br />
+     * 使用Embedded模式时, 建议关闭raw模式(raw = false)<br />
+     */
+    @Getter
+    @Setter
+    protected boolean raw = true;
+    /**
+     * raw模式下是否把原始数据存放到堆外内存(减少大量rawEntry常驻老年代带来的GC压力)<br />
+     * 开启后getWithoutAck返回的rawEntry在ack之后失效，不能继续使用
+     */
+    @Getter
+    @Setter
+    protected boolean offHeap = false;
+    /**
+     * 堆外内存slab的大小
+     */
+    @Getter
+    @Setter
+    protected int offHeapSlabSize = 4 * 1024 * 1024;
+    /**
+     * 堆外内存的最大使用量(超出之后继续使用堆内存)
+     */
+    @Getter
+    @Setter
+    protected long offHeapMaxSize = 512L * 1024 * 1024;
+    /**
+     * 存放原始数据的堆外内存池
+     */
+    @Getter
+    protected DirectEntryArena arena;
+
+    @Override
+    public void start() throws CanalStoreException {
+        super.start();
+        if (Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        }
+        indexMask = bufferSize - 1;
+        if (raw && offHeap) {
+            arena = new DirectEntryArena(offHeapSlabSize, offHeapMaxSize);
+        }
+    }
+
+    @Override
+    public void stop() throws CanalStoreException {
+        super.stop();
+        arena = null;
+    }
+
+    /**
+     * 当前put操作最后一次写操作发生的位置(用于监控)
+     */
+    public abstract long currentPutSequence();
+
+    /**
+     * 当前ack操作的最后一条的位置(用于监控)
+     */
+    public abstract long currentAckSequence();
+
+    // =================== helper method =================
+
+    /**
+     * 根据get出来的数据组装位点信息(start/end/ack)
+     *
+     * @param result 已经填充了数据的Events
+     * @param end    最后一条数据对应的sequence
+     */
+    protected void fillPositionRange(Events<Event> result, long end) {
+        List<Event> entryList = result.getEvents();
+        PositionRange<LogPosition> range = new PositionRange<>();
+        result.setPositionRange(range);
+        range.setStart(CanalEventUtils.createPosition(entryList.get(0)));
+        range.setEnd(CanalEventUtils.createPosition(entryList.get(entryList.size() - 1)));
+        range.setEndSeq(end);
+        // 记录一下是否存在可以被ack的点
+        for (int i = entryList.size() - 1; i >= 0; i--) {
+            Event event = entryList.get(i);
+            // gtId模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtId之后的next,如果在事务头就记录了会丢这最后一个事务
+            if ((CanalEntry.EntryType.TRANSACTION_BEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtId())) || CanalEntry.EntryType.TRANSACTION_END == event.getEntryType() || isDdl(event.getEventType())) {
+                // 将事务头/尾设置可被为ack的点
+                range.setAck(CanalEventUtils.createPosition(event));
+                break;
+            }
+        }
+    }
+
+    /**
+     * 把原始数据拷贝到堆外内存(未开启堆外内存或者堆外内存不足时保持不变)
+     *
+     * @param event    put的数据
+     * @param sequence 数据对应的sequence
+     */
+    protected void moveToArena(Event event, long sequence) {
+        final DirectEntryArena arena = this.arena;
+        if (arena == null || event.getRawEntry() == null) {
+            return;
+        }
+        ByteString direct = arena.allocate(event.getRawEntry(), sequence);
+        if (direct != null) {
+            event.setRawEntry(direct);
+        }
+    }
+
+    /**
+     * 回收sequence之前(包含)的数据占用的堆外内存
+     *
+     * @return 回收的堆外内存大小
+     */
+    protected long releaseArena(long sequence) {
+        final DirectEntryArena arena = this.arena;
+        if (arena == null) {
+            return 0;
+        }
+        long usedSize = arena.getUsedSize();
+        arena.release(sequence);
+        return usedSize - arena.getUsedSize();
+    }
+
+    /**
+     * 重置堆外内存
+     */
+    protected void resetArena() {
+        final DirectEntryArena arena = this.arena;
+        if (arena != null) {
+            arena.releaseAll();
+        }
+    }
+
+    protected long calculateSize(Event event) {
+        // 直接返回binlog中的事件大小
+        return event.getRawLength();
+    }
+
+    protected int getIndex(long sequence) {
+        return (int) sequence & indexMask;
+    }
+
+    protected boolean isDdl(EventType type) {
+        return type == EventType.ALTER
+                || type == EventType.CREATE
+                || type == EventType.ERASE
+                || type == EventType.RENAME
+                || type == EventType.TRUNCATE
+                || type == EventType.C_INDEX
+                || type == EventType.D_INDEX;
+    }
+
+    protected void profiling(List<Event> events, OP op) {
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        if (events != null && !events.isEmpty()) {
+            for (Event e : events) {
+                if (localExecTime == 0 && e.getExecuteTime() > 0) {
+                    localExecTime = e.getExecuteTime();
+                }
+                deltaRows += e.getRowsCount();
+            }
+        }
+        switch (op) {
+            case PUT:
+                putTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    putExecTime.lazySet(localExecTime);
+                }
+                break;
+            case GET:
+                getTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    getExecTime.lazySet(localExecTime);
+                }
+                break;
+            case ACK:
+                ackTableRows.addAndGet(deltaRows);
+                if (localExecTime > 0) {
+                    ackExecTime.lazySet(localExecTime);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    protected enum OP {
+        PUT, GET, ACK
+    }
+}
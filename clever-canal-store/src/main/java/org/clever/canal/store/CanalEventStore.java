@@ -83,4 +83,12 @@ public interface CanalEventStore<T> extends CanalLifeCycle, CanalStoreScavenge {
      * 出错时执行回滚操作(未提交ack的所有状态信息重新归位，减少出错时数据全部重来的成本)
      */
     void rollback() throws CanalStoreException;
+
+    /**
+     * 移动get游标，下一次get从第一条 >= position 的数据开始(只能在未ack的数据范围内移动)<br />
+     * position中journalName或position为空时，按照timestamp定位到第一条executeTime >= timestamp的数据
+     *
+     * @return 找不到对应的数据时返回false，游标保持不变
+     */
+    boolean seek(Position position) throws CanalStoreException;
 }
@@ -0,0 +1,61 @@
+package org.clever.canal.store;
+
+import org.clever.canal.protocol.ClientIdentity;
+import org.clever.canal.protocol.position.Position;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.model.Events;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持多个客户端独立消费的store接口，每个{@linkplain ClientIdentity}拥有独立的get/ack游标<br />
+ * 多个客户端共享同一份解析数据，只有最慢的客户端ack之后数据才会被回收
+ */
+@SuppressWarnings("unused")
+public interface CanalMultiClientEventStore<T> extends CanalEventStore<T> {
+
+    /**
+     * 客户端订阅，为客户端创建独立的游标(重复订阅不会重置游标)
+     */
+    void subscribe(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 取消订阅，删除客户端的游标
+     */
+    void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 获取指定大小的数据，阻塞等待其操作完成
+     */
+    Events<T> get(ClientIdentity clientIdentity, Position start, int batchSize) throws InterruptedException, CanalStoreException;
+
+    /**
+     * 获取指定大小的数据，阻塞等待其操作完成或者时间超时
+     */
+    Events<T> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException;
+
+    /**
+     * 根据指定位置，获取一个指定大小的数据
+     */
+    Events<T> tryGet(ClientIdentity clientIdentity, Position start, int batchSize) throws CanalStoreException;
+
+    /**
+     * 获取客户端第一条数据的position，如果没有数据返回为null
+     */
+    Position getFirstPosition(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 删除客户端指定seqId之前的数据
+     */
+    void ack(ClientIdentity clientIdentity, Position position, Long seqId) throws CanalStoreException;
+
+    /**
+     * 回滚客户端未提交ack的所有状态信息
+     */
+    void rollback(ClientIdentity clientIdentity) throws CanalStoreException;
+
+    /**
+     * 移动客户端的get游标，参考{@link #seek(Position)}
+     */
+    boolean seek(ClientIdentity clientIdentity, Position position) throws CanalStoreException;
+}
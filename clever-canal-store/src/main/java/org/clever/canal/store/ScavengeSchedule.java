@@ -0,0 +1,173 @@
+package org.clever.canal.store;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * store回收的调度规则(scavengeSchedule)
+ *
+ * <pre>
+ * 支持两种格式:
+ * 1. 固定间隔: "500ms"、"30s"、"5m"、"1h"，纯数字的单位为毫秒
+ * 2. cron表达式: "秒 分 时 日 月 周"(5个字段时省略秒，秒为0)
+ *    每个字段支持 *、?、数字、a-b、*&#47;n、a-b/n 以及逗号分隔的列表，周的取值为0-7(0和7都表示周日)
+ *    与标准cron一致: 日和周都不是 * 或 ? 时，满足其中一个即可触发，否则两者都要满足
+ * </pre>
+ */
+public class ScavengeSchedule {
+    /**
+     * 查找下一次触发时间时最多向后查找的年数
+     */
+    private static final int MAX_SEARCH_YEARS = 5;
+
+    /**
+     * 固定间隔(毫秒)，cron表达式时为-1
+     */
+    private final long interval;
+    private final BitSet seconds = new BitSet(60);
+    private final BitSet minutes = new BitSet(60);
+    private final BitSet hours = new BitSet(24);
+    private final BitSet daysOfMonth = new BitSet(32);
+    private final BitSet months = new BitSet(13);
+    private final BitSet daysOfWeek = new BitSet(8);
+    /**
+     * 日、周字段是否都有限制(都不是 * 或 ?)，此时按"或"匹配
+     */
+    private boolean dayOr;
+
+    private ScavengeSchedule(long interval) {
+        this.interval = interval;
+    }
+
+    public static ScavengeSchedule parse(String expression) {
+        if (StringUtils.isBlank(expression)) {
+            throw new IllegalArgumentException("scavengeSchedule is blank");
+        }
+        String value = expression.trim().toLowerCase(Locale.ROOT);
+        String[] fields = value.split("\\s+");
+        if (fields.length == 1) {
+            return new ScavengeSchedule(parseInterval(value));
+        }
+        if (fields.length != 5 && fields.length != 6) {
+            throw new IllegalArgumentException("invalid scavengeSchedule: " + expression);
+        }
+        int offset = fields.length == 6 ? 1 : 0;
+        ScavengeSchedule schedule = new ScavengeSchedule(-1);
+        if (offset == 1) {
+            parseField(fields[0], schedule.seconds, 0, 59);
+        } else {
+            schedule.seconds.set(0);
+        }
+        parseField(fields[offset], schedule.minutes, 0, 59);
+        parseField(fields[offset + 1], schedule.hours, 0, 23);
+        parseField(fields[offset + 2], schedule.daysOfMonth, 1, 31);
+        parseField(fields[offset + 3], schedule.months, 1, 12);
+        parseField(fields[offset + 4], schedule.daysOfWeek, 0, 7);
+        if (schedule.daysOfWeek.get(7)) {
+            schedule.daysOfWeek.set(0);
+        }
+        schedule.dayOr = isRestricted(fields[offset + 2]) && isRestricted(fields[offset + 4]);
+        return schedule;
+    }
+
+    /**
+     * 距离下一次触发的时间(毫秒)
+     */
+    public long nextDelay(LocalDateTime now) {
+        if (interval > 0) {
+            return interval;
+        }
+        LocalDateTime next = next(now);
+        return Math.max(1, ChronoUnit.MILLIS.between(now, next));
+    }
+
+    /**
+     * 下一次触发的时间(cron表达式)
+     */
+    LocalDateTime next(LocalDateTime now) {
+        LocalDateTime time = now.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        LocalDateTime limit = now.plusYears(MAX_SEARCH_YEARS);
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!matchDay(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(time.getMinute())) {
+                time = time.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            } else if (!seconds.get(time.getSecond())) {
+                time = time.plusSeconds(1);
+            } else {
+                return time;
+            }
+        }
+        throw new IllegalStateException("scavengeSchedule never fires");
+    }
+
+    private boolean matchDay(LocalDateTime time) {
+        boolean dayOfMonth = daysOfMonth.get(time.getDayOfMonth());
+        boolean dayOfWeek = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        return dayOr ? dayOfMonth || dayOfWeek : dayOfMonth && dayOfWeek;
+    }
+
+    private static boolean isRestricted(String field) {
+        return !field.startsWith("*") && !field.startsWith("?");
+    }
+
+    private static long parseInterval(String value) {
+        long interval;
+        try {
+            if (value.endsWith("ms")) {
+                interval = Long.parseLong(value.substring(0, value.length() - 2));
+            } else if (value.endsWith("s")) {
+                interval = Long.parseLong(value.substring(0, value.length() - 1)) * 1000;
+            } else if (value.endsWith("m")) {
+                interval = Long.parseLong(value.substring(0, value.length() - 1)) * 60 * 1000;
+            } else if (value.endsWith("h")) {
+                interval = Long.parseLong(value.substring(0, value.length() - 1)) * 60 * 60 * 1000;
+            } else {
+                interval = Long.parseLong(value);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid scavengeSchedule: " + value, e);
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("invalid scavengeSchedule: " + value);
+        }
+        return interval;
+    }
+
+    private static void parseField(String field, BitSet bits, int min, int max) {
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = Integer.parseInt(part.substring(slash + 1));
+                part = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if ("*".equals(part) || "?".equals(part)) {
+                from = min;
+                to = max;
+            } else if (part.indexOf('-') > 0) {
+                from = Integer.parseInt(part.substring(0, part.indexOf('-')));
+                to = Integer.parseInt(part.substring(part.indexOf('-') + 1));
+            } else {
+                from = Integer.parseInt(part);
+                to = slash >= 0 ? max : from;
+            }
+            if (from < min || to > max || from > to || step <= 0) {
+                throw new IllegalArgumentException("invalid scavengeSchedule field: " + field);
+            }
+            for (int i = from; i <= to; i += step) {
+                bits.set(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.clever.canal.store.file;
+
+import org.clever.canal.store.model.Event;
+
+/**
+ * 一段连续sequence的数据块(内存块或者文件段)
+ */
+interface EventBlock {
+
+    /**
+     * 数据块中第一条数据的sequence
+     */
+    long getFirstSequence();
+
+    /**
+     * 数据块中最后一条数据的sequence(空数据块返回 firstSequence - 1)
+     */
+    long getLastSequence();
+
+    /**
+     * 读取指定sequence的数据
+     *
+     * @param sequence    数据的sequence，必须在[firstSequence, lastSequence]范围内
+     * @param withPayload 是否读取原始数据(false时只读取位点等元数据，用于ack匹配)
+     */
+    Event get(long sequence, boolean withPayload);
+
+    /**
+     * 数据块占用的存储空间(单位：byte)
+     */
+    long getStorageSize();
+
+    /**
+     * 是否是内存数据块
+     */
+    boolean isMemory();
+
+    /**
+     * 释放数据块占用的资源(文件段会被删除)
+     */
+    void release();
+}
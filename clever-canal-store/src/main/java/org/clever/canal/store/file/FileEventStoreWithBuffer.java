@@ -0,0 +1,788 @@
+package org.clever.canal.store.file;
+
+import com.google.protobuf.ByteString;
+import lombok.Getter;
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.clever.canal.protocol.position.EntryPosition;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.protocol.position.Position;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.helper.CanalEventUtils;
+import org.clever.canal.store.memory.PositionIndex;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于内存映射文件的store，支持FILE和MIXED两种模式
+ *
+ * <pre>
+ * 设计说明：
+ * 1. 数据按sequence顺序追加写入segment文件(默认64MB一个)，内存中只保留每条记录在segment中的偏移
+ * 2. ack之后，sequence完全被ack的segment文件会被删除
+ * 3. MIXED模式下，数据优先写入内存，内存数据达到bufferSize(或者bufferSize * bufferMemUnit)后才溢出写入文件，
+ *    内存占用降到一半以下再切换回内存，避免频繁切换
+ * 4. 存储容量由maxStorageSize(文件总大小)控制，超过后put操作阻塞
+ * 5. BatchMode、ddlIsolation以及ack/rollback的语义与{@linkplain org.clever.canal.store.memory.MemoryEventStoreWithBuffer}保持一致
+ * </pre>
+ */
+public class FileEventStoreWithBuffer extends AbstractEventStoreWithBuffer {
+    private static final Logger logger = LoggerFactory.getLogger(FileEventStoreWithBuffer.class);
+    /**
+     * segment文件后缀
+     */
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // ================================================================================================= FileEventStoreWithBuffer配置
+
+    /**
+     * 数据文件存储目录(实际目录为 dataDir/destination)
+     */
+    @Getter
+    @Setter
+    private String dataDir = "./event-store";
+    /**
+     * 单个segment文件的大小
+     */
+    @Getter
+    @Setter
+    private int segmentSize = 64 * 1024 * 1024;
+    /**
+     * segment文件占用的最大存储空间
+     */
+    @Getter
+    @Setter
+    private long maxStorageSize = 16L * 1024 * 1024 * 1024;
+    /**
+     * 是否是MIXED模式(内存+文件)
+     */
+    @Getter
+    @Setter
+    private boolean mixed = false;
+
+    // ================================================================================================= 记录下put/get/ack操作的三个下标
+
+    /**
+     * 代表当前put操作最后一次写操作发生的位置
+     */
+    @Getter
+    private AtomicLong putSequence = new AtomicLong(INIT_SEQUENCE);
+    /**
+     * 代表当前get操作读取的最后一条的位置
+     */
+    @Getter
+    private AtomicLong getSequence = new AtomicLong(INIT_SEQUENCE);
+    /**
+     * 代表当前ack操作的最后一条的位置
+     */
+    @Getter
+    private AtomicLong ackSequence = new AtomicLong(INIT_SEQUENCE);
+
+    // ================================================================================================= 存储空间统计
+
+    /**
+     * 未删除的segment文件占用的存储空间
+     */
+    @Getter
+    private AtomicLong fileStorageSize = new AtomicLong(0);
+    /**
+     * 内存中未ack的数据条数(MIXED模式)
+     */
+    @Getter
+    private AtomicLong memoryEventCount = new AtomicLong(0);
+    /**
+     * 内存中未ack的数据大小(MIXED模式)
+     */
+    @Getter
+    private AtomicLong memoryEventSize = new AtomicLong(0);
+
+    // ================================================================================================= 数据块
+
+    /**
+     * 按sequence顺序排列的数据块
+     */
+    private final List<EventBlock> blocks = new ArrayList<>();
+    /**
+     * LogIdentity字典(segment中只保存下标)
+     */
+    private final List<LogIdentity> identities = new ArrayList<>();
+    /**
+     * 存储目录
+     */
+    private File storeDir;
+    /**
+     * MIXED模式下是否正在溢出写文件
+     */
+    private boolean spilling = false;
+    /**
+     * 最后一次put的数据(只包含位点信息)
+     */
+    private Event lastPutEvent;
+    /**
+     * 最后一次ack的数据(只包含位点信息)
+     */
+    private Event lastAckEvent;
+
+    // ================================================================================================= 阻塞put/get操作控制信号
+
+    /**
+     * put操作和get操作共用一把锁(lock)
+     */
+    private ReentrantLock lock = new ReentrantLock();
+    /**
+     * notFull用于控制put操作，只有存储没满的情况下才能put
+     */
+    private Condition notFull = lock.newCondition();
+    /**
+     * notEmpty控制get操作，只有存储不为空的情况下，才能get
+     */
+    private Condition notEmpty = lock.newCondition();
+
+    public FileEventStoreWithBuffer() {
+    }
+
+    @Override
+    public void start() throws CanalStoreException {
+        super.start();
+        if (segmentSize <= SegmentEventBlock.FIXED_RECORD_SIZE) {
+            throw new IllegalArgumentException("segmentSize is too small");
+        }
+        storeDir = new File(dataDir, StringUtils.defaultIfBlank(destination, "default"));
+        if (!storeDir.exists() && !storeDir.mkdirs()) {
+            throw new CanalStoreException("create dir failed: " + storeDir.getAbsolutePath());
+        }
+        // 清理上次运行遗留的segment文件
+        File[] files = storeDir.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("delete stale segment file failed: {}", file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop() throws CanalStoreException {
+        super.stop();
+        cleanAll();
+    }
+
+    @Override
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                // 检查是否有空位
+                while (!checkFreeSpace()) {
+                    // wait until not full
+                    notFull.await();
+                }
+            } catch (InterruptedException ie) {
+                // propagate to non-interrupted thread
+                notFull.signal();
+                throw ie;
+            }
+            doPut(data);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (; ; ) {
+                if (checkFreeSpace()) {
+                    doPut(data);
+                    return true;
+                }
+                if (nanos <= 0) {
+                    return false;
+                }
+                try {
+                    nanos = notFull.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    // propagate to non-interrupted thread
+                    notFull.signal();
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!checkFreeSpace()) {
+                return false;
+            } else {
+                doPut(data);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Collections.singletonList(data));
+    }
+
+    @Override
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Collections.singletonList(data), timeout, unit);
+    }
+
+    @Override
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Collections.singletonList(data));
+    }
+
+    /**
+     * 执行具体的put操作
+     */
+    private void doPut(List<Event> data) {
+        long current = putSequence.get();
+        long next = current;
+        for (Event event : data) {
+            next++;
+            if (mixed && canUseMemory()) {
+                appendToMemory(next, event);
+            } else {
+                appendToSegment(next, event);
+            }
+        }
+        lastPutEvent = copyMeta(data.get(data.size() - 1));
+        putSequence.set(next);
+        // 记录一下gets memSize信息，方便快速检索
+        if (batchMode.isMemSize()) {
+            long size = 0;
+            for (Event event : data) {
+                size += calculateSize(event);
+            }
+            putMemSize.getAndAdd(size);
+        }
+        profiling(data, OP.PUT);
+        // tell other threads that store is not empty
+        notEmpty.signal();
+    }
+
+    private void appendToMemory(long sequence, Event event) {
+        EventBlock tail = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        MemoryEventBlock block;
+        if (tail != null && tail.isMemory()) {
+            block = (MemoryEventBlock) tail;
+        } else {
+            block = new MemoryEventBlock(sequence);
+            blocks.add(block);
+        }
+        long size = calculateSize(event);
+        block.append(event, size);
+        memoryEventCount.incrementAndGet();
+        memoryEventSize.addAndGet(size);
+    }
+
+    private void appendToSegment(long sequence, Event event) {
+        int identityIndex = identities.indexOf(event.getLogIdentity());
+        if (identityIndex < 0) {
+            identities.add(event.getLogIdentity());
+            identityIndex = identities.size() - 1;
+        }
+        byte[] journalName = event.getJournalName() == null ? null : event.getJournalName().getBytes(StandardCharsets.UTF_8);
+        byte[] gtId = event.getGtId() == null ? null : event.getGtId().getBytes(StandardCharsets.UTF_8);
+        ByteString payload = event.getRawEntry() != null ? event.getRawEntry() : event.getEntry().toByteString();
+        EventBlock tail = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (tail == null || tail.isMemory() || !((SegmentEventBlock) tail).append(event, identityIndex, journalName, gtId, payload)) {
+            // 当前segment空间不足，新建segment(超大的数据单独使用一个segment)
+            int recordSize = SegmentEventBlock.recordSize(journalName, gtId, payload.size());
+            File file = new File(storeDir, String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+            SegmentEventBlock segment = new SegmentEventBlock(file, sequence, Math.max(segmentSize, recordSize), raw, identities);
+            blocks.add(segment);
+            segment.append(event, identityIndex, journalName, gtId, payload);
+            fileStorageSize.addAndGet(recordSize);
+        } else {
+            fileStorageSize.addAndGet(SegmentEventBlock.recordSize(journalName, gtId, payload.size()));
+        }
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                    notEmpty.await();
+                }
+            } catch (InterruptedException ie) {
+                // propagate to non-interrupted thread
+                notEmpty.signal();
+                throw ie;
+            }
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (; ; ) {
+                if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                    return doGet(start, batchSize);
+                }
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(start, batchSize);
+                }
+                try {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    // propagate to non-interrupted thread
+                    notEmpty.signal();
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+        long current = getSequence.get();
+        long maxAbleSequence = putSequence.get();
+        long next = current;
+        long end = current;
+        // 如果startPosition为null，说明是第一次，默认+1处理
+        // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+        if (startPosition == null || !startPosition.getPosition().isIncluded()) {
+            next = next + 1;
+        }
+        if (current >= maxAbleSequence) {
+            return new Events<>();
+        }
+        Events<Event> result = new Events<>();
+        List<Event> entryList = result.getEvents();
+        long memSize = 0;
+        if (batchMode.isItemSize()) {
+            end = Math.min((next + batchSize - 1), maxAbleSequence);
+            // 提取数据并返回
+            for (; next <= end; next++) {
+                Event event = getEvent(next, true);
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entryList.size() == 0) {
+                        entryList.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entryList.add(event);
+                }
+            }
+        } else {
+            long maxMemSize = batchSize * bufferMemUnit;
+            for (; memSize <= maxMemSize && next <= maxAbleSequence; next++) {
+                // 永远保证可以取出第一条的记录，避免死锁
+                Event event = getEvent(next, true);
+                if (ddlIsolation && isDdl(event.getEventType())) {
+                    // 如果是ddl隔离，直接返回
+                    if (entryList.size() == 0) {
+                        entryList.add(event);// 如果没有DML事件，加入当前的DDL事件
+                        end = next; // 更新end为当前
+                    } else {
+                        // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                        end = next - 1; // next-1一定大于current，不需要判断
+                    }
+                    break;
+                } else {
+                    entryList.add(event);
+                    memSize += calculateSize(event);
+                    end = next;// 记录end位点
+                }
+            }
+        }
+        fillPositionRange(result, end);
+        if (getSequence.compareAndSet(current, end)) {
+            getMemSize.addAndGet(memSize);
+            notFull.signal();
+            profiling(result.getEvents(), OP.GET);
+            return result;
+        } else {
+            return new Events<>();
+        }
+    }
+
+    @Override
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long firstSequence = ackSequence.get();
+            if (firstSequence == INIT_SEQUENCE && firstSequence < putSequence.get()) {
+                // 没有ack过数据
+                Event event = getEvent(firstSequence + 1, false);
+                // 最后一次ack为-1，需要移动到下一条,included = false
+                return CanalEventUtils.createPosition(event, false);
+            } else if (firstSequence > INIT_SEQUENCE && firstSequence <= putSequence.get()) {
+                // ack未追上put操作 或者 已经追上(store中没有数据)
+                // 最后一次ack的位置数据,需要移动到下一条,included = false
+                return CanalEventUtils.createPosition(lastAckEvent, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long latestSequence = putSequence.get();
+            if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+                // 最后一次写入的数据，最后一条未消费的数据
+                return CanalEventUtils.createPosition(lastPutEvent, true);
+            } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
+                // ack已经追上了put操作，最后一次写入的数据，included = false
+                return CanalEventUtils.createPosition(lastPutEvent, false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    @Override
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    private void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long sequence = ackSequence.get();
+            long maxSequence = getSequence.get();
+            long memSize = 0;
+            long localExecTime = 0L;
+            int deltaRows = 0;
+            long memoryCount = 0;
+            long memorySize = 0;
+            if (seqId > 0) {
+                maxSequence = seqId;
+            }
+            for (long next = sequence + 1; next <= maxSequence; next++) {
+                EventBlock block = findBlock(next);
+                Event event = block.get(next, false);
+                if (localExecTime == 0 && event.getExecuteTime() > 0) {
+                    localExecTime = event.getExecuteTime();
+                }
+                deltaRows += event.getRowsCount();
+                long size = calculateSize(event);
+                memSize += size;
+                if (block.isMemory()) {
+                    memoryCount++;
+                    memorySize += size;
+                }
+                if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                    // 找到对应的position，更新ack seq
+                    if (batchMode.isMemSize()) {
+                        ackMemSize.addAndGet(memSize);
+                    }
+                    lastAckEvent = copyMeta(event);
+                    releaseUntil(next);
+                    memoryEventCount.addAndGet(-memoryCount);
+                    memoryEventSize.addAndGet(-memorySize);
+                    ackSequence.set(next);
+                    notFull.signal();
+                    ackTableRows.addAndGet(deltaRows);
+                    if (localExecTime > 0) {
+                        ackExecTime.lazySet(localExecTime);
+                    }
+                    return;
+                }
+            }
+            // 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 文件存储的数据量较大，不维护位点索引，顺序读取数据的位点信息(不读取原始数据)
+     */
+    @Override
+    public boolean seek(Position position) throws CanalStoreException {
+        final EntryPosition target = ((LogPosition) position).getPosition();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long sequence = ackSequence.get();
+            long maxSequence = putSequence.get();
+            long memSize = 0;
+            // 优先定位到与position匹配的数据，找不到时定位到第一条 >= position 的数据
+            long reached = -1;
+            long reachedMemSize = 0;
+            for (long next = sequence + 1; next <= maxSequence; next++) {
+                Event event = getEvent(next, false);
+                if (CanalEventUtils.checkPosition(event, (LogPosition) position)) {
+                    reached = next;
+                    reachedMemSize = memSize;
+                    break;
+                }
+                if (reached < 0 && PositionIndex.reached(event.getJournalName(), event.getPosition(), event.getExecuteTime(), target)) {
+                    reached = next;
+                    reachedMemSize = memSize;
+                }
+                memSize += calculateSize(event);
+            }
+            if (reached < 0) {
+                return false;
+            }
+            getSequence.set(reached - 1);
+            getMemSize.set(ackMemSize.get() + (batchMode.isMemSize() ? reachedMemSize : 0));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void rollback() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            getSequence.set(ackSequence.get());
+            getMemSize.set(ackMemSize.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanAll() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (EventBlock block : blocks) {
+                block.release();
+            }
+            blocks.clear();
+            identities.clear();
+            putSequence.set(INIT_SEQUENCE);
+            getSequence.set(INIT_SEQUENCE);
+            ackSequence.set(INIT_SEQUENCE);
+
+            putMemSize.set(0);
+            getMemSize.set(0);
+            ackMemSize.set(0);
+            fileStorageSize.set(0);
+            memoryEventCount.set(0);
+            memoryEventSize.set(0);
+            spilling = false;
+            lastPutEvent = null;
+            lastAckEvent = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long currentPutSequence() {
+        return putSequence.get();
+    }
+
+    @Override
+    public long currentAckSequence() {
+        return ackSequence.get();
+    }
+
+    // =================== helper method =================
+
+    /**
+     * 查找sequence所在的数据块
+     */
+    private EventBlock findBlock(long sequence) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            EventBlock block = blocks.get(mid);
+            if (block.getLastSequence() < sequence) {
+                low = mid + 1;
+            } else if (block.getFirstSequence() > sequence) {
+                high = mid - 1;
+            } else {
+                return block;
+            }
+        }
+        throw new CanalStoreException("sequence not found in store: " + sequence);
+    }
+
+    private Event getEvent(long sequence, boolean withPayload) {
+        return findBlock(sequence).get(sequence, withPayload);
+    }
+
+    /**
+     * 释放sequence(包含)之前的数据，完全被ack的数据块直接删除
+     */
+    private void releaseUntil(long sequence) {
+        while (!blocks.isEmpty()) {
+            EventBlock block = blocks.get(0);
+            if (block.getLastSequence() > sequence) {
+                if (block.isMemory()) {
+                    ((MemoryEventBlock) block).clearUntil(sequence);
+                }
+                break;
+            }
+            if (!block.isMemory()) {
+                fileStorageSize.addAndGet(-block.getStorageSize());
+            }
+            block.release();
+            blocks.remove(0);
+        }
+    }
+
+    /**
+     * MIXED模式下判断数据是否可以写入内存
+     */
+    private boolean canUseMemory() {
+        long count = memoryEventCount.get();
+        long size = memoryEventSize.get();
+        if (spilling) {
+            // 内存占用降到一半以下，才切换回内存
+            if (count < (bufferSize >> 1) && size < ((long) bufferSize * bufferMemUnit >> 1)) {
+                spilling = false;
+            }
+        } else if (count >= bufferSize || size >= (long) bufferSize * bufferMemUnit) {
+            spilling = true;
+        }
+        return !spilling;
+    }
+
+    /**
+     * 查询是否有空间
+     */
+    private boolean checkFreeSpace() {
+        if (fileStorageSize.get() < maxStorageSize) {
+            return true;
+        }
+        return mixed && memoryEventCount.get() < bufferSize && memoryEventSize.get() < (long) bufferSize * bufferMemUnit;
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            if (startPosition == null || !startPosition.getPosition().isIncluded()) {
+                // 少一条数据
+                next = next + 1;
+            }
+            return current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence;
+        } else {
+            // 处理内存大小判断
+            long currentSize = getMemSize.get();
+            long maxAbleSize = putMemSize.get();
+            if (batchSize <= 1) {
+                // 当batchSize<=1时表示消费者对实时性要求较高，有数据就get(尽可能的触发get)
+                return maxAbleSize - currentSize > 0;
+            }
+            return maxAbleSize - currentSize >= batchSize * bufferMemUnit;
+        }
+    }
+
+    /**
+     * 复制Event的位点信息(不包含原始数据)
+     */
+    private Event copyMeta(Event event) {
+        Event meta = new Event();
+        meta.setLogIdentity(event.getLogIdentity());
+        meta.setExecuteTime(event.getExecuteTime());
+        meta.setEntryType(event.getEntryType());
+        meta.setJournalName(event.getJournalName());
+        meta.setPosition(event.getPosition());
+        meta.setServerId(event.getServerId());
+        meta.setEventType(event.getEventType());
+        meta.setGtId(event.getGtId());
+        meta.setRawLength(event.getRawLength());
+        meta.setRowsCount(event.getRowsCount());
+        return meta;
+    }
+}
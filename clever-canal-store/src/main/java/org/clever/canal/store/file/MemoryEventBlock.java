@@ -0,0 +1,70 @@
+package org.clever.canal.store.file;
+
+import org.clever.canal.store.model.Event;
+
+import java.util.Arrays;
+
+/**
+ * 内存数据块，MIXED模式下保存热点数据
+ */
+class MemoryEventBlock implements EventBlock {
+    private static final int INIT_CAPACITY = 256;
+
+    private final long firstSequence;
+    private Event[] events = new Event[INIT_CAPACITY];
+    private int count = 0;
+    private long storageSize = 0;
+
+    MemoryEventBlock(long firstSequence) {
+        this.firstSequence = firstSequence;
+    }
+
+    void append(Event event, long size) {
+        if (count == events.length) {
+            events = Arrays.copyOf(events, count << 1);
+        }
+        events[count++] = event;
+        storageSize += size;
+    }
+
+    /**
+     * 释放sequence(包含)之前数据的引用，便于GC回收
+     */
+    void clearUntil(long sequence) {
+        int end = (int) Math.min(sequence - firstSequence, count - 1);
+        for (int i = 0; i <= end; i++) {
+            events[i] = null;
+        }
+    }
+
+    @Override
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    @Override
+    public long getLastSequence() {
+        return firstSequence + count - 1;
+    }
+
+    @Override
+    public Event get(long sequence, boolean withPayload) {
+        return events[(int) (sequence - firstSequence)];
+    }
+
+    @Override
+    public long getStorageSize() {
+        return storageSize;
+    }
+
+    @Override
+    public boolean isMemory() {
+        return true;
+    }
+
+    @Override
+    public void release() {
+        events = null;
+        count = 0;
+    }
+}
@@ -0,0 +1,211 @@
+package org.clever.canal.store.file;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.model.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于内存映射文件的数据段，只追加写入
+ *
+ * <pre>
+ * 单条记录格式：
+ * int    记录长度(不包含自身)
+ * short  LogIdentity下标
+ * int    entryType
+ * int    eventType
+ * long   executeTime
+ * long   position
+ * long   serverId
+ * long   rawLength
+ * int    rowsCount
+ * string journalName (short长度 + utf8，-1表示null)
+ * string gtId        (short长度 + utf8，-1表示null)
+ * int    原始数据长度 + 原始数据(CanalEntry.Entry序列化后的数据)
+ * </pre>
+ * 内存中只保留每条记录在文件中的偏移(int[])
+ */
+class SegmentEventBlock implements EventBlock {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentEventBlock.class);
+    private static final int INIT_CAPACITY = 1024;
+    /**
+     * 记录中除journalName、gtId以及原始数据外的固定长度
+     */
+    static final int FIXED_RECORD_SIZE = 4 + 2 + 4 + 4 + 8 + 8 + 8 + 8 + 4 + 2 + 2 + 4;
+
+    private final File file;
+    private final long firstSequence;
+    private final boolean raw;
+    /**
+     * LogIdentity字典，由store统一维护
+     */
+    private final List<LogIdentity> identities;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    /**
+     * 每条记录在文件中的偏移
+     */
+    private int[] offsets = new int[INIT_CAPACITY];
+    private int count = 0;
+
+    SegmentEventBlock(File file, long firstSequence, int segmentSize, boolean raw, List<LogIdentity> identities) {
+        this.file = file;
+        this.firstSequence = firstSequence;
+        this.raw = raw;
+        this.identities = identities;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            release();
+            throw new CanalStoreException("create segment file failed: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 计算一条记录需要的存储空间
+     */
+    static int recordSize(byte[] journalName, byte[] gtId, int payloadSize) {
+        return FIXED_RECORD_SIZE + (journalName == null ? 0 : journalName.length) + (gtId == null ? 0 : gtId.length) + payloadSize;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 空间不足时返回false
+     */
+    boolean append(Event event, int identityIndex, byte[] journalName, byte[] gtId, ByteString payload) {
+        int recordSize = recordSize(journalName, gtId, payload.size());
+        if (buffer.remaining() < recordSize) {
+            return false;
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count << 1);
+        }
+        offsets[count] = buffer.position();
+        buffer.putInt(recordSize - 4);
+        buffer.putShort((short) identityIndex);
+        buffer.putInt(event.getEntryType() == null ? -1 : event.getEntryType().getNumber());
+        buffer.putInt(event.getEventType() == null ? -1 : event.getEventType().getNumber());
+        buffer.putLong(event.getExecuteTime());
+        buffer.putLong(event.getPosition());
+        buffer.putLong(event.getServerId());
+        buffer.putLong(event.getRawLength());
+        buffer.putInt(event.getRowsCount());
+        putBytes(journalName);
+        putBytes(gtId);
+        buffer.putInt(payload.size());
+        payload.copyTo(buffer);
+        count++;
+        return true;
+    }
+
+    @Override
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    @Override
+    public long getLastSequence() {
+        return firstSequence + count - 1;
+    }
+
+    @Override
+    public Event get(long sequence, boolean withPayload) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offsets[(int) (sequence - firstSequence)] + 4);
+        Event event = new Event();
+        event.setLogIdentity(identities.get(record.getShort()));
+        int entryType = record.getInt();
+        event.setEntryType(entryType < 0 ? null : CanalEntry.EntryType.forNumber(entryType));
+        int eventType = record.getInt();
+        event.setEventType(eventType < 0 ? null : CanalEntry.EventType.forNumber(eventType));
+        event.setExecuteTime(record.getLong());
+        event.setPosition(record.getLong());
+        event.setServerId(record.getLong());
+        event.setRawLength(record.getLong());
+        event.setRowsCount(record.getInt());
+        event.setJournalName(getString(record));
+        event.setGtId(getString(record));
+        if (withPayload) {
+            int payloadSize = record.getInt();
+            record.limit(record.position() + payloadSize);
+            ByteString payload = ByteString.copyFrom(record);
+            if (raw) {
+                event.setRawEntry(payload);
+            } else {
+                try {
+                    event.setEntry(CanalEntry.Entry.parseFrom(payload));
+                } catch (InvalidProtocolBufferException e) {
+                    throw new CanalStoreException("parse entry failed: " + file.getAbsolutePath(), e);
+                }
+            }
+        }
+        return event;
+    }
+
+    @Override
+    public long getStorageSize() {
+        return buffer == null ? 0 : buffer.position();
+    }
+
+    @Override
+    public boolean isMemory() {
+        return false;
+    }
+
+    @Override
+    public void release() {
+        // MappedByteBuffer无法主动unmap，删除文件后由GC回收映射内存
+        buffer = null;
+        offsets = null;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            logger.warn("close segment file failed: {}", file.getAbsolutePath(), e);
+        }
+        if (file.exists() && !file.delete()) {
+            logger.warn("delete segment file failed: {}", file.getAbsolutePath());
+        }
+    }
+
+    private void putBytes(byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        short length = record.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
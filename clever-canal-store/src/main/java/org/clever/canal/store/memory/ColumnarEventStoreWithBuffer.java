@@ -0,0 +1,747 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.lang3.StringUtils;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.CanalEntry.EntryType;
+import org.clever.canal.protocol.CanalEntry.EventType;
+import org.clever.canal.protocol.position.EntryPosition;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.protocol.position.Position;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于列式存储的内存store
+ *
+ * <pre>
+ * 1. 环形队列中不保存Event对象，Event的位点信息拆分到多个基本类型数组中(position/executeTime/serverId/...)
+ * 2. journalName、gtId、LogIdentity使用字典保存，环形队列中只保存字典下标(槽位被覆盖时释放引用)
+ * 3. 原始数据(rawEntry/entry)单独保存在payload数组中
+ * 4. get时才根据列数据组装Event对象返回，ack/位点计算直接读取列数据
+ * 5. 加锁方式与{@link MemoryEventStoreWithBuffer}一致(put/get/ack共用一把锁)
+ * </pre>
+ */
+public class ColumnarEventStoreWithBuffer extends AbstractEventStoreWithBuffer {
+    private static final int NULL_ID = -1;
+    private static final byte NULL_TYPE = -1;
+
+    // ================================================================================================= 列数据
+
+    private long[] positions;
+    private long[] executeTimes;
+    private long[] serverIds;
+    private long[] rawLengths;
+    private int[] rowsCounts;
+    private byte[] entryTypes;
+    private byte[] eventTypes;
+    private int[] journalIds;
+    private int[] gtIdIds;
+    private int[] identityIds;
+    /**
+     * raw模式下的原始数据
+     */
+    private ByteString[] rawEntries;
+    /**
+     * 非raw模式下解析binlog数据对应的对象
+     */
+    private CanalEntry.Entry[] entries;
+    /**
+     * 已经回收了原始数据的最后一个sequence
+     */
+    private long reclaimSequence = INIT_SEQUENCE;
+    /**
+     * 位点索引(ack、seek时二分查找position)
+     */
+    private PositionIndex positionIndex;
+
+    // ================================================================================================= 字典
+
+    private final ValueDictionary<String> journalDictionary = new ValueDictionary<>();
+    private final ValueDictionary<String> gtIdDictionary = new ValueDictionary<>();
+    private final ValueDictionary<LogIdentity> identityDictionary = new ValueDictionary<>();
+
+    // ================================================================================================= 记录下put/get/ack操作的三个下标
+
+    /**
+     * 代表当前put操作最后一次写操作发生的位置
+     */
+    private final AtomicLong putSequence = new AtomicLong(INIT_SEQUENCE);
+    /**
+     * 代表当前get操作读取的最后一条的位置
+     */
+    private final AtomicLong getSequence = new AtomicLong(INIT_SEQUENCE);
+    /**
+     * 代表当前ack操作的最后一条的位置
+     */
+    private final AtomicLong ackSequence = new AtomicLong(INIT_SEQUENCE);
+
+    // ================================================================================================= 阻塞put/get操作控制信号
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    public ColumnarEventStoreWithBuffer() {
+    }
+
+    @Override
+    public void start() throws CanalStoreException {
+        super.start();
+        positions = new long[bufferSize];
+        executeTimes = new long[bufferSize];
+        serverIds = new long[bufferSize];
+        rawLengths = new long[bufferSize];
+        rowsCounts = new int[bufferSize];
+        entryTypes = new byte[bufferSize];
+        eventTypes = new byte[bufferSize];
+        journalIds = new int[bufferSize];
+        gtIdIds = new int[bufferSize];
+        identityIds = new int[bufferSize];
+        Arrays.fill(journalIds, NULL_ID);
+        Arrays.fill(gtIdIds, NULL_ID);
+        Arrays.fill(identityIds, NULL_ID);
+        rawEntries = new ByteString[bufferSize];
+        entries = new CanalEntry.Entry[bufferSize];
+        positionIndex = new PositionIndex(bufferSize);
+    }
+
+    @Override
+    public void stop() throws CanalStoreException {
+        super.stop();
+        cleanAll();
+    }
+
+    @Override
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkFreeSlotAt(putSequence.get() + data.size())) {
+                    notFull.await();
+                }
+            } catch (InterruptedException ie) {
+                notFull.signal();
+                throw ie;
+            }
+            doPut(data);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (; ; ) {
+                if (checkFreeSlotAt(putSequence.get() + data.size())) {
+                    doPut(data);
+                    return true;
+                }
+                if (nanos <= 0) {
+                    return false;
+                }
+                try {
+                    nanos = notFull.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notFull.signal();
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!checkFreeSlotAt(putSequence.get() + data.size())) {
+                return false;
+            } else {
+                doPut(data);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Collections.singletonList(data));
+    }
+
+    @Override
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Collections.singletonList(data), timeout, unit);
+    }
+
+    @Override
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Collections.singletonList(data));
+    }
+
+    /**
+     * 执行具体的put操作，把Event拆分到列数据中
+     */
+    private void doPut(List<Event> data) {
+        long current = putSequence.get();
+        long end = current + data.size();
+        long size = 0;
+        for (long next = current + 1; next <= end; next++) {
+            Event event = data.get((int) (next - current - 1));
+            moveToArena(event, next);
+            int index = getIndex(next);
+            // 槽位被覆盖，释放字典引用
+            journalDictionary.release(journalIds[index]);
+            gtIdDictionary.release(gtIdIds[index]);
+            identityDictionary.release(identityIds[index]);
+            positions[index] = event.getPosition();
+            executeTimes[index] = event.getExecuteTime();
+            serverIds[index] = event.getServerId();
+            rawLengths[index] = event.getRawLength();
+            rowsCounts[index] = event.getRowsCount();
+            entryTypes[index] = event.getEntryType() == null ? NULL_TYPE : (byte) event.getEntryType().getNumber();
+            eventTypes[index] = event.getEventType() == null ? NULL_TYPE : (byte) event.getEventType().getNumber();
+            journalIds[index] = journalDictionary.acquire(event.getJournalName());
+            gtIdIds[index] = gtIdDictionary.acquire(event.getGtId());
+            identityIds[index] = identityDictionary.acquire(event.getLogIdentity());
+            rawEntries[index] = event.getRawEntry();
+            entries[index] = event.getEntry();
+            positionIndex.add(next, event.getJournalName(), event.getPosition(), event.getExecuteTime(), event.getRawLength(), event.getRowsCount());
+            size += event.getRawLength();
+        }
+        putSequence.set(end);
+        if (batchMode.isMemSize()) {
+            putMemSize.getAndAdd(size);
+        }
+        profiling(data, OP.PUT);
+        notEmpty.signalAll();
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            try {
+                while (!checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                    notEmpty.await();
+                }
+            } catch (InterruptedException ie) {
+                notEmpty.signal();
+                throw ie;
+            }
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (; ; ) {
+                if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                    return doGet(start, batchSize);
+                }
+                if (nanos <= 0) {
+                    // 如果时间到了，有多少取多少
+                    return doGet(start, batchSize);
+                }
+                try {
+                    nanos = notEmpty.awaitNanos(nanos);
+                } catch (InterruptedException ie) {
+                    notEmpty.signal();
+                    throw ie;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+        long current = getSequence.get();
+        long maxAbleSequence = putSequence.get();
+        long next = current;
+        // 如果startPosition为null，说明是第一次，默认+1处理
+        // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+        if (startPosition == null || !startPosition.getPosition().isIncluded()) {
+            next = next + 1;
+        }
+        if (current >= maxAbleSequence) {
+            return new Events<>();
+        }
+        // 先根据列数据计算出end位置，再组装Event对象
+        final long first = next;
+        long end = first - 1;
+        long memSize = 0;
+        long maxMemSize = batchSize * bufferMemUnit;
+        long last = batchMode.isItemSize() ? Math.min(next + batchSize - 1, maxAbleSequence) : maxAbleSequence;
+        for (; next <= last && (batchMode.isItemSize() || memSize <= maxMemSize); next++) {
+            int index = getIndex(next);
+            if (ddlIsolation && isDdl(toEventType(eventTypes[index]))) {
+                // 如果是ddl隔离，DDL事件单独返回(之前已经有DML事件时不包含当前的DDL事件)
+                if (end < first) {
+                    end = next;
+                }
+                break;
+            }
+            if (batchMode.isMemSize()) {
+                memSize += rawLengths[index];
+            }
+            end = next;
+        }
+        Events<Event> result = new Events<>();
+        List<Event> entryList = result.getEvents();
+        long localExecTime = 0L;
+        int deltaRows = 0;
+        for (long sequence = first; sequence <= end; sequence++) {
+            int index = getIndex(sequence);
+            if (localExecTime == 0 && executeTimes[index] > 0) {
+                localExecTime = executeTimes[index];
+            }
+            deltaRows += rowsCounts[index];
+            entryList.add(toEvent(index));
+        }
+        fillPositionRange(result, end);
+        getSequence.set(end);
+        getMemSize.addAndGet(memSize);
+        notFull.signal();
+        getTableRows.addAndGet(deltaRows);
+        if (localExecTime > 0) {
+            getExecTime.lazySet(localExecTime);
+        }
+        return result;
+    }
+
+    @Override
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long firstSequence = ackSequence.get();
+            if (firstSequence == INIT_SEQUENCE && firstSequence < putSequence.get()) {
+                // 没有ack过数据，最后一次ack为-1，需要移动到下一条,included = false
+                return createPosition(getIndex(firstSequence + 1), false);
+            } else if (firstSequence > INIT_SEQUENCE && firstSequence <= putSequence.get()) {
+                // 最后一次ack的位置数据,需要移动到下一条,included = false
+                return createPosition(getIndex(firstSequence), false);
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long latestSequence = putSequence.get();
+            if (latestSequence > INIT_SEQUENCE) {
+                // ack已经追上了put操作时included = false
+                return createPosition(getIndex(latestSequence), latestSequence != ackSequence.get());
+            } else {
+                // 没有任何数据
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    @Override
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    private void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final LogPosition logPosition = (LogPosition) position;
+            long sequence = ackSequence.get();
+            long next;
+            if (seqId > 0) {
+                // 直接定位到seqId
+                boolean match = seqId > sequence && seqId <= putSequence.get() && checkPosition(getIndex(seqId), logPosition);
+                next = match ? seqId : -1;
+            } else {
+                // 通过位点索引二分查找
+                next = positionIndex.find(sequence + 1, getSequence.get(), logPosition.getPosition(), seq -> checkPosition(getIndex(seq), logPosition));
+            }
+            if (next < 0) {
+                // 找不到对应需要ack的position
+                throw new CanalStoreException("no match ack position" + position.toString());
+            }
+            // 找到对应的position，更新ack seq
+            if (batchMode.isMemSize()) {
+                ackMemSize.addAndGet(positionIndex.memSize(sequence, next));
+            }
+            ackSequence.set(next);
+            if (onAck) {
+                if (batchMode.isMemSize()) {
+                    releaseUntil(next);
+                }
+                releaseArena(next);
+            }
+            notFull.signal();
+            ackTableRows.addAndGet(positionIndex.rowsCount(sequence, next));
+            long localExecTime = 0L;
+            for (long i = sequence + 1; i <= next && localExecTime == 0; i++) {
+                localExecTime = Math.max(executeTimes[getIndex(i)], 0);
+            }
+            if (localExecTime > 0) {
+                ackExecTime.lazySet(localExecTime);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean seek(Position position) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long sequence = ackSequence.get();
+            final LogPosition logPosition = (LogPosition) position;
+            long found = positionIndex.seek(sequence + 1, putSequence.get(), logPosition.getPosition(), seq -> checkPosition(getIndex(seq), logPosition));
+            if (found < 0) {
+                return false;
+            }
+            getSequence.set(found - 1);
+            getMemSize.set(ackMemSize.get() + (batchMode.isMemSize() ? positionIndex.memSize(sequence, found - 1) : 0));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void rollback() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            getSequence.set(ackSequence.get());
+            getMemSize.set(ackMemSize.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanAll() throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            putSequence.set(INIT_SEQUENCE);
+            getSequence.set(INIT_SEQUENCE);
+            ackSequence.set(INIT_SEQUENCE);
+
+            putMemSize.set(0);
+            getMemSize.set(0);
+            ackMemSize.set(0);
+            reclaimSequence = INIT_SEQUENCE;
+            resetArena();
+            journalDictionary.clear();
+            gtIdDictionary.clear();
+            identityDictionary.clear();
+            positions = null;
+            executeTimes = null;
+            serverIds = null;
+            rawLengths = null;
+            rowsCounts = null;
+            entryTypes = null;
+            eventTypes = null;
+            journalIds = null;
+            gtIdIds = null;
+            identityIds = null;
+            rawEntries = null;
+            entries = null;
+            positionIndex = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long currentPutSequence() {
+        return putSequence.get();
+    }
+
+    @Override
+    public long currentAckSequence() {
+        return ackSequence.get();
+    }
+
+    // =================== helper method =================
+
+    /**
+     * 根据列数据组装Event对象
+     */
+    private Event toEvent(int index) {
+        Event event = new Event();
+        event.setLogIdentity(identityDictionary.get(identityIds[index]));
+        event.setRawEntry(rawEntries[index]);
+        event.setEntry(entries[index]);
+        event.setExecuteTime(executeTimes[index]);
+        event.setEntryType(entryTypes[index] == NULL_TYPE ? null : EntryType.forNumber(entryTypes[index]));
+        event.setJournalName(journalDictionary.get(journalIds[index]));
+        event.setPosition(positions[index]);
+        event.setServerId(serverIds[index]);
+        event.setEventType(toEventType(eventTypes[index]));
+        event.setGtId(gtIdDictionary.get(gtIdIds[index]));
+        event.setRawLength(rawLengths[index]);
+        event.setRowsCount(rowsCounts[index]);
+        return event;
+    }
+
+    private static EventType toEventType(byte eventType) {
+        return eventType == NULL_TYPE ? null : EventType.forNumber(eventType);
+    }
+
+    /**
+     * 根据列数据创建对应的Position对象(与CanalEventUtils.createPosition一致)
+     */
+    private LogPosition createPosition(int index, boolean included) {
+        EntryPosition position = new EntryPosition();
+        position.setJournalName(journalDictionary.get(journalIds[index]));
+        position.setPosition(positions[index]);
+        position.setTimestamp(executeTimes[index]);
+        position.setIncluded(included);
+        position.setServerId(serverIds[index]);
+        position.setGtId(gtIdDictionary.get(gtIdIds[index]));
+
+        LogPosition logPosition = new LogPosition();
+        logPosition.setPosition(position);
+        logPosition.setIdentity(identityDictionary.get(identityIds[index]));
+        return logPosition;
+    }
+
+    /**
+     * 判断列数据和position是否相同(与CanalEventUtils.checkPosition一致)
+     */
+    private boolean checkPosition(int index, LogPosition logPosition) {
+        EntryPosition position = logPosition.getPosition();
+        boolean result = position.getTimestamp() == executeTimes[index];
+        boolean exactly = (StringUtils.isBlank(position.getJournalName()) && position.getPosition() == null);
+        // 精确匹配
+        if (!exactly) {
+            result &= position.getPosition() != null && position.getPosition() == positions[index];
+            if (result) {
+                // short path
+                result = StringUtils.equals(journalDictionary.get(journalIds[index]), position.getJournalName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 释放sequence之前(包含)的原始数据，位点信息保留在列数据中
+     */
+    private long releaseUntil(long sequence) {
+        if (sequence <= reclaimSequence) {
+            return 0;
+        }
+        long size = 0;
+        // 延迟回收时，已经被put覆盖的位置不能再处理
+        final long overwritten = putSequence.get() - bufferSize;
+        for (long i = Math.max(reclaimSequence, overwritten) + 1; i <= sequence; i++) {
+            int index = getIndex(i);
+            if (rawEntries[index] != null || entries[index] != null) {
+                size += rawLengths[index];
+                rawEntries[index] = null;
+                entries[index] = null;
+            }
+        }
+        reclaimSequence = sequence;
+        return size;
+    }
+
+    /**
+     * 回收已经ack的数据占用的内存(需要持有lock)
+     */
+    private long reclaimUntilAck() {
+        if (positionIndex == null) {
+            return 0;
+        }
+        final long sequence = ackSequence.get();
+        return releaseUntil(sequence) + releaseArena(sequence);
+    }
+
+    @Override
+    public long reclaim() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return reclaimUntilAck();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 查询是否有空位
+     */
+    private boolean checkFreeSlotAt(final long sequence) {
+        boolean free = hasFreeSlotAt(sequence);
+        if (!free && onFull) {
+            reclaimedSize.addAndGet(reclaimUntilAck());
+        }
+        return free;
+    }
+
+    private boolean hasFreeSlotAt(final long sequence) {
+        final long wrapPoint = sequence - bufferSize;
+        final long minPoint = Math.min(ackSequence.get(), getSequence.get());
+        // 刚好追上一轮
+        if (wrapPoint > minPoint) {
+            return false;
+        } else {
+            // 在bufferSize模式上，再增加memSize控制
+            if (batchMode.isMemSize()) {
+                final long memSize = putMemSize.get() - ackMemSize.get();
+                return memSize < bufferSize * bufferMemUnit;
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            if (startPosition == null || !startPosition.getPosition().isIncluded()) {
+                next = next + 1;
+            }
+            return current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence;
+        } else {
+            long currentSize = getMemSize.get();
+            long maxAbleSize = putMemSize.get();
+            if (batchSize <= 1) {
+                // batchSize<=1时表示消费者对实时性要求较高，有数据就get
+                return maxAbleSize - currentSize > 0;
+            }
+            return maxAbleSize - currentSize >= batchSize * bufferMemUnit;
+        }
+    }
+
+    /**
+     * 带引用计数的值字典，环形队列中只保存值的下标，引用计数为0时下标被回收重复使用
+     */
+    private static class ValueDictionary<T> {
+        private final Map<T, Integer> ids = new HashMap<>();
+        private final ArrayList<T> values = new ArrayList<>();
+        private int[] refs = new int[16];
+        private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+
+        private int acquire(T value) {
+            if (value == null) {
+                return NULL_ID;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = freeIds.pollFirst();
+                if (id == null) {
+                    id = values.size();
+                    values.add(value);
+                    if (id >= refs.length) {
+                        refs = Arrays.copyOf(refs, refs.length << 1);
+                    }
+                } else {
+                    values.set(id, value);
+                }
+                ids.put(value, id);
+            }
+            refs[id]++;
+            return id;
+        }
+
+        private T get(int id) {
+            return id == NULL_ID ? null : values.get(id);
+        }
+
+        private void release(int id) {
+            if (id == NULL_ID) {
+                return;
+            }
+            if (--refs[id] == 0) {
+                ids.remove(values.get(id));
+                values.set(id, null);
+                freeIds.addLast(id);
+            }
+        }
+
+        private void clear() {
+            ids.clear();
+            values.clear();
+            freeIds.clear();
+            Arrays.fill(refs, 0);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * 存放原始数据(rawEntry)的堆外内存池
+ *
+ * <pre>
+ * 1. 堆外内存按固定大小的slab申请，数据按put顺序追加写入当前slab，写满后切换到下一个slab
+ * 2. 每个slab记录写入的最后一条数据的sequence，ack越过该sequence之后slab被回收，放入空闲队列重复使用
+ * 3. 返回的ByteString直接包装slab中的一段内存(不拷贝)，slab被回收之后其内容会被覆盖，所以只能在ack之前使用
+ * 4. 单条数据超过slabSize或者内存池已满时返回null，由调用方继续使用堆内存
+ * </pre>
+ */
+public class DirectEntryArena {
+    /**
+     * 单个slab的大小
+     */
+    @Getter
+    private final int slabSize;
+    /**
+     * 最多可以申请的slab数量
+     */
+    private final int maxSlabs;
+    /**
+     * 正在使用的slab(按申请的顺序)
+     */
+    private final ArrayDeque<Slab> usedSlabs = new ArrayDeque<>();
+    /**
+     * 已回收的slab
+     */
+    private final ArrayDeque<ByteBuffer> freeSlabs = new ArrayDeque<>();
+    /**
+     * 当前写入的slab
+     */
+    private Slab current;
+    /**
+     * 已经申请的slab数量
+     */
+    @Getter
+    private int allocatedSlabs = 0;
+
+    /**
+     * @param slabSize 单个slab的大小
+     * @param maxSize  堆外内存的最大使用量
+     */
+    public DirectEntryArena(int slabSize, long maxSize) {
+        if (slabSize <= 0) {
+            throw new IllegalArgumentException("slabSize must be positive");
+        }
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / slabSize));
+    }
+
+    /**
+     * 把数据拷贝到堆外内存
+     *
+     * @param data     原始数据
+     * @param sequence 数据在store中的sequence
+     * @return 包装了堆外内存的ByteString，内存不足时返回null
+     */
+    public synchronized ByteString allocate(ByteString data, long sequence) {
+        final int size = data.size();
+        if (size > slabSize) {
+            return null;
+        }
+        if (current == null || current.buffer.remaining() < size) {
+            ByteBuffer buffer = freeSlabs.pollFirst();
+            if (buffer == null) {
+                if (allocatedSlabs >= maxSlabs) {
+                    return null;
+                }
+                buffer = ByteBuffer.allocateDirect(slabSize);
+                allocatedSlabs++;
+            }
+            current = new Slab(buffer);
+            usedSlabs.addLast(current);
+        }
+        ByteBuffer buffer = current.buffer;
+        int offset = buffer.position();
+        data.copyTo(buffer);
+        current.lastSequence = sequence;
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + size);
+        return UnsafeByteOperations.unsafeWrap(slice.slice());
+    }
+
+    /**
+     * 回收sequence之前(包含)的数据占用的slab
+     */
+    public synchronized void release(long sequence) {
+        Slab slab;
+        while ((slab = usedSlabs.peekFirst()) != null && slab.lastSequence <= sequence) {
+            usedSlabs.pollFirst();
+            if (slab == current) {
+                current = null;
+            }
+            slab.buffer.clear();
+            freeSlabs.addLast(slab.buffer);
+        }
+    }
+
+    /**
+     * 回收所有的slab
+     */
+    public synchronized void releaseAll() {
+        release(Long.MAX_VALUE);
+    }
+
+    /**
+     * 正在使用的堆外内存大小
+     */
+    public synchronized long getUsedSize() {
+        return (long) usedSlabs.size() * slabSize;
+    }
+
+    private static class Slab {
+        private final ByteBuffer buffer;
+        /**
+         * 写入当前slab的最后一条数据的sequence
+         */
+        private long lastSequence = -1;
+
+        private Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
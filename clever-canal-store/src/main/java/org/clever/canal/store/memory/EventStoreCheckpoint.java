@@ -0,0 +1,186 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.Getter;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.model.Event;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * store中未ack数据的检查点文件
+ *
+ * <pre>
+ * 1. 正常停止时把最后一次ack的数据(只保留位点信息)以及之后未ack的数据写入文件，启动时重新加载，客户端可以立即继续消费
+ * 2. 数据按照sequence顺序保存，第一条数据是最后一次ack的数据(没有ack过时为空)
+ * 3. raw模式保存原始数据，非raw模式保存Entry序列化之后的数据
+ * 4. 先写临时文件再重命名，避免停止过程中异常导致文件不完整
+ * </pre>
+ */
+public class EventStoreCheckpoint {
+    private static final int MAGIC = 0xCA7A1C0D;
+    private static final int VERSION = 1;
+    private static final int NULL = -1;
+
+    /**
+     * 最后一次ack的sequence
+     */
+    @Getter
+    private final long ackSequence;
+    /**
+     * 最后一次ack时累计的memSize
+     */
+    @Getter
+    private final long ackMemSize;
+    /**
+     * 最后一次ack的数据(没有ack过时为null)
+     */
+    @Getter
+    private final Event ackEvent;
+    /**
+     * 未ack的数据
+     */
+    @Getter
+    private final List<Event> events;
+
+    public EventStoreCheckpoint(long ackSequence, long ackMemSize, Event ackEvent, List<Event> events) {
+        this.ackSequence = ackSequence;
+        this.ackMemSize = ackMemSize;
+        this.ackEvent = ackEvent;
+        this.events = events;
+    }
+
+    /**
+     * 写入检查点文件
+     */
+    public void write(File file) throws CanalStoreException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("create dir failed: " + dir);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(ackSequence);
+                out.writeLong(ackMemSize);
+                out.writeBoolean(ackEvent != null);
+                if (ackEvent != null) {
+                    writeEvent(out, ackEvent, false);
+                }
+                out.writeInt(events.size());
+                for (Event event : events) {
+                    writeEvent(out, event, true);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new CanalStoreException("write store checkpoint failed: " + file, e);
+        }
+    }
+
+    /**
+     * 读取检查点文件
+     *
+     * @param raw 是否以原始数据的方式保存
+     */
+    public static EventStoreCheckpoint read(File file, boolean raw) throws CanalStoreException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new CanalStoreException("unsupported store checkpoint: " + file);
+            }
+            long ackSequence = in.readLong();
+            long ackMemSize = in.readLong();
+            Event ackEvent = in.readBoolean() ? readEvent(in, raw) : null;
+            int size = in.readInt();
+            List<Event> events = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                events.add(readEvent(in, raw));
+            }
+            return new EventStoreCheckpoint(ackSequence, ackMemSize, ackEvent, events);
+        } catch (IOException e) {
+            throw new CanalStoreException("read store checkpoint failed: " + file, e);
+        }
+    }
+
+    private static void writeEvent(DataOutputStream out, Event event, boolean withData) throws IOException {
+        LogIdentity logIdentity = event.getLogIdentity();
+        InetSocketAddress address = logIdentity == null ? null : logIdentity.getSourceAddress();
+        writeString(out, address == null ? null : address.getHostString());
+        out.writeInt(address == null ? NULL : address.getPort());
+        out.writeLong(logIdentity == null || logIdentity.getSlaveId() == null ? NULL : logIdentity.getSlaveId());
+        writeString(out, event.getJournalName());
+        out.writeLong(event.getPosition());
+        out.writeLong(event.getServerId());
+        out.writeLong(event.getExecuteTime());
+        out.writeInt(event.getEntryType() == null ? NULL : event.getEntryType().getNumber());
+        out.writeInt(event.getEventType() == null ? NULL : event.getEventType().getNumber());
+        writeString(out, event.getGtId());
+        out.writeLong(event.getRawLength());
+        out.writeInt(event.getRowsCount());
+        ByteString data = null;
+        if (withData) {
+            data = event.getRawEntry() != null ? event.getRawEntry() : event.getEntry() != null ? event.getEntry().toByteString() : null;
+        }
+        out.writeInt(data == null ? NULL : data.size());
+        if (data != null) {
+            data.writeTo(out);
+        }
+    }
+
+    private static Event readEvent(DataInputStream in, boolean raw) throws IOException {
+        Event event = new Event();
+        String host = readString(in);
+        int port = in.readInt();
+        long slaveId = in.readLong();
+        event.setLogIdentity(new LogIdentity(host == null ? null : new InetSocketAddress(host, port), slaveId));
+        event.setJournalName(readString(in));
+        event.setPosition(in.readLong());
+        event.setServerId(in.readLong());
+        event.setExecuteTime(in.readLong());
+        int entryType = in.readInt();
+        event.setEntryType(entryType == NULL ? null : CanalEntry.EntryType.forNumber(entryType));
+        int eventType = in.readInt();
+        event.setEventType(eventType == NULL ? null : CanalEntry.EventType.forNumber(eventType));
+        event.setGtId(readString(in));
+        event.setRawLength(in.readLong());
+        event.setRowsCount(in.readInt());
+        int length = in.readInt();
+        if (length >= 0) {
+            byte[] data = new byte[length];
+            in.readFully(data);
+            if (raw) {
+                event.setRawEntry(ByteString.copyFrom(data));
+            } else {
+                try {
+                    event.setEntry(CanalEntry.Entry.parseFrom(data));
+                } catch (InvalidProtocolBufferException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+        return event;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
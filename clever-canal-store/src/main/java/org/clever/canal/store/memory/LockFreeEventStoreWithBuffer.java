@@ -0,0 +1,557 @@
+package org.clever.canal.store.memory;
+
+import com.lmax.disruptor.Sequence;
+import lombok.Getter;
+import lombok.Setter;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.protocol.position.Position;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.helper.CanalEventUtils;
+import org.clever.canal.store.memory.wait.BlockingStoreWaitStrategy;
+import org.clever.canal.store.memory.wait.StoreWaitStrategy;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于Disruptor风格Sequence的无锁内存store(单生产者/多消费者)
+ *
+ * <pre>
+ * 与{@linkplain MemoryEventStoreWithBuffer}的区别：
+ * 1. put/get/ack三个游标使用缓存行填充的{@linkplain Sequence}，避免伪共享
+ * 2. put/get的快速路径不加锁，生产者先写数据再发布putSequence，消费者通过CAS推进getSequence
+ * 3. 只有在阻塞等待(store满/数据不足)时才使用{@linkplain StoreWaitStrategy}，等待策略可插拔
+ * 4. 多个生产者之间通过putLock串行化(正常只有sink一个线程，不会产生竞争)，ack/rollback之间通过ackLock串行化，二者都不会与get竞争
+ * 5. BatchMode(ITEM_SIZE/MEM_SIZE)、ddlIsolation以及ack/rollback的语义与{@linkplain MemoryEventStoreWithBuffer}保持一致
+ * 6. get不累加getMemSize(CAS与累加不是原子操作，会与rollback/seek的重置交错)，已get的数据大小通过位点索引的累计memSize计算
+ * </pre>
+ */
+public class LockFreeEventStoreWithBuffer extends AbstractEventStoreWithBuffer {
+    /**
+     * 一直等待
+     */
+    private static final long WAIT_FOREVER = -1;
+    /**
+     * 环形队列数据数组
+     */
+    private volatile Event[] entries;
+    /**
+     * 位点索引(seek时二分查找position)
+     */
+    private volatile PositionIndex positionIndex;
+
+    // ================================================================================================= 记录下put/get/ack操作的三个下标(缓存行填充)
+
+    /**
+     * 代表当前put操作最后一次写操作发生的位置
+     */
+    @Getter
+    private final Sequence putSequence = new Sequence(INIT_SEQUENCE);
+    /**
+     * 代表当前get操作读取的最后一条的位置
+     */
+    @Getter
+    private final Sequence getSequence = new Sequence(INIT_SEQUENCE);
+    /**
+     * 代表当前ack操作的最后一条的位置
+     */
+    @Getter
+    private final Sequence ackSequence = new Sequence(INIT_SEQUENCE);
+
+    // ================================================================================================= 阻塞put/get操作控制
+
+    /**
+     * 阻塞put/get时的等待策略
+     */
+    @Getter
+    @Setter
+    private StoreWaitStrategy waitStrategy = new BlockingStoreWaitStrategy();
+    /**
+     * 生产者之间的互斥锁(不与get/ack竞争)
+     */
+    private final ReentrantLock putLock = new ReentrantLock();
+    /**
+     * ack/rollback/cleanAll之间的互斥锁(不与put/get竞争)
+     */
+    private final ReentrantLock ackLock = new ReentrantLock();
+
+    public LockFreeEventStoreWithBuffer() {
+    }
+
+    @Override
+    public void start() throws CanalStoreException {
+        super.start();
+        entries = new Event[bufferSize];
+        positionIndex = new PositionIndex(bufferSize);
+    }
+
+    @Override
+    public void stop() throws CanalStoreException {
+        super.stop();
+        cleanAll();
+    }
+
+    @Override
+    public void put(List<Event> data) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        final ReentrantLock putLock = this.putLock;
+        putLock.lockInterruptibly();
+        try {
+            // 检查是否有空位
+            waitStrategy.waitFor(() -> checkFreeSlotAt(putSequence.get() + data.size()), WAIT_FOREVER);
+            doPut(data);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean put(List<Event> data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        final ReentrantLock putLock = this.putLock;
+        putLock.lockInterruptibly();
+        try {
+            if (waitStrategy.waitFor(() -> checkFreeSlotAt(putSequence.get() + data.size()), Math.max(unit.toNanos(timeout), 0))) {
+                doPut(data);
+                return true;
+            }
+            return false;
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryPut(List<Event> data) throws CanalStoreException {
+        if (data == null || data.isEmpty()) {
+            return true;
+        }
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            if (!checkFreeSlotAt(putSequence.get() + data.size())) {
+                return false;
+            } else {
+                doPut(data);
+                return true;
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Event data) throws InterruptedException, CanalStoreException {
+        put(Collections.singletonList(data));
+    }
+
+    @Override
+    public boolean put(Event data, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return put(Collections.singletonList(data), timeout, unit);
+    }
+
+    @Override
+    public boolean tryPut(Event data) throws CanalStoreException {
+        return tryPut(Collections.singletonList(data));
+    }
+
+    /**
+     * 执行具体的put操作(调用方持有putLock)
+     */
+    private void doPut(List<Event> data) {
+        final Event[] entries = this.entries;
+        long current = putSequence.get();
+        long end = current + data.size();
+        // 先写数据，再发布putSequence(Sequence.set带有store屏障)，保证get线程看到putSequence时数据已经可见
+        for (long next = current + 1; next <= end; next++) {
+            Event event = data.get((int) (next - current - 1));
+            moveToArena(event, next);
+            entries[getIndex(next)] = event;
+            positionIndex.add(next, event.getJournalName(), event.getPosition(), event.getExecuteTime(), calculateSize(event), event.getRowsCount());
+        }
+        // 先累加memSize再发布putSequence，get线程在MEM_SIZE模式下才不会看到数据却拿不到对应的memSize
+        if (batchMode.isMemSize()) {
+            long size = 0;
+            for (Event event : data) {
+                size += calculateSize(event);
+            }
+            putMemSize.getAndAdd(size);
+        }
+        putSequence.set(end);
+        profiling(data, OP.PUT);
+        // tell other threads that store is not empty
+        waitStrategy.signalAll();
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        waitStrategy.waitFor(() -> checkUnGetSlotAt((LogPosition) start, batchSize), WAIT_FOREVER);
+        return doGet(start, batchSize);
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        // 如果时间到了，有多少取多少
+        waitStrategy.waitFor(() -> checkUnGetSlotAt((LogPosition) start, batchSize), Math.max(unit.toNanos(timeout), 0));
+        return doGet(start, batchSize);
+    }
+
+    @Override
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        return doGet(start, batchSize);
+    }
+
+    /**
+     * 无锁get，多个消费者通过CAS竞争getSequence，竞争失败时重新读取游标重试
+     */
+    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+        LogPosition startPosition = (LogPosition) start;
+        retry:
+        for (; ; ) {
+            final Event[] entries = this.entries;
+            if (entries == null) {
+                // 已经cleanAll
+                return new Events<>();
+            }
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            long end = current;
+            // 如果startPosition为null，说明是第一次，默认+1处理
+            // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            if (startPosition == null || !startPosition.getPosition().isIncluded()) {
+                next = next + 1;
+            }
+            if (current >= maxAbleSequence) {
+                return new Events<>();
+            }
+            Events<Event> result = new Events<>();
+            List<Event> entryList = result.getEvents();
+            long memSize = 0;
+            if (batchMode.isItemSize()) {
+                end = Math.min((next + batchSize - 1), maxAbleSequence);
+                // 提取数据并返回
+                for (; next <= end; next++) {
+                    Event event = entries[getIndex(next)];
+                    if (event == null) {
+                        // 其他消费者已经get并ack(MEM_SIZE模式下会清空slot)，重新读取游标
+                        continue retry;
+                    }
+                    if (ddlIsolation && isDdl(event.getEventType())) {
+                        // 如果是ddl隔离，直接返回
+                        if (entryList.size() == 0) {
+                            entryList.add(event);// 如果没有DML事件，加入当前的DDL事件
+                            end = next; // 更新end为当前
+                        } else {
+                            // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                            end = next - 1; // next-1一定大于current，不需要判断
+                        }
+                        break;
+                    } else {
+                        entryList.add(event);
+                    }
+                }
+            } else {
+                long maxMemSize = batchSize * bufferMemUnit;
+                for (; memSize <= maxMemSize && next <= maxAbleSequence; next++) {
+                    // 永远保证可以取出第一条的记录，避免死锁
+                    Event event = entries[getIndex(next)];
+                    if (event == null) {
+                        // 其他消费者已经get并ack(MEM_SIZE模式下会清空slot)，重新读取游标
+                        continue retry;
+                    }
+                    if (ddlIsolation && isDdl(event.getEventType())) {
+                        // 如果是ddl隔离，直接返回
+                        if (entryList.size() == 0) {
+                            entryList.add(event);// 如果没有DML事件，加入当前的DDL事件
+                            end = next; // 更新end为当前
+                        } else {
+                            // 如果之前已经有DML事件，直接返回了，因为不包含当前next这记录，需要回退一个位置
+                            end = next - 1; // next-1一定大于current，不需要判断
+                        }
+                        break;
+                    } else {
+                        entryList.add(event);
+                        memSize += calculateSize(event);
+                        end = next;// 记录end位点
+                    }
+                }
+            }
+            if (entryList.isEmpty()) {
+                return result;
+            }
+            if (getSequence.compareAndSet(current, end)) {
+                fillPositionRange(result, end);
+                waitStrategy.signalAll();
+                profiling(result.getEvents(), OP.GET);
+                return result;
+            }
+            // 其他消费者已经推进了getSequence或者发生了rollback，重新读取游标
+        }
+    }
+
+    @Override
+    public LogPosition getFirstPosition() throws CanalStoreException {
+        final Event[] entries = this.entries;
+        if (entries == null) {
+            return null;
+        }
+        long firstSequence = ackSequence.get();
+        long latestSequence = putSequence.get();
+        if (firstSequence == INIT_SEQUENCE && firstSequence < latestSequence) {
+            // 没有ack过数据
+            Event event = entries[getIndex(firstSequence + 1)];
+            // 最后一次ack为-1，需要移动到下一条,included = false
+            return CanalEventUtils.createPosition(event, false);
+        } else if (firstSequence > INIT_SEQUENCE && firstSequence <= latestSequence) {
+            // ack未追上put操作 或者 已经追上(store中没有数据)
+            Event event = entries[getIndex(firstSequence)];
+            // 最后一次ack的位置数据,需要移动到下一条,included = false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
+    @Override
+    public LogPosition getLatestPosition() throws CanalStoreException {
+        final Event[] entries = this.entries;
+        if (entries == null) {
+            return null;
+        }
+        long latestSequence = putSequence.get();
+        if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+            Event event = entries[getIndex(latestSequence)];
+            // 最后一次写入的数据，最后一条未消费的数据
+            return CanalEventUtils.createPosition(event, true);
+        } else if (latestSequence > INIT_SEQUENCE) {
+            // ack已经追上了put操作
+            Event event = entries[getIndex(latestSequence)];
+            // 最后一次写入的数据，included = false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
+    @Override
+    public void ack(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    @Override
+    public void ack(Position position, Long seqId) throws CanalStoreException {
+        cleanUntil(position, seqId);
+    }
+
+    @Override
+    public void cleanUntil(Position position) throws CanalStoreException {
+        cleanUntil(position, -1L);
+    }
+
+    private void cleanUntil(Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock ackLock = this.ackLock;
+        ackLock.lock();
+        try {
+            final Event[] entries = this.entries;
+            final LogPosition logPosition = (LogPosition) position;
+            long sequence = ackSequence.get();
+            long next;
+            if (seqId > 0) {
+                // 直接定位到seqId
+                boolean match = seqId > sequence && seqId <= putSequence.get() && CanalEventUtils.checkPosition(entries[getIndex(seqId)], logPosition);
+                next = match ? seqId : -1;
+            } else {
+                // 通过位点索引二分查找
+                next = positionIndex.find(sequence + 1, getSequence.get(), logPosition.getPosition(), seq -> CanalEventUtils.checkPosition(entries[getIndex(seq)], logPosition));
+            }
+            if (next < 0) {// 找不到对应需要ack的position
+                throw new CanalStoreException("no match ack position" + position.toString());
+            }
+            // 找到对应的position，更新ack seq
+            Event event = entries[getIndex(next)];
+            // 只读取已经发布的sequence: next之后的索引可能正在被put写入，next本身的数据直接计算
+            if (batchMode.isMemSize()) {
+                ackMemSize.addAndGet(positionIndex.memSize(sequence, next - 1) + calculateSize(event));
+                // 尝试清空buffer中的内存，将ack之前的内存全部释放掉(必须在推进ackSequence之前，否则会与put新写入的数据冲突)
+                for (long index = sequence + 1; index < next; index++) {
+                    entries[getIndex(index)] = null;// 设置为null
+                }
+                // 考虑getFirstPosition/getLastPosition会获取最后一次ack的position信息
+                // ack清理的时候只处理entry=null，释放内存
+                event.clearData();
+            }
+            ackSequence.set(next);
+            releaseArena(next);
+            ackTableRows.addAndGet(positionIndex.rowsCount(sequence, next - 1) + event.getRowsCount());
+            long localExecTime = 0L;
+            for (long index = sequence + 1; index <= next && localExecTime == 0; index++) {
+                localExecTime = Math.max(positionIndex.getExecuteTime(index), 0);
+            }
+            if (localExecTime > 0) {
+                ackExecTime.lazySet(localExecTime);
+            }
+            waitStrategy.signalAll();
+        } finally {
+            ackLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean seek(Position position) throws CanalStoreException {
+        final ReentrantLock ackLock = this.ackLock;
+        ackLock.lock();
+        try {
+            // 只读取已经发布的sequence，不需要持有putLock
+            long sequence = ackSequence.get();
+            final LogPosition logPosition = (LogPosition) position;
+            long found = positionIndex.seek(sequence + 1, putSequence.get(), logPosition.getPosition(), seq -> CanalEventUtils.checkPosition(entries[getIndex(seq)], logPosition));
+            if (found < 0) {
+                return false;
+            }
+            getSequence.set(found - 1);
+            waitStrategy.signalAll();
+            return true;
+        } finally {
+            ackLock.unlock();
+        }
+    }
+
+    @Override
+    public void rollback() throws CanalStoreException {
+        final ReentrantLock ackLock = this.ackLock;
+        ackLock.lock();
+        try {
+            getSequence.set(ackSequence.get());
+            waitStrategy.signalAll();
+        } finally {
+            ackLock.unlock();
+        }
+    }
+
+    @Override
+    public void cleanAll() throws CanalStoreException {
+        final ReentrantLock putLock = this.putLock;
+        final ReentrantLock ackLock = this.ackLock;
+        putLock.lock();
+        ackLock.lock();
+        try {
+            putSequence.set(INIT_SEQUENCE);
+            getSequence.set(INIT_SEQUENCE);
+            ackSequence.set(INIT_SEQUENCE);
+
+            putMemSize.set(0);
+            ackMemSize.set(0);
+            resetArena();
+            entries = null;
+            positionIndex = null;
+        } finally {
+            ackLock.unlock();
+            putLock.unlock();
+        }
+    }
+
+    /**
+     * 已经get的数据大小的快照(不维护getMemSize)
+     */
+    @Override
+    public AtomicLong getGetMemSize() {
+        return new AtomicLong(currentGetMemSize());
+    }
+
+    @Override
+    public long currentPutSequence() {
+        return putSequence.get();
+    }
+
+    @Override
+    public long currentAckSequence() {
+        return ackSequence.get();
+    }
+
+    // =================== helper method =================
+
+    private long getMinimumGetOrAck() {
+        long get = getSequence.get();
+        long ack = ackSequence.get();
+        return Math.min(ack, get);
+    }
+
+    /**
+     * 已经get的数据的累计memSize(MEM_SIZE模式)，通过getSequence之后第一条数据在位点索引中的累计memSize计算
+     */
+    long currentGetMemSize() {
+        final PositionIndex positionIndex = this.positionIndex;
+        long maxAbleSequence = putSequence.get();
+        long current = getSequence.get();
+        if (positionIndex == null) {
+            return 0;
+        }
+        if (current >= maxAbleSequence) {
+            // 已经get了所有数据
+            return putMemSize.get();
+        }
+        return positionIndex.publishedMemSizeBefore(current + 1);
+    }
+
+    /**
+     * 查询是否有空位
+     */
+    private boolean checkFreeSlotAt(final long sequence) {
+        final long wrapPoint = sequence - bufferSize;
+        final long minPoint = getMinimumGetOrAck();
+        // 刚好追上一轮
+        if (wrapPoint > minPoint) {
+            return false;
+        } else {
+            // 在bufferSize模式上，再增加memSize控制
+            if (batchMode.isMemSize()) {
+                final long memSize = putMemSize.get() - ackMemSize.get();
+                return memSize < bufferSize * bufferMemUnit;
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 检查是否存在需要get的数据,并且数量>=batchSize
+     */
+    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+        if (batchMode.isItemSize()) {
+            long current = getSequence.get();
+            long maxAbleSequence = putSequence.get();
+            long next = current;
+            // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
+            if (startPosition == null || !startPosition.getPosition().isIncluded()) {
+                // 少一条数据
+                next = next + 1;
+            }
+            return current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence;
+        } else {
+            // 处理内存大小判断
+            long currentSize = currentGetMemSize();
+            long maxAbleSize = putMemSize.get();
+            if (batchSize <= 1) {
+                // 当batchSize<=1时表示消费者对实时性要求较高，有数据就get(尽可能的触发get)
+                return maxAbleSize - currentSize > 0;
+            }
+            return maxAbleSize - currentSize >= batchSize * bufferMemUnit;
+        }
+    }
+}
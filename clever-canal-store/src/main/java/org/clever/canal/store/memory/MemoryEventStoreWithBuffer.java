@@ -3,22 +3,22 @@ package org.clever.canal.store.memory;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
-import org.clever.canal.protocol.CanalEntry;
-import org.clever.canal.protocol.CanalEntry.EventType;
+import org.clever.canal.protocol.CanalEntry.EntryType;
+import org.clever.canal.protocol.ClientIdentity;
 import org.clever.canal.protocol.position.LogPosition;
 import org.clever.canal.protocol.position.Position;
-import org.clever.canal.protocol.position.PositionRange;
-import org.clever.canal.store.AbstractCanalStoreScavenge;
-import org.clever.canal.store.CanalEventStore;
-import org.clever.canal.store.CanalStoreScavenge;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
+import org.clever.canal.store.CanalMultiClientEventStore;
 import org.clever.canal.store.exception.CanalStoreException;
 import org.clever.canal.store.helper.CanalEventUtils;
-import org.clever.canal.store.model.BatchMode;
 import org.clever.canal.store.model.Event;
 import org.clever.canal.store.model.Events;
+import org.clever.canal.store.model.LaggardPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.List;
+import java.io.File;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
@@ -31,33 +31,25 @@ import java.util.concurrent.locks.ReentrantLock;
  * 变更记录：
  * 1. 新增BatchMode类型，支持按内存大小获取批次数据，内存大小更加可控.
  *   a. put操作，会首先根据bufferSize进行控制，然后再进行bufferSize * bufferMemUnit进行控制. 因存储的内容是以Event，如果纯依赖于memSize进行控制，会导致RingBuffer出现动态伸缩
+ * 2. 支持多客户端独立消费({@linkplain CanalMultiClientEventStore})，每个ClientIdentity拥有独立的get/ack游标.
+ *   a. 没有客户端订阅时，使用默认游标(getSequence/ackSequence)，与原有单游标的行为一致
+ *   b. 存在客户端订阅时，只有最慢的客户端ack之后，ringBuffer中的空间才会被回收
+ *   c. 最慢的客户端阻塞put时，根据laggardPolicy决定等待还是剔除该客户端
+ * 3. 设置checkpointDir时，正常停止会把未ack的数据保存到检查点文件({@linkplain EventStoreCheckpoint})，启动时重新加载.
+ *   a. 只保存到最后一个完整的事务(TRANSACTION_END)，之后不完整的事务由parser重新解析
+ *   b. 恢复之后的位置通过{@link #getRestoredPosition()}提供给parser，parser从这个位置继续解析
  * </pre>
  */
-public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge implements CanalEventStore<Event>, CanalStoreScavenge {
-    /**
-     * 初始状态下环形队列的位置
-     */
-    private static final long INIT_SEQUENCE = -1;
-    /**
-     * 环形队列的大小
-     */
-    @Getter
-    @Setter
-    private int bufferSize = 16 * 1024;
-    /**
-     * memSize的单位，默认为1kb大小
-     */
-    @Getter
-    @Setter
-    private int bufferMemUnit = 1024;
-    /**
-     * 用于对putSequence、getSequence、ackSequence进行取余操作，canal通过位操作进行取余，其值为 bufferSize-1
-     */
-    private int indexMask;
+public class MemoryEventStoreWithBuffer extends AbstractEventStoreWithBuffer implements CanalMultiClientEventStore<Event> {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryEventStoreWithBuffer.class);
     /**
      * 环形队列数据数组
      */
     private Event[] entries;
+    /**
+     * 位点索引(ack、seek时二分查找position)
+     */
+    private PositionIndex positionIndex;
 
     // ================================================================================================= 记录下put/get/ack操作的三个下标
 
@@ -77,59 +69,44 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     @Getter
     private AtomicLong ackSequence = new AtomicLong(INIT_SEQUENCE);
 
-    // ================================================================================================= 记录下put/get/ack操作的三个memSize大小
+    // ================================================================================================= 多客户端游标
 
     /**
-     * put操作的memSize大小
-     */
-    @Getter
-    private AtomicLong putMemSize = new AtomicLong(0);
-    /**
-     * get操作的memSize大小
+     * 多客户端消费时，最慢的客户端阻塞数据写入的处理策略
      */
     @Getter
-    private AtomicLong getMemSize = new AtomicLong(0);
+    @Setter
+    private LaggardPolicy laggardPolicy = LaggardPolicy.BLOCK;
     /**
-     * ack操作的memSize大小
+     * 默认游标(没有客户端订阅时使用)
      */
-    @Getter
-    private AtomicLong ackMemSize = new AtomicLong(0);
-
-    // ================================================================================================= 记录下put/get/ack操作的三个execTime
-
+    private final Cursor defaultCursor = new Cursor(null, getSequence, ackSequence, getMemSize, ackMemSize);
     /**
-     * put操作的execTime
+     * 客户端游标 ClientIdentity --> Cursor
      */
-    @Getter
-    private AtomicLong putExecTime = new AtomicLong(System.currentTimeMillis());
+    private final Map<ClientIdentity, Cursor> clientCursors = new LinkedHashMap<>();
     /**
-     * get操作的execTime
+     * 被剔除的客户端(需要重新订阅)
      */
-    @Getter
-    private AtomicLong getExecTime = new AtomicLong(System.currentTimeMillis());
+    private final Set<ClientIdentity> evictedClients = new HashSet<>();
     /**
-     * ack操作的execTime
+     * 已经回收(释放内存)的最后一条数据的位置
      */
-    @Getter
-    private AtomicLong ackExecTime = new AtomicLong(System.currentTimeMillis());
+    private long reclaimSequence = INIT_SEQUENCE;
 
-    // ================================================================================================= 记录下put/get/ack操作的三个table rows
+    // ================================================================================================= 检查点
 
     /**
-     * put操作的table rows
-     */
-    @Getter
-    private AtomicLong putTableRows = new AtomicLong(0);
-    /**
-     * get操作的table rows
+     * 检查点文件目录，为空表示不启用
      */
     @Getter
-    private AtomicLong getTableRows = new AtomicLong(0);
+    @Setter
+    private String checkpointDir;
     /**
-     * ack操作的table rows
+     * 从检查点恢复的最后一条数据的位置(没有恢复数据时为null)
      */
     @Getter
-    private AtomicLong ackTableRows = new AtomicLong(0);
+    private volatile LogPosition restoredPosition;
 
     // ================================================================================================= 阻塞put/get操作控制信号
 
@@ -146,44 +123,28 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
      */
     private Condition notEmpty = lock.newCondition();
 
-    // ================================================================================================= MemoryEventStoreWithBuffer配置
-
-    /**
-     * 默认为内存大小模式
-     */
-    @Getter
-    @Setter
-    private BatchMode batchMode = BatchMode.MEM_SIZE;
-    /**
-     * 是否需要DDL隔离
-     */
-    @Getter
-    @Setter
-    private boolean ddlIsolation = false;
-    /**
-     * 针对entry是否开启raw模式<br />
-     * 使用server/client模式时, 建议开启raw模式(raw = true)<br />
-     * 使用Embedded模式时, 建议关闭raw模式(raw = false)<br />
-     */
-    @Getter
-    @Setter
-    private boolean raw = true;
-
     public MemoryEventStoreWithBuffer() {
     }
 
     @Override
     public void start() throws CanalStoreException {
         super.start();
-        if (Integer.bitCount(bufferSize) != 1) {
-            throw new IllegalArgumentException("bufferSize must be a power of 2");
-        }
-        indexMask = bufferSize - 1;
         entries = new Event[bufferSize];
+        positionIndex = new PositionIndex(bufferSize);
+        if (StringUtils.isNotBlank(checkpointDir)) {
+            restoreCheckpoint();
+        }
     }
 
     @Override
     public void stop() throws CanalStoreException {
+        if (StringUtils.isNotBlank(checkpointDir) && entries != null) {
+            try {
+                saveCheckpoint();
+            } catch (Throwable e) {
+                logger.error("[{}] save store checkpoint failed", destination, e);
+            }
+        }
         super.stop();
         cleanAll();
     }
@@ -289,7 +250,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         long end = current + data.size();
         // 先写数据，再更新对应的cursor,并发度高的情况，putSequence会被get请求可见，拿出了ringBuffer中的老的Entry值
         for (long next = current + 1; next <= end; next++) {
-            entries[getIndex(next)] = data.get((int) (next - current - 1));
+            Event event = data.get((int) (next - current - 1));
+            moveToArena(event, next);
+            entries[getIndex(next)] = event;
+            positionIndex.add(next, event.getJournalName(), event.getPosition(), event.getExecuteTime(), calculateSize(event), event.getRowsCount());
         }
         putSequence.set(end);
         // 记录一下gets memSize信息，方便快速检索
@@ -302,42 +266,63 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
         profiling(data, OP.PUT);
         // tell other threads that store is not empty
-        notEmpty.signal();
+        notEmpty.signalAll();
     }
 
     @Override
     public Events<Event> get(Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        return get(defaultCursor, start, batchSize);
+    }
+
+    @Override
+    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return get(defaultCursor, start, batchSize, timeout, unit);
+    }
+
+    @Override
+    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(defaultCursor, start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Events<Event> get(Cursor cursor, Position start, int batchSize) throws InterruptedException, CanalStoreException {
         final ReentrantLock lock = this.lock;
         lock.lockInterruptibly();
         try {
             try {
-                while (!checkUnGetSlotAt((LogPosition) start, batchSize)) {
+                while (!checkUnGetSlotAt(cursor, (LogPosition) start, batchSize)) {
                     notEmpty.await();
+                    checkEvicted(cursor);
                 }
             } catch (InterruptedException ie) {
                 // propagate to non-interrupted thread
                 notEmpty.signal();
                 throw ie;
             }
-            return doGet(start, batchSize);
+            return doGet(cursor, start, batchSize);
         } finally {
             lock.unlock();
         }
     }
 
-    @Override
-    public Events<Event> get(Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+    private Events<Event> get(Cursor cursor, Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
         long nanos = unit.toNanos(timeout);
         final ReentrantLock lock = this.lock;
         lock.lockInterruptibly();
         try {
             for (; ; ) {
-                if (checkUnGetSlotAt((LogPosition) start, batchSize)) {
-                    return doGet(start, batchSize);
+                checkEvicted(cursor);
+                if (checkUnGetSlotAt(cursor, (LogPosition) start, batchSize)) {
+                    return doGet(cursor, start, batchSize);
                 }
                 if (nanos <= 0) {
                     // 如果时间到了，有多少取多少
-                    return doGet(start, batchSize);
+                    return doGet(cursor, start, batchSize);
                 }
                 try {
                     // 1毫秒(ms) = 1000000纳秒(ns)
@@ -353,20 +338,10 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
-    @Override
-    public Events<Event> tryGet(Position start, int batchSize) throws CanalStoreException {
-        final ReentrantLock lock = this.lock;
-        lock.lock();
-        try {
-            return doGet(start, batchSize);
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private Events<Event> doGet(Position start, int batchSize) throws CanalStoreException {
+    private Events<Event> doGet(Cursor cursor, Position start, int batchSize) throws CanalStoreException {
+        checkEvicted(cursor);
         LogPosition startPosition = (LogPosition) start;
-        long current = getSequence.get();
+        long current = cursor.getSequence.get();
         long maxAbleSequence = putSequence.get();
         long next = current;
         long end = current;
@@ -422,23 +397,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
                 }
             }
         }
-        PositionRange<LogPosition> range = new PositionRange<>();
-        result.setPositionRange(range);
-        range.setStart(CanalEventUtils.createPosition(entryList.get(0)));
-        range.setEnd(CanalEventUtils.createPosition(entryList.get(result.getEvents().size() - 1)));
-        range.setEndSeq(end);
-        // 记录一下是否存在可以被ack的点
-        for (int i = entryList.size() - 1; i >= 0; i--) {
-            Event event = entryList.get(i);
-            // gtId模式,ack的位点必须是事务结尾,因为下一次订阅的时候mysql会发送这个gtId之后的next,如果在事务头就记录了会丢这最后一个事务
-            if ((CanalEntry.EntryType.TRANSACTION_BEGIN == event.getEntryType() && StringUtils.isEmpty(event.getGtId())) || CanalEntry.EntryType.TRANSACTION_END == event.getEntryType() || isDdl(event.getEventType())) {
-                // 将事务头/尾设置可被为ack的点
-                range.setAck(CanalEventUtils.createPosition(event));
-                break;
-            }
-        }
-        if (getSequence.compareAndSet(current, end)) {
-            getMemSize.addAndGet(memSize);
+        fillPositionRange(result, end);
+        if (cursor.getSequence.compareAndSet(current, end)) {
+            cursor.getMemSize.addAndGet(memSize);
             notFull.signal();
             profiling(result.getEvents(), OP.GET);
             return result;
@@ -452,42 +413,48 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            long firstSequence = ackSequence.get();
-            if (firstSequence == INIT_SEQUENCE && firstSequence < putSequence.get()) {
-                // 没有ack过数据
-                Event event = entries[getIndex(firstSequence + 1)];
-                // 最后一次ack为-1，需要移动到下一条,included = false
-                return CanalEventUtils.createPosition(event, false);
-            } else if (firstSequence > INIT_SEQUENCE && firstSequence < putSequence.get()) {
-                // ack未追上put操作
-                Event event = entries[getIndex(firstSequence)];
-                // 最后一次ack的位置数据,需要移动到下一条,included = false
-                return CanalEventUtils.createPosition(event, false);
-            } else if (firstSequence > INIT_SEQUENCE && firstSequence == putSequence.get()) {
-                // 已经追上，store中没有数据
-                Event event = entries[getIndex(firstSequence)];
-                // 最后一次ack的位置数据，和last为同一条，included = false
-                return CanalEventUtils.createPosition(event, false);
-            } else {
-                // 没有任何数据
-                return null;
-            }
+            return getFirstPosition(defaultCursor);
         } finally {
             lock.unlock();
         }
     }
 
+    private LogPosition getFirstPosition(Cursor cursor) {
+        long firstSequence = cursor.ackSequence.get();
+        if (firstSequence == INIT_SEQUENCE && firstSequence < putSequence.get()) {
+            // 没有ack过数据
+            Event event = entries[getIndex(firstSequence + 1)];
+            // 最后一次ack为-1，需要移动到下一条,included = false
+            return CanalEventUtils.createPosition(event, false);
+        } else if (firstSequence > INIT_SEQUENCE && firstSequence < putSequence.get()) {
+            // ack未追上put操作
+            Event event = entries[getIndex(firstSequence)];
+            // 最后一次ack的位置数据,需要移动到下一条,included = false
+            return CanalEventUtils.createPosition(event, false);
+        } else if (firstSequence > INIT_SEQUENCE && firstSequence == putSequence.get()) {
+            // 已经追上，store中没有数据
+            Event event = entries[getIndex(firstSequence)];
+            // 最后一次ack的位置数据，和last为同一条，included = false
+            return CanalEventUtils.createPosition(event, false);
+        } else {
+            // 没有任何数据
+            return null;
+        }
+    }
+
     @Override
     public LogPosition getLatestPosition() throws CanalStoreException {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
             long latestSequence = putSequence.get();
-            if (latestSequence > INIT_SEQUENCE && latestSequence != ackSequence.get()) {
+            // 多客户端消费时，以ack最慢的客户端为准
+            long minimumAck = getMinimumAck();
+            if (latestSequence > INIT_SEQUENCE && latestSequence != minimumAck) {
                 Event event = entries[(int) putSequence.get() & indexMask];
                 // 最后一次写入的数据，最后一条未消费的数据
                 return CanalEventUtils.createPosition(event, true);
-            } else if (latestSequence > INIT_SEQUENCE && latestSequence == ackSequence.get()) {
+            } else if (latestSequence > INIT_SEQUENCE && latestSequence == minimumAck) {
                 // ack已经追上了put操作
                 Event event = entries[(int) putSequence.get() & indexMask];
                 // 最后一次写入的数据，included = false
@@ -520,62 +487,86 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            long sequence = ackSequence.get();
-            long maxSequence = getSequence.get();
-            boolean hasMatch = false;
-            long memSize = 0;
-            // ack没有list，但有已存在的foreach，还是节省一下list的开销
-            long localExecTime = 0L;
-            int deltaRows = 0;
-            if (seqId > 0) {
-                maxSequence = seqId;
+            cleanUntil(defaultCursor, position, seqId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cleanUntil(Cursor cursor, Position position, Long seqId) throws CanalStoreException {
+        checkEvicted(cursor);
+        final LogPosition logPosition = (LogPosition) position;
+        long sequence = cursor.ackSequence.get();
+        // 只能ack客户端已经get的数据
+        long maxAckSequence = cursor.getSequence.get();
+        long next;
+        if (seqId > 0) {
+            // 直接定位到seqId
+            boolean match = seqId > sequence && seqId <= maxAckSequence && CanalEventUtils.checkPosition(entries[getIndex(seqId)], logPosition);
+            next = match ? seqId : -1;
+        } else {
+            // 通过位点索引二分查找
+            next = positionIndex.find(sequence + 1, maxAckSequence, logPosition.getPosition(), seq -> CanalEventUtils.checkPosition(entries[getIndex(seq)], logPosition));
+        }
+        if (next < 0) {// 找不到对应需要ack的position
+            throw new CanalStoreException("no match ack position" + position.toString());
+        }
+        // 找到对应的position，更新ack seq
+        if (cursor.ackSequence.compareAndSet(sequence, next)) {// 避免并发ack
+            if (batchMode.isMemSize()) {
+                cursor.ackMemSize.addAndGet(positionIndex.memSize(sequence, next));
             }
-            for (long next = sequence + 1; next <= maxSequence; next++) {
-                Event event = entries[getIndex(next)];
-                if (localExecTime == 0 && event.getExecuteTime() > 0) {
-                    localExecTime = event.getExecuteTime();
-                }
-                deltaRows += event.getRowsCount();
-                memSize += calculateSize(event);
-                if ((seqId < 0 || next == seqId) && CanalEventUtils.checkPosition(event, (LogPosition) position)) {
-                    // 找到对应的position，更新ack seq
-                    hasMatch = true;
-                    if (batchMode.isMemSize()) {
-                        ackMemSize.addAndGet(memSize);
-                        // 尝试清空buffer中的内存，将ack之前的内存全部释放掉
-                        for (long index = sequence + 1; index < next; index++) {
-                            entries[getIndex(index)] = null;// 设置为null
-                        }
-                        // 考虑getFirstPosition/getLastPosition会获取最后一次ack的position信息
-                        // ack清理的时候只处理entry=null，释放内存
-                        Event lastEvent = entries[getIndex(next)];
-                        lastEvent.clearData();
-                    }
-                    if (ackSequence.compareAndSet(sequence, next)) {// 避免并发ack
-                        notFull.signal();
-                        ackTableRows.addAndGet(deltaRows);
-                        if (localExecTime > 0) {
-                            ackExecTime.lazySet(localExecTime);
-                        }
-                        return;
-                    }
+            if (onAck) {
+                // 尝试清空buffer中的内存，将所有游标都ack之前的内存全部释放掉
+                if (batchMode.isMemSize()) {
+                    releaseUntil(getMinimumAck());
                 }
+                releaseArena(getMinimumAck());
+            }
+            notFull.signal();
+            ackTableRows.addAndGet(positionIndex.rowsCount(sequence, next));
+            long localExecTime = 0L;
+            for (long index = sequence + 1; index <= next && localExecTime == 0; index++) {
+                localExecTime = Math.max(positionIndex.getExecuteTime(index), 0);
             }
-            if (!hasMatch) {// 找不到对应需要ack的position
-                throw new CanalStoreException("no match ack position" + position.toString());
+            if (localExecTime > 0) {
+                ackExecTime.lazySet(localExecTime);
             }
+        }
+    }
+
+    @Override
+    public boolean seek(Position position) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return seek(defaultCursor, (LogPosition) position);
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * 移动get游标到第一条 >= position 的数据之前
+     */
+    private boolean seek(Cursor cursor, LogPosition position) {
+        checkEvicted(cursor);
+        long sequence = cursor.ackSequence.get();
+        long found = positionIndex.seek(sequence + 1, putSequence.get(), position.getPosition(), seq -> CanalEventUtils.checkPosition(entries[getIndex(seq)], position));
+        if (found < 0) {
+            return false;
+        }
+        cursor.getSequence.set(found - 1);
+        cursor.getMemSize.set(cursor.ackMemSize.get() + (batchMode.isMemSize() ? positionIndex.memSize(sequence, found - 1) : 0));
+        return true;
+    }
+
     @Override
     public void rollback() throws CanalStoreException {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            getSequence.set(ackSequence.get());
-            getMemSize.set(ackMemSize.get());
+            defaultCursor.rollback();
         } finally {
             lock.unlock();
         }
@@ -593,7 +584,145 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             putMemSize.set(0);
             getMemSize.set(0);
             ackMemSize.set(0);
+            resetArena();
+            clientCursors.clear();
+            evictedClients.clear();
+            reclaimSequence = INIT_SEQUENCE;
+            restoredPosition = null;
             entries = null;
+            positionIndex = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long currentPutSequence() {
+        return putSequence.get();
+    }
+
+    /**
+     * 多客户端消费时返回ack最慢的客户端的位置(数据回收的位置)
+     */
+    @Override
+    public long currentAckSequence() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return getMinimumAck();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // =================== 多客户端消费 =================
+
+    @Override
+    public void subscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (clientCursors.containsKey(clientIdentity)) {
+                return;
+            }
+            evictedClients.remove(clientIdentity);
+            // 新的客户端从当前还未被回收的第一条数据开始消费
+            Cursor from = clientCursors.isEmpty() ? defaultCursor : getSlowestCursor();
+            Cursor cursor = new Cursor(
+                    clientIdentity,
+                    new AtomicLong(from.ackSequence.get()),
+                    new AtomicLong(from.ackSequence.get()),
+                    new AtomicLong(from.ackMemSize.get()),
+                    new AtomicLong(from.ackMemSize.get())
+            );
+            clientCursors.put(clientIdentity, cursor);
+            logger.info("subscribe store cursor, client:{} ackSequence:{}", clientIdentity, cursor.ackSequence.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void unsubscribe(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            evictedClients.remove(clientIdentity);
+            Cursor cursor = clientCursors.remove(clientIdentity);
+            if (cursor == null) {
+                return;
+            }
+            if (clientCursors.isEmpty()) {
+                // 最后一个客户端取消订阅，默认游标接管其位置，避免put被默认游标阻塞
+                defaultCursor.copyFrom(cursor);
+            }
+            notFull.signal();
+            logger.info("unsubscribe store cursor, client:{} ackSequence:{}", clientIdentity, cursor.ackSequence.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize) throws InterruptedException, CanalStoreException {
+        return get(getCursor(clientIdentity), start, batchSize);
+    }
+
+    @Override
+    public Events<Event> get(ClientIdentity clientIdentity, Position start, int batchSize, long timeout, TimeUnit unit) throws InterruptedException, CanalStoreException {
+        return get(getCursor(clientIdentity), start, batchSize, timeout, unit);
+    }
+
+    @Override
+    public Events<Event> tryGet(ClientIdentity clientIdentity, Position start, int batchSize) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return doGet(getCursor(clientIdentity), start, batchSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public LogPosition getFirstPosition(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return getFirstPosition(getCursor(clientIdentity));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void ack(ClientIdentity clientIdentity, Position position, Long seqId) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            cleanUntil(getCursor(clientIdentity), position, seqId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean seek(ClientIdentity clientIdentity, Position position) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return seek(getCursor(clientIdentity), (LogPosition) position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void rollback(ClientIdentity clientIdentity) throws CanalStoreException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            getCursor(clientIdentity).rollback();
         } finally {
             lock.unlock();
         }
@@ -601,16 +730,277 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
 
     // =================== helper method =================
 
+    /**
+     * 获取客户端的游标
+     */
+    private Cursor getCursor(ClientIdentity clientIdentity) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Cursor cursor = clientCursors.get(clientIdentity);
+            if (cursor == null) {
+                if (evictedClients.contains(clientIdentity)) {
+                    throw new CanalStoreException("client is evicted by laggard policy, please subscribe again: " + clientIdentity);
+                }
+                throw new CanalStoreException("client should subscribe store first: " + clientIdentity);
+            }
+            return cursor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 检查客户端游标是否已经被剔除
+     */
+    private void checkEvicted(Cursor cursor) {
+        if (cursor.evicted) {
+            throw new CanalStoreException("client is evicted by laggard policy, please subscribe again: " + cursor.clientIdentity);
+        }
+    }
+
+    /**
+     * 获取ack最慢的客户端游标
+     */
+    private Cursor getSlowestCursor() {
+        Cursor slowest = null;
+        for (Cursor cursor : clientCursors.values()) {
+            if (slowest == null || cursor.ackSequence.get() < slowest.ackSequence.get()) {
+                slowest = cursor;
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * 所有游标中最小的ack位置(数据回收的位置)
+     */
+    private long getMinimumAck() {
+        if (clientCursors.isEmpty()) {
+            return defaultCursor.ackSequence.get();
+        }
+        return getSlowestCursor().ackSequence.get();
+    }
+
     private long getMinimumGetOrAck() {
-        long get = getSequence.get();
-        long ack = ackSequence.get();
-        return Math.min(ack, get);
+        if (clientCursors.isEmpty()) {
+            long get = getSequence.get();
+            long ack = ackSequence.get();
+            return Math.min(ack, get);
+        }
+        long min = Long.MAX_VALUE;
+        for (Cursor cursor : clientCursors.values()) {
+            min = Math.min(min, Math.min(cursor.ackSequence.get(), cursor.getSequence.get()));
+        }
+        return min;
+    }
+
+    /**
+     * 所有游标中最小的ack memSize
+     */
+    private long getMinimumAckMemSize() {
+        if (clientCursors.isEmpty()) {
+            return ackMemSize.get();
+        }
+        long min = Long.MAX_VALUE;
+        for (Cursor cursor : clientCursors.values()) {
+            min = Math.min(min, cursor.ackMemSize.get());
+        }
+        return min;
+    }
+
+    /**
+     * 释放sequence之前数据占用的内存
+     */
+    private long releaseUntil(long sequence) {
+        if (sequence <= reclaimSequence) {
+            return 0;
+        }
+        long size = 0;
+        // 延迟回收时，已经被put覆盖的位置不能再处理
+        final long overwritten = putSequence.get() - bufferSize;
+        for (long index = Math.max(reclaimSequence, overwritten) + 1; index < sequence; index++) {
+            Event event = entries[getIndex(index)];
+            if (event != null) {
+                size += calculateSize(event);
+                entries[getIndex(index)] = null;// 设置为null
+            }
+        }
+        // 考虑getFirstPosition/getLastPosition会获取最后一次ack的position信息
+        // ack清理的时候只处理entry=null，释放内存
+        Event lastEvent = sequence > overwritten ? entries[getIndex(sequence)] : null;
+        if (lastEvent != null && (lastEvent.getRawEntry() != null || lastEvent.getEntry() != null)) {
+            size += calculateSize(lastEvent);
+            lastEvent.clearData();
+        }
+        reclaimSequence = sequence;
+        return size;
+    }
+
+    /**
+     * 回收所有游标都已经ack的数据占用的内存(需要持有lock)
+     */
+    private long reclaimUntilMinimumAck() {
+        if (positionIndex == null) {
+            return 0;
+        }
+        final long minimumAck = getMinimumAck();
+        return releaseUntil(minimumAck) + releaseArena(minimumAck);
+    }
+
+    @Override
+    public long reclaim() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return reclaimUntilMinimumAck();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private File getCheckpointFile() {
+        return new File(checkpointDir, destination + ".checkpoint");
+    }
+
+    /**
+     * 保存所有游标都未ack的数据到检查点文件(只保存到最后一个完整的事务)
+     */
+    private void saveCheckpoint() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final long minimumAck = getMinimumAck();
+            long end = INIT_SEQUENCE;
+            for (long sequence = putSequence.get(); sequence > minimumAck; sequence--) {
+                if (entries[getIndex(sequence)].getEntryType() == EntryType.TRANSACTION_END) {
+                    end = sequence;
+                    break;
+                }
+            }
+            Event ackEvent = minimumAck > INIT_SEQUENCE ? entries[getIndex(minimumAck)] : null;
+            if (ackEvent == null && end == INIT_SEQUENCE) {
+                return;
+            }
+            List<Event> events = new ArrayList<>();
+            for (long sequence = minimumAck + 1; sequence <= end; sequence++) {
+                events.add(entries[getIndex(sequence)]);
+            }
+            File file = getCheckpointFile();
+            new EventStoreCheckpoint(minimumAck, getMinimumAckMemSize(), ackEvent, events).write(file);
+            logger.info("[{}] save store checkpoint: {}, ackSequence:{} events:{} dropped:{}", destination, file, minimumAck, events.size(), putSequence.get() - Math.max(end, minimumAck));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从检查点文件恢复数据(恢复之后删除检查点文件，避免异常退出之后重复加载过期的数据)
+     */
+    private void restoreCheckpoint() {
+        File file = getCheckpointFile();
+        if (!file.exists()) {
+            return;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            EventStoreCheckpoint checkpoint = EventStoreCheckpoint.read(file, raw);
+            final long ack = checkpoint.getAckSequence();
+            putSequence.set(ack);
+            getSequence.set(ack);
+            ackSequence.set(ack);
+            putMemSize.set(checkpoint.getAckMemSize());
+            getMemSize.set(checkpoint.getAckMemSize());
+            ackMemSize.set(checkpoint.getAckMemSize());
+            reclaimSequence = ack;
+            Event lastEvent = checkpoint.getAckEvent();
+            if (lastEvent != null) {
+                entries[getIndex(ack)] = lastEvent;
+                positionIndex.add(ack, lastEvent.getJournalName(), lastEvent.getPosition(), lastEvent.getExecuteTime(), calculateSize(lastEvent), lastEvent.getRowsCount());
+            }
+            List<Event> events = checkpoint.getEvents();
+            if (events.size() > bufferSize) {
+                throw new CanalStoreException("store checkpoint has " + events.size() + " events, greater than bufferSize " + bufferSize);
+            }
+            if (!events.isEmpty()) {
+                doPut(events);
+                lastEvent = events.get(events.size() - 1);
+            }
+            restoredPosition = lastEvent == null ? null : CanalEventUtils.createPosition(lastEvent);
+            logger.info("[{}] restore store checkpoint: {}, ackSequence:{} events:{} position:{}", destination, file, ack, events.size(), restoredPosition);
+        } catch (CanalStoreException e) {
+            logger.error("[{}] restore store checkpoint failed, ignore it", destination, e);
+            cleanCheckpoint();
+        } finally {
+            lock.unlock();
+            // noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * 恢复失败时清空已经恢复的部分数据
+     */
+    private void cleanCheckpoint() {
+        putSequence.set(INIT_SEQUENCE);
+        getSequence.set(INIT_SEQUENCE);
+        ackSequence.set(INIT_SEQUENCE);
+        putMemSize.set(0);
+        getMemSize.set(0);
+        ackMemSize.set(0);
+        resetArena();
+        reclaimSequence = INIT_SEQUENCE;
+        restoredPosition = null;
+        entries = new Event[bufferSize];
+        positionIndex = new PositionIndex(bufferSize);
+    }
+
+    /**
+     * 剔除ack最慢的客户端(至少保留一个客户端)
+     *
+     * @return 没有可以剔除的客户端时返回false
+     */
+    private boolean evictLaggards() {
+        final long minAck = getMinimumAck();
+        List<Cursor> laggards = new ArrayList<>();
+        for (Cursor cursor : clientCursors.values()) {
+            if (cursor.ackSequence.get() == minAck) {
+                laggards.add(cursor);
+            }
+        }
+        if (laggards.isEmpty() || laggards.size() >= clientCursors.size()) {
+            return false;
+        }
+        for (Cursor cursor : laggards) {
+            cursor.evicted = true;
+            clientCursors.remove(cursor.clientIdentity);
+            evictedClients.add(cursor.clientIdentity);
+            logger.warn("evict laggard client:{} ackSequence:{} putSequence:{}", cursor.clientIdentity, cursor.ackSequence.get(), putSequence.get());
+        }
+        if (batchMode.isMemSize()) {
+            releaseUntil(getMinimumAck());
+        }
+        releaseArena(getMinimumAck());
+        notEmpty.signalAll();
+        return true;
     }
 
     /**
-     * 查询是否有空位
+     * 查询是否有空位，laggardPolicy为EVICT时会剔除阻塞写入的慢客户端
      */
     private boolean checkFreeSlotAt(final long sequence) {
+        boolean free = hasFreeSlotAt(sequence);
+        if (!free && onFull) {
+            reclaimedSize.addAndGet(reclaimUntilMinimumAck());
+        }
+        while (!free && laggardPolicy.isEvict() && clientCursors.size() > 1 && evictLaggards()) {
+            free = hasFreeSlotAt(sequence);
+        }
+        return free;
+    }
+
+    private boolean hasFreeSlotAt(final long sequence) {
         final long wrapPoint = sequence - bufferSize;
         final long minPoint = getMinimumGetOrAck();
         // 刚好追上一轮
@@ -619,7 +1009,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         } else {
             // 在bufferSize模式上，再增加memSize控制
             if (batchMode.isMemSize()) {
-                final long memSize = putMemSize.get() - ackMemSize.get();
+                final long memSize = putMemSize.get() - getMinimumAckMemSize();
                 return memSize < bufferSize * bufferMemUnit;
             } else {
                 return true;
@@ -630,9 +1020,9 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
     /**
      * 检查是否存在需要get的数据,并且数量>=batchSize
      */
-    private boolean checkUnGetSlotAt(LogPosition startPosition, int batchSize) {
+    private boolean checkUnGetSlotAt(Cursor cursor, LogPosition startPosition, int batchSize) {
         if (batchMode.isItemSize()) {
-            long current = getSequence.get();
+            long current = cursor.getSequence.get();
             long maxAbleSequence = putSequence.get();
             long next = current;
             // 第一次订阅之后，需要包含一下start位置，防止丢失第一条记录
@@ -643,7 +1033,7 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
             return current < maxAbleSequence && next + batchSize - 1 <= maxAbleSequence;
         } else {
             // 处理内存大小判断
-            long currentSize = getMemSize.get();
+            long currentSize = cursor.getMemSize.get();
             long maxAbleSize = putMemSize.get();
             if (batchSize <= 1) {
                 // 此处有bug, 当一条数据的大小 小于 bufferMemUnit(1kb) 时有问题(不能触发get)
@@ -654,61 +1044,41 @@ public class MemoryEventStoreWithBuffer extends AbstractCanalStoreScavenge imple
         }
     }
 
-    private long calculateSize(Event event) {
-        // 直接返回binlog中的事件大小
-        return event.getRawLength();
-    }
-
-    private int getIndex(long sequence) {
-        return (int) sequence & indexMask;
-    }
-
-    private boolean isDdl(EventType type) {
-        return type == EventType.ALTER
-                || type == EventType.CREATE
-                || type == EventType.ERASE
-                || type == EventType.RENAME
-                || type == EventType.TRUNCATE
-                || type == EventType.C_INDEX
-                || type == EventType.D_INDEX;
-    }
+    /**
+     * 消费游标(get/ack位置)
+     */
+    private static class Cursor {
+        /**
+         * 客户端标识(默认游标为null)
+         */
+        private final ClientIdentity clientIdentity;
+        private final AtomicLong getSequence;
+        private final AtomicLong ackSequence;
+        private final AtomicLong getMemSize;
+        private final AtomicLong ackMemSize;
+        /**
+         * 是否已经被剔除
+         */
+        private volatile boolean evicted = false;
 
-    private void profiling(List<Event> events, OP op) {
-        long localExecTime = 0L;
-        int deltaRows = 0;
-        if (events != null && !events.isEmpty()) {
-            for (Event e : events) {
-                if (localExecTime == 0 && e.getExecuteTime() > 0) {
-                    localExecTime = e.getExecuteTime();
-                }
-                deltaRows += e.getRowsCount();
-            }
+        private Cursor(ClientIdentity clientIdentity, AtomicLong getSequence, AtomicLong ackSequence, AtomicLong getMemSize, AtomicLong ackMemSize) {
+            this.clientIdentity = clientIdentity;
+            this.getSequence = getSequence;
+            this.ackSequence = ackSequence;
+            this.getMemSize = getMemSize;
+            this.ackMemSize = ackMemSize;
         }
-        switch (op) {
-            case PUT:
-                putTableRows.addAndGet(deltaRows);
-                if (localExecTime > 0) {
-                    putExecTime.lazySet(localExecTime);
-                }
-                break;
-            case GET:
-                getTableRows.addAndGet(deltaRows);
-                if (localExecTime > 0) {
-                    getExecTime.lazySet(localExecTime);
-                }
-                break;
-            case ACK:
-                ackTableRows.addAndGet(deltaRows);
-                if (localExecTime > 0) {
-                    ackExecTime.lazySet(localExecTime);
-                }
-                break;
-            default:
-                break;
+
+        private void rollback() {
+            getSequence.set(ackSequence.get());
+            getMemSize.set(ackMemSize.get());
         }
-    }
 
-    private enum OP {
-        PUT, GET, ACK
+        private void copyFrom(Cursor cursor) {
+            getSequence.set(cursor.getSequence.get());
+            ackSequence.set(cursor.ackSequence.get());
+            getMemSize.set(cursor.getMemSize.get());
+            ackMemSize.set(cursor.ackMemSize.get());
+        }
     }
 }
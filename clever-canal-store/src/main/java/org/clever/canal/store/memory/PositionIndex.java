@@ -0,0 +1,215 @@
+package org.clever.canal.store.memory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.clever.canal.protocol.position.EntryPosition;
+
+import java.util.function.LongPredicate;
+
+/**
+ * 与环形队列对齐的位点索引，用于二分查找position对应的sequence
+ *
+ * <pre>
+ * 1. 按sequence记录(journalName, position, executeTime)，以及累计的memSize、rowsCount
+ * 2. (journalName, position)在put顺序上单调递增时使用二分查找，出现回退(多数据源合并/重新dump)时退化为顺序查找
+ * 3. executeTime使用累计最大值保证单调，只有timestamp的position也可以二分查找
+ * 4. 累计的memSize、rowsCount用于O(1)计算任意区间的数据大小
+ * </pre>
+ * 非线程安全，由store的锁保护(或者只读取已经发布的sequence)
+ */
+public class PositionIndex {
+    private final int indexMask;
+    private final String[] journalNames;
+    private final long[] positions;
+    private final long[] executeTimes;
+    /**
+     * executeTime的累计最大值
+     */
+    private final long[] maxExecuteTimes;
+    /**
+     * 当前sequence之前(不包含)的累计memSize
+     */
+    private final long[] memSizes;
+    /**
+     * 当前sequence之前(不包含)的累计rowsCount
+     */
+    private final long[] rowsCounts;
+    private long lastSequence = -1;
+    private long totalMemSize = 0;
+    private long totalRowsCount = 0;
+    private long maxExecuteTime = 0;
+    /**
+     * (journalName, position)最后一次出现回退的sequence，在此之后的数据是有序的
+     */
+    private long disorderSequence = -1;
+
+    public PositionIndex(int bufferSize) {
+        this.indexMask = bufferSize - 1;
+        this.journalNames = new String[bufferSize];
+        this.positions = new long[bufferSize];
+        this.executeTimes = new long[bufferSize];
+        this.maxExecuteTimes = new long[bufferSize];
+        this.memSizes = new long[bufferSize];
+        this.rowsCounts = new long[bufferSize];
+    }
+
+    /**
+     * 添加一条数据的索引，sequence必须连续
+     */
+    public void add(long sequence, String journalName, long position, long executeTime, long memSize, int rowsCount) {
+        int index = (int) sequence & indexMask;
+        if (lastSequence >= 0) {
+            int last = (int) lastSequence & indexMask;
+            if (compare(journalNames[last], positions[last], journalName, position) > 0) {
+                disorderSequence = sequence;
+            }
+        }
+        maxExecuteTime = Math.max(maxExecuteTime, executeTime);
+        journalNames[index] = journalName;
+        positions[index] = position;
+        executeTimes[index] = executeTime;
+        maxExecuteTimes[index] = maxExecuteTime;
+        memSizes[index] = totalMemSize;
+        rowsCounts[index] = totalRowsCount;
+        totalMemSize += memSize;
+        totalRowsCount += rowsCount;
+        lastSequence = sequence;
+    }
+
+    /**
+     * 在[from, to]范围内查找position对应的sequence
+     *
+     * @param matcher 判断sequence对应的数据是否与position匹配
+     * @return 找不到返回-1
+     */
+    public long find(long from, long to, EntryPosition position, LongPredicate matcher) {
+        if (from > to) {
+            return -1;
+        }
+        final boolean byTimestamp = StringUtils.isBlank(position.getJournalName()) || position.getPosition() == null;
+        final boolean ordered = byTimestamp ? position.getTimestamp() != null : from > disorderSequence;
+        long start = from;
+        if (ordered) {
+            start = binarySearch(from, to, position, byTimestamp);
+        }
+        for (long sequence = start; sequence <= to; sequence++) {
+            if (matcher.test(sequence)) {
+                return sequence;
+            }
+            if (ordered && compareTo(sequence, position, byTimestamp) > 0) {
+                // 已经越过了position
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在[from, to]范围内定位position(seek)，优先查找与position匹配的数据，找不到时使用{@link #lowerBound(long, long, EntryPosition)}
+     *
+     * @return 找不到返回-1
+     */
+    public long seek(long from, long to, EntryPosition position, LongPredicate matcher) {
+        long sequence = find(from, to, position, matcher);
+        return sequence >= 0 ? sequence : lowerBound(from, to, position);
+    }
+
+    /**
+     * 在[from, to]范围内查找第一个 >= position 的sequence(journalName或position为空时按照executeTime查找)
+     *
+     * @return 找不到返回-1
+     */
+    public long lowerBound(long from, long to, EntryPosition position) {
+        final boolean byTimestamp = StringUtils.isBlank(position.getJournalName()) || position.getPosition() == null;
+        if (from > to || (byTimestamp && position.getTimestamp() == null)) {
+            return -1;
+        }
+        if (byTimestamp || from > disorderSequence) {
+            long sequence = binarySearch(from, to, position, byTimestamp);
+            return sequence > to ? -1 : sequence;
+        }
+        for (long sequence = from; sequence <= to; sequence++) {
+            if (compareTo(sequence, position, false) >= 0) {
+                return sequence;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * (fromExclusive, toInclusive]区间的memSize
+     */
+    public long memSize(long fromExclusive, long toInclusive) {
+        return memSizeBefore(toInclusive + 1) - memSizeBefore(fromExclusive + 1);
+    }
+
+    /**
+     * (fromExclusive, toInclusive]区间的rowsCount
+     */
+    public long rowsCount(long fromExclusive, long toInclusive) {
+        return rowsCountBefore(toInclusive + 1) - rowsCountBefore(fromExclusive + 1);
+    }
+
+    /**
+     * sequence之前(不包含)的累计memSize，sequence必须已经发布(只读取索引数组，可以不加锁调用)
+     */
+    public long publishedMemSizeBefore(long sequence) {
+        return memSizes[(int) sequence & indexMask];
+    }
+
+    public long getExecuteTime(long sequence) {
+        return executeTimes[(int) sequence & indexMask];
+    }
+
+    private long memSizeBefore(long sequence) {
+        return sequence > lastSequence ? totalMemSize : memSizes[(int) sequence & indexMask];
+    }
+
+    private long rowsCountBefore(long sequence) {
+        return sequence > lastSequence ? totalRowsCount : rowsCounts[(int) sequence & indexMask];
+    }
+
+    /**
+     * 查找第一个 >= position 的sequence
+     */
+    private long binarySearch(long from, long to, EntryPosition position, boolean byTimestamp) {
+        long low = from;
+        long high = to + 1;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (compareTo(mid, position, byTimestamp) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareTo(long sequence, EntryPosition position, boolean byTimestamp) {
+        int index = (int) sequence & indexMask;
+        if (byTimestamp) {
+            return Long.compare(maxExecuteTimes[index], position.getTimestamp());
+        }
+        return compare(journalNames[index], positions[index], position.getJournalName(), position.getPosition());
+    }
+
+    /**
+     * 判断数据是否已经到达(>=)position，与{@link #lowerBound(long, long, EntryPosition)}的比较规则一致
+     */
+    public static boolean reached(String journalName, long position, long executeTime, EntryPosition target) {
+        if (StringUtils.isBlank(target.getJournalName()) || target.getPosition() == null) {
+            return target.getTimestamp() != null && executeTime >= target.getTimestamp();
+        }
+        return compare(journalName, position, target.getJournalName(), target.getPosition()) >= 0;
+    }
+
+    private static int compare(String journalName1, long position1, String journalName2, long position2) {
+        if (!StringUtils.equals(journalName1, journalName2)) {
+            if (journalName1 == null || journalName2 == null) {
+                return journalName1 == null ? -1 : 1;
+            }
+            return journalName1.compareTo(journalName2);
+        }
+        return Long.compare(position1, position2);
+    }
+}
@@ -0,0 +1,61 @@
+package org.clever.canal.store.memory.wait;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 基于锁和条件变量的等待策略，CPU占用最低<br />
+ * 只有存在等待线程时signalAll才会加锁，put/get的快速路径不会竞争锁
+ */
+public class BlockingStoreWaitStrategy implements StoreWaitStrategy {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    /**
+     * 当前等待中的线程数
+     */
+    private final AtomicInteger waiters = new AtomicInteger(0);
+
+    @Override
+    public boolean waitFor(BooleanSupplier condition, long timeout) throws InterruptedException {
+        if (condition.getAsBoolean()) {
+            return true;
+        }
+        long nanos = timeout;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        // 先登记等待者再检查条件，保证不会错过signalAll
+        waiters.incrementAndGet();
+        try {
+            while (!condition.getAsBoolean()) {
+                if (timeout < 0) {
+                    changed.await();
+                } else {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = changed.awaitNanos(nanos);
+                }
+            }
+            return true;
+        } finally {
+            waiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAll() {
+        if (waiters.get() <= 0) {
+            return;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.clever.canal.store.memory.wait;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 忙等待策略，延迟最低，会一直占用一个CPU核心(适用于独占CPU的部署场景)
+ */
+public class BusySpinStoreWaitStrategy implements StoreWaitStrategy {
+
+    @Override
+    public boolean waitFor(BooleanSupplier condition, long timeout) throws InterruptedException {
+        final long deadline = timeout < 0 ? 0 : System.nanoTime() + timeout;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timeout >= 0 && deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void signalAll() {
+    }
+}
@@ -0,0 +1,57 @@
+package org.clever.canal.store.memory.wait;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 先自旋，再让出CPU，最后短暂休眠的等待策略，兼顾延迟与CPU占用
+ */
+public class SleepingStoreWaitStrategy implements StoreWaitStrategy {
+    private static final int DEFAULT_RETRIES = 200;
+    private static final long DEFAULT_SLEEP = 100 * 1000L;
+
+    /**
+     * 自旋+让出CPU的重试次数
+     */
+    private final int retries;
+    /**
+     * 每次休眠的时间(单位：纳秒)
+     */
+    private final long sleepTimeNs;
+
+    public SleepingStoreWaitStrategy() {
+        this(DEFAULT_RETRIES, DEFAULT_SLEEP);
+    }
+
+    public SleepingStoreWaitStrategy(int retries, long sleepTimeNs) {
+        this.retries = retries;
+        this.sleepTimeNs = sleepTimeNs;
+    }
+
+    @Override
+    public boolean waitFor(BooleanSupplier condition, long timeout) throws InterruptedException {
+        final long deadline = timeout < 0 ? 0 : System.nanoTime() + timeout;
+        int counter = retries;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timeout >= 0 && deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            if (counter > retries / 2) {
+                --counter;
+            } else if (counter > 0) {
+                --counter;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(sleepTimeNs);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void signalAll() {
+    }
+}
@@ -0,0 +1,23 @@
+package org.clever.canal.store.memory.wait;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * store阻塞put/get时的等待策略(参考Disruptor的WaitStrategy)
+ */
+public interface StoreWaitStrategy {
+
+    /**
+     * 等待直到条件满足或者超时
+     *
+     * @param condition 需要等待的条件
+     * @param timeout   最长等待时间(单位：纳秒)，小于0表示一直等待
+     * @return 条件满足返回true，超时返回false
+     */
+    boolean waitFor(BooleanSupplier condition, long timeout) throws InterruptedException;
+
+    /**
+     * store状态发生变化(put/get/ack/rollback)时，唤醒等待中的线程
+     */
+    void signalAll();
+}
@@ -0,0 +1,34 @@
+package org.clever.canal.store.memory.wait;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 先自旋，再不断让出CPU的等待策略，延迟较低但会占用CPU
+ */
+public class YieldingStoreWaitStrategy implements StoreWaitStrategy {
+    private static final int SPIN_TRIES = 100;
+
+    @Override
+    public boolean waitFor(BooleanSupplier condition, long timeout) throws InterruptedException {
+        final long deadline = timeout < 0 ? 0 : System.nanoTime() + timeout;
+        int counter = SPIN_TRIES;
+        while (!condition.getAsBoolean()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timeout >= 0 && deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            if (counter > 0) {
+                --counter;
+            } else {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void signalAll() {
+    }
+}
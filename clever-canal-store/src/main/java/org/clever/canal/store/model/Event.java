@@ -2,6 +2,7 @@ package org.clever.canal.store.model;
 
 import com.google.protobuf.ByteString;
 import lombok.Getter;
+import lombok.Setter;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.clever.canal.common.utils.CanalToStringStyle;
 import org.clever.canal.protocol.CanalEntry;
@@ -16,6 +17,7 @@ import java.util.List;
  * store存储数据对象
  */
 @Getter
+@Setter
 public class Event implements Serializable {
     private static final long serialVersionUID = 1333330351758762739L;
 
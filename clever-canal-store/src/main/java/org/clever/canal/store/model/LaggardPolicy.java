@@ -0,0 +1,25 @@
+package org.clever.canal.store.model;
+
+/**
+ * 多客户端消费时，最慢的客户端阻塞数据写入的处理策略
+ */
+public enum LaggardPolicy {
+
+    /**
+     * 阻塞写入，等待最慢的客户端ack
+     */
+    BLOCK,
+
+    /**
+     * 剔除阻塞写入的慢客户端(至少保留一个客户端)，被剔除的客户端需要重新订阅
+     */
+    EVICT;
+
+    public boolean isBlock() {
+        return this == LaggardPolicy.BLOCK;
+    }
+
+    public boolean isEvict() {
+        return this == LaggardPolicy.EVICT;
+    }
+}
@@ -0,0 +1,58 @@
+package org.clever.canal.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+public class ScavengeScheduleTest {
+
+    @Test
+    public void testInterval() {
+        LocalDateTime now = LocalDateTime.of(2020, 1, 1, 0, 0, 0);
+        Assert.assertEquals(500, ScavengeSchedule.parse("500ms").nextDelay(now));
+        Assert.assertEquals(30 * 1000, ScavengeSchedule.parse("30s").nextDelay(now));
+        Assert.assertEquals(5 * 60 * 1000, ScavengeSchedule.parse("5m").nextDelay(now));
+        Assert.assertEquals(60 * 60 * 1000, ScavengeSchedule.parse(" 1H ").nextDelay(now));
+        Assert.assertEquals(200, ScavengeSchedule.parse("200").nextDelay(now));
+    }
+
+    @Test
+    public void testCron() {
+        // 2020-01-01 是周三
+        LocalDateTime now = LocalDateTime.of(2020, 1, 1, 10, 20, 30);
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 1, 10, 21, 0), ScavengeSchedule.parse("* * * * *").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 1, 10, 20, 45), ScavengeSchedule.parse("*/15 * * * * ?").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 2, 3, 0, 0), ScavengeSchedule.parse("0 3 * * *").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 1, 12, 0, 0), ScavengeSchedule.parse("0 0,12 * * *").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 1, 11, 0, 0), ScavengeSchedule.parse("0 9-17/2 * * *").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 3, 1, 0, 0, 0), ScavengeSchedule.parse("0 0 1 3 *").next(now));
+        // 周日: 0和7等价
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 5, 0, 0, 0), ScavengeSchedule.parse("0 0 * * 0").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 5, 0, 0, 0), ScavengeSchedule.parse("0 0 * * 7").next(now));
+    }
+
+    @Test
+    public void testDayOfMonthOrDayOfWeek() {
+        // 2020-01-01 是周三
+        LocalDateTime now = LocalDateTime.of(2020, 1, 1, 10, 20, 30);
+        // 日和周都有限制时按"或"匹配: 15号或者周五
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 3, 0, 0, 0), ScavengeSchedule.parse("0 0 15 * 5").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 15, 0, 0, 0), ScavengeSchedule.parse("0 0 15 * 5").next(LocalDateTime.of(2020, 1, 10, 1, 0, 0)));
+        // 只有一个字段有限制时按该字段匹配
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 15, 0, 0, 0), ScavengeSchedule.parse("0 0 15 * *").next(now));
+        Assert.assertEquals(LocalDateTime.of(2020, 1, 3, 0, 0, 0), ScavengeSchedule.parse("0 0 ? * 5").next(now));
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] expressions = {"", "abc", "0ms", "-5s", "* * * *", "* * * * * * *", "60 * * * *", "* 24 * * *", "* * 0 * *", "* * * 13 *", "* * * * 8", "5-1 * * * *", "*/0 * * * *"};
+        for (String expression : expressions) {
+            try {
+                ScavengeSchedule.parse(expression);
+                Assert.fail(expression);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+}
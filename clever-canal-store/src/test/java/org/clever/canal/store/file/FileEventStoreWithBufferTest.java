@@ -0,0 +1,201 @@
+package org.clever.canal.store.file;
+
+import com.google.protobuf.ByteString;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.store.helper.CanalEventUtils;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * segment文件store跨越segment边界的put/get/ack/rollback以及segment文件的释放
+ */
+public class FileEventStoreWithBufferTest {
+    private static final String DESTINATION = "example";
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutGetAckAcrossSegments() throws Exception {
+        for (boolean raw : new boolean[]{true, false}) {
+            FileEventStoreWithBuffer store = store(false, raw, Long.MAX_VALUE);
+            List<Event> events = events(0, 50, raw);
+            Assert.assertTrue(store.tryPut(events.subList(0, 20)));
+            Assert.assertTrue(store.tryPut(events.subList(20, 50)));
+            // 每个segment只能放几条数据
+            int segmentCount = segmentFiles().length;
+            Assert.assertTrue(segmentCount > 5);
+
+            // batch跨越segment边界，数据完整并且有序
+            Events<Event> batch1 = store.tryGet(null, 7);
+            assertEvents(events, 0, batch1, raw);
+            Events<Event> batch2 = store.tryGet(null, 7);
+            assertEvents(events, 7, batch2, raw);
+
+            // ack第一个batch之后，完全ack的segment文件被删除
+            long storageSize = store.getFileStorageSize().get();
+            store.ack(batch1.getPositionRange().getEnd(), batch1.getPositionRange().getEndSeq());
+            Assert.assertEquals(6, store.currentAckSequence());
+            Assert.assertTrue(segmentFiles().length < segmentCount);
+            Assert.assertTrue(store.getFileStorageSize().get() < storageSize);
+
+            // rollback之后从ack的位置重新获取
+            store.rollback();
+            Events<Event> batch3 = store.tryGet(null, 30);
+            assertEvents(events, 7, batch3, raw);
+            // 通过位点ack(不指定seqId)
+            store.ack(batch3.getPositionRange().getEnd());
+            Assert.assertEquals(36, store.currentAckSequence());
+
+            Events<Event> batch4 = store.tryGet(null, 100);
+            assertEvents(events, 37, batch4, raw);
+            Assert.assertTrue(store.tryGet(null, 100).getEvents().isEmpty());
+            store.ack(batch4.getPositionRange().getEnd(), batch4.getPositionRange().getEndSeq());
+            Assert.assertEquals(0, segmentFiles().length);
+            Assert.assertEquals(0, store.getFileStorageSize().get());
+            Assert.assertFalse(store.getLatestPosition().getPosition().isIncluded());
+            Assert.assertEquals(CanalEventUtils.createPosition(events.get(49), false), store.getFirstPosition());
+            store.stop();
+        }
+    }
+
+    @Test
+    public void testMaxStorageSize() {
+        FileEventStoreWithBuffer store = store(false, true, SEGMENT_SIZE * 2);
+        List<Event> events = events(0, 100, true);
+        int put = 0;
+        while (store.tryPut(events.get(put))) {
+            put++;
+        }
+        // 超过maxStorageSize之后put失败
+        Assert.assertTrue(put > 0 && put < 100);
+        Assert.assertTrue(store.getFileStorageSize().get() >= SEGMENT_SIZE * 2);
+
+        // ack释放空间之后可以继续put
+        Events<Event> batch = store.tryGet(null, put);
+        assertEvents(events, 0, batch, true);
+        store.ack(batch.getPositionRange().getEnd(), batch.getPositionRange().getEndSeq());
+        Assert.assertEquals(0, store.getFileStorageSize().get());
+        Assert.assertTrue(store.tryPut(events.get(put)));
+        assertEvents(events, put, store.tryGet(null, 10), true);
+        store.stop();
+    }
+
+    @Test
+    public void testMixed() {
+        FileEventStoreWithBuffer store = store(true, true, Long.MAX_VALUE);
+        List<Event> events = events(0, 40, true);
+        Assert.assertTrue(store.tryPut(events.subList(0, 20)));
+        // 内存中的数据达到bufferSize之后溢出到文件
+        Assert.assertEquals(8, store.getMemoryEventCount().get());
+        Assert.assertTrue(segmentFiles().length > 0);
+
+        // 内存数据ack之后，占用降到一半以下才切换回内存
+        Events<Event> batch = store.tryGet(null, 20);
+        assertEvents(events, 0, batch, true);
+        store.ack(CanalEventUtils.createPosition(events.get(5)), 5L);
+        Assert.assertEquals(2, store.getMemoryEventCount().get());
+        Assert.assertTrue(store.tryPut(events.subList(20, 22)));
+        Assert.assertEquals(4, store.getMemoryEventCount().get());
+
+        store.rollback();
+        batch = store.tryGet(null, 100);
+        assertEvents(events, 6, batch, true);
+        Assert.assertEquals(16, batch.getEvents().size());
+        store.ack(batch.getPositionRange().getEnd(), batch.getPositionRange().getEndSeq());
+        Assert.assertEquals(0, store.getMemoryEventCount().get());
+        Assert.assertEquals(0, store.getMemoryEventSize().get());
+        Assert.assertEquals(0, segmentFiles().length);
+        store.stop();
+    }
+
+    @Test
+    public void testCleanAll() {
+        FileEventStoreWithBuffer store = store(false, true, Long.MAX_VALUE);
+        Assert.assertTrue(store.tryPut(events(0, 30, true)));
+        Assert.assertTrue(segmentFiles().length > 0);
+        // stop时删除所有segment文件
+        store.stop();
+        Assert.assertEquals(0, segmentFiles().length);
+        Assert.assertEquals(-1, store.currentPutSequence());
+    }
+
+    // ============================ helper method ======================
+
+    private FileEventStoreWithBuffer store(boolean mixed, boolean raw, long maxStorageSize) {
+        FileEventStoreWithBuffer store = new FileEventStoreWithBuffer();
+        store.setBufferSize(8);
+        store.setBufferMemUnit(1024);
+        store.setBatchMode(BatchMode.ITEM_SIZE);
+        store.setRaw(raw);
+        store.setMixed(mixed);
+        store.setDestination(DESTINATION);
+        store.setDataDir(folder.getRoot().getPath());
+        store.setSegmentSize(SEGMENT_SIZE);
+        store.setMaxStorageSize(maxStorageSize);
+        store.start();
+        return store;
+    }
+
+    private File[] segmentFiles() {
+        File[] files = new File(folder.getRoot(), DESTINATION).listFiles((dir, name) -> name.endsWith(".seg"));
+        return files == null ? new File[0] : files;
+    }
+
+    private static void assertEvents(List<Event> expected, int from, Events<Event> actual, boolean raw) {
+        Assert.assertFalse(actual.getEvents().isEmpty());
+        for (int i = 0; i < actual.getEvents().size(); i++) {
+            Event expect = expected.get(from + i);
+            Event event = actual.getEvents().get(i);
+            Assert.assertEquals(expect.getPosition(), event.getPosition());
+            Assert.assertEquals(expect.getJournalName(), event.getJournalName());
+            Assert.assertEquals(expect.getExecuteTime(), event.getExecuteTime());
+            Assert.assertEquals(expect.getLogIdentity(), event.getLogIdentity());
+            if (raw) {
+                Assert.assertEquals(expect.getRawEntry(), event.getRawEntry());
+            } else {
+                Assert.assertEquals(expect.getEntry(), event.getEntry());
+            }
+        }
+        Assert.assertEquals(expected.get(from + actual.getEvents().size() - 1).getPosition(),
+                actual.getPositionRange().getEnd().getPosition().getPosition().longValue());
+    }
+
+    private static List<Event> events(long from, int count, boolean raw) {
+        List<Event> events = new ArrayList<>(count);
+        for (long position = from; position < from + count; position++) {
+            events.add(event(position, raw));
+        }
+        return events;
+    }
+
+    private static Event event(long position, boolean raw) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .setEventLength(100)
+                .build();
+        // 大小不同的数据
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(CanalEntry.EntryType.ROW_DATA)
+                .setStoreValue(ByteString.copyFrom(new byte[64 + (int) (position % 7) * 16]))
+                .build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, raw);
+    }
+}
@@ -0,0 +1,183 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 列式存储拆分/还原Event之后，put/get/ack/rollback的结果与行式存储(MemoryEventStoreWithBuffer)完全一致
+ */
+public class ColumnarEventStoreWithBufferTest {
+    private static final LogIdentity IDENTITY_1 = new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L);
+    private static final LogIdentity IDENTITY_2 = new LogIdentity(new InetSocketAddress("127.0.0.2", 3306), 1234L);
+
+    @Test
+    public void testItemSize() {
+        assertSameAsRowStore(BatchMode.ITEM_SIZE, true, false, 1);
+        assertSameAsRowStore(BatchMode.ITEM_SIZE, false, false, 2);
+    }
+
+    @Test
+    public void testMemSize() {
+        assertSameAsRowStore(BatchMode.MEM_SIZE, true, false, 3);
+        assertSameAsRowStore(BatchMode.MEM_SIZE, false, false, 4);
+    }
+
+    @Test
+    public void testDdlIsolation() {
+        assertSameAsRowStore(BatchMode.ITEM_SIZE, true, true, 5);
+        assertSameAsRowStore(BatchMode.MEM_SIZE, true, true, 6);
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ColumnarEventStoreWithBuffer store = store(new ColumnarEventStoreWithBuffer(), BatchMode.ITEM_SIZE, true, false);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(event(i, new Random(i), true));
+        }
+        Assert.assertTrue(store.tryPut(events));
+        // 还原之后每个字段都与put的数据一致
+        Events<Event> result = store.tryGet(null, 10);
+        Assert.assertEquals(10, result.getEvents().size());
+        for (int i = 0; i < 10; i++) {
+            assertEvent(events.get(i), result.getEvents().get(i));
+        }
+        store.stop();
+    }
+
+    // ============================ helper method ======================
+
+    /**
+     * 两个store执行相同的随机操作序列(ring buffer多次回绕)，比较每一步的结果
+     */
+    private void assertSameAsRowStore(BatchMode batchMode, boolean raw, boolean ddlIsolation, long seed) {
+        MemoryEventStoreWithBuffer rowStore = store(new MemoryEventStoreWithBuffer(), batchMode, raw, ddlIsolation);
+        ColumnarEventStoreWithBuffer columnarStore = store(new ColumnarEventStoreWithBuffer(), batchMode, raw, ddlIsolation);
+        Random random = new Random(seed);
+        long position = 0;
+        Events<Event> lastBatch = null;
+        for (int round = 0; round < 3000; round++) {
+            int op = random.nextInt(10);
+            if (op < 4) {
+                int count = 1 + random.nextInt(6);
+                List<Event> rowEvents = new ArrayList<>(count);
+                List<Event> columnarEvents = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long eventSeed = random.nextLong();
+                    rowEvents.add(event(position + i, new Random(eventSeed), raw));
+                    columnarEvents.add(event(position + i, new Random(eventSeed), raw));
+                }
+                boolean put = rowStore.tryPut(rowEvents);
+                Assert.assertEquals(put, columnarStore.tryPut(columnarEvents));
+                if (put) {
+                    position += count;
+                }
+            } else if (op < 8) {
+                int batchSize = 1 + random.nextInt(8);
+                Events<Event> expected = rowStore.tryGet(null, batchSize);
+                Events<Event> actual = columnarStore.tryGet(null, batchSize);
+                Assert.assertEquals(expected.getEvents().size(), actual.getEvents().size());
+                for (int i = 0; i < expected.getEvents().size(); i++) {
+                    assertEvent(expected.getEvents().get(i), actual.getEvents().get(i));
+                }
+                Assert.assertEquals(expected.getPositionRange(), actual.getPositionRange());
+                if (!expected.getEvents().isEmpty()) {
+                    lastBatch = expected;
+                }
+            } else if (op < 9) {
+                if (lastBatch != null) {
+                    rowStore.ack(lastBatch.getPositionRange().getEnd(), lastBatch.getPositionRange().getEndSeq());
+                    columnarStore.ack(lastBatch.getPositionRange().getEnd(), lastBatch.getPositionRange().getEndSeq());
+                    lastBatch = null;
+                }
+            } else {
+                rowStore.rollback();
+                columnarStore.rollback();
+                lastBatch = null;
+            }
+            Assert.assertEquals(rowStore.currentPutSequence(), columnarStore.currentPutSequence());
+            Assert.assertEquals(rowStore.currentAckSequence(), columnarStore.currentAckSequence());
+            Assert.assertEquals(rowStore.getFirstPosition(), columnarStore.getFirstPosition());
+            Assert.assertEquals(rowStore.getLatestPosition(), columnarStore.getLatestPosition());
+            Assert.assertEquals(rowStore.getAckTableRows().get(), columnarStore.getAckTableRows().get());
+        }
+        // 确认ring buffer已经回绕多次
+        Assert.assertTrue(rowStore.currentAckSequence() > 16 * 10);
+        rowStore.stop();
+        columnarStore.stop();
+    }
+
+    private static <T extends AbstractEventStoreWithBuffer> T store(T store, BatchMode batchMode, boolean raw, boolean ddlIsolation) {
+        store.setBufferSize(16);
+        store.setBufferMemUnit(256);
+        store.setBatchMode(batchMode);
+        store.setRaw(raw);
+        store.setDdlIsolation(ddlIsolation);
+        store.start();
+        return store;
+    }
+
+    private static void assertEvent(Event expected, Event actual) {
+        Assert.assertEquals(expected.getLogIdentity(), actual.getLogIdentity());
+        Assert.assertEquals(expected.getJournalName(), actual.getJournalName());
+        Assert.assertEquals(expected.getPosition(), actual.getPosition());
+        Assert.assertEquals(expected.getServerId(), actual.getServerId());
+        Assert.assertEquals(expected.getExecuteTime(), actual.getExecuteTime());
+        Assert.assertEquals(expected.getEntryType(), actual.getEntryType());
+        Assert.assertEquals(expected.getEventType(), actual.getEventType());
+        Assert.assertEquals(expected.getGtId(), actual.getGtId());
+        Assert.assertEquals(expected.getRawLength(), actual.getRawLength());
+        Assert.assertEquals(expected.getRowsCount(), actual.getRowsCount());
+        Assert.assertEquals(expected.getRawEntry(), actual.getRawEntry());
+        Assert.assertEquals(expected.getEntry(), actual.getEntry());
+    }
+
+    /**
+     * 字段随机的数据：不同的binlog文件、来源、gtId、事件类型(包含ddl)
+     */
+    private static Event event(long position, Random random, boolean raw) {
+        CanalEntry.EntryType entryType = CanalEntry.EntryType.ROW_DATA;
+        CanalEntry.EventType eventType = CanalEntry.EventType.INSERT;
+        int type = random.nextInt(10);
+        if (type == 0) {
+            entryType = CanalEntry.EntryType.TRANSACTION_BEGIN;
+        } else if (type == 1) {
+            entryType = CanalEntry.EntryType.TRANSACTION_END;
+        } else if (type == 2) {
+            eventType = CanalEntry.EventType.ALTER;
+        } else if (type < 5) {
+            eventType = CanalEntry.EventType.UPDATE;
+        }
+        CanalEntry.Header.Builder header = CanalEntry.Header.newBuilder()
+                .setLogfileName(String.format("mysql-bin.%06d", 1 + position / 100))
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1 + random.nextInt(2))
+                .setEventType(eventType)
+                .setEventLength(50 + random.nextInt(200));
+        if (random.nextBoolean()) {
+            header.setGtId("uuid:1-" + (position / 10));
+        }
+        if (entryType == CanalEntry.EntryType.ROW_DATA) {
+            header.addProps(CanalEntry.Pair.newBuilder().setKey("rowsCount").setValue(String.valueOf(1 + random.nextInt(5))));
+        }
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(entryType)
+                .setStoreValue(ByteString.copyFrom(new byte[random.nextInt(300)]))
+                .build();
+        return new Event(random.nextInt(4) == 0 ? IDENTITY_2 : IDENTITY_1, entry, raw);
+    }
+}
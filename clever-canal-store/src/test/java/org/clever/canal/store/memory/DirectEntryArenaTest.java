@@ -0,0 +1,156 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.store.AbstractEventStoreWithBuffer;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外内存池：slab的分配、ack之后回收复用，rollback之后数据保持有效
+ */
+public class DirectEntryArenaTest {
+    private static final int SLAB_SIZE = 512;
+
+    @Test
+    public void testAllocateRelease() {
+        DirectEntryArena arena = new DirectEntryArena(100, 300);
+        ByteString data1 = bytes(60, 1);
+        ByteString data2 = bytes(60, 2);
+        ByteString direct1 = arena.allocate(data1, 0);
+        ByteString direct2 = arena.allocate(data2, 1);
+        Assert.assertEquals(data1, direct1);
+        Assert.assertEquals(data2, direct2);
+        // 当前slab空间不足时切换到新的slab
+        Assert.assertEquals(2, arena.getAllocatedSlabs());
+        Assert.assertEquals(200, arena.getUsedSize());
+        // 超过slabSize的数据不放入堆外内存
+        Assert.assertNull(arena.allocate(bytes(101, 3), 2));
+        Assert.assertNotNull(arena.allocate(bytes(60, 4), 3));
+        // 达到最大内存之后返回null
+        Assert.assertNull(arena.allocate(bytes(60, 5), 4));
+
+        // 只回收最后一条数据的sequence <= ack的slab
+        arena.release(0);
+        Assert.assertEquals(200, arena.getUsedSize());
+        Assert.assertEquals(data2, direct2);
+        arena.release(1);
+        Assert.assertEquals(100, arena.getUsedSize());
+        // 回收的slab被复用，不再申请新的内存
+        Assert.assertNotNull(arena.allocate(bytes(60, 6), 5));
+        Assert.assertEquals(3, arena.getAllocatedSlabs());
+        arena.releaseAll();
+        Assert.assertEquals(0, arena.getUsedSize());
+    }
+
+    @Test
+    public void testMemoryStoreReleaseAfterAck() {
+        MemoryEventStoreWithBuffer store = new MemoryEventStoreWithBuffer();
+        assertStoreRelease(store);
+    }
+
+    @Test
+    public void testLockFreeStoreReleaseAfterAck() {
+        LockFreeEventStoreWithBuffer store = new LockFreeEventStoreWithBuffer();
+        assertStoreRelease(store);
+    }
+
+    // ============================ helper method ======================
+
+    private static void assertStoreRelease(AbstractEventStoreWithBuffer store) {
+        store.setBufferSize(64);
+        store.setBatchMode(BatchMode.ITEM_SIZE);
+        store.setRaw(true);
+        store.setOffHeap(true);
+        store.setOffHeapSlabSize(SLAB_SIZE);
+        store.setOffHeapMaxSize(SLAB_SIZE * 64);
+        store.start();
+        DirectEntryArena arena = store.getArena();
+        Assert.assertNotNull(arena);
+
+        Assert.assertTrue(store.tryPut(events(0, 32)));
+        long usedSize = arena.getUsedSize();
+        int allocatedSlabs = arena.getAllocatedSlabs();
+        Assert.assertTrue(allocatedSlabs > 2);
+
+        // rollback不会回收堆外内存，重新get到的数据保持不变
+        Events<Event> events = store.tryGet(null, 16);
+        assertEvents(0, 16, events);
+        store.rollback();
+        Assert.assertEquals(usedSize, arena.getUsedSize());
+        events = store.tryGet(null, 16);
+        assertEvents(0, 16, events);
+
+        // ack之后回收完全被ack的slab，没有ack的数据保持有效
+        store.ack(events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+        Assert.assertTrue(arena.getUsedSize() < usedSize);
+        store.rollback();
+        assertEvents(16, 16, store.tryGet(null, 16));
+
+        // 回收的slab被复用
+        Assert.assertTrue(store.tryPut(events(32, 16)));
+        Assert.assertEquals(allocatedSlabs, arena.getAllocatedSlabs());
+        store.rollback();
+        events = store.tryGet(null, 32);
+        assertEvents(16, 32, events);
+        store.ack(events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+        Assert.assertEquals(0, arena.getUsedSize());
+
+        Assert.assertTrue(store.tryPut(events(48, 8)));
+        Assert.assertTrue(arena.getUsedSize() > 0);
+        store.cleanAll();
+        Assert.assertEquals(0, arena.getUsedSize());
+        store.stop();
+    }
+
+    private static void assertEvents(long from, int count, Events<Event> events) {
+        Assert.assertEquals(count, events.getEvents().size());
+        for (int i = 0; i < events.getEvents().size(); i++) {
+            Event event = events.getEvents().get(i);
+            Assert.assertEquals(from + i, event.getPosition());
+            // 与没有放入堆外内存的数据比较
+            Assert.assertEquals(event(from + i).getRawEntry(), event.getRawEntry());
+        }
+    }
+
+    private static ByteString bytes(int size, int value) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (value + i);
+        }
+        return ByteString.copyFrom(bytes);
+    }
+
+    private static List<Event> events(long from, int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (long position = from; position < from + count; position++) {
+            events.add(event(position));
+        }
+        return events;
+    }
+
+    private static Event event(long position) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .setEventLength(100)
+                .build();
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(CanalEntry.EntryType.ROW_DATA)
+                .setStoreValue(bytes(64, (int) position))
+                .build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, true);
+    }
+}
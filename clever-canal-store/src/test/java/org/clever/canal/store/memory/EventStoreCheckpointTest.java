@@ -0,0 +1,202 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EventStoreCheckpointTest {
+    private static final String DESTINATION = "example";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws Exception {
+        for (boolean raw : new boolean[]{true, false}) {
+            File file = new File(folder.getRoot(), "write-read-" + raw + ".checkpoint");
+            Event ackEvent = event(10, CanalEntry.EntryType.TRANSACTION_END, raw);
+            List<Event> events = Arrays.asList(
+                    event(11, CanalEntry.EntryType.TRANSACTION_BEGIN, raw),
+                    event(12, CanalEntry.EntryType.ROW_DATA, raw),
+                    event(13, CanalEntry.EntryType.TRANSACTION_END, raw)
+            );
+            new EventStoreCheckpoint(5, 1024, ackEvent, events).write(file);
+            Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+
+            EventStoreCheckpoint checkpoint = EventStoreCheckpoint.read(file, raw);
+            Assert.assertEquals(5, checkpoint.getAckSequence());
+            Assert.assertEquals(1024, checkpoint.getAckMemSize());
+            assertEvent(ackEvent, checkpoint.getAckEvent(), raw, false);
+            Assert.assertEquals(events.size(), checkpoint.getEvents().size());
+            for (int i = 0; i < events.size(); i++) {
+                assertEvent(events.get(i), checkpoint.getEvents().get(i), raw, true);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteReadWithoutAck() {
+        File file = new File(folder.getRoot(), "without-ack.checkpoint");
+        new EventStoreCheckpoint(-1, 0, null, new ArrayList<>()).write(file);
+        EventStoreCheckpoint checkpoint = EventStoreCheckpoint.read(file, true);
+        Assert.assertEquals(-1, checkpoint.getAckSequence());
+        Assert.assertNull(checkpoint.getAckEvent());
+        Assert.assertTrue(checkpoint.getEvents().isEmpty());
+    }
+
+    @Test
+    public void testStoreRestart() throws Exception {
+        MemoryEventStoreWithBuffer store = store();
+        // 两个完整的事务 + 一个未完成的事务
+        long position = 0;
+        for (int i = 0; i < 3; i++) {
+            List<Event> events = new ArrayList<>();
+            events.add(event(position++, CanalEntry.EntryType.TRANSACTION_BEGIN, true));
+            events.add(event(position++, CanalEntry.EntryType.ROW_DATA, true));
+            if (i < 2) {
+                events.add(event(position++, CanalEntry.EntryType.TRANSACTION_END, true));
+            }
+            Assert.assertTrue(store.tryPut(events));
+        }
+        Events<Event> events = store.tryGet(null, 3);
+        store.ack(events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+        Assert.assertEquals(2, store.currentAckSequence());
+        LogPosition firstPosition = store.getFirstPosition();
+        store.stop();
+        File file = new File(folder.getRoot(), DESTINATION + ".checkpoint");
+        Assert.assertTrue(file.exists());
+
+        store = store();
+        Assert.assertFalse(file.exists());
+        // ack游标和最后一次ack的位置保持不变，未完成的事务不会恢复
+        Assert.assertEquals(2, store.currentAckSequence());
+        Assert.assertEquals(5, store.currentPutSequence());
+        Assert.assertEquals(firstPosition, store.getFirstPosition());
+        Assert.assertEquals(Long.valueOf(5), store.getRestoredPosition().getPosition().getPosition());
+        events = store.tryGet(null, 10);
+        Assert.assertEquals(3, events.getEvents().size());
+        for (int i = 0; i < 3; i++) {
+            Event event = events.getEvents().get(i);
+            Assert.assertEquals(3 + i, event.getPosition());
+            Assert.assertEquals(payload(3 + i), CanalEntry.Entry.parseFrom(event.getRawEntry()).getStoreValue());
+        }
+        store.ack(events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+        Assert.assertEquals(5, store.currentAckSequence());
+        store.stop();
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+        File file = new File(folder.getRoot(), DESTINATION + ".checkpoint");
+        List<Event> events = Arrays.asList(
+                event(1, CanalEntry.EntryType.TRANSACTION_BEGIN, true),
+                event(2, CanalEntry.EntryType.TRANSACTION_END, true)
+        );
+        new EventStoreCheckpoint(0, 0, event(0, CanalEntry.EntryType.TRANSACTION_END, true), events).write(file);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 10);
+        }
+        try {
+            EventStoreCheckpoint.read(file, true);
+            Assert.fail();
+        } catch (CanalStoreException ignored) {
+        }
+        // store忽略损坏的检查点文件，从空的状态启动
+        MemoryEventStoreWithBuffer store = store();
+        Assert.assertFalse(file.exists());
+        Assert.assertEquals(-1, store.currentPutSequence());
+        Assert.assertEquals(-1, store.currentAckSequence());
+        Assert.assertNull(store.getRestoredPosition());
+        Assert.assertTrue(store.tryGet(null, 10).getEvents().isEmpty());
+        store.stop();
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception {
+        File file = new File(folder.getRoot(), DESTINATION + ".checkpoint");
+        new EventStoreCheckpoint(0, 0, event(0, CanalEntry.EntryType.TRANSACTION_END, true), new ArrayList<>()).write(file);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.writeInt(0);
+        }
+        try {
+            EventStoreCheckpoint.read(file, true);
+            Assert.fail();
+        } catch (CanalStoreException ignored) {
+        }
+        MemoryEventStoreWithBuffer store = store();
+        Assert.assertFalse(file.exists());
+        Assert.assertEquals(-1, store.currentPutSequence());
+        Assert.assertNull(store.getRestoredPosition());
+        store.stop();
+    }
+
+    private MemoryEventStoreWithBuffer store() {
+        MemoryEventStoreWithBuffer store = new MemoryEventStoreWithBuffer();
+        store.setBufferSize(16);
+        store.setBatchMode(BatchMode.ITEM_SIZE);
+        store.setRaw(true);
+        store.setDestination(DESTINATION);
+        store.setCheckpointDir(folder.getRoot().getPath());
+        store.start();
+        return store;
+    }
+
+    private static Event event(long position, CanalEntry.EntryType entryType, boolean raw) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .setEventLength(100)
+                .build();
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(entryType)
+                .setStoreValue(payload(position))
+                .build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, raw);
+    }
+
+    private static ByteString payload(long position) {
+        return ByteString.copyFromUtf8("payload-" + position);
+    }
+
+    private static void assertEvent(Event expect, Event actual, boolean raw, boolean withData) {
+        Assert.assertEquals(expect.getLogIdentity().getSourceAddress(), actual.getLogIdentity().getSourceAddress());
+        Assert.assertEquals(expect.getLogIdentity().getSlaveId(), actual.getLogIdentity().getSlaveId());
+        Assert.assertEquals(expect.getJournalName(), actual.getJournalName());
+        Assert.assertEquals(expect.getPosition(), actual.getPosition());
+        Assert.assertEquals(expect.getServerId(), actual.getServerId());
+        Assert.assertEquals(expect.getExecuteTime(), actual.getExecuteTime());
+        Assert.assertEquals(expect.getEntryType(), actual.getEntryType());
+        Assert.assertEquals(expect.getEventType(), actual.getEventType());
+        Assert.assertEquals(expect.getGtId(), actual.getGtId());
+        Assert.assertEquals(expect.getRawLength(), actual.getRawLength());
+        Assert.assertEquals(expect.getRowsCount(), actual.getRowsCount());
+        if (!withData) {
+            Assert.assertNull(actual.getRawEntry());
+            Assert.assertNull(actual.getEntry());
+        } else if (raw) {
+            Assert.assertEquals(expect.getRawEntry(), actual.getRawEntry());
+        } else {
+            Assert.assertEquals(expect.getEntry(), actual.getEntry());
+        }
+    }
+}
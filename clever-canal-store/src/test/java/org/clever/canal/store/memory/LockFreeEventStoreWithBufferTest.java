@@ -0,0 +1,245 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 多消费者并发get/ack/rollback
+ */
+public class LockFreeEventStoreWithBufferTest {
+    private static final int CONSUMER_COUNT = 4;
+
+    @Test(timeout = 60000)
+    public void testConcurrentGetAckRollbackItemSize() throws Exception {
+        assertConcurrentGetAckRollback(BatchMode.ITEM_SIZE, 5);
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentGetAckRollbackMemSize() throws Exception {
+        assertConcurrentGetAckRollback(BatchMode.MEM_SIZE, 1);
+    }
+
+    /**
+     * get与rollback交错时，已get的memSize始终等于getSequence之前所有数据的大小
+     */
+    @Test(timeout = 60000)
+    public void testRollbackDuringGet() throws Exception {
+        LockFreeEventStoreWithBuffer store = store(BatchMode.MEM_SIZE, 1024);
+        List<Event> events = new ArrayList<>();
+        long[] memSizeBefore = new long[1024 + 1];
+        for (int i = 0; i < 1024; i++) {
+            events.add(event(i));
+            memSizeBefore[i + 1] = memSizeBefore[i] + events.get(i).getRawLength();
+        }
+        Assert.assertTrue(store.tryPut(events));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CONSUMER_COUNT; i++) {
+            threads.add(start(error, () -> {
+                while (running.get()) {
+                    store.tryGet(null, 1);
+                }
+            }));
+        }
+        threads.add(start(error, () -> {
+            while (running.get()) {
+                store.rollback();
+                Thread.yield();
+            }
+        }));
+        for (int round = 0; round < 2000; round++) {
+            long getSequence = store.getGetSequence().get();
+            long getMemSize = store.currentGetMemSize();
+            // 只有并发的get/rollback没有改变游标时才能比较
+            if (getSequence == store.getGetSequence().get()) {
+                Assert.assertEquals(memSizeBefore[(int) getSequence + 1], getMemSize);
+            }
+            Thread.sleep(1);
+        }
+        running.set(false);
+        join(threads, error);
+
+        // 停止之后再次比较，并且rollback之后可以重新get到所有数据
+        Assert.assertEquals(memSizeBefore[(int) store.getGetSequence().get() + 1], store.getGetMemSize().get());
+        store.rollback();
+        Assert.assertEquals(0, store.getGetMemSize().get());
+        Events<Event> all = store.tryGet(null, 100000);
+        Assert.assertEquals(1024, all.getEvents().size());
+        for (int i = 0; i < 1024; i++) {
+            Assert.assertEquals(i, all.getEvents().get(i).getPosition());
+        }
+        Assert.assertEquals(store.getPutMemSize().get(), store.getGetMemSize().get());
+        store.stop();
+    }
+
+    @Test
+    public void testGetAfterCleanAll() {
+        LockFreeEventStoreWithBuffer store = store(BatchMode.ITEM_SIZE, 16);
+        Assert.assertTrue(store.tryPut(Collections.singletonList(event(0))));
+        store.cleanAll();
+        // 不加锁的读操作在cleanAll之后不会出现NPE
+        Assert.assertTrue(store.tryGet(null, 10).getEvents().isEmpty());
+        Assert.assertNull(store.getFirstPosition());
+        Assert.assertNull(store.getLatestPosition());
+        Assert.assertEquals(0, store.getGetMemSize().get());
+    }
+
+    // ============================ helper method ======================
+
+    /**
+     * 一个生产者、多个消费者并发get，一个线程按顺序ack并随机rollback，ack的数据不丢失、不重复
+     */
+    private void assertConcurrentGetAckRollback(BatchMode batchMode, int batchSize) throws Exception {
+        final int total = 50000;
+        LockFreeEventStoreWithBuffer store = store(batchMode, 256);
+        // get并记录batch时持有读锁，rollback时持有写锁丢弃rollback之前get的batch(rollback之后会重新get到)
+        ReadWriteLock rollbackLock = new ReentrantReadWriteLock();
+        ConcurrentLinkedQueue<Events<Event>> batches = new ConcurrentLinkedQueue<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(start(error, () -> {
+            int position = 0;
+            while (position < total) {
+                int size = Math.min(1 + ThreadLocalRandom.current().nextInt(10), total - position);
+                List<Event> events = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    events.add(event(position++));
+                }
+                store.put(events);
+            }
+        }));
+        for (int i = 0; i < CONSUMER_COUNT; i++) {
+            threads.add(start(error, () -> {
+                while (running.get()) {
+                    rollbackLock.readLock().lock();
+                    try {
+                        Events<Event> events = store.tryGet(null, batchSize);
+                        if (!events.getEvents().isEmpty()) {
+                            batches.add(events);
+                        }
+                    } finally {
+                        rollbackLock.readLock().unlock();
+                    }
+                }
+            }));
+        }
+
+        List<Long> acked = new ArrayList<>(total);
+        // 按get的顺序ack: startSeq --> batch
+        TreeMap<Long, Events<Event>> pending = new TreeMap<>();
+        long ackSequence = -1;
+        int rollbackCount = 0;
+        Random random = new Random(0);
+        while (acked.size() < total && error.get() == null) {
+            Events<Event> events;
+            while ((events = batches.poll()) != null) {
+                pending.put(events.getPositionRange().getEndSeq() - events.getEvents().size() + 1, events);
+            }
+            while ((events = pending.remove(ackSequence + 1)) != null) {
+                store.ack(events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+                ackSequence = events.getPositionRange().getEndSeq();
+                for (Event event : events.getEvents()) {
+                    acked.add(event.getPosition());
+                }
+                if (random.nextInt(50) == 0) {
+                    rollbackLock.writeLock().lock();
+                    try {
+                        store.rollback();
+                        batches.clear();
+                        pending.clear();
+                        rollbackCount++;
+                    } finally {
+                        rollbackLock.writeLock().unlock();
+                    }
+                    break;
+                }
+            }
+        }
+        running.set(false);
+        join(threads, error);
+
+        Assert.assertTrue(rollbackCount > 0);
+        Assert.assertEquals(total, acked.size());
+        for (int i = 0; i < total; i++) {
+            Assert.assertEquals(i, (long) acked.get(i));
+        }
+        Assert.assertEquals(total - 1, store.currentAckSequence());
+        Assert.assertTrue(store.tryGet(null, batchSize).getEvents().isEmpty());
+        if (batchMode.isMemSize()) {
+            Assert.assertEquals(store.getPutMemSize().get(), store.getAckMemSize().get());
+            Assert.assertEquals(store.getPutMemSize().get(), store.getGetMemSize().get());
+        }
+        store.stop();
+    }
+
+    private static LockFreeEventStoreWithBuffer store(BatchMode batchMode, int bufferSize) {
+        LockFreeEventStoreWithBuffer store = new LockFreeEventStoreWithBuffer();
+        store.setBufferSize(bufferSize);
+        store.setBufferMemUnit(256);
+        store.setBatchMode(batchMode);
+        store.start();
+        return store;
+    }
+
+    private static Event event(long position) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .setEventLength(100)
+                .build();
+        // 大小不同的数据
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(CanalEntry.EntryType.ROW_DATA)
+                .setStoreValue(ByteString.copyFrom(new byte[(int) (position % 97)]))
+                .build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, true);
+    }
+
+    private static Thread start(AtomicReference<Throwable> error, ThrowingRunnable runnable) {
+        Thread thread = new Thread(() -> {
+            try {
+                runnable.run();
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(List<Thread> threads, AtomicReference<Throwable> error) throws Exception {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
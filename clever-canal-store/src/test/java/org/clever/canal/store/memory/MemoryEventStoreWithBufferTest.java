@@ -0,0 +1,274 @@
+package org.clever.canal.store.memory;
+
+import com.google.protobuf.ByteString;
+import org.clever.canal.protocol.CanalEntry;
+import org.clever.canal.protocol.ClientIdentity;
+import org.clever.canal.protocol.position.LogIdentity;
+import org.clever.canal.protocol.position.LogPosition;
+import org.clever.canal.store.exception.CanalStoreException;
+import org.clever.canal.store.helper.CanalEventUtils;
+import org.clever.canal.store.model.BatchMode;
+import org.clever.canal.store.model.Event;
+import org.clever.canal.store.model.Events;
+import org.clever.canal.store.model.LaggardPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多客户端游标的get/ack/rollback、数据回收以及慢客户端处理
+ */
+public class MemoryEventStoreWithBufferTest {
+    private static final ClientIdentity CLIENT_A = new ClientIdentity("example", (short) 1001);
+    private static final ClientIdentity CLIENT_B = new ClientIdentity("example", (short) 1002);
+
+    @Test
+    public void testClientCursors() {
+        MemoryEventStoreWithBuffer store = store(BatchMode.ITEM_SIZE, 16, LaggardPolicy.BLOCK);
+        store.subscribe(CLIENT_A);
+        store.subscribe(CLIENT_B);
+        Assert.assertTrue(store.tryPut(events(0, 10)));
+
+        // 每个客户端的get位置互不影响
+        assertPositions(store.tryGet(CLIENT_A, null, 3), 0, 1, 2);
+        assertPositions(store.tryGet(CLIENT_B, null, 5), 0, 1, 2, 3, 4);
+        assertPositions(store.tryGet(CLIENT_A, null, 2), 3, 4);
+
+        // A回滚之后重新获取，B不受影响
+        store.rollback(CLIENT_A);
+        assertPositions(store.tryGet(CLIENT_B, null, 2), 5, 6);
+        Events<Event> events = store.tryGet(CLIENT_A, null, 4);
+        assertPositions(events, 0, 1, 2, 3);
+
+        // A的ack不会移动B的ack位置
+        store.ack(CLIENT_A, events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+        Assert.assertEquals(3, store.getFirstPosition(CLIENT_A).getPosition().getPosition().longValue());
+        Assert.assertEquals(0, store.getFirstPosition(CLIENT_B).getPosition().getPosition().longValue());
+        store.rollback(CLIENT_B);
+        assertPositions(store.tryGet(CLIENT_B, null, 2), 0, 1);
+        assertPositions(store.tryGet(CLIENT_A, null, 2), 4, 5);
+
+        // 没有订阅的客户端不能消费
+        try {
+            store.tryGet(new ClientIdentity("example", (short) 1003), null, 1);
+            Assert.fail();
+        } catch (CanalStoreException ignored) {
+        }
+        store.stop();
+    }
+
+    @Test
+    public void testReclaimAfterSlowestAck() {
+        MemoryEventStoreWithBuffer store = store(BatchMode.ITEM_SIZE, 8, LaggardPolicy.BLOCK);
+        store.subscribe(CLIENT_A);
+        store.subscribe(CLIENT_B);
+        Assert.assertTrue(store.tryPut(events(0, 8)));
+        Assert.assertFalse(store.tryPut(events(8, 1)));
+
+        ackAll(store, CLIENT_A, 8);
+        // 只有A ack了，B还没有ack，不能回收空间
+        Assert.assertFalse(store.tryPut(events(8, 1)));
+        Assert.assertEquals(-1, store.currentAckSequence());
+        Assert.assertTrue(store.getLatestPosition().getPosition().isIncluded());
+
+        // B ack了2条，只能回收这2条的空间
+        ackAll(store, CLIENT_B, 2);
+        Assert.assertEquals(1, store.currentAckSequence());
+        Assert.assertFalse(store.tryPut(events(8, 3)));
+        Assert.assertTrue(store.tryPut(events(8, 2)));
+        Assert.assertFalse(store.tryPut(events(10, 1)));
+        Assert.assertTrue(store.getLatestPosition().getPosition().isIncluded());
+
+        // 所有客户端都ack之后，latestPosition不再包含最后一条数据
+        ackAll(store, CLIENT_A, 2);
+        ackAll(store, CLIENT_B, 8);
+        Assert.assertEquals(9, store.currentAckSequence());
+        Assert.assertFalse(store.getLatestPosition().getPosition().isIncluded());
+        Assert.assertTrue(store.tryPut(events(10, 8)));
+        store.stop();
+    }
+
+    @Test
+    public void testReclaimMemSize() {
+        MemoryEventStoreWithBuffer store = store(BatchMode.MEM_SIZE, 8, LaggardPolicy.BLOCK);
+        store.subscribe(CLIENT_A);
+        store.subscribe(CLIENT_B);
+        List<Event> events = events(0, 8);
+        Assert.assertTrue(store.tryPut(events));
+
+        assertPositions(store.tryGet(CLIENT_A, null, 100), 0, 1, 2, 3, 4, 5, 6, 7);
+        assertPositions(store.tryGet(CLIENT_B, null, 100), 0, 1, 2, 3, 4, 5, 6, 7);
+        store.ack(CLIENT_A, CanalEventUtils.createPosition(events.get(7)), 7L);
+        // A已经全部ack，但是B还没有ack，不释放任何数据
+        for (Event event : events) {
+            Assert.assertNotNull(event.getRawEntry());
+        }
+
+        // B ack了2条，只释放这2条数据，B回滚之后还能get到之后的完整数据
+        store.ack(CLIENT_B, CanalEventUtils.createPosition(events.get(1)), 1L);
+        Assert.assertNull(events.get(1).getRawEntry());
+        store.rollback(CLIENT_B);
+        Events<Event> rest = store.tryGet(CLIENT_B, null, 100);
+        assertPositions(rest, 2, 3, 4, 5, 6, 7);
+        for (Event event : rest.getEvents()) {
+            Assert.assertNotNull(event.getRawEntry());
+        }
+
+        // ack时已经回收，没有可以再回收的数据
+        Assert.assertEquals(0, store.reclaim());
+        // B全部ack之后才释放剩下的数据
+        store.ack(CLIENT_B, CanalEventUtils.createPosition(events.get(7)), 7L);
+        Assert.assertNull(events.get(7).getRawEntry());
+        store.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void testLaggardBlock() throws Exception {
+        MemoryEventStoreWithBuffer store = store(BatchMode.ITEM_SIZE, 8, LaggardPolicy.BLOCK);
+        store.subscribe(CLIENT_A);
+        store.subscribe(CLIENT_B);
+        Assert.assertTrue(store.tryPut(events(0, 8)));
+        ackAll(store, CLIENT_A, 8);
+
+        // B一直不ack，put被阻塞
+        Assert.assertFalse(store.tryPut(events(8, 1)));
+        Assert.assertFalse(store.put(events(8, 1), 50, TimeUnit.MILLISECONDS));
+        // B没有被剔除，可以继续消费
+        Events<Event> events = store.tryGet(CLIENT_B, null, 3);
+        assertPositions(events, 0, 1, 2);
+
+        // B ack之后被阻塞的put可以继续
+        Thread putThread = new Thread(() -> {
+            try {
+                store.put(events(8, 2));
+            } catch (InterruptedException ignored) {
+            }
+        });
+        putThread.start();
+        Thread.sleep(50);
+        Assert.assertTrue(putThread.isAlive());
+        store.ack(CLIENT_B, CanalEventUtils.createPosition(events.getEvents().get(1)), 1L);
+        putThread.join();
+        Assert.assertEquals(9, store.currentPutSequence());
+        store.stop();
+    }
+
+    @Test
+    public void testLaggardEvict() {
+        MemoryEventStoreWithBuffer store = store(BatchMode.ITEM_SIZE, 8, LaggardPolicy.EVICT);
+        store.subscribe(CLIENT_A);
+        store.subscribe(CLIENT_B);
+        Assert.assertTrue(store.tryPut(events(0, 8)));
+        ackAll(store, CLIENT_A, 8);
+        assertPositions(store.tryGet(CLIENT_B, null, 2), 0, 1);
+
+        // B阻塞写入时被剔除
+        Assert.assertTrue(store.tryPut(events(8, 8)));
+        Assert.assertEquals(7, store.currentAckSequence());
+        try {
+            store.tryGet(CLIENT_B, null, 1);
+            Assert.fail();
+        } catch (CanalStoreException e) {
+            Assert.assertTrue(e.getMessage().contains("evicted"));
+        }
+        try {
+            store.rollback(CLIENT_B);
+            Assert.fail();
+        } catch (CanalStoreException ignored) {
+        }
+
+        // 至少保留一个客户端，A不ack时put失败
+        Assert.assertFalse(store.tryPut(events(16, 1)));
+
+        // 重新订阅之后从没有回收的数据开始消费
+        store.subscribe(CLIENT_B);
+        assertPositions(store.tryGet(CLIENT_B, null, 3), 8, 9, 10);
+        assertPositions(store.tryGet(CLIENT_A, null, 3), 8, 9, 10);
+        store.stop();
+    }
+
+    @Test
+    public void testAckNotFetched() {
+        MemoryEventStoreWithBuffer store = store(BatchMode.ITEM_SIZE, 16, LaggardPolicy.BLOCK);
+        store.subscribe(CLIENT_A);
+        store.subscribe(CLIENT_B);
+        List<Event> events = events(0, 10);
+        Assert.assertTrue(store.tryPut(events));
+        assertPositions(store.tryGet(CLIENT_A, null, 2), 0, 1);
+        assertPositions(store.tryGet(CLIENT_B, null, 6), 0, 1, 2, 3, 4, 5);
+
+        // A只get了2条，不能ack之后的数据(无论是通过seqId还是通过位点查找)
+        LogPosition position = CanalEventUtils.createPosition(events.get(4));
+        try {
+            store.ack(CLIENT_A, position, 4L);
+            Assert.fail();
+        } catch (CanalStoreException ignored) {
+        }
+        try {
+            store.ack(CLIENT_A, position, -1L);
+            Assert.fail();
+        } catch (CanalStoreException ignored) {
+        }
+        Assert.assertEquals(-1, store.currentAckSequence());
+
+        // B已经get了，可以ack
+        store.ack(CLIENT_B, position, -1L);
+        store.ack(CLIENT_A, CanalEventUtils.createPosition(events.get(1)), 1L);
+        Assert.assertEquals(1, store.currentAckSequence());
+        store.stop();
+    }
+
+    // ============================ helper method ======================
+
+    private static MemoryEventStoreWithBuffer store(BatchMode batchMode, int bufferSize, LaggardPolicy laggardPolicy) {
+        MemoryEventStoreWithBuffer store = new MemoryEventStoreWithBuffer();
+        store.setBufferSize(bufferSize);
+        store.setBufferMemUnit(256);
+        store.setBatchMode(batchMode);
+        store.setLaggardPolicy(laggardPolicy);
+        store.start();
+        return store;
+    }
+
+    private static void ackAll(MemoryEventStoreWithBuffer store, ClientIdentity clientIdentity, int count) {
+        Events<Event> events = store.tryGet(clientIdentity, null, count);
+        Assert.assertEquals(count, events.getEvents().size());
+        store.ack(clientIdentity, events.getPositionRange().getEnd(), events.getPositionRange().getEndSeq());
+    }
+
+    private static void assertPositions(Events<Event> events, long... positions) {
+        Assert.assertEquals(positions.length, events.getEvents().size());
+        for (int i = 0; i < positions.length; i++) {
+            Assert.assertEquals(positions[i], events.getEvents().get(i).getPosition());
+        }
+    }
+
+    private static List<Event> events(long from, int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (long position = from; position < from + count; position++) {
+            events.add(event(position));
+        }
+        return events;
+    }
+
+    private static Event event(long position) {
+        CanalEntry.Header header = CanalEntry.Header.newBuilder()
+                .setLogfileName("mysql-bin.000001")
+                .setLogfileOffset(position)
+                .setExecuteTime(1000 + position)
+                .setServerId(1)
+                .setEventType(CanalEntry.EventType.INSERT)
+                .setEventLength(100)
+                .build();
+        CanalEntry.Entry entry = CanalEntry.Entry.newBuilder()
+                .setHeader(header)
+                .setEntryType(CanalEntry.EntryType.ROW_DATA)
+                .setStoreValue(ByteString.copyFrom(new byte[64]))
+                .build();
+        return new Event(new LogIdentity(new InetSocketAddress("127.0.0.1", 3306), 1234L), entry, true);
+    }
+}